@@ -0,0 +1,80 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.libertymutualgroup.herman.aws.ecs.EcsPushDefinition;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a freshly configured mapper per parse (the previous behavior) against the shared reader of
+ * {@link HermanJackson}. It is run by hand, not as part of the build:
+ *
+ * <pre>
+ * mvn package -DskipTests
+ * javac -cp target/herman-1.0.0-SNAPSHOT.jar -d target/benchmark src/benchmark/java/com/libertymutualgroup/herman/util/HermanJacksonBenchmark.java
+ * java -cp target/herman-1.0.0-SNAPSHOT.jar:target/benchmark com.libertymutualgroup.herman.util.HermanJacksonBenchmark \
+ *     src/test/resources/sampleTemplates/template.yml
+ * </pre>
+ */
+public class HermanJacksonBenchmark {
+
+    private static final int ITERATIONS = 200;
+
+    private HermanJacksonBenchmark() {
+        throw new IllegalAccessError("Benchmark");
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: HermanJacksonBenchmark <template.yml>");
+            System.exit(1);
+        }
+        String template = FileUtils.readFileToString(new File(args[0]));
+
+        long start = System.nanoTime();
+        newConfiguredMapper().readValue(template, EcsPushDefinition.class);
+        long coldMapperNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            newConfiguredMapper().readValue(template, EcsPushDefinition.class);
+        }
+        long mapperPerParseNanos = System.nanoTime() - start;
+
+        HermanJackson.yamlReader(EcsPushDefinition.class).readValue(template);
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            HermanJackson.yamlReader(EcsPushDefinition.class).readValue(template);
+        }
+        long sharedReaderNanos = System.nanoTime() - start;
+
+        System.out.println(String.format("Cold mapper startup + parse: %d ms", TimeUnit.NANOSECONDS.toMillis(coldMapperNanos)));
+        System.out.println(String.format("Mapper per parse: %d us/parse",
+            TimeUnit.NANOSECONDS.toMicros(mapperPerParseNanos) / ITERATIONS));
+        System.out.println(String.format("Shared reader: %d us/parse",
+            TimeUnit.NANOSECONDS.toMicros(sharedReaderNanos) / ITERATIONS));
+    }
+
+    private static ObjectMapper newConfiguredMapper() {
+        return new ObjectMapper(new YAMLFactory()).registerModule(new HermanJacksonModule());
+    }
+}
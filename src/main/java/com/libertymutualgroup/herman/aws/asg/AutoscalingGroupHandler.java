@@ -8,14 +8,31 @@ package com.libertymutualgroup.herman.aws.asg;
 import com.amazonaws.services.autoscaling.AmazonAutoScaling;
 import com.amazonaws.services.autoscaling.model.AmazonAutoScalingException;
 import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
+import com.amazonaws.services.autoscaling.model.CancelInstanceRefreshRequest;
+import com.amazonaws.services.autoscaling.model.CompleteLifecycleActionRequest;
+import com.amazonaws.services.autoscaling.model.DeleteLifecycleHookRequest;
+import com.amazonaws.services.autoscaling.model.DeleteWarmPoolRequest;
 import com.amazonaws.services.autoscaling.model.DescribeAutoScalingGroupsRequest;
+import com.amazonaws.services.autoscaling.model.DescribeInstanceRefreshesRequest;
+import com.amazonaws.services.autoscaling.model.DescribeWarmPoolRequest;
+import com.amazonaws.services.autoscaling.model.DescribeWarmPoolResult;
 import com.amazonaws.services.autoscaling.model.Instance;
+import com.amazonaws.services.autoscaling.model.InstanceRefresh;
+import com.amazonaws.services.autoscaling.model.InstanceRefreshInProgressException;
+import com.amazonaws.services.autoscaling.model.InstanceReusePolicy;
 import com.amazonaws.services.autoscaling.model.LifecycleState;
+import com.amazonaws.services.autoscaling.model.PutLifecycleHookRequest;
+import com.amazonaws.services.autoscaling.model.PutWarmPoolRequest;
+import com.amazonaws.services.autoscaling.model.RefreshPreferences;
 import com.amazonaws.services.autoscaling.model.ResumeProcessesRequest;
+import com.amazonaws.services.autoscaling.model.SetDesiredCapacityRequest;
 import com.amazonaws.services.autoscaling.model.SetInstanceHealthRequest;
+import com.amazonaws.services.autoscaling.model.StartInstanceRefreshRequest;
 import com.amazonaws.services.autoscaling.model.SuspendProcessesRequest;
+import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -24,6 +41,7 @@ public class AutoscalingGroupHandler {
     private AmazonAutoScaling asgClient;
     private HermanLogger logger;
 
+    private final String TERMINATING_TRANSITION = "autoscaling:EC2_INSTANCE_TERMINATING";
     private final List<String> SUSPEND_SCALING_PROCESSES = Arrays.asList("Launch", "HealthCheck", "ReplaceUnhealthy", "AZRebalance", "AlarmNotification", "ScheduledActions", "AddToLoadBalancer");
 
     public AutoscalingGroupHandler(AmazonAutoScaling asgClient, HermanLogger logger) {
@@ -64,10 +82,136 @@ public class AutoscalingGroupHandler {
             .collect(Collectors.toList());
     }
 
+    public void setDesiredCapacity(String asgName, int desiredCapacity) {
+        this.logger.addLogEntry("...Setting desired capacity of " + asgName + " to " + desiredCapacity);
+        SetDesiredCapacityRequest request = new SetDesiredCapacityRequest()
+            .withAutoScalingGroupName(asgName)
+            .withDesiredCapacity(desiredCapacity)
+            .withHonorCooldown(false);
+        this.asgClient.setDesiredCapacity(request);
+    }
+
     public void setEc2Unhealthy(String instanceId) {
         SetInstanceHealthRequest healthRequest = new SetInstanceHealthRequest()
             .withInstanceId(instanceId)
             .withHealthStatus("Unhealthy");
         this.asgClient.setInstanceHealth(healthRequest);
     }
+
+    public List<Instance> getAsgInstancesInState(String asgName, LifecycleState state) {
+        return getAsg(asgName).getInstances().stream()
+            .filter(instance -> state.toString().equals(instance.getLifecycleState()))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Adds (or updates) a hook that holds terminating instances in Terminating:Wait until the hook is completed
+     */
+    public void putTerminationLifecycleHook(String asgName, String hookName, int heartbeatTimeoutSeconds) {
+        this.logger.addLogEntry("...Adding termination lifecycle hook " + hookName + " to: " + asgName);
+        PutLifecycleHookRequest hookRequest = new PutLifecycleHookRequest()
+            .withAutoScalingGroupName(asgName)
+            .withLifecycleHookName(hookName)
+            .withLifecycleTransition(TERMINATING_TRANSITION)
+            .withHeartbeatTimeout(heartbeatTimeoutSeconds)
+            .withDefaultResult("CONTINUE");
+        this.asgClient.putLifecycleHook(hookRequest);
+    }
+
+    /**
+     * Removes a lifecycle hook. Instances still held by it continue with the hook's default result.
+     */
+    public void deleteLifecycleHook(String asgName, String hookName) {
+        this.logger.addLogEntry("...Removing lifecycle hook " + hookName + " from: " + asgName);
+        try {
+            this.asgClient.deleteLifecycleHook(new DeleteLifecycleHookRequest()
+                .withAutoScalingGroupName(asgName)
+                .withLifecycleHookName(hookName));
+        }
+        catch (AmazonAutoScalingException ex) {
+            this.logger.addErrorLogEntry("Unable to remove lifecycle hook " + hookName + ": " + ex.getErrorMessage());
+        }
+    }
+
+    public void completeLifecycleAction(String asgName, String hookName, String instanceId) {
+        CompleteLifecycleActionRequest completeRequest = new CompleteLifecycleActionRequest()
+            .withAutoScalingGroupName(asgName)
+            .withLifecycleHookName(hookName)
+            .withInstanceId(instanceId)
+            .withLifecycleActionResult("CONTINUE");
+        this.asgClient.completeLifecycleAction(completeRequest);
+    }
+
+    /**
+     * @return the id of the started instance refresh
+     */
+    public String startInstanceRefresh(String asgName, int minHealthyPercentage, int instanceWarmupSeconds) {
+        this.logger.addLogEntry("...Starting instance refresh on: " + asgName + " (min healthy " + minHealthyPercentage + "%)");
+        StartInstanceRefreshRequest refreshRequest = new StartInstanceRefreshRequest()
+            .withAutoScalingGroupName(asgName)
+            .withPreferences(new RefreshPreferences()
+                .withMinHealthyPercentage(minHealthyPercentage)
+                .withInstanceWarmup(instanceWarmupSeconds));
+        try {
+            return this.asgClient.startInstanceRefresh(refreshRequest).getInstanceRefreshId();
+        }
+        catch (InstanceRefreshInProgressException ex) {
+            throw new AwsExecException("An instance refresh is already in progress on " + asgName);
+        }
+    }
+
+    public InstanceRefresh getInstanceRefresh(String asgName, String instanceRefreshId) {
+        DescribeInstanceRefreshesRequest request = new DescribeInstanceRefreshesRequest()
+            .withAutoScalingGroupName(asgName)
+            .withInstanceRefreshIds(instanceRefreshId);
+        return this.asgClient.describeInstanceRefreshes(request).getInstanceRefreshes().get(0);
+    }
+
+    public void cancelInstanceRefresh(String asgName) {
+        this.logger.addLogEntry("...Cancelling instance refresh on: " + asgName);
+        try {
+            this.asgClient.cancelInstanceRefresh(new CancelInstanceRefreshRequest().withAutoScalingGroupName(asgName));
+        }
+        catch (AmazonAutoScalingException ex) {
+            this.logger.addErrorLogEntry("Unable to cancel instance refresh: " + ex.getErrorMessage());
+        }
+    }
+
+    /**
+     * @return the group's warm pool, or null if it has none
+     */
+    public DescribeWarmPoolResult getWarmPool(String asgName) {
+        DescribeWarmPoolResult result = this.asgClient.describeWarmPool(new DescribeWarmPoolRequest().withAutoScalingGroupName(asgName));
+        if (result.getWarmPoolConfiguration() == null) {
+            return null;
+        }
+        List<Instance> instances = new ArrayList<>(result.getInstances());
+        String nextToken = result.getNextToken();
+        while (nextToken != null) {
+            DescribeWarmPoolResult page = this.asgClient.describeWarmPool(new DescribeWarmPoolRequest()
+                .withAutoScalingGroupName(asgName)
+                .withNextToken(nextToken));
+            instances.addAll(page.getInstances());
+            nextToken = page.getNextToken();
+        }
+        return result.withInstances(instances).withNextToken(null);
+    }
+
+    public void putWarmPool(String asgName, int minSize, Integer maxGroupPreparedCapacity, String poolState, boolean reuseOnScaleIn) {
+        this.logger.addLogEntry("...Configuring warm pool on: " + asgName + " (min size " + minSize + ", " + poolState + ")");
+        PutWarmPoolRequest warmPoolRequest = new PutWarmPoolRequest()
+            .withAutoScalingGroupName(asgName)
+            .withMinSize(minSize)
+            .withMaxGroupPreparedCapacity(maxGroupPreparedCapacity)
+            .withPoolState(poolState)
+            .withInstanceReusePolicy(new InstanceReusePolicy().withReuseOnScaleIn(reuseOnScaleIn));
+        this.asgClient.putWarmPool(warmPoolRequest);
+    }
+
+    public void deleteWarmPool(String asgName) {
+        this.logger.addLogEntry("...Deleting warm pool on: " + asgName);
+        this.asgClient.deleteWarmPool(new DeleteWarmPoolRequest()
+            .withAutoScalingGroupName(asgName)
+            .withForceDelete(true));
+    }
 }
@@ -15,27 +15,15 @@
  */
 package com.libertymutualgroup.herman.aws.cft;
 
-import com.amazonaws.AmazonServiceException;
-import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.cloudformation.AmazonCloudFormation;
-import com.amazonaws.services.cloudformation.AmazonCloudFormationClientBuilder;
-import com.amazonaws.services.cloudformation.model.AlreadyExistsException;
-import com.amazonaws.services.cloudformation.model.AmazonCloudFormationException;
-import com.amazonaws.services.cloudformation.model.CreateStackRequest;
 import com.amazonaws.services.cloudformation.model.DescribeStackResourcesRequest;
 import com.amazonaws.services.cloudformation.model.DescribeStackResourcesResult;
 import com.amazonaws.services.cloudformation.model.Parameter;
 import com.amazonaws.services.cloudformation.model.StackResource;
 import com.amazonaws.services.cloudformation.model.Tag;
-import com.amazonaws.services.cloudformation.model.UpdateStackRequest;
-import com.amazonaws.services.lambda.AWSLambda;
-import com.amazonaws.services.lambda.AWSLambdaClientBuilder;
-import com.amazonaws.services.lambda.model.InvocationType;
-import com.amazonaws.services.lambda.model.InvokeRequest;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.aws.cft.TemplateAnalyzer.TemplateParameter;
 import com.libertymutualgroup.herman.aws.ecs.PropertyHandler;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import com.libertymutualgroup.herman.task.cft.CftPushTaskProperties;
@@ -45,12 +33,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -67,78 +54,112 @@ public class CftPush { ;
     private HermanLogger buildLogger;
     private CftPushContext taskContext;
     private AmazonCloudFormation cftClient;
-    private AWSLambda lambdaClient;
+    private CftPushSession session;
     private StackUtils stackUtils;
+    private ChangeSetPlanner changeSetPlanner;
     private Regions region;
     private PropertyHandler propertyHandler;
     private CftPushTaskProperties taskProperties;
 
     public CftPush(CftPushContext taskContext) {
+        this(taskContext, new CftPushSession(taskContext));
+    }
+
+    public CftPush(CftPushContext taskContext, CftPushSession session) {
         this.taskContext = taskContext;
+        this.session = session;
         this.buildLogger = taskContext.getLogger();
         this.propertyHandler = taskContext.getPropertyHandler();
         this.region = taskContext.getRegion();
+        this.cftClient = session.getCftClient();
+        this.stackUtils = this.buildLogger == session.getLogger() ? session.getStackUtils()
+            : new StackUtils(this.cftClient, this.buildLogger, session.getStackUtils().getStackIndex());
+        this.changeSetPlanner = new ChangeSetPlanner(this.cftClient, this.buildLogger, session.getTemplateStager());
+        this.taskProperties = taskContext.getTaskProperties();
+    }
 
-        cftClient = AmazonCloudFormationClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(taskContext.getSessionCredentials())).withClientConfiguration(taskContext.getAwsClientConfig())
-            .withRegion(region).build();
-
-        lambdaClient = AWSLambdaClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(taskContext.getSessionCredentials())).withClientConfiguration(taskContext.getAwsClientConfig())
-            .withRegion(region).build();
-
-        this.stackUtils = new StackUtils(this.cftClient, this.buildLogger);
+    /**
+     * @return name of the pushed stack, which has the region appended if it did not contain it
+     */
+    public String push(String stackName, String template) {
+        loadProperties();
+        stackName = regionalStackName(stackName);
+
+        StackChangePlan plan = createChangeSet(stackName, template, Collections.emptySet());
+        if (taskContext.isPlanOnly()) {
+            buildLogger.addLogEntry("Plan only, change set not executed: " + plan.getChangeSetName());
+            changeSetPlanner.discard(plan);
+            return stackName;
+        }
 
-        this.taskProperties = taskContext.getTaskProperties();
+        if (plan.isEmpty()) {
+            buildLogger.addLogEntry("No CFT Updates to apply, skipping CFT Push...");
+            changeSetPlanner.discard(plan);
+        } else {
+            String lastEventId = this.stackUtils.findLastEventId(stackName);
+            changeSetPlanner.execute(plan);
+            buildLogger.addLogEntry("Stack triggered: " + stackName);
+            this.stackUtils.waitForCompletion(stackName, lastEventId);
+        }
+        outputStack(stackName);
+        if (session.isStackOutputFileEnabled()) {
+            session.writeStackOutput(output);
+        }
+        return stackName;
     }
 
-    public void push(String stackName, String template) {
+    /**
+     * Computes the change set a push would execute without executing it
+     *
+     * @param keepPreviousParameters parameters to leave at the stack's current value, e.g. per-build values that
+     * should not count as a change
+     */
+    public StackChangePlan plan(String stackName, String template, Collection<String> keepPreviousParameters) {
+        loadProperties();
+        StackChangePlan plan = createChangeSet(regionalStackName(stackName), template, keepPreviousParameters);
+        changeSetPlanner.discard(plan);
+        return plan;
+    }
 
+    private void loadProperties() {
         // Input data outside of CFT
         String env = taskContext.getEnvName();
 
         if (!this.taskProperties.getCftPushVariableBrokerLambda().isEmpty()) {
-            buildLogger.addLogEntry(
-                "Getting CFT variables from Lambda: " + this.taskProperties.getCftPushVariableBrokerLambda());
             introspectEnvironment();
         }
         injectBambooContext();
-        importPropFiles(env);
+        if (session.isStackOutputFileEnabled()) {
+            importStackOutput();
+        }
+        importEnvPropFile(env);
 
         if (this.taskContext.getTemplateParameters() != null) {
             props.putAll(this.taskContext.getTemplateParameters());
         }
+    }
 
+    private String regionalStackName(String stackName) {
         if (!stackName.contains(region.getName())) {
-            stackName = stackName + "-" + region.getName();
-        }
-
-        createStack(stackName, template);
-
-        buildLogger.addLogEntry("Stack triggered: " + stackName);
-        this.stackUtils.waitForCompletion(stackName);
-        outputStack(stackName);
-
-        try (OutputStream fileOut = new FileOutputStream(taskContext.getRootPath() + File.separator + "stackoutput.properties")) {
-            output.store(fileOut, null);
-        } catch (IOException e) {
-            throw new AwsExecException(e);
+            return stackName + "-" + region.getName();
         }
+        return stackName;
     }
 
-    private void importPropFiles(String env) {
-        File stackOut = new File(taskContext.getRootPath() + File.separator + "stackoutput.properties");
-
-        try (FileReader stackRead = new FileReader(stackOut)) {
-            if (stackOut.exists()) {
-                props.load(stackRead);
+    private void importStackOutput() {
+        try {
+            if (session.readStackOutput(props)) {
                 buildLogger.addLogEntry("Loaded stackoutput.properties");
+            } else {
+                buildLogger.addLogEntry("No stackoutput.properties");
             }
         } catch (IOException e) {
             LOGGER.debug("No stackoutput.properties", e);
             buildLogger.addLogEntry("No stackoutput.properties");
         }
+    }
 
+    private void importEnvPropFile(String env) {
         String root = taskContext.getRootPath();
         File envProps = new File(root + File.separator + env + ".properties");
         try (FileReader envFile = new FileReader(envProps);) {
@@ -181,9 +202,13 @@ public class CftPush { ;
 
     }
 
-    private void createStack(String name, String template) {
-        List<Parameter> parameters = convertPropsToCftParams(template);
+    private StackChangePlan createChangeSet(String name, String template, Collection<String> keepPreviousParameters) {
+        List<Parameter> parameters = convertPropsToCftParams(template, keepPreviousParameters);
+        List<Tag> tags = buildTags(name);
+        return changeSetPlanner.plan(name, template, parameters, tags);
+    }
 
+    private List<Tag> buildTags(String name) {
         String deployEnvironment = taskContext.getEnvName();
 
         List<Tag> tags = new ArrayList<>();
@@ -203,70 +228,54 @@ public class CftPush { ;
                     + bambooContext.getProperty(MAVEN_ART) + ":"
                     + bambooContext.getProperty(MAVEN_VERS)));
         }
+        return tags;
+    }
 
-        try {
-            CreateStackRequest createStackRequest = new CreateStackRequest().withCapabilities("CAPABILITY_IAM")
-                .withCapabilities("CAPABILITY_NAMED_IAM").withStackName(name).withTemplateBody(template)
-                .withTags(tags).withParameters(parameters);
-
-            cftClient.createStack(createStackRequest);
-        } catch (AlreadyExistsException e) {
-            LOGGER.debug("Stack already exists: " + name, e);
-
-            UpdateStackRequest updateStackRequest = new UpdateStackRequest().withCapabilities("CAPABILITY_IAM")
-                .withCapabilities("CAPABILITY_NAMED_IAM").withStackName(name).withTemplateBody(template)
-                .withParameters(parameters).withTags(tags);
-            try {
-                cftClient.updateStack(updateStackRequest);
-            } catch (AmazonCloudFormationException noUpdateException) {
-                LOGGER.debug("Stack has no updates: " + name, noUpdateException);
-
-                if (noUpdateException.getMessage().contains("No updates are to be performed")) {
-                    buildLogger.addLogEntry("No CFT Updates to apply, skipping CFT Push...");
-                } else {
-                    buildLogger.addLogEntry(noUpdateException.toString());
-                    throw new AwsExecException();
-                }
-            } catch (AmazonServiceException ase) {
-                LOGGER.debug("UpdateStackRequest threw an exception for " + name, ase);
+    private List<Parameter> convertPropsToCftParams(String template, Collection<String> keepPreviousParameters) {
+        Map<String, TemplateParameter> declaredParameters = TemplateAnalyzer.parameters(template);
+        if (declaredParameters == null) {
+            buildLogger.addLogEntry("Unable to parse template parameters, matching properties by name");
+            return matchPropsInTemplate(template, keepPreviousParameters);
+        }
 
-                buildLogger.addLogEntry(ase.toString());
-                throw new AwsExecException();
+        List<Parameter> parameters = new ArrayList<>();
+        List<String> missingParameters = new ArrayList<>();
+        for (TemplateParameter declared: declaredParameters.values()) {
+            String key = declared.getName();
+            if (keepPreviousParameters.contains(key)) {
+                parameters.add(new Parameter().withParameterKey(key).withUsePreviousValue(true));
+            } else if (props.getProperty(key) != null) {
+                parameters.add(new Parameter().withParameterKey(key).withParameterValue(props.getProperty(key)));
+            } else if (declared.isRequired()) {
+                missingParameters.add(key);
+            } else {
+                buildLogger.addLogEntry("Using template default for " + key + ": " + declared.getDefaultValue());
             }
         }
 
+        if (!missingParameters.isEmpty()) {
+            throw new AwsExecException("No value for required template parameters: " + String.join(", ", missingParameters));
+        }
+        return parameters;
     }
 
-
-    private List<Parameter> convertPropsToCftParams(String template) {
+    private List<Parameter> matchPropsInTemplate(String template, Collection<String> keepPreviousParameters) {
         List<Parameter> parameters = new ArrayList<>();
         for (Object key: props.keySet()) {
             if (template.contains((String) key)) {
-                parameters.add(new Parameter().withParameterKey((String) key)
-                    .withParameterValue(props.getProperty((String) key)));
+                if (keepPreviousParameters.contains(key)) {
+                    parameters.add(new Parameter().withParameterKey((String) key).withUsePreviousValue(true));
+                } else {
+                    parameters.add(new Parameter().withParameterKey((String) key)
+                        .withParameterValue(props.getProperty((String) key)));
+                }
             }
         }
         return parameters;
     }
 
     private void introspectEnvironment() {
-        InvokeRequest cftVariableBrokerReq = new InvokeRequest()
-            .withFunctionName(this.taskProperties.getCftPushVariableBrokerLambda())
-            .withInvocationType(InvocationType.RequestResponse)
-            .withPayload("\"" + region.getName().toLowerCase() + "\"");
-
-        String variableJson = new String(this.lambdaClient.invoke(cftVariableBrokerReq).getPayload().array(),
-            Charset.forName("UTF-8"));
-        Map<String, String> variables;
-        try {
-            variables = new ObjectMapper().readValue(variableJson, new TypeReference<Map<String, String>>() {});
-        } catch (IOException e) {
-            this.buildLogger.addLogEntry(e.getMessage());
-            this.buildLogger.addLogEntry("Unable to parse variables from " + variableJson);
-            throw new AwsExecException(e.getMessage(), e);
-        }
-
-        for (Map.Entry<String, String> entry: variables.entrySet()) {
+        for (Map.Entry<String, String> entry: session.getBrokeredVariables().entrySet()) {
             buildLogger.addLogEntry("Injecting " + entry.getKey() + " = " + entry.getValue());
             props.put(entry.getKey(), entry.getValue());
         }
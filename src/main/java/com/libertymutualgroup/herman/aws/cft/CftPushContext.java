@@ -24,6 +24,7 @@ public class CftPushContext {
     private Regions region;
     private Map<String, String> templateParameters;
     private CftPushTaskProperties taskProperties;
+    private boolean planOnly;
 
     public HermanLogger getLogger() {
         return logger;
@@ -97,6 +98,14 @@ public class CftPushContext {
         this.taskProperties = taskProperties;
     }
 
+    public boolean isPlanOnly() {
+        return planOnly;
+    }
+
+    public void setPlanOnly(boolean planOnly) {
+        this.planOnly = planOnly;
+    }
+
     public CftPushContext withLogger(final HermanLogger logger) {
         this.logger = logger;
         return this;
@@ -142,6 +151,11 @@ public class CftPushContext {
         return this;
     }
 
+    public CftPushContext withPlanOnly(final boolean planOnly) {
+        this.planOnly = planOnly;
+        return this;
+    }
+
     @Override
     public String toString() {
         return "CftPushContext{" +
@@ -154,6 +168,7 @@ public class CftPushContext {
             ", rootPath='" + rootPath + '\'' +
             ", templateParameters='" + templateParameters + '\'' +
             ", taskProperties=" + taskProperties +
+            ", planOnly=" + planOnly +
             '}';
     }
 }
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.cft;
+
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.AmazonCloudFormationClientBuilder;
+import com.amazonaws.services.lambda.AWSLambda;
+import com.amazonaws.services.lambda.AWSLambdaClientBuilder;
+import com.amazonaws.services.lambda.model.InvocationType;
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.util.HermanJackson;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * State shared by every stack pushed in one deployment: the CloudFormation and Lambda clients, the
+ * task properties and the variable broker Lambda's response. Pushes through one session may run
+ * concurrently.
+ */
+public class CftPushSession {
+
+    private final CftPushContext context;
+    private final AmazonCloudFormation cftClient;
+    private final AWSLambda lambdaClient;
+    private final StackUtils stackUtils;
+    private final TemplateStager templateStager;
+    private final Object stackOutputLock = new Object();
+    private Map<String, String> brokeredVariables;
+    private boolean stackOutputFileEnabled = true;
+
+    public CftPushSession(CftPushContext context) {
+        this(context, AmazonCloudFormationClientBuilder.standard()
+            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
+            .withClientConfiguration(context.getAwsClientConfig())
+            .withRegion(context.getRegion()).build(), null);
+    }
+
+    /**
+     * @param stackUtils stack utilities to share with the caller, or null to create them for the given client
+     */
+    public CftPushSession(CftPushContext context, AmazonCloudFormation cftClient, StackUtils stackUtils) {
+        this.context = context;
+        this.cftClient = cftClient;
+        this.stackUtils = stackUtils != null ? stackUtils : new StackUtils(cftClient, context.getLogger());
+        this.lambdaClient = AWSLambdaClientBuilder.standard()
+            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
+            .withClientConfiguration(context.getAwsClientConfig())
+            .withRegion(context.getRegion()).build();
+        AmazonS3 s3Client = AmazonS3ClientBuilder.standard()
+            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
+            .withClientConfiguration(context.getAwsClientConfig())
+            .withRegion(context.getRegion()).build();
+        this.templateStager = new TemplateStager(s3Client, context.getTaskProperties().getCftTemplateBucket(),
+            context.getLogger());
+    }
+
+    /**
+     * @return name of the pushed stack
+     */
+    public String push(String stackName, String template, Map<String, String> templateParameters) {
+        return push(stackName, template, templateParameters, context.getLogger());
+    }
+
+    /**
+     * @param logger logger for this push only, e.g. to prefix the logs of stacks pushed concurrently
+     * @return name of the pushed stack
+     */
+    public String push(String stackName, String template, Map<String, String> templateParameters, HermanLogger logger) {
+        return new CftPush(forStack(templateParameters, logger), this).push(stackName, template);
+    }
+
+    public StackChangePlan plan(String stackName, String template, Map<String, String> templateParameters,
+        Collection<String> keepPreviousParameters) {
+        return new CftPush(forStack(templateParameters, context.getLogger()), this).plan(stackName, template, keepPreviousParameters);
+    }
+
+    private CftPushContext forStack(Map<String, String> templateParameters, HermanLogger logger) {
+        return new CftPushContext()
+            .withLogger(logger)
+            .withEnvName(context.getEnvName())
+            .withRootPath(context.getRootPath())
+            .withPropertyHandler(context.getPropertyHandler())
+            .withSessionCredentials(context.getSessionCredentials())
+            .withAwsClientConfig(context.getAwsClientConfig())
+            .withRegion(context.getRegion())
+            .withTemplateParameters(templateParameters)
+            .withTaskProperties(context.getTaskProperties())
+            .withPlanOnly(context.isPlanOnly());
+    }
+
+    /**
+     * Variables from the CFT variable broker Lambda, invoked on first use only
+     */
+    public synchronized Map<String, String> getBrokeredVariables() {
+        if (brokeredVariables == null) {
+            String lambdaName = context.getTaskProperties().getCftPushVariableBrokerLambda();
+            HermanLogger logger = context.getLogger();
+            logger.addLogEntry("Getting CFT variables from Lambda: " + lambdaName);
+
+            InvokeRequest cftVariableBrokerReq = new InvokeRequest()
+                .withFunctionName(lambdaName)
+                .withInvocationType(InvocationType.RequestResponse)
+                .withPayload("\"" + context.getRegion().getName().toLowerCase() + "\"");
+
+            String variableJson = new String(this.lambdaClient.invoke(cftVariableBrokerReq).getPayload().array(),
+                Charset.forName("UTF-8"));
+            try {
+                brokeredVariables = Collections.unmodifiableMap(
+                    HermanJackson.jsonReader(new TypeReference<Map<String, String>>() {}).readValue(variableJson));
+            } catch (IOException e) {
+                logger.addLogEntry(e.getMessage());
+                logger.addLogEntry("Unable to parse variables from " + variableJson);
+                throw new AwsExecException(e.getMessage(), e);
+            }
+        }
+        return brokeredVariables;
+    }
+
+    /**
+     * Loads stackoutput.properties under the same lock as writes, so a concurrent push never reads a half
+     * written file
+     *
+     * @return false if there is no stack output file
+     */
+    boolean readStackOutput(Properties props) throws IOException {
+        synchronized (stackOutputLock) {
+            File stackOut = stackOutputFile();
+            if (!stackOut.exists()) {
+                return false;
+            }
+            try (FileReader stackRead = new FileReader(stackOut)) {
+                props.load(stackRead);
+            }
+            return true;
+        }
+    }
+
+    void writeStackOutput(Properties output) {
+        synchronized (stackOutputLock) {
+            try (OutputStream fileOut = new FileOutputStream(stackOutputFile())) {
+                output.store(fileOut, null);
+            } catch (IOException e) {
+                throw new AwsExecException(e);
+            }
+        }
+    }
+
+    private File stackOutputFile() {
+        return new File(context.getRootPath() + File.separator + "stackoutput.properties");
+    }
+
+    /**
+     * Whether pushes read and write stackoutput.properties in the root path
+     */
+    public boolean isStackOutputFileEnabled() {
+        return stackOutputFileEnabled;
+    }
+
+    public void setStackOutputFileEnabled(boolean stackOutputFileEnabled) {
+        this.stackOutputFileEnabled = stackOutputFileEnabled;
+    }
+
+    public AmazonCloudFormation getCftClient() {
+        return cftClient;
+    }
+
+    public HermanLogger getLogger() {
+        return context.getLogger();
+    }
+
+    public boolean isPlanOnly() {
+        return context.isPlanOnly();
+    }
+
+    public StackUtils getStackUtils() {
+        return stackUtils;
+    }
+
+    public TemplateStager getTemplateStager() {
+        return templateStager;
+    }
+}
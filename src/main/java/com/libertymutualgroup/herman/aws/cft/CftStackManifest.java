@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.cft;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A set of stacks pushed together, in dependency order and concurrently where possible
+ */
+public class CftStackManifest {
+
+    private List<CftStackDefinition> stacks = new ArrayList<>();
+    private Integer maxConcurrency = 4;
+
+    public List<CftStackDefinition> getStacks() {
+        return stacks;
+    }
+
+    public void setStacks(List<CftStackDefinition> stacks) {
+        this.stacks = stacks;
+    }
+
+    public Integer getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(Integer maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    @Override
+    public String toString() {
+        return "CftStackManifest{" +
+            "stacks=" + stacks +
+            ", maxConcurrency=" + maxConcurrency +
+            '}';
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.cft;
+
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.model.AmazonCloudFormationException;
+import com.amazonaws.services.cloudformation.model.Change;
+import com.amazonaws.services.cloudformation.model.ChangeSetStatus;
+import com.amazonaws.services.cloudformation.model.ChangeSetType;
+import com.amazonaws.services.cloudformation.model.CreateChangeSetRequest;
+import com.amazonaws.services.cloudformation.model.DeleteChangeSetRequest;
+import com.amazonaws.services.cloudformation.model.DeleteStackRequest;
+import com.amazonaws.services.cloudformation.model.DescribeChangeSetRequest;
+import com.amazonaws.services.cloudformation.model.DescribeChangeSetResult;
+import com.amazonaws.services.cloudformation.model.DescribeStacksRequest;
+import com.amazonaws.services.cloudformation.model.ExecuteChangeSetRequest;
+import com.amazonaws.services.cloudformation.model.Parameter;
+import com.amazonaws.services.cloudformation.model.ResourceChange;
+import com.amazonaws.services.cloudformation.model.Stack;
+import com.amazonaws.services.cloudformation.model.StackStatus;
+import com.amazonaws.services.cloudformation.model.Tag;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.util.AdaptivePoller;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates change sets, waits for CloudFormation to compute them and logs the resource level plan.
+ * Change sets without changes are reported as empty plans instead of errors.
+ */
+public class ChangeSetPlanner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangeSetPlanner.class);
+    private static final String CHANGE_SET_PREFIX = "herman-";
+    private static final long MIN_POLLING_INTERVAL_MS = 1000;
+    private static final long MAX_POLLING_INTERVAL_MS = 5000;
+    private static final double POLLING_GROWTH_FACTOR = 1.5;
+
+    private AmazonCloudFormation cftClient;
+    private HermanLogger logger;
+    private TemplateStager templateStager;
+
+    public ChangeSetPlanner(AmazonCloudFormation cftClient, HermanLogger logger) {
+        this(cftClient, logger, null);
+    }
+
+    /**
+     * @param templateStager stages templates in S3, or null to always send template bodies inline
+     */
+    public ChangeSetPlanner(AmazonCloudFormation cftClient, HermanLogger logger, TemplateStager templateStager) {
+        this.cftClient = cftClient;
+        this.logger = logger;
+        this.templateStager = templateStager;
+    }
+
+    public StackChangePlan plan(String stackName, String template, List<Parameter> parameters, List<Tag> tags) {
+        ChangeSetType changeSetType = stackExists(stackName) ? ChangeSetType.UPDATE : ChangeSetType.CREATE;
+        StackChangePlan plan = new StackChangePlan()
+            .withStackName(stackName)
+            .withChangeSetName(CHANGE_SET_PREFIX + System.currentTimeMillis())
+            .withChangeSetType(changeSetType);
+
+        logger.addLogEntry("Creating " + changeSetType + " change set " + plan.getChangeSetName() + " for " + stackName);
+        CreateChangeSetRequest createChangeSetRequest = new CreateChangeSetRequest()
+            .withStackName(stackName)
+            .withChangeSetName(plan.getChangeSetName())
+            .withChangeSetType(changeSetType)
+            .withCapabilities("CAPABILITY_IAM", "CAPABILITY_NAMED_IAM")
+            .withParameters(parameters)
+            .withTags(tags);
+        if (templateStager != null && templateStager.isEnabled()) {
+            createChangeSetRequest.setTemplateURL(templateStager.stage(template));
+        } else {
+            int templateBytes = template.getBytes(StandardCharsets.UTF_8).length;
+            if (templateBytes > TemplateStager.INLINE_TEMPLATE_LIMIT_BYTES) {
+                throw new AwsExecException("Template for " + stackName + " is " + templateBytes + " bytes, over the "
+                    + TemplateStager.INLINE_TEMPLATE_LIMIT_BYTES + " byte inline limit. Set cftTemplateBucket to stage it in S3.");
+            }
+            createChangeSetRequest.setTemplateBody(template);
+        }
+        try {
+            cftClient.createChangeSet(createChangeSetRequest);
+        } catch (AmazonCloudFormationException e) {
+            LOGGER.debug("Unable to create change set for " + stackName, e);
+            logger.addLogEntry(e.toString());
+            throw new AwsExecException("Unable to create change set for " + stackName, e);
+        }
+
+        awaitChanges(plan);
+        logPlan(plan);
+        return plan;
+    }
+
+    public void execute(StackChangePlan plan) {
+        cftClient.executeChangeSet(new ExecuteChangeSetRequest()
+            .withStackName(plan.getStackName())
+            .withChangeSetName(plan.getChangeSetName()));
+    }
+
+    /**
+     * Deletes an unexecuted change set, and the empty stack a create change set leaves behind
+     */
+    public void discard(StackChangePlan plan) {
+        try {
+            cftClient.deleteChangeSet(new DeleteChangeSetRequest()
+                .withStackName(plan.getStackName())
+                .withChangeSetName(plan.getChangeSetName()));
+            if (plan.getChangeSetType() == ChangeSetType.CREATE) {
+                cftClient.deleteStack(new DeleteStackRequest().withStackName(plan.getStackName()));
+            }
+        } catch (AmazonCloudFormationException e) {
+            LOGGER.debug("Unable to discard change set " + plan, e);
+        }
+    }
+
+    private boolean stackExists(String stackName) {
+        try {
+            List<Stack> stacks = cftClient.describeStacks(new DescribeStacksRequest().withStackName(stackName)).getStacks();
+            // A stack only holding an unexecuted create change set still needs a CREATE change set
+            return !stacks.isEmpty() && !StackStatus.REVIEW_IN_PROGRESS.toString().equals(stacks.get(0).getStackStatus());
+        } catch (AmazonCloudFormationException e) {
+            LOGGER.debug("Stack does not exist: " + stackName, e);
+            return false;
+        }
+    }
+
+    private void awaitChanges(StackChangePlan plan) {
+        AdaptivePoller poller = new AdaptivePoller(MIN_POLLING_INTERVAL_MS, MAX_POLLING_INTERVAL_MS, POLLING_GROWTH_FACTOR);
+        DescribeChangeSetResult result = describe(plan, null);
+        while (isPending(result.getStatus())) {
+            poller.sleep();
+            result = describe(plan, null);
+        }
+
+        if (ChangeSetStatus.FAILED.toString().equals(result.getStatus())) {
+            String reason = result.getStatusReason() == null ? "" : result.getStatusReason();
+            if (reason.contains("didn't contain changes") || reason.contains("No updates are to be performed")) {
+                plan.withChangeSetCreated(false).setChanges(new ArrayList<>());
+                return;
+            }
+            discard(plan);
+            throw new AwsExecException("Change set failed for " + plan.getStackName() + ": " + reason);
+        }
+
+        List<Change> changes = new ArrayList<>(result.getChanges());
+        while (result.getNextToken() != null) {
+            result = describe(plan, result.getNextToken());
+            changes.addAll(result.getChanges());
+        }
+        plan.withChangeSetCreated(true).setChanges(changes);
+    }
+
+    private DescribeChangeSetResult describe(StackChangePlan plan, String nextToken) {
+        return cftClient.describeChangeSet(new DescribeChangeSetRequest()
+            .withStackName(plan.getStackName())
+            .withChangeSetName(plan.getChangeSetName())
+            .withNextToken(nextToken));
+    }
+
+    private boolean isPending(String status) {
+        return ChangeSetStatus.CREATE_PENDING.toString().equals(status)
+            || ChangeSetStatus.CREATE_IN_PROGRESS.toString().equals(status);
+    }
+
+    private void logPlan(StackChangePlan plan) {
+        if (plan.isEmpty()) {
+            logger.addLogEntry("... No changes for " + plan.getStackName());
+            return;
+        }
+        if (plan.getChanges().isEmpty()) {
+            logger.addLogEntry("... No resource changes for " + plan.getStackName() + ", only outputs or parameters");
+            return;
+        }
+        logger.addLogEntry("... " + plan.getChanges().size() + " resource changes for " + plan.getStackName() + ":");
+        for (Change change : plan.getChanges()) {
+            ResourceChange resourceChange = change.getResourceChange();
+            if (resourceChange == null) {
+                continue;
+            }
+            String entry = "...   " + resourceChange.getAction() + " " + resourceChange.getLogicalResourceId()
+                + " [" + resourceChange.getResourceType() + "]";
+            if (resourceChange.getReplacement() != null) {
+                entry += " replacement: " + resourceChange.getReplacement();
+            }
+            logger.addLogEntry(entry);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.cft;
+
+import com.amazonaws.services.cloudformation.model.AmazonCloudFormationException;
+import com.amazonaws.services.cloudformation.model.DescribeStacksRequest;
+import com.amazonaws.services.cloudformation.model.Output;
+import com.amazonaws.services.cloudformation.model.Stack;
+import com.amazonaws.services.cloudformation.model.StackStatus;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.logging.PrefixedLogger;
+import com.libertymutualgroup.herman.util.FileUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes every stack of a manifest through one session. A stack starts as soon as the stacks it depends on
+ * are done, and receives their outputs in memory as parameters.
+ */
+public class MultiStackPush {
+
+    private CftPushSession session;
+    private FileUtil fileUtil;
+    private HermanLogger logger;
+
+    public MultiStackPush(CftPushSession session, FileUtil fileUtil, HermanLogger logger) {
+        this.session = session;
+        this.fileUtil = fileUtil;
+        this.logger = logger;
+        // Concurrent pushes would race on the shared file, outputs are passed in memory instead
+        this.session.setStackOutputFileEnabled(false);
+    }
+
+    /**
+     * @return outputs of every stack, keyed by stack name in the manifest
+     */
+    public Map<String, Map<String, String>> push(CftStackManifest manifest) {
+        Map<String, CftStackDefinition> stacks = indexStacks(manifest);
+        Map<String, Set<String>> dependencies = resolveDependencies(stacks);
+        List<String> order = topologicalOrder(stacks.keySet(), dependencies);
+        logger.addLogEntry("Pushing " + order.size() + " stacks in dependency order: " + String.join(", ", order));
+
+        Map<String, Map<String, String>> outputs = new ConcurrentHashMap<>();
+        Set<String> plannedCreates = ConcurrentHashMap.newKeySet();
+        Set<String> started = ConcurrentHashMap.newKeySet();
+        boolean concurrent = order.size() > 1 && manifest.getMaxConcurrency() > 1;
+        Map<String, CompletableFuture<Map<String, String>>> pushes = new HashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, manifest.getMaxConcurrency()));
+        long start = System.currentTimeMillis();
+        try {
+            for (String name : order) {
+                CompletableFuture<?>[] upstream = dependencies.get(name).stream()
+                    .map(pushes::get)
+                    .toArray(CompletableFuture[]::new);
+                pushes.put(name, CompletableFuture.allOf(upstream).thenApplyAsync(ignored -> {
+                    started.add(name);
+                    HermanLogger stackLogger = concurrent ? new PrefixedLogger(logger, name) : logger;
+                    return pushStack(stacks.get(name), outputs, plannedCreates, stackLogger);
+                }, executor));
+            }
+
+            List<String> failed = new ArrayList<>();
+            for (String name : order) {
+                try {
+                    pushes.get(name).join();
+                } catch (CompletionException e) {
+                    failed.add(name);
+                    if (started.contains(name)) {
+                        logger.addErrorLogEntry("Stack " + name + " failed: " + e.getCause().getMessage());
+                    } else {
+                        logger.addErrorLogEntry("Stack " + name + " skipped, a stack it depends on failed");
+                    }
+                }
+            }
+            if (!failed.isEmpty()) {
+                throw new AwsExecException("Stack pushes failed: " + String.join(", ", failed));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        logger.addLogEntry("Pushed " + order.size() + " stacks in "
+            + TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - start) + "s");
+        return outputs;
+    }
+
+    /**
+     * @param plannedCreates stacks that do not exist and would be created, only filled when planning
+     */
+    private Map<String, String> pushStack(CftStackDefinition definition, Map<String, Map<String, String>> outputs,
+        Set<String> plannedCreates, HermanLogger stackLogger) {
+        Map<String, String> parameters = new HashMap<>(definition.getParameters());
+        for (Map.Entry<String, String> input : definition.getInputs().entrySet()) {
+            String[] reference = input.getValue().split("\\.", 2);
+            if (plannedCreates.contains(reference[0])) {
+                stackLogger.addLogEntry("... " + definition.getName() + " not planned, input " + input.getKey()
+                    + " comes from " + reference[0] + " which would be created");
+                return planCreate(definition, outputs, plannedCreates);
+            }
+            String value = outputs.get(reference[0]).get(reference[1]);
+            if (value == null) {
+                throw new AwsExecException("Stack " + reference[0] + " has no output " + reference[1]
+                    + " for parameter " + input.getKey() + " of " + definition.getName());
+            }
+            parameters.put(input.getKey(), value);
+        }
+
+        long start = System.currentTimeMillis();
+        String template = fileUtil.findFile(definition.getTemplate(), false);
+        String stackName = session.push(definition.getName(), template, parameters, stackLogger);
+
+        Stack stack = findStack(stackName);
+        if (stack == null) {
+            stackLogger.addLogEntry("... " + definition.getName() + " does not exist yet and would be created");
+            return planCreate(definition, outputs, plannedCreates);
+        }
+        Map<String, String> stackOutputs = new HashMap<>();
+        for (Output output : stack.getOutputs()) {
+            stackOutputs.put(output.getOutputKey(), output.getOutputValue());
+        }
+        outputs.put(definition.getName(), stackOutputs);
+        stackLogger.addLogEntry("... " + definition.getName() + " pushed in "
+            + TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - start) + "s");
+        return stackOutputs;
+    }
+
+    private Map<String, String> planCreate(CftStackDefinition definition, Map<String, Map<String, String>> outputs,
+        Set<String> plannedCreates) {
+        plannedCreates.add(definition.getName());
+        outputs.put(definition.getName(), Collections.emptyMap());
+        return Collections.emptyMap();
+    }
+
+    /**
+     * @return the pushed stack, or null when planning a stack that only holds a create change set or was never created
+     */
+    private Stack findStack(String stackName) {
+        try {
+            List<Stack> stacks = session.getCftClient().describeStacks(new DescribeStacksRequest().withStackName(stackName))
+                .getStacks();
+            if (session.isPlanOnly() && (stacks.isEmpty()
+                || StackStatus.REVIEW_IN_PROGRESS.toString().equals(stacks.get(0).getStackStatus()))) {
+                return null;
+            }
+            return stacks.get(0);
+        } catch (AmazonCloudFormationException e) {
+            if (session.isPlanOnly() && e.getErrorMessage() != null && e.getErrorMessage().contains("does not exist")) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private Map<String, CftStackDefinition> indexStacks(CftStackManifest manifest) {
+        Map<String, CftStackDefinition> stacks = new LinkedHashMap<>();
+        for (CftStackDefinition definition : manifest.getStacks()) {
+            if (stacks.put(definition.getName(), definition) != null) {
+                throw new AwsExecException("Stack " + definition.getName() + " is declared more than once");
+            }
+        }
+        return stacks;
+    }
+
+    private Map<String, Set<String>> resolveDependencies(Map<String, CftStackDefinition> stacks) {
+        Map<String, Set<String>> dependencies = new HashMap<>();
+        for (CftStackDefinition definition : stacks.values()) {
+            Set<String> upstream = new LinkedHashSet<>(definition.getDependsOn());
+            for (String reference : definition.getInputs().values()) {
+                if (!reference.contains(".")) {
+                    throw new AwsExecException("Input " + reference + " of " + definition.getName()
+                        + " must be <stack>.<output>");
+                }
+                upstream.add(reference.substring(0, reference.indexOf('.')));
+            }
+            for (String name : upstream) {
+                if (!stacks.containsKey(name)) {
+                    throw new AwsExecException(definition.getName() + " depends on unknown stack " + name);
+                }
+            }
+            dependencies.put(definition.getName(), upstream);
+        }
+        return dependencies;
+    }
+
+    List<String> topologicalOrder(Set<String> names, Map<String, Set<String>> dependencies) {
+        List<String> order = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        for (String name : names) {
+            visit(name, dependencies, visited, new LinkedHashSet<>(), order);
+        }
+        return order;
+    }
+
+    private void visit(String name, Map<String, Set<String>> dependencies, Set<String> visited,
+        LinkedHashSet<String> path, List<String> order) {
+        if (visited.contains(name)) {
+            return;
+        }
+        if (!path.add(name)) {
+            throw new AwsExecException("Stack dependency cycle: " + String.join(" -> ", path) + " -> " + name);
+        }
+        for (String upstream : dependencies.get(name)) {
+            visit(upstream, dependencies, visited, path, order);
+        }
+        path.remove(name);
+        visited.add(name);
+        order.add(name);
+    }
+}
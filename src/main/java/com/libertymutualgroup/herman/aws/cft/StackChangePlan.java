@@ -0,0 +1,135 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.cft;
+
+import com.amazonaws.services.cloudformation.model.Change;
+import com.amazonaws.services.cloudformation.model.ChangeSetType;
+import com.amazonaws.services.cloudformation.model.ResourceChange;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computed change set for a stack: what CloudFormation would do if it was executed
+ */
+public class StackChangePlan {
+
+    private String stackName;
+    private String changeSetName;
+    private ChangeSetType changeSetType;
+    private List<Change> changes = new ArrayList<>();
+    private boolean changeSetCreated;
+
+    public String getStackName() {
+        return stackName;
+    }
+
+    public void setStackName(String stackName) {
+        this.stackName = stackName;
+    }
+
+    public StackChangePlan withStackName(String stackName) {
+        this.stackName = stackName;
+        return this;
+    }
+
+    public String getChangeSetName() {
+        return changeSetName;
+    }
+
+    public void setChangeSetName(String changeSetName) {
+        this.changeSetName = changeSetName;
+    }
+
+    public StackChangePlan withChangeSetName(String changeSetName) {
+        this.changeSetName = changeSetName;
+        return this;
+    }
+
+    public ChangeSetType getChangeSetType() {
+        return changeSetType;
+    }
+
+    public void setChangeSetType(ChangeSetType changeSetType) {
+        this.changeSetType = changeSetType;
+    }
+
+    public StackChangePlan withChangeSetType(ChangeSetType changeSetType) {
+        this.changeSetType = changeSetType;
+        return this;
+    }
+
+    public List<Change> getChanges() {
+        return changes;
+    }
+
+    public void setChanges(List<Change> changes) {
+        this.changes = changes;
+    }
+
+    public StackChangePlan withChanges(List<Change> changes) {
+        this.changes = changes;
+        return this;
+    }
+
+    public boolean isChangeSetCreated() {
+        return changeSetCreated;
+    }
+
+    public void setChangeSetCreated(boolean changeSetCreated) {
+        this.changeSetCreated = changeSetCreated;
+    }
+
+    public StackChangePlan withChangeSetCreated(boolean changeSetCreated) {
+        this.changeSetCreated = changeSetCreated;
+        return this;
+    }
+
+    /**
+     * @return true if CloudFormation found nothing to change. A change set without resource changes can still
+     * update outputs or parameters, so it is not empty.
+     */
+    public boolean isEmpty() {
+        return !changeSetCreated;
+    }
+
+    /**
+     * @return true if a resource is added, removed or modified in more than its tags
+     */
+    public boolean hasChangesBeyondTags() {
+        return changes.stream()
+            .map(Change::getResourceChange)
+            .anyMatch(resourceChange -> resourceChange != null && !isTagsOnly(resourceChange));
+    }
+
+    private static boolean isTagsOnly(ResourceChange resourceChange) {
+        return "Modify".equals(resourceChange.getAction())
+            && resourceChange.getScope() != null
+            && !resourceChange.getScope().isEmpty()
+            && resourceChange.getScope().stream().allMatch("Tags"::equals);
+    }
+
+    @Override
+    public String toString() {
+        return "StackChangePlan{" +
+            "stackName='" + stackName + '\'' +
+            ", changeSetName='" + changeSetName + '\'' +
+            ", changeSetType=" + changeSetType +
+            ", changeSetCreated=" + changeSetCreated +
+            ", changes=" + changes.size() +
+            '}';
+    }
+}
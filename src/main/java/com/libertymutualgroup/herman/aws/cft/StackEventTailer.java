@@ -0,0 +1,198 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.cft;
+
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.model.AmazonCloudFormationException;
+import com.amazonaws.services.cloudformation.model.DescribeStackEventsRequest;
+import com.amazonaws.services.cloudformation.model.DescribeStackEventsResult;
+import com.amazonaws.services.cloudformation.model.DescribeStacksRequest;
+import com.amazonaws.services.cloudformation.model.Stack;
+import com.amazonaws.services.cloudformation.model.StackEvent;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.aws.cft.StackTimeline.ResourceTiming;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.util.AdaptivePoller;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Streams a stack operation's events to the build log until the stack's own terminal event arrives.
+ * Events are paged newest first and only down to the last event already seen, so each poll is
+ * usually a single small call.
+ */
+public class StackEventTailer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StackEventTailer.class);
+    private static final String STACK_RESOURCE_TYPE = "AWS::CloudFormation::Stack";
+    private static final List<String> OPERATION_START_STATUSES = Arrays.asList(
+        "CREATE_IN_PROGRESS", "UPDATE_IN_PROGRESS", "DELETE_IN_PROGRESS", "IMPORT_IN_PROGRESS");
+    private static final long MIN_POLLING_INTERVAL_MS = 2000;
+    private static final long MAX_POLLING_INTERVAL_MS = 15000;
+    private static final double POLLING_GROWTH_FACTOR = 1.5;
+
+    private AmazonCloudFormation cftClient;
+    private HermanLogger logger;
+    private Supplier<AdaptivePoller> pollerFactory;
+
+    public StackEventTailer(AmazonCloudFormation cftClient, HermanLogger logger) {
+        this(cftClient, logger,
+            () -> new AdaptivePoller(MIN_POLLING_INTERVAL_MS, MAX_POLLING_INTERVAL_MS, POLLING_GROWTH_FACTOR));
+    }
+
+    /**
+     * @param pollerFactory supplies a poller per tail, so several stacks can be tailed at once
+     */
+    public StackEventTailer(AmazonCloudFormation cftClient, HermanLogger logger, Supplier<AdaptivePoller> pollerFactory) {
+        this.cftClient = cftClient;
+        this.logger = logger;
+        this.pollerFactory = pollerFactory;
+    }
+
+    /**
+     * Id of the newest event for the stack, or null if the stack does not exist. Take this before
+     * triggering an operation and pass it to {@link #tail(String, String)}.
+     */
+    public String findLastEventId(String stackName) {
+        try {
+            List<StackEvent> events = cftClient.describeStackEvents(
+                new DescribeStackEventsRequest().withStackName(stackName)).getStackEvents();
+            return events.isEmpty() ? null : events.get(0).getEventId();
+        } catch (AmazonCloudFormationException e) {
+            LOGGER.debug("No events for stack: " + stackName, e);
+            return null;
+        }
+    }
+
+    /**
+     * Blocks until the current operation on the stack finishes.
+     *
+     * @param lastSeenEventId newest event before the operation was triggered; if null, tailing starts at the
+     * stack's most recent create/update/delete event
+     * @throws AwsExecException if the operation failed or rolled back
+     */
+    public StackTimeline tail(String stackName, String lastSeenEventId) {
+        StackTimeline timeline = new StackTimeline(stackName);
+        String lastSeen = lastSeenEventId;
+        AdaptivePoller poller = pollerFactory.get();
+
+        while (true) {
+            List<StackEvent> events = fetchEventsAfter(stackName, lastSeen);
+            if (events.isEmpty()) {
+                Stack stack = cftClient.describeStacks(new DescribeStacksRequest().withStackName(stackName))
+                    .getStacks().get(0);
+                if (!stack.getStackStatus().contains("IN_PROGRESS")) {
+                    // Re-read in case the terminal event landed between the two calls
+                    events = fetchEventsAfter(stackName, lastSeen);
+                    StackEvent terminalEvent = process(stackName, events, timeline);
+                    return finish(timeline, terminalEvent != null ? terminalEvent.getResourceStatus()
+                        : stack.getStackStatus());
+                }
+            } else {
+                lastSeen = events.get(events.size() - 1).getEventId();
+                poller.progressed();
+                StackEvent terminalEvent = process(stackName, events, timeline);
+                if (terminalEvent != null) {
+                    return finish(timeline, terminalEvent.getResourceStatus());
+                }
+            }
+            poller.sleep();
+        }
+    }
+
+    /**
+     * Events newer than lastSeen in chronological order
+     */
+    private List<StackEvent> fetchEventsAfter(String stackName, String lastSeen) {
+        List<StackEvent> events = new ArrayList<>();
+        String nextToken = null;
+        do {
+            DescribeStackEventsResult result = cftClient.describeStackEvents(
+                new DescribeStackEventsRequest().withStackName(stackName).withNextToken(nextToken));
+            for (StackEvent event : result.getStackEvents()) {
+                if (lastSeen != null && lastSeen.equals(event.getEventId())) {
+                    Collections.reverse(events);
+                    return events;
+                }
+                events.add(event);
+                if (lastSeen == null && isStackEvent(stackName, event)
+                    && OPERATION_START_STATUSES.contains(event.getResourceStatus())) {
+                    Collections.reverse(events);
+                    return events;
+                }
+            }
+            nextToken = result.getNextToken();
+        } while (nextToken != null);
+
+        Collections.reverse(events);
+        return events;
+    }
+
+    private StackEvent process(String stackName, List<StackEvent> events, StackTimeline timeline) {
+        for (StackEvent event : events) {
+            report(event);
+            timeline.record(event);
+            if (isStackEvent(stackName, event) && !event.getResourceStatus().contains("IN_PROGRESS")) {
+                return event;
+            }
+        }
+        return null;
+    }
+
+    private boolean isStackEvent(String stackName, StackEvent event) {
+        return STACK_RESOURCE_TYPE.equals(event.getResourceType())
+            && stackName.equals(event.getLogicalResourceId());
+    }
+
+    private StackTimeline finish(StackTimeline timeline, String status) {
+        timeline.setFinalStatus(status);
+        List<ResourceTiming> timings = timeline.getResourceTimings();
+        if (!timings.isEmpty()) {
+            logger.addLogEntry("Resource timeline (slowest first):");
+        }
+        for (ResourceTiming timing : timings) {
+            logger.addLogEntry(String.format("  %s [%s] %s in %ds", timing.getLogicalResourceId(),
+                timing.getResourceType(), timing.getStatus(), TimeUnit.MILLISECONDS.toSeconds(timing.getDurationMs())));
+        }
+
+        if (status.contains("FAILED") || status.contains("ROLLBACK")) {
+            String message = "CFT pushed failed - " + status;
+            if (!timeline.getFailures().isEmpty()) {
+                StackEvent firstFailure = timeline.getFailures().get(0);
+                message += " (" + firstFailure.getLogicalResourceId() + ": "
+                    + firstFailure.getResourceStatusReason() + ")";
+            }
+            throw new AwsExecException(message);
+        }
+        return timeline;
+    }
+
+    private void report(StackEvent event) {
+        String entry = event.getLogicalResourceId() + " [" + event.getResourceType() + "] "
+            + event.getResourceStatus();
+        if (event.getResourceStatusReason() != null) {
+            entry += " : " + event.getResourceStatusReason();
+        }
+        logger.addLogEntry(entry);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.cft;
+
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.model.ListStacksRequest;
+import com.amazonaws.services.cloudformation.model.ListStacksResult;
+import com.amazonaws.services.cloudformation.model.StackStatus;
+import com.amazonaws.services.cloudformation.model.StackSummary;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Summaries of the account's live stacks, listed once per push. Deleted stacks are filtered out by
+ * CloudFormation rather than paged through and discarded.
+ */
+public class StackIndex {
+
+    private static final List<String> LIVE_STATUSES = Arrays.stream(StackStatus.values())
+        .filter(status -> status != StackStatus.DELETE_COMPLETE)
+        .map(StackStatus::toString)
+        .collect(Collectors.toList());
+
+    private AmazonCloudFormation cftClient;
+    private HermanLogger logger;
+    private List<StackSummary> summaries;
+
+    public StackIndex(AmazonCloudFormation cftClient, HermanLogger logger) {
+        this.cftClient = cftClient;
+        this.logger = logger;
+    }
+
+    public synchronized List<StackSummary> getLiveStacks() {
+        if (summaries == null) {
+            List<StackSummary> loaded = new ArrayList<>();
+            String nextToken = null;
+            do {
+                ListStacksResult result = cftClient.listStacks(new ListStacksRequest()
+                    .withStackStatusFilters(LIVE_STATUSES)
+                    .withNextToken(nextToken));
+                loaded.addAll(result.getStackSummaries());
+                nextToken = result.getNextToken();
+            } while (nextToken != null);
+            logger.addLogEntry("... Indexed " + loaded.size() + " stacks");
+            summaries = loaded;
+        }
+        return summaries;
+    }
+
+    public List<StackSummary> findByPrefix(String prefix) {
+        return getLiveStacks().stream()
+            .filter(stack -> stack.getStackName().startsWith(prefix))
+            .collect(Collectors.toList());
+    }
+
+    public List<StackSummary> findContaining(String name) {
+        return getLiveStacks().stream()
+            .filter(stack -> stack.getStackName().contains(name))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Stacks named prefix + N keyed by N, e.g. the generations of a cluster's instance stacks
+     */
+    public NavigableMap<Integer, StackSummary> findGenerations(String prefix) {
+        NavigableMap<Integer, StackSummary> generations = new TreeMap<>();
+        for (StackSummary stack : findByPrefix(prefix)) {
+            String suffix = stack.getStackName().substring(prefix.length());
+            if (!suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit)) {
+                generations.put(Integer.parseInt(suffix), stack);
+            }
+        }
+        return generations;
+    }
+
+    /**
+     * Forget the listing after this push created or deleted stacks
+     */
+    public synchronized void invalidate() {
+        summaries = null;
+    }
+}
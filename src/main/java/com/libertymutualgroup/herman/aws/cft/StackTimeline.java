@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.cft;
+
+import com.amazonaws.services.cloudformation.model.StackEvent;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-resource provisioning timeline of a single stack operation, built from its stack events
+ */
+public class StackTimeline {
+
+    private final String stackName;
+    private final Map<String, ResourceTiming> resources = new LinkedHashMap<>();
+    private final List<StackEvent> failures = new ArrayList<>();
+    private String finalStatus;
+
+    public StackTimeline(String stackName) {
+        this.stackName = stackName;
+    }
+
+    public void record(StackEvent event) {
+        String status = event.getResourceStatus();
+        if (status.contains("FAILED") && event.getResourceStatusReason() != null) {
+            failures.add(event);
+        }
+        if (stackName.equals(event.getLogicalResourceId())) {
+            return;
+        }
+
+        ResourceTiming timing = resources.computeIfAbsent(event.getLogicalResourceId(),
+            id -> new ResourceTiming(id, event.getResourceType()));
+        if (status.contains("IN_PROGRESS")) {
+            if (timing.getStart() == null) {
+                timing.setStart(event.getTimestamp().getTime());
+            }
+        } else {
+            timing.setEnd(event.getTimestamp().getTime());
+        }
+        timing.setStatus(status);
+    }
+
+    /**
+     * Completed resources, slowest first
+     */
+    public List<ResourceTiming> getResourceTimings() {
+        List<ResourceTiming> timings = new ArrayList<>();
+        for (ResourceTiming timing : resources.values()) {
+            if (timing.getDurationMs() != null) {
+                timings.add(timing);
+            }
+        }
+        timings.sort(Comparator.comparing(ResourceTiming::getDurationMs).reversed());
+        return timings;
+    }
+
+    public List<StackEvent> getFailures() {
+        return failures;
+    }
+
+    public String getStackName() {
+        return stackName;
+    }
+
+    public String getFinalStatus() {
+        return finalStatus;
+    }
+
+    public void setFinalStatus(String finalStatus) {
+        this.finalStatus = finalStatus;
+    }
+
+    public static class ResourceTiming {
+        private final String logicalResourceId;
+        private final String resourceType;
+        private Long start;
+        private Long end;
+        private String status;
+
+        ResourceTiming(String logicalResourceId, String resourceType) {
+            this.logicalResourceId = logicalResourceId;
+            this.resourceType = resourceType;
+        }
+
+        public String getLogicalResourceId() {
+            return logicalResourceId;
+        }
+
+        public String getResourceType() {
+            return resourceType;
+        }
+
+        public Long getStart() {
+            return start;
+        }
+
+        void setStart(Long start) {
+            this.start = start;
+        }
+
+        public Long getEnd() {
+            return end;
+        }
+
+        void setEnd(Long end) {
+            this.end = end;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        void setStatus(String status) {
+            this.status = status;
+        }
+
+        public Long getDurationMs() {
+            if (start == null || end == null) {
+                return null;
+            }
+            return end - start;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.cft;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.libertymutualgroup.herman.util.HermanJackson;
+import com.libertymutualgroup.herman.util.TemplateFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads the Parameters block of a JSON or YAML template. Results are cached by template hash, since the same
+ * templates are analyzed for every stack and every plan in a deployment.
+ */
+public class TemplateAnalyzer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TemplateAnalyzer.class);
+    private static final Map<String, Map<String, TemplateParameter>> CACHE = new ConcurrentHashMap<>();
+
+    private TemplateAnalyzer() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * @return declared parameters by name, in template order, or null if the template could not be parsed
+     */
+    public static Map<String, TemplateParameter> parameters(String template) {
+        String hash = TemplateStager.hash(template);
+        Map<String, TemplateParameter> parameters = CACHE.get(hash);
+        if (parameters == null) {
+            parameters = parse(template);
+            if (parameters != null) {
+                CACHE.put(hash, parameters);
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * @return true if the template imports values exported by other stacks, in long or short form
+     */
+    public static boolean usesImports(String template) {
+        return template.contains("Fn::ImportValue") || template.contains("!ImportValue");
+    }
+
+    private static Map<String, TemplateParameter> parse(String template) {
+        TemplateFormat format = template.trim().startsWith("{") ? TemplateFormat.JSON : TemplateFormat.YML;
+        JsonNode root;
+        try {
+            root = HermanJackson.reader(JsonNode.class, format).readValue(template);
+        } catch (IOException e) {
+            LOGGER.debug("Unable to parse template parameters", e);
+            return null;
+        }
+
+        Map<String, TemplateParameter> parameters = new LinkedHashMap<>();
+        JsonNode parametersNode = root == null ? null : root.get("Parameters");
+        if (parametersNode != null) {
+            Iterator<Map.Entry<String, JsonNode>> fields = parametersNode.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                JsonNode defaultNode = field.getValue().get("Default");
+                JsonNode typeNode = field.getValue().get("Type");
+                parameters.put(field.getKey(), new TemplateParameter(field.getKey(),
+                    typeNode == null ? null : typeNode.asText(),
+                    defaultNode == null || defaultNode.isNull() ? null : defaultNode.asText()));
+            }
+        }
+        return Collections.unmodifiableMap(parameters);
+    }
+
+    public static class TemplateParameter {
+        private final String name;
+        private final String type;
+        private final String defaultValue;
+
+        TemplateParameter(String name, String type, String defaultValue) {
+            this.name = name;
+            this.type = type;
+            this.defaultValue = defaultValue;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getDefaultValue() {
+            return defaultValue;
+        }
+
+        public boolean isRequired() {
+            return defaultValue == null;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.cft;
+
+import com.amazonaws.services.cloudformation.model.Output;
+import com.amazonaws.services.cloudformation.model.Stack;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.libertymutualgroup.herman.util.HermanJackson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Records the hash of the template a stack was pushed with as a stack output, so a later push can tell whether
+ * the template changed from DescribeStacks alone. Outputs stay on the stack, unlike stack tags, which
+ * CloudFormation copies onto every resource.
+ */
+public class TemplateHashOutput {
+
+    public static final String OUTPUT_KEY = "HermanTemplateHash";
+    private static final Logger LOGGER = LoggerFactory.getLogger(TemplateHashOutput.class);
+    private static final Pattern YAML_OUTPUTS = Pattern.compile("^Outputs:[ \\t]*(#.*)?$", Pattern.MULTILINE);
+    private static final Pattern YAML_INDENT = Pattern.compile("^([ \\t]*)(\\S?)", Pattern.MULTILINE);
+
+    private TemplateHashOutput() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * @return the template with an output holding the given hash, or the template unchanged if it is JSON that
+     * could not be parsed
+     */
+    public static String addTo(String template, String hash) {
+        return template.trim().startsWith("{") ? addToJson(template, hash) : addToYaml(template, hash);
+    }
+
+    public static Optional<String> readFrom(Stack stack) {
+        return Optional.ofNullable(stack.getOutputs()).orElse(Collections.emptyList()).stream()
+            .filter(output -> OUTPUT_KEY.equals(output.getOutputKey()))
+            .map(Output::getOutputValue)
+            .findFirst();
+    }
+
+    private static String addToJson(String template, String hash) {
+        try {
+            JsonNode root = HermanJackson.treeReader().readTree(template);
+            if (!(root instanceof ObjectNode)) {
+                return template;
+            }
+            ((ObjectNode) root).with("Outputs").putObject(OUTPUT_KEY).put("Value", hash);
+            return HermanJackson.jsonWriter().writeValueAsString(root);
+        } catch (IOException e) {
+            LOGGER.debug("Unable to add template hash output", e);
+            return template;
+        }
+    }
+
+    // Short-form functions such as !Ref do not survive a YAML round trip, so the output is added as text
+    private static String addToYaml(String template, String hash) {
+        Matcher outputs = YAML_OUTPUTS.matcher(template);
+        if (!outputs.find()) {
+            String separator = template.endsWith("\n") ? "" : "\n";
+            return template + separator + "Outputs:\n  " + OUTPUT_KEY + ":\n    Value: " + hash + "\n";
+        }
+
+        String indent = null;
+        Matcher line = YAML_INDENT.matcher(template);
+        int position = outputs.end();
+        while (indent == null && position < template.length() && line.find(position)) {
+            if (!line.group(2).isEmpty() && !line.group(2).startsWith("#")) {
+                indent = line.group(1);
+            }
+            int nextLine = template.indexOf('\n', line.end());
+            position = nextLine < 0 ? template.length() : nextLine + 1;
+        }
+        if (indent == null || indent.isEmpty()) {
+            // Outputs is declared without any entries
+            indent = "  ";
+        }
+        return template.substring(0, outputs.end()) + "\n" + indent + OUTPUT_KEY + ":\n" + indent + indent
+            + "Value: " + hash + template.substring(outputs.end());
+    }
+}
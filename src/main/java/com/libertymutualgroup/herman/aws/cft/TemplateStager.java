@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.cft;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.util.BinaryUtils;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stages templates in S3 under a key derived from their content, so an unchanged template is uploaded once
+ * and pushes reference it by TemplateURL instead of sending the body.
+ */
+public class TemplateStager {
+
+    public static final int INLINE_TEMPLATE_LIMIT_BYTES = 51200;
+    private static final String KEY_PREFIX = "herman/cft-templates/";
+
+    private AmazonS3 s3Client;
+    private String bucket;
+    private HermanLogger logger;
+    private Set<String> stagedKeys = ConcurrentHashMap.newKeySet();
+
+    public TemplateStager(AmazonS3 s3Client, String bucket, HermanLogger logger) {
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+        this.logger = logger;
+    }
+
+    public static String hash(String template) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return BinaryUtils.toHex(digest.digest(template.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new AwsExecException(e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return bucket != null && !bucket.isEmpty();
+    }
+
+    /**
+     * @return URL of the staged template
+     */
+    public String stage(String template) {
+        String key = KEY_PREFIX + hash(template) + ".template";
+        if (!stagedKeys.contains(key)) {
+            if (s3Client.doesObjectExist(bucket, key)) {
+                logger.addLogEntry("... Template already staged: s3://" + bucket + "/" + key);
+            } else {
+                byte[] body = template.getBytes(StandardCharsets.UTF_8);
+                ObjectMetadata metadata = new ObjectMetadata();
+                metadata.setContentLength(body.length);
+                s3Client.putObject(new PutObjectRequest(bucket, key, new ByteArrayInputStream(body), metadata));
+                logger.addLogEntry("... Staged template: s3://" + bucket + "/" + key);
+            }
+            stagedKeys.add(key);
+        }
+        return s3Client.getUrl(bucket, key).toString();
+    }
+}
@@ -17,6 +17,8 @@ package com.libertymutualgroup.herman.aws.ecs;
 
 import com.amazonaws.services.ecs.model.ContainerDefinition;
 import com.amazonaws.services.ecs.model.KeyValuePair;
+import com.libertymutualgroup.herman.aws.ecs.broker.dax.DaxCluster;
+import com.libertymutualgroup.herman.aws.ecs.broker.elasticache.ElastiCacheCluster;
 import com.libertymutualgroup.herman.aws.ecs.broker.rds.RdsInstance;
 import com.libertymutualgroup.herman.aws.ecs.cluster.EcsClusterMetadata;
 import java.util.List;
@@ -99,6 +101,29 @@ public class EcsDefaultEnvInjection {
         }
     }
 
+    public void injectDax(EcsPushDefinition definition, DaxCluster dax) {
+        for (ContainerDefinition def : definition.getContainerDefinitions()) {
+            def.getEnvironment().add(new KeyValuePair().withName(dax.getEndpointInjectName())
+                .withValue(dax.getEndpoint()));
+        }
+    }
+
+    public void injectCache(EcsPushDefinition definition, ElastiCacheCluster cache) {
+        for (ContainerDefinition def : definition.getContainerDefinitions()) {
+            def.getEnvironment().add(new KeyValuePair().withName(cache.getInjectNames().getHost())
+                .withValue(cache.getPrimaryEndpoint()));
+
+            def.getEnvironment().add(new KeyValuePair().withName(cache.getInjectNames().getReaderHost())
+                .withValue(cache.getReaderEndpoint()));
+
+            def.getEnvironment().add(new KeyValuePair().withName(cache.getInjectNames().getPort())
+                .withValue(cache.getEndpointPort().toString()));
+
+            def.getEnvironment().add(new KeyValuePair().withName(cache.getInjectNames().getTls())
+                .withValue(String.valueOf(Boolean.TRUE.equals(cache.getTransitEncryptionEnabled()))));
+        }
+    }
+
     private boolean propExists(List<KeyValuePair> env, String prop) {
         for (KeyValuePair pair : env) {
             if (pair.getName().equals(prop)) {
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs;
+
+import com.amazonaws.services.ecs.model.LogDriver;
+import com.amazonaws.services.ecs.model.PlacementConstraintType;
+import com.amazonaws.services.ecs.model.PlacementStrategyType;
+import com.amazonaws.services.ecs.model.TaskDefinitionPlacementConstraintType;
+import com.amazonaws.services.ecs.model.TransportProtocol;
+import com.amazonaws.services.ecs.model.UlimitName;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class EcsDefinitionMixIns {
+
+    public interface IgnoreTransportSetValueObjMixIn {
+
+        @JsonIgnore
+        void setProtocol(TransportProtocol protocol);
+    }
+
+    public interface IgnoreUlimitObjMixIn {
+
+        @JsonIgnore
+        void setName(UlimitName name);
+
+        @JsonProperty("name")
+        void setName(String name);
+    }
+
+    public interface IgnorePlacementConstraint {
+
+        @JsonIgnore
+        void setType(PlacementConstraintType type);
+    }
+
+    public interface IgnoreTaskPlacementConstraint {
+
+        @JsonIgnore
+        void setType(TaskDefinitionPlacementConstraintType type);
+    }
+
+    public interface IgnoreLogConfigLogDriver {
+
+        @JsonIgnore
+        void setLogDriver(LogDriver logDriver);
+    }
+
+    public interface IgnorePlaceStrategyType {
+
+        @JsonIgnore
+        void setType(PlacementStrategyType type);
+    }
+}
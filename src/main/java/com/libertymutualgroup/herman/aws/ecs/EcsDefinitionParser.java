@@ -15,29 +15,11 @@
  */
 package com.libertymutualgroup.herman.aws.ecs;
 
-import com.amazonaws.services.dynamodbv2.model.AttributeDefinition;
-import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
-import com.amazonaws.services.dynamodbv2.model.Projection;
-import com.amazonaws.services.dynamodbv2.model.StreamSpecification;
 import com.amazonaws.services.ecs.model.ContainerDefinition;
 import com.amazonaws.services.ecs.model.LogConfiguration;
-import com.amazonaws.services.ecs.model.LogDriver;
-import com.amazonaws.services.ecs.model.PlacementConstraint;
-import com.amazonaws.services.ecs.model.PlacementConstraintType;
-import com.amazonaws.services.ecs.model.PlacementStrategy;
-import com.amazonaws.services.ecs.model.PlacementStrategyType;
-import com.amazonaws.services.ecs.model.PortMapping;
-import com.amazonaws.services.ecs.model.TaskDefinitionPlacementConstraint;
-import com.amazonaws.services.ecs.model.TaskDefinitionPlacementConstraintType;
-import com.amazonaws.services.ecs.model.TransportProtocol;
-import com.amazonaws.services.ecs.model.Ulimit;
-import com.amazonaws.services.ecs.model.UlimitName;
-import com.fasterxml.jackson.annotation.JsonIgnore;
-import com.fasterxml.jackson.annotation.JsonProperty;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.libertymutualgroup.herman.aws.AwsExecException;
-import com.libertymutualgroup.herman.aws.ecs.broker.dynamodb.DynamoDBMixIns;
+import com.libertymutualgroup.herman.util.HermanJackson;
+import com.libertymutualgroup.herman.util.TemplateFormat;
 import java.util.List;
 
 public class EcsDefinitionParser {
@@ -49,28 +31,12 @@ public class EcsDefinitionParser {
     }
 
     public EcsPushDefinition parse(String template, boolean isJson) {
-
-        ObjectMapper mapper = null;
-        if (isJson) {
-            mapper = new ObjectMapper();
-        } else {
-            mapper = new ObjectMapper(new YAMLFactory());
-        }
-
-        mapper.addMixIn(PortMapping.class, IgnoreTransportSetValueObjMixIn.class);
-        mapper.addMixIn(Ulimit.class, IgnoreUlimitObjMixIn.class);
-        mapper.addMixIn(PlacementConstraint.class, IgnorePlacementConstraint.class);
-        mapper.addMixIn(LogConfiguration.class, IgnoreLogConfigLogDriver.class);
-        mapper.addMixIn(PlacementStrategy.class, IgnorePlaceStrategyType.class);
-        mapper.addMixIn(TaskDefinitionPlacementConstraint.class, IgnoreTaskPlacementConstraint.class);
-        mapper.addMixIn(KeySchemaElement.class, DynamoDBMixIns.class);
-        mapper.addMixIn(StreamSpecification.class, DynamoDBMixIns.class);
-        mapper.addMixIn(AttributeDefinition.class, DynamoDBMixIns.class);
-        mapper.addMixIn(Projection.class, DynamoDBMixIns.class);
+        TemplateFormat format = isJson ? TemplateFormat.JSON : TemplateFormat.YML;
 
         EcsPushDefinition ecsPushDefinition;
         try {
-            ecsPushDefinition = mapper.readValue(handler.mapInProperties(template), EcsPushDefinition.class);
+            ecsPushDefinition = HermanJackson.reader(EcsPushDefinition.class, format)
+                .readValue(handler.mapInProperties(template));
         } catch (Exception e) {
             throw new AwsExecException(e);
         }
@@ -94,43 +60,4 @@ public class EcsDefinitionParser {
             }
         }
     }
-
-    interface IgnoreTransportSetValueObjMixIn {
-
-        @JsonIgnore
-        void setProtocol(TransportProtocol protocol);
-    }
-
-    interface IgnoreUlimitObjMixIn {
-
-        @JsonIgnore
-        void setName(UlimitName name);
-
-        @JsonProperty("name")
-        void setName(String name);
-    }
-
-    interface IgnorePlacementConstraint {
-
-        @JsonIgnore
-        void setType(PlacementConstraintType type);
-    }
-
-    interface IgnoreTaskPlacementConstraint {
-
-        @JsonIgnore
-        void setType(TaskDefinitionPlacementConstraintType type);
-    }
-
-    interface IgnoreLogConfigLogDriver {
-
-        @JsonIgnore
-        void setLogDriver(LogDriver logDriver);
-    }
-
-    interface IgnorePlaceStrategyType {
-
-        @JsonIgnore
-        void setType(PlacementStrategyType type);
-    }
 }
@@ -17,6 +17,10 @@ package com.libertymutualgroup.herman.aws.ecs;
 
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.services.applicationautoscaling.AWSApplicationAutoScaling;
+import com.amazonaws.services.applicationautoscaling.AWSApplicationAutoScalingClientBuilder;
+import com.amazonaws.services.autoscaling.AmazonAutoScaling;
+import com.amazonaws.services.autoscaling.AmazonAutoScalingClientBuilder;
 import com.amazonaws.services.cloudformation.AmazonCloudFormation;
 import com.amazonaws.services.cloudformation.AmazonCloudFormationClientBuilder;
 import com.amazonaws.services.cloudwatch.AmazonCloudWatch;
@@ -25,6 +29,8 @@ import com.amazonaws.services.cloudwatch.model.Dimension;
 import com.amazonaws.services.cloudwatch.model.MetricDatum;
 import com.amazonaws.services.cloudwatch.model.PutMetricDataRequest;
 import com.amazonaws.services.cloudwatch.model.StandardUnit;
+import com.amazonaws.services.dax.AmazonDax;
+import com.amazonaws.services.dax.AmazonDaxClientBuilder;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
 import com.amazonaws.services.ec2.AmazonEC2;
@@ -59,6 +65,8 @@ import com.amazonaws.services.ecs.model.TaskDefinition;
 import com.amazonaws.services.ecs.model.TaskDefinitionPlacementConstraint;
 import com.amazonaws.services.ecs.model.TaskDefinitionPlacementConstraintType;
 import com.amazonaws.services.ecs.model.UpdateServiceRequest;
+import com.amazonaws.services.elasticache.AmazonElastiCache;
+import com.amazonaws.services.elasticache.AmazonElastiCacheClientBuilder;
 import com.amazonaws.services.identitymanagement.AmazonIdentityManagement;
 import com.amazonaws.services.identitymanagement.AmazonIdentityManagementClientBuilder;
 import com.amazonaws.services.identitymanagement.model.Role;
@@ -70,6 +78,8 @@ import com.amazonaws.services.lambda.AWSLambda;
 import com.amazonaws.services.lambda.AWSLambdaClientBuilder;
 import com.amazonaws.services.rds.AmazonRDS;
 import com.amazonaws.services.rds.AmazonRDSClientBuilder;
+import com.amazonaws.services.resourcegroupstaggingapi.AWSResourceGroupsTaggingAPI;
+import com.amazonaws.services.resourcegroupstaggingapi.AWSResourceGroupsTaggingAPIClientBuilder;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.amazonaws.services.securitytoken.AWSSecurityTokenService;
@@ -81,8 +91,13 @@ import com.amazonaws.services.sqs.AmazonSQS;
 import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
 import com.amazonaws.util.IOUtils;
 import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.aws.asg.AutoscalingGroupHandler;
 import com.libertymutualgroup.herman.aws.ecs.broker.autoscaling.AutoscalingBroker;
+import com.libertymutualgroup.herman.aws.ecs.broker.dax.DaxBroker;
+import com.libertymutualgroup.herman.aws.ecs.broker.dax.DaxCluster;
 import com.libertymutualgroup.herman.aws.ecs.broker.dynamodb.DynamoDBBroker;
+import com.libertymutualgroup.herman.aws.ecs.broker.elasticache.ElastiCacheBroker;
+import com.libertymutualgroup.herman.aws.ecs.broker.elasticache.ElastiCacheCluster;
 import com.libertymutualgroup.herman.aws.ecs.broker.iam.IAMBroker;
 import com.libertymutualgroup.herman.aws.ecs.broker.kinesis.KinesisBroker;
 import com.libertymutualgroup.herman.aws.ecs.broker.kinesis.KinesisStream;
@@ -93,12 +108,12 @@ import com.libertymutualgroup.herman.aws.ecs.broker.rds.EcsPushFactory;
 import com.libertymutualgroup.herman.aws.ecs.broker.rds.RdsBroker;
 import com.libertymutualgroup.herman.aws.ecs.broker.rds.RdsInstance;
 import com.libertymutualgroup.herman.aws.ecs.broker.s3.S3Broker;
-import com.libertymutualgroup.herman.aws.ecs.broker.s3.S3Bucket;
 import com.libertymutualgroup.herman.aws.ecs.broker.s3.S3CreateContext;
 import com.libertymutualgroup.herman.aws.ecs.broker.sns.SnsBroker;
 import com.libertymutualgroup.herman.aws.ecs.broker.sns.SnsTopic;
 import com.libertymutualgroup.herman.aws.ecs.broker.sqs.SqsBroker;
-import com.libertymutualgroup.herman.aws.ecs.broker.sqs.SqsQueue;
+import com.libertymutualgroup.herman.aws.ecs.cluster.ClusterCapacityPlanner;
+import com.libertymutualgroup.herman.aws.ecs.cluster.ContainerInstanceHandler;
 import com.libertymutualgroup.herman.aws.ecs.cluster.EcsClusterIntrospector;
 import com.libertymutualgroup.herman.aws.ecs.cluster.EcsClusterMetadata;
 import com.libertymutualgroup.herman.aws.ecs.loadbalancing.CertHandler;
@@ -111,8 +126,10 @@ import com.libertymutualgroup.herman.aws.ecs.logging.LoggingService;
 import com.libertymutualgroup.herman.aws.tags.HermanTag;
 import com.libertymutualgroup.herman.aws.tags.TagUtil;
 import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.logging.PrefixedLogger;
 import com.libertymutualgroup.herman.task.ecs.ECSPushTaskProperties;
 import com.libertymutualgroup.herman.util.ArnUtil;
+import com.libertymutualgroup.herman.util.ConcurrencyUtil;
 import com.libertymutualgroup.herman.util.FileUtil;
 import org.apache.logging.log4j.util.Strings;
 
@@ -126,6 +143,8 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 public class EcsPush {
 
@@ -151,9 +170,15 @@ public class EcsPush {
     private AmazonSQS sqsClient;
     private AmazonSNS snsClient;
     private AmazonDynamoDB dynamoDbClient;
+    private AmazonDax daxClient;
+    private AmazonElastiCache elastiCacheClient;
     private AWSLambda lambdaClient;
     private AWSSecurityTokenService stsClient;
     private AmazonCloudWatch cloudWatchClient;
+    private AmazonAutoScaling asgClient;
+    private AWSResourceGroupsTaggingAPI taggingClient;
+    private String accountId;
+    private List<CompletableFuture<Void>> streamScaling = new ArrayList<>();
     private FileUtil fileUtil;
 
     public EcsPush(EcsPushContext context) {
@@ -217,6 +242,14 @@ public class EcsPush {
             .withRegion(context.getRegion())
             .build();
 
+        this.daxClient = AmazonDaxClientBuilder.standard()
+            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
+            .withClientConfiguration(context.getAwsClientConfig()).withRegion(context.getRegion()).build();
+
+        this.elastiCacheClient = AmazonElastiCacheClientBuilder.standard()
+            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
+            .withClientConfiguration(context.getAwsClientConfig()).withRegion(context.getRegion()).build();
+
         this.lambdaClient = AWSLambdaClientBuilder.standard()
             .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
             .withClientConfiguration(new ClientConfiguration().withClientExecutionTimeout(300000).withSocketTimeout(300000))
@@ -233,13 +266,21 @@ public class EcsPush {
             .withCredentials(new AWSStaticCredentialsProvider(pushContext.getSessionCredentials()))
             .withClientConfiguration(pushContext.getAwsClientConfig()).withRegion(pushContext.getRegion()).build();
 
+        this.asgClient = AmazonAutoScalingClientBuilder.standard()
+            .withCredentials(new AWSStaticCredentialsProvider(pushContext.getSessionCredentials()))
+            .withClientConfiguration(pushContext.getAwsClientConfig()).withRegion(pushContext.getRegion()).build();
+
+        this.taggingClient = AWSResourceGroupsTaggingAPIClientBuilder.standard()
+            .withCredentials(new AWSStaticCredentialsProvider(pushContext.getSessionCredentials()))
+            .withClientConfiguration(pushContext.getAwsClientConfig()).withRegion(pushContext.getRegion()).build();
+
         this.fileUtil = new FileUtil(pushContext.getRootPath(), logger);
     }
 
     public void push() {
         EcsPushDefinition definition = getEcsPushDefinition();
 
-        String accountId = this.stsClient.getCallerIdentity(new GetCallerIdentityRequest()).getAccount();
+        this.accountId = this.stsClient.getCallerIdentity(new GetCallerIdentityRequest()).getAccount();
         bambooPropertyHandler.addProperty("account.id", accountId);
 
 
@@ -259,7 +300,8 @@ public class EcsPush {
         logger.addLogEntry(definition.toString());
         logInvocationInCloudWatch(definition);
 
-        EcsClusterIntrospector clusterIntrospector = new EcsClusterIntrospector(cftClient, ec2Client, logger);
+        EcsClusterIntrospector clusterIntrospector = new EcsClusterIntrospector(cftClient, ec2Client, logger,
+            pushContext.getClusterMetadataCache());
         EcsClusterMetadata clusterMetadata = clusterIntrospector.introspect(definition.getCluster(), pushContext.getRegion());
 
         LoggingService loggingService = new LoggingService(logger)
@@ -337,6 +379,7 @@ public class EcsPush {
             runTask(clusterMetadata, ecsClient, taskResult.getTaskDefinition(), definition.getContainerDefinitions());
         }
 
+        awaitStreamScaling();
         logResultInCloudWatch(definition);
     }
 
@@ -455,14 +498,22 @@ public class EcsPush {
 
         boolean serviceExists = false;
         String serviceArn = null;
+        int runningCount = 0;
         for (Service service : serviceSearch.getServices()) {
             if (!Objects.equals(service.getStatus(), "INACTIVE")) {
                 logger.addLogEntry("Service found: " + service.getServiceName() + " : " + service.getStatus());
                 serviceExists = true;
                 serviceArn = service.getServiceArn();
+                runningCount = service.getRunningCount();
             }
         }
 
+        ClusterCapacityPlanner capacityPlanner = new ClusterCapacityPlanner(
+            new ContainerInstanceHandler(ecsClient, ec2Client, logger), new AutoscalingGroupHandler(asgClient, logger), logger);
+        capacityPlanner.ensureCapacity(clusterMetadata.getClusterId(), taskDefinition,
+            definition.getService().getInstanceCount(), runningCount, definition.getService().getDeploymentConfiguration(),
+            definition.getService().getCapacityCheck(), TimeUnit.MINUTES.toMillis(pushContext.getTimeout()));
+
         String serviceRole = null;
         if (balancer != null) {
             serviceRole = clusterMetadata.getClusterEcsRole();
@@ -704,12 +755,16 @@ public class EcsPush {
         EcsClusterMetadata clusterMetadata) {
 
         String applicationKeyId = brokerKms(definition, clusterMetadata);
+        // The cache takes longest to create, so it is brokered alongside everything else
+        CompletableFuture<ElastiCacheCluster> cache = brokerCache(definition, clusterMetadata, applicationKeyId);
         brokerS3(definition, clusterMetadata, applicationKeyId);
         brokerKinesisStream(definition);
         brokerSqs(definition);
         brokerSns(definition);
         brokerRds(definition, injectMagic, clusterMetadata, applicationKeyId);
         brokerDynamoDB(definition);
+        brokerDax(definition, injectMagic, clusterMetadata);
+        awaitCache(cache, injectMagic, definition);
     }
 
 
@@ -717,13 +772,7 @@ public class EcsPush {
         KmsBroker broker = new KmsBroker(logger, bambooPropertyHandler, fileUtil, taskProperties,
             this.pushContext.getSessionCredentials(), this.pushContext.getCustomConfigurationBucket(), this.pushContext.getRegion());
 
-        List<HermanTag> tags = new ArrayList<>();
-        tags.add(new HermanTag(taskProperties.getSbuTagKey(), clusterMetadata.getNewrelicSbuTag()));
-        tags.add(new HermanTag(taskProperties.getOrgTagKey(), clusterMetadata.getNewrelicOrgTag()));
-        tags.add(new HermanTag(taskProperties.getAppTagKey(), definition.getAppName()));
-        tags.add(new HermanTag(taskProperties.getClusterTagKey(), clusterMetadata.getClusterId()));
-
-        tags = TagUtil.mergeTags(tags, definition.getTags());
+        List<HermanTag> tags = appTags(definition, clusterMetadata);
         String applicationKeyId = Strings.EMPTY;
         if (broker.isActive(definition)) {
             applicationKeyId = broker.brokerKey(kmsClient, definition, TagUtil.hermanToKmsTags(tags));
@@ -733,6 +782,18 @@ public class EcsPush {
         return applicationKeyId;
     }
 
+    /**
+     * Standard sbu, org, app and cluster tags, merged with the tags of the definition
+     */
+    private List<HermanTag> appTags(EcsPushDefinition definition, EcsClusterMetadata clusterMetadata) {
+        List<HermanTag> tags = new ArrayList<>();
+        tags.add(new HermanTag(taskProperties.getSbuTagKey(), clusterMetadata.getNewrelicSbuTag()));
+        tags.add(new HermanTag(taskProperties.getOrgTagKey(), clusterMetadata.getNewrelicOrgTag()));
+        tags.add(new HermanTag(taskProperties.getAppTagKey(), definition.getAppName()));
+        tags.add(new HermanTag(taskProperties.getClusterTagKey(), clusterMetadata.getClusterId()));
+        return TagUtil.mergeTags(tags, definition.getTags());
+    }
+
     private void brokerRds(EcsPushDefinition definition, EcsDefaultEnvInjection injectMagic,
         EcsClusterMetadata clusterMetadata, String applicationKeyId) {
         String targetKey = clusterMetadata.getEncryptionKey();
@@ -756,14 +817,9 @@ public class EcsPush {
     private void brokerSqs(EcsPushDefinition definition) {
         SqsBroker sqsBroker = new SqsBroker(logger, bambooPropertyHandler);
         if (definition.getQueues() != null) {
-            for (SqsQueue queue : definition.getQueues()) {
-                if (queue.getPolicyName() != null) {
-                    String policy = fileUtil.findFile(queue.getPolicyName(), false);
-                    sqsBroker.brokerQueue(sqsClient, queue, policy, definition.getTags());
-                } else {
-                    sqsBroker.brokerQueue(sqsClient, queue, null, definition.getTags());
-                }
-            }
+            sqsBroker.brokerQueues(sqsClient, definition.getQueues(),
+                queue -> queue.getPolicyName() != null ? fileUtil.findFile(queue.getPolicyName(), false) : null,
+                definition.getTags());
         }
     }
 
@@ -784,39 +840,87 @@ public class EcsPush {
 
     private void brokerS3(EcsPushDefinition definition, EcsClusterMetadata clusterMetadata, String kmsKeyId) {
         S3Broker s3Broker = new S3Broker(new S3CreateContext().fromECSPushContext(pushContext));
-        if (definition.getBuckets() != null) {
-            for (S3Bucket bucket : definition.getBuckets()) {
-                if (bucket.getPolicyName() != null) {
-                    String policy = fileUtil.findFile(bucket.getPolicyName(), false);
-                    s3Broker.brokerBucketFromEcsPush(s3Client, kmsClient, bucket, policy, kmsKeyId, clusterMetadata, definition);
-                } else {
-                    s3Broker.brokerBucketFromEcsPush(s3Client, kmsClient, bucket, null, kmsKeyId, clusterMetadata, definition);
-                }
-            }
-        }
+        s3Broker.brokerBucketsFromEcsPush(s3Client, kmsClient, definition.getBuckets(),
+            bucket -> bucket.getPolicyName() == null ? null : fileUtil.findFile(bucket.getPolicyName(), false),
+            kmsKeyId, clusterMetadata, definition);
     }
 
     private void brokerKinesisStream(EcsPushDefinition definition) {
-        KinesisBroker kinesisBroker = new KinesisBroker(logger, kinesisClient, definition, taskProperties);
+        KinesisBroker kinesisBroker = new KinesisBroker(logger, kinesisClient, taggingClient, definition, taskProperties,
+            accountId, pushContext.getRegion());
 
         // delete any streams tied to this app that are no longer specified in the PushDefinition
         kinesisBroker.checkStreamsToBeDeleted();
 
         if (definition.getStreams() != null) {
             for (KinesisStream stream : definition.getStreams()) {
-                kinesisBroker.brokerStream(stream);
+                streamScaling.add(kinesisBroker.brokerStream(stream));
             }
         }
     }
 
+    private void awaitStreamScaling() {
+        KinesisBroker.awaitResharding(streamScaling, logger);
+    }
+
     private void brokerDynamoDB(EcsPushDefinition definition) {
-        DynamoDBBroker dynamoDBBroker = new DynamoDBBroker(logger, definition);
+        DynamoDBBroker dynamoDBBroker = new DynamoDBBroker(logger, definition,
+            TimeUnit.MINUTES.toMillis(pushContext.getTimeout()));
 
         if (definition.getDynamoDBTables() != null) {
-            dynamoDBBroker.createDynamoDBTables(dynamoDbClient);
+            AWSApplicationAutoScaling autoScalingClient = AWSApplicationAutoScalingClientBuilder.standard()
+                .withCredentials(new AWSStaticCredentialsProvider(pushContext.getSessionCredentials()))
+                .withClientConfiguration(pushContext.getAwsClientConfig())
+                .withRegion(pushContext.getRegion())
+                .build();
+            dynamoDBBroker.createDynamoDBTables(dynamoDbClient, autoScalingClient);
         }
     }
 
+    private CompletableFuture<ElastiCacheCluster> brokerCache(EcsPushDefinition definition,
+        EcsClusterMetadata clusterMetadata, String applicationKeyId) {
+        if (definition.getCache() == null) {
+            return null;
+        }
+        List<HermanTag> tags = appTags(definition, clusterMetadata);
+
+        ElastiCacheBroker cacheBroker = new ElastiCacheBroker(new PrefixedLogger(logger, "cache"), elastiCacheClient,
+            TimeUnit.MINUTES.toMillis(pushContext.getTimeout()));
+        String kmsKeyId = Boolean.TRUE.toString().equals(definition.getUseKms()) ? applicationKeyId : null;
+        return cacheBroker.brokerReplicationGroup(definition, clusterMetadata, kmsKeyId, tags);
+    }
+
+    private void awaitCache(CompletableFuture<ElastiCacheCluster> cache, EcsDefaultEnvInjection injectMagic,
+        EcsPushDefinition definition) {
+        if (cache == null) {
+            return;
+        }
+        if (!cache.isDone()) {
+            logger.addLogEntry("Waiting for the ElastiCache replication group...");
+        }
+        ElastiCacheCluster brokered = ConcurrencyUtil.join(cache);
+        logger.addLogEntry("Injecting ElastiCache endpoints as environment variables");
+        injectMagic.injectCache(definition, brokered);
+    }
+
+    private void brokerDax(EcsPushDefinition definition, EcsDefaultEnvInjection injectMagic,
+        EcsClusterMetadata clusterMetadata) {
+        if (definition.getDaxCluster() == null) {
+            return;
+        }
+        List<HermanTag> tags = appTags(definition, clusterMetadata);
+
+        // Only a role brokered for this app gets the DAX policy added to it
+        boolean appRole = definition.getIamRole() == null || definition.getAppName().equals(definition.getIamRole());
+        DaxBroker daxBroker = new DaxBroker(logger, daxClient, iamClient,
+            TimeUnit.MINUTES.toMillis(pushContext.getTimeout()));
+        DaxCluster dax = daxBroker.brokerCluster(definition, clusterMetadata, appRole ? definition.getAppName() : null,
+            accountId, pushContext.getRegion(), tags);
+
+        logger.addLogEntry("Injecting DAX endpoint as an environment variable");
+        injectMagic.injectDax(definition, dax);
+    }
+
     private void brokerServicesPostPush(EcsPushDefinition definition, EcsClusterMetadata meta) {
         if (taskProperties.getNewRelic() != null) {
             NewRelicBrokerConfiguration newRelicBrokerConfiguration = new NewRelicBrokerConfiguration()
@@ -18,6 +18,7 @@ package com.libertymutualgroup.herman.aws.ecs;
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.regions.Regions;
+import com.libertymutualgroup.herman.aws.ecs.cluster.EcsClusterMetadataCache;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import com.libertymutualgroup.herman.task.ecs.ECSPushTaskProperties;
 
@@ -33,6 +34,7 @@ public class EcsPushContext {
     private String rootPath;
     private ECSPushTaskProperties taskProperties;
     private String customConfigurationBucket;
+    private EcsClusterMetadataCache clusterMetadataCache = EcsClusterMetadataCache.shared();
 
     public HermanLogger getLogger() {
         return logger;
@@ -114,6 +116,14 @@ public class EcsPushContext {
         this.customConfigurationBucket = customConfigurationBucket;
     }
 
+    public EcsClusterMetadataCache getClusterMetadataCache() {
+        return clusterMetadataCache;
+    }
+
+    public void setClusterMetadataCache(EcsClusterMetadataCache clusterMetadataCache) {
+        this.clusterMetadataCache = clusterMetadataCache;
+    }
+
     public EcsPushContext withLogger(final HermanLogger logger) {
         this.logger = logger;
         return this;
@@ -164,6 +174,11 @@ public class EcsPushContext {
         return this;
     }
 
+    public EcsPushContext withClusterMetadataCache(final EcsClusterMetadataCache clusterMetadataCache) {
+        this.clusterMetadataCache = clusterMetadataCache;
+        return this;
+    }
+
     @Override
     public String toString() {
         return "EcsPushContext{" +
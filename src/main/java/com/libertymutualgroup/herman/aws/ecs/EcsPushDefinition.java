@@ -21,8 +21,10 @@ import com.amazonaws.services.ecs.model.PlacementStrategy;
 import com.amazonaws.services.ecs.model.TaskDefinitionPlacementConstraint;
 import com.amazonaws.services.ecs.model.Ulimit;
 import com.amazonaws.services.ecs.model.Volume;
+import com.libertymutualgroup.herman.aws.ecs.broker.dax.DaxCluster;
 import com.libertymutualgroup.herman.aws.ecs.broker.dynamodb.DynamoAppDefinition;
 import com.libertymutualgroup.herman.aws.ecs.broker.dynamodb.DynamoDBTable;
+import com.libertymutualgroup.herman.aws.ecs.broker.elasticache.ElastiCacheCluster;
 import com.libertymutualgroup.herman.aws.ecs.broker.iam.IamAppDefinition;
 import com.libertymutualgroup.herman.aws.ecs.broker.kinesis.KinesisAppDefinition;
 import com.libertymutualgroup.herman.aws.ecs.broker.kinesis.KinesisStream;
@@ -55,6 +57,8 @@ public class EcsPushDefinition implements IamAppDefinition, KmsAppDefinition, Dy
     private List<SnsTopic> topics;
     private List<DynamoDBTable> dynamoDBTables;
     private RdsInstance database;
+    private DaxCluster daxCluster;
+    private ElastiCacheCluster cache;
     private String taskRoleArn;
     private NewRelicConfiguration newRelic;
     private String notificationWebhook;
@@ -176,6 +180,22 @@ public class EcsPushDefinition implements IamAppDefinition, KmsAppDefinition, Dy
         this.database = database;
     }
 
+    public DaxCluster getDaxCluster() {
+        return daxCluster;
+    }
+
+    public void setDaxCluster(DaxCluster daxCluster) {
+        this.daxCluster = daxCluster;
+    }
+
+    public ElastiCacheCluster getCache() {
+        return cache;
+    }
+
+    public void setCache(ElastiCacheCluster cache) {
+        this.cache = cache;
+    }
+
     public String getTaskRoleArn() {
         return taskRoleArn;
     }
@@ -312,6 +332,8 @@ public class EcsPushDefinition implements IamAppDefinition, KmsAppDefinition, Dy
             ", topics=" + topics +
             ", dynamoDbTables=" + dynamoDBTables +
             ", database=" + database +
+            ", daxCluster=" + daxCluster +
+            ", cache=" + cache +
             ", taskRoleArn='" + taskRoleArn + '\'' +
             ", newRelic=" + newRelic +
             ", notificationWebhook='" + notificationWebhook + '\'' +
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.broker;
+
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.util.AdaptivePoller;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Steps shared by the brokers of managed clusters (DAX, ElastiCache) that live in the cluster's private subnets
+ */
+public class ManagedClusterUtil {
+
+    private static final String AVAILABLE = "available";
+    private static final long MIN_POLLING_INTERVAL_MS = 10000;
+    private static final long MAX_POLLING_INTERVAL_MS = 60000;
+    private static final double POLLING_GROWTH_FACTOR = 1.5;
+
+    private ManagedClusterUtil() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    public static AdaptivePoller newPoller() {
+        return new AdaptivePoller(MIN_POLLING_INTERVAL_MS, MAX_POLLING_INTERVAL_MS, POLLING_GROWTH_FACTOR);
+    }
+
+    /**
+     * Cuts a name down to the service's length limit, dropping trailing dashes left by the cut
+     */
+    public static String truncateName(String name, int maxLength) {
+        String truncated = name.length() > maxLength ? name.substring(0, maxLength) : name;
+        while (truncated.endsWith("-")) {
+            truncated = truncated.substring(0, truncated.length() - 1);
+        }
+        return truncated;
+    }
+
+    /**
+     * Creates the subnet group when it is missing and updates it when its subnets differ
+     *
+     * @param currentSubnets the subnet ids of the existing group, or null if there is none
+     */
+    public static void brokerSubnetGroup(String description, String groupName, List<String> subnets,
+        Set<String> currentSubnets, Runnable create, Runnable update, HermanLogger logger) {
+        if (currentSubnets == null) {
+            logger.addLogEntry("... Creating " + description + " " + groupName);
+            create.run();
+        } else if (!currentSubnets.equals(new HashSet<>(subnets))) {
+            logger.addLogEntry("... Updating " + description + " " + groupName);
+            update.run();
+        }
+    }
+
+    /**
+     * Polls until the resource reports an available status, logging each status change
+     *
+     * @param describe returns the current resource, or null if it does not exist
+     */
+    public static <T> T waitUntilAvailable(String description, String name, Supplier<T> describe,
+        Function<T, String> status, AdaptivePoller poller, long waitBudgetMillis, HermanLogger logger) {
+        long start = System.currentTimeMillis();
+        String lastStatus = null;
+        while (true) {
+            T resource = describe.get();
+            if (resource == null) {
+                throw new AwsExecException(
+                    StringUtils.capitalize(description) + " " + name + " disappeared while waiting for it");
+            }
+            String currentStatus = status.apply(resource);
+            if (AVAILABLE.equals(currentStatus)) {
+                return resource;
+            }
+            if (!currentStatus.equals(lastStatus)) {
+                logger.addLogEntry("... " + StringUtils.capitalize(description) + " status: " + currentStatus);
+                poller.progressed();
+                lastStatus = currentStatus;
+            }
+            if (System.currentTimeMillis() - start > waitBudgetMillis) {
+                throw new AwsExecException(String.format("Waited %d minutes for %s %s to become available",
+                    TimeUnit.MILLISECONDS.toMinutes(waitBudgetMillis), description, name));
+            }
+            poller.sleep();
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.broker.dax;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.dax.AmazonDax;
+import com.amazonaws.services.dax.model.Cluster;
+import com.amazonaws.services.dax.model.ClusterNotFoundException;
+import com.amazonaws.services.dax.model.CreateClusterRequest;
+import com.amazonaws.services.dax.model.CreateParameterGroupRequest;
+import com.amazonaws.services.dax.model.CreateSubnetGroupRequest;
+import com.amazonaws.services.dax.model.DecreaseReplicationFactorRequest;
+import com.amazonaws.services.dax.model.DescribeClustersRequest;
+import com.amazonaws.services.dax.model.DescribeParameterGroupsRequest;
+import com.amazonaws.services.dax.model.DescribeParametersRequest;
+import com.amazonaws.services.dax.model.DescribeParametersResult;
+import com.amazonaws.services.dax.model.DescribeSubnetGroupsRequest;
+import com.amazonaws.services.dax.model.IncreaseReplicationFactorRequest;
+import com.amazonaws.services.dax.model.Parameter;
+import com.amazonaws.services.dax.model.ParameterGroupNotFoundException;
+import com.amazonaws.services.dax.model.ParameterNameValue;
+import com.amazonaws.services.dax.model.SSESpecification;
+import com.amazonaws.services.dax.model.SecurityGroupMembership;
+import com.amazonaws.services.dax.model.Subnet;
+import com.amazonaws.services.dax.model.SubnetGroupNotFoundException;
+import com.amazonaws.services.dax.model.TagResourceRequest;
+import com.amazonaws.services.dax.model.UpdateClusterRequest;
+import com.amazonaws.services.dax.model.UpdateParameterGroupRequest;
+import com.amazonaws.services.dax.model.UpdateSubnetGroupRequest;
+import com.amazonaws.services.identitymanagement.AmazonIdentityManagement;
+import com.amazonaws.services.identitymanagement.model.Role;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.aws.ecs.EcsPushDefinition;
+import com.libertymutualgroup.herman.aws.ecs.broker.ManagedClusterUtil;
+import com.libertymutualgroup.herman.aws.ecs.broker.iam.IAMBroker;
+import com.libertymutualgroup.herman.aws.ecs.cluster.EcsClusterMetadata;
+import com.libertymutualgroup.herman.aws.tags.HermanTag;
+import com.libertymutualgroup.herman.aws.tags.TagUtil;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.util.AdaptivePoller;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Brokers a DAX cluster, with its subnet group, parameter group and service role, in front of the app's
+ * DynamoDB tables. Only settings that differ from the existing cluster are changed.
+ */
+public class DaxBroker {
+
+    static final int MAX_CLUSTER_NAME_LENGTH = 20;
+    private static final String QUERY_TTL = "query-ttl-millis";
+    private static final String RECORD_TTL = "record-ttl-millis";
+
+    private HermanLogger buildLogger;
+    private AmazonDax client;
+    private AmazonIdentityManagement iamClient;
+    private IAMBroker iamBroker;
+    private long waitBudgetMillis;
+    private Supplier<AdaptivePoller> pollerFactory;
+
+    public DaxBroker(HermanLogger buildLogger, AmazonDax client, AmazonIdentityManagement iamClient,
+        long waitBudgetMillis) {
+        this(buildLogger, client, iamClient, new IAMBroker(buildLogger), waitBudgetMillis,
+            ManagedClusterUtil::newPoller);
+    }
+
+    public DaxBroker(HermanLogger buildLogger, AmazonDax client, AmazonIdentityManagement iamClient,
+        IAMBroker iamBroker, long waitBudgetMillis, Supplier<AdaptivePoller> pollerFactory) {
+        this.buildLogger = buildLogger;
+        this.client = client;
+        this.iamClient = iamClient;
+        this.iamBroker = iamBroker;
+        this.waitBudgetMillis = waitBudgetMillis;
+        this.pollerFactory = pollerFactory;
+    }
+
+    /**
+     * Creates or updates the cluster and grants the task role access to it
+     *
+     * @param taskRoleName role the app's containers run as, or null to leave its policies alone
+     * @return the cluster definition with its endpoint set
+     */
+    public DaxCluster brokerCluster(EcsPushDefinition definition, EcsClusterMetadata clusterMetadata,
+        String taskRoleName, String accountId, Regions region, List<HermanTag> tags) {
+        DaxCluster dax = definition.getDaxCluster();
+        String appName = definition.getAppName();
+        String clusterName = dax.getClusterName() != null ? dax.getClusterName() : defaultClusterName(appName);
+        String groupName = appName + "-dax";
+        buildLogger.addLogEntry("Brokering DAX cluster: " + clusterName);
+
+        brokerSubnetGroup(groupName, clusterMetadata.getPrivateSubnets());
+        brokerParameterGroup(groupName, dax);
+
+        String tableArns = String.format("arn:aws:dynamodb:%s:%s:table/%s-*", region.getName(), accountId, appName);
+        Role serviceRole = iamBroker.brokerServiceRole(iamClient, groupName, "dax",
+            String.format(getPolicy("/iam/dax-service-role-policy.json"), tableArns));
+
+        List<String> securityGroups = new ArrayList<>();
+        securityGroups.add(clusterMetadata.getRdsSecurityGroup());
+        if (dax.getAdditionalSecurityGroups() != null) {
+            securityGroups.addAll(dax.getAdditionalSecurityGroups());
+        }
+
+        Cluster cluster = getCluster(clusterName);
+        if (cluster == null) {
+            buildLogger.addLogEntry("... Creating DAX cluster, this will take about ten minutes.");
+            client.createCluster(new CreateClusterRequest()
+                .withClusterName(clusterName)
+                .withNodeType(dax.getNodeType())
+                .withReplicationFactor(dax.getReplicationFactor())
+                .withIamRoleArn(serviceRole.getArn())
+                .withSubnetGroupName(groupName)
+                .withParameterGroupName(groupName)
+                .withSecurityGroupIds(securityGroups)
+                .withSSESpecification(new SSESpecification().withEnabled(dax.getSseEnabled()))
+                .withClusterEndpointEncryptionType(dax.getClusterEndpointEncryptionType())
+                .withTags(TagUtil.hermanToDaxTags(tags)));
+            cluster = waitForCluster(clusterName);
+        } else {
+            cluster = waitForCluster(clusterName);
+            updateCluster(cluster, dax, groupName, securityGroups);
+            client.tagResource(new TagResourceRequest()
+                .withResourceName(cluster.getClusterArn())
+                .withTags(TagUtil.hermanToDaxTags(tags)));
+        }
+
+        String scheme = "TLS".equals(cluster.getClusterEndpointEncryptionType()) ? "daxs://" : "dax://";
+        dax.setEndpoint(scheme + cluster.getClusterDiscoveryEndpoint().getAddress() + ":"
+            + cluster.getClusterDiscoveryEndpoint().getPort());
+        buildLogger.addLogEntry("... DAX endpoint: " + dax.getEndpoint());
+
+        if (taskRoleName != null) {
+            iamBroker.putRolePolicy(iamClient, taskRoleName, appName + "-dax-policy",
+                String.format(getPolicy("/iam/dax-access-policy.json"), cluster.getClusterArn()));
+        } else {
+            buildLogger.addLogEntry("... Using an existing task role, make sure its policy allows dax access to "
+                + cluster.getClusterArn());
+        }
+        return dax;
+    }
+
+    /**
+     * DAX cluster names are limited to 20 characters, so long app names are cut down
+     */
+    static String defaultClusterName(String appName) {
+        return ManagedClusterUtil.truncateName(appName, MAX_CLUSTER_NAME_LENGTH);
+    }
+
+    private void brokerSubnetGroup(String groupName, List<String> subnets) {
+        Set<String> currentSubnets;
+        try {
+            currentSubnets = client.describeSubnetGroups(new DescribeSubnetGroupsRequest()
+                .withSubnetGroupNames(groupName)).getSubnetGroups().get(0).getSubnets().stream()
+                .map(Subnet::getSubnetIdentifier)
+                .collect(Collectors.toSet());
+        } catch (SubnetGroupNotFoundException e) {
+            currentSubnets = null;
+        }
+        ManagedClusterUtil.brokerSubnetGroup("DAX subnet group", groupName, subnets, currentSubnets,
+            () -> client.createSubnetGroup(new CreateSubnetGroupRequest()
+                .withSubnetGroupName(groupName)
+                .withDescription("Herman managed subnet group")
+                .withSubnetIds(subnets)),
+            () -> client.updateSubnetGroup(new UpdateSubnetGroupRequest()
+                .withSubnetGroupName(groupName)
+                .withSubnetIds(subnets)),
+            buildLogger);
+    }
+
+    private void brokerParameterGroup(String groupName, DaxCluster dax) {
+        try {
+            client.describeParameterGroups(new DescribeParameterGroupsRequest().withParameterGroupNames(groupName));
+        } catch (ParameterGroupNotFoundException e) {
+            buildLogger.addLogEntry("... Creating DAX parameter group " + groupName);
+            client.createParameterGroup(new CreateParameterGroupRequest()
+                .withParameterGroupName(groupName)
+                .withDescription("Herman managed parameter group"));
+        }
+
+        Map<String, String> desired = new HashMap<>();
+        if (dax.getQueryTtlMillis() != null) {
+            desired.put(QUERY_TTL, dax.getQueryTtlMillis().toString());
+        }
+        if (dax.getRecordTtlMillis() != null) {
+            desired.put(RECORD_TTL, dax.getRecordTtlMillis().toString());
+        }
+        if (desired.isEmpty()) {
+            return;
+        }
+
+        Map<String, String> current = new HashMap<>();
+        String nextToken = null;
+        do {
+            DescribeParametersResult result = client.describeParameters(new DescribeParametersRequest()
+                .withParameterGroupName(groupName)
+                .withNextToken(nextToken));
+            for (Parameter parameter : result.getParameters()) {
+                current.put(parameter.getParameterName(), parameter.getParameterValue());
+            }
+            nextToken = result.getNextToken();
+        } while (nextToken != null);
+
+        List<ParameterNameValue> changes = desired.entrySet().stream()
+            .filter(entry -> !Objects.equals(entry.getValue(), current.get(entry.getKey())))
+            .map(entry -> new ParameterNameValue().withParameterName(entry.getKey()).withParameterValue(entry.getValue()))
+            .collect(Collectors.toList());
+        if (!changes.isEmpty()) {
+            buildLogger.addLogEntry("... Updating DAX parameters " + changes);
+            client.updateParameterGroup(new UpdateParameterGroupRequest()
+                .withParameterGroupName(groupName)
+                .withParameterNameValues(changes));
+        }
+    }
+
+    private void updateCluster(Cluster cluster, DaxCluster dax, String groupName, List<String> securityGroups) {
+        String clusterName = cluster.getClusterName();
+        if (!Objects.equals(dax.getNodeType(), cluster.getNodeType())) {
+            buildLogger.addErrorLogEntry(String.format("DAX node type can't be changed in place (%s to %s), "
+                + "skipping. Use a new cluster name to replace the cluster.", cluster.getNodeType(), dax.getNodeType()));
+        }
+
+        Set<String> currentGroups = cluster.getSecurityGroups().stream()
+            .map(SecurityGroupMembership::getSecurityGroupIdentifier)
+            .collect(Collectors.toSet());
+        String currentParameterGroup = cluster.getParameterGroup() != null
+            ? cluster.getParameterGroup().getParameterGroupName() : null;
+        if (!currentGroups.equals(new HashSet<>(securityGroups)) || !groupName.equals(currentParameterGroup)) {
+            buildLogger.addLogEntry("... Updating DAX cluster security groups and parameter group");
+            client.updateCluster(new UpdateClusterRequest()
+                .withClusterName(clusterName)
+                .withSecurityGroupIds(securityGroups)
+                .withParameterGroupName(groupName));
+            waitForCluster(clusterName);
+        }
+
+        int currentNodes = cluster.getTotalNodes();
+        if (dax.getReplicationFactor() > currentNodes) {
+            buildLogger.addLogEntry(String.format("... Adding DAX nodes: %d to %d", currentNodes,
+                dax.getReplicationFactor()));
+            client.increaseReplicationFactor(new IncreaseReplicationFactorRequest()
+                .withClusterName(clusterName)
+                .withNewReplicationFactor(dax.getReplicationFactor()));
+            waitForCluster(clusterName);
+        } else if (dax.getReplicationFactor() < currentNodes) {
+            buildLogger.addLogEntry(String.format("... Removing DAX nodes: %d to %d", currentNodes,
+                dax.getReplicationFactor()));
+            client.decreaseReplicationFactor(new DecreaseReplicationFactorRequest()
+                .withClusterName(clusterName)
+                .withNewReplicationFactor(dax.getReplicationFactor()));
+            waitForCluster(clusterName);
+        }
+    }
+
+    private Cluster getCluster(String clusterName) {
+        try {
+            return client.describeClusters(new DescribeClustersRequest().withClusterNames(clusterName))
+                .getClusters().get(0);
+        } catch (ClusterNotFoundException e) {
+            return null;
+        }
+    }
+
+    Cluster waitForCluster(String clusterName) {
+        return ManagedClusterUtil.waitUntilAvailable("DAX cluster", clusterName, () -> getCluster(clusterName),
+            Cluster::getStatus, pollerFactory.get(), waitBudgetMillis, buildLogger);
+    }
+
+    private String getPolicy(String resource) {
+        try {
+            return IOUtils.toString(getClass().getResourceAsStream(resource));
+        } catch (IOException e) {
+            throw new AwsExecException("Error getting policy " + resource, e);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.broker.dax;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DAX cluster fronting the app's DynamoDB tables. Node type and encryption at rest are fixed once the
+ * cluster exists; everything else is updated in place.
+ */
+public class DaxCluster {
+
+    private String clusterName;
+    private String nodeType = "dax.t3.small";
+    private Integer replicationFactor = 3;
+    private Boolean sseEnabled = true;
+    private String clusterEndpointEncryptionType = "TLS";
+    private Long recordTtlMillis;
+    private Long queryTtlMillis;
+    private List<String> additionalSecurityGroups = new ArrayList<>();
+    private String endpointInjectName = "DAX_ENDPOINT";
+    private String endpoint;
+
+    public String getClusterName() {
+        return clusterName;
+    }
+
+    public void setClusterName(String clusterName) {
+        this.clusterName = clusterName;
+    }
+
+    public String getNodeType() {
+        return nodeType;
+    }
+
+    public void setNodeType(String nodeType) {
+        this.nodeType = nodeType;
+    }
+
+    public Integer getReplicationFactor() {
+        return replicationFactor;
+    }
+
+    public void setReplicationFactor(Integer replicationFactor) {
+        this.replicationFactor = replicationFactor;
+    }
+
+    public Boolean getSseEnabled() {
+        return sseEnabled;
+    }
+
+    public void setSseEnabled(Boolean sseEnabled) {
+        this.sseEnabled = sseEnabled;
+    }
+
+    public String getClusterEndpointEncryptionType() {
+        return clusterEndpointEncryptionType;
+    }
+
+    public void setClusterEndpointEncryptionType(String clusterEndpointEncryptionType) {
+        this.clusterEndpointEncryptionType = clusterEndpointEncryptionType;
+    }
+
+    public Long getRecordTtlMillis() {
+        return recordTtlMillis;
+    }
+
+    public void setRecordTtlMillis(Long recordTtlMillis) {
+        this.recordTtlMillis = recordTtlMillis;
+    }
+
+    public Long getQueryTtlMillis() {
+        return queryTtlMillis;
+    }
+
+    public void setQueryTtlMillis(Long queryTtlMillis) {
+        this.queryTtlMillis = queryTtlMillis;
+    }
+
+    public List<String> getAdditionalSecurityGroups() {
+        return additionalSecurityGroups;
+    }
+
+    public void setAdditionalSecurityGroups(List<String> additionalSecurityGroups) {
+        this.additionalSecurityGroups = additionalSecurityGroups;
+    }
+
+    public String getEndpointInjectName() {
+        return endpointInjectName;
+    }
+
+    public void setEndpointInjectName(String endpointInjectName) {
+        this.endpointInjectName = endpointInjectName;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    @Override
+    public String toString() {
+        return "DaxCluster{" +
+            "clusterName='" + clusterName + '\'' +
+            ", nodeType='" + nodeType + '\'' +
+            ", replicationFactor=" + replicationFactor +
+            ", sseEnabled=" + sseEnabled +
+            ", clusterEndpointEncryptionType='" + clusterEndpointEncryptionType + '\'' +
+            ", recordTtlMillis=" + recordTtlMillis +
+            ", queryTtlMillis=" + queryTtlMillis +
+            ", additionalSecurityGroups=" + additionalSecurityGroups +
+            ", endpointInjectName='" + endpointInjectName + '\'' +
+            ", endpoint='" + endpoint + '\'' +
+            '}';
+    }
+}
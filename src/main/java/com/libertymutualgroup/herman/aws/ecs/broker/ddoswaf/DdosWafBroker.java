@@ -22,8 +22,8 @@ import com.amazonaws.services.lambda.model.InvocationType;
 import com.amazonaws.services.lambda.model.InvokeRequest;
 import com.amazonaws.services.lambda.model.InvokeResult;
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.util.HermanJackson;
 import java.nio.charset.Charset;
 import java.util.List;
 import org.apache.commons.lang3.StringUtils;
@@ -49,7 +49,7 @@ public class DdosWafBroker {
                .withAppName(appName)
                .withElbResourceArn(elbArn)
                .withRules(brokerConfiguration.getRules());
-            payload = new ObjectMapper().writeValueAsString(request);
+            payload = HermanJackson.jsonWriter().writeValueAsString(request);
         } catch (Exception ex) {
             throw new RuntimeException("Error getting DDoS / WAF Broker payload", ex);
         }
@@ -67,8 +67,7 @@ public class DdosWafBroker {
             String brokerUpdatesJson = new String(invokeResult.getPayload().array(), Charset.forName("UTF-8"));
             List<String> updates;
             try {
-                updates = new ObjectMapper()
-                    .readValue(brokerUpdatesJson, new TypeReference<List<String>>() {});
+                updates = HermanJackson.jsonReader(new TypeReference<List<String>>() {}).readValue(brokerUpdatesJson);
             } catch (Exception e) {
                 throw new RuntimeException("Unable to parse broker updates from: " + brokerUpdatesJson, e);
             }
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.broker.dynamodb;
+
+import java.util.Objects;
+
+/**
+ * Target tracking auto scaling for a PROVISIONED table or index. Reads and writes are scaled independently;
+ * a dimension without min and max capacity keeps its fixed provisioned throughput.
+ */
+public class DynamoDBAutoScaling {
+
+    private Integer minReadCapacity;
+    private Integer maxReadCapacity;
+    private Integer minWriteCapacity;
+    private Integer maxWriteCapacity;
+    private Double targetUtilization = 70.0;
+    private Integer scaleInCooldown = 60;
+    private Integer scaleOutCooldown = 60;
+
+    public Integer getMinReadCapacity() {
+        return minReadCapacity;
+    }
+
+    public void setMinReadCapacity(Integer minReadCapacity) {
+        this.minReadCapacity = minReadCapacity;
+    }
+
+    public Integer getMaxReadCapacity() {
+        return maxReadCapacity;
+    }
+
+    public void setMaxReadCapacity(Integer maxReadCapacity) {
+        this.maxReadCapacity = maxReadCapacity;
+    }
+
+    public Integer getMinWriteCapacity() {
+        return minWriteCapacity;
+    }
+
+    public void setMinWriteCapacity(Integer minWriteCapacity) {
+        this.minWriteCapacity = minWriteCapacity;
+    }
+
+    public Integer getMaxWriteCapacity() {
+        return maxWriteCapacity;
+    }
+
+    public void setMaxWriteCapacity(Integer maxWriteCapacity) {
+        this.maxWriteCapacity = maxWriteCapacity;
+    }
+
+    public Double getTargetUtilization() {
+        return targetUtilization;
+    }
+
+    public void setTargetUtilization(Double targetUtilization) {
+        this.targetUtilization = targetUtilization;
+    }
+
+    public Integer getScaleInCooldown() {
+        return scaleInCooldown;
+    }
+
+    public void setScaleInCooldown(Integer scaleInCooldown) {
+        this.scaleInCooldown = scaleInCooldown;
+    }
+
+    public Integer getScaleOutCooldown() {
+        return scaleOutCooldown;
+    }
+
+    public void setScaleOutCooldown(Integer scaleOutCooldown) {
+        this.scaleOutCooldown = scaleOutCooldown;
+    }
+
+    boolean scalesReads() {
+        return minReadCapacity != null && maxReadCapacity != null;
+    }
+
+    boolean scalesWrites() {
+        return minWriteCapacity != null && maxWriteCapacity != null;
+    }
+
+    @Override
+    public String toString() {
+        return "DynamoDBAutoScaling{" +
+            "minReadCapacity=" + minReadCapacity +
+            ", maxReadCapacity=" + maxReadCapacity +
+            ", minWriteCapacity=" + minWriteCapacity +
+            ", maxWriteCapacity=" + maxWriteCapacity +
+            ", targetUtilization=" + targetUtilization +
+            ", scaleInCooldown=" + scaleInCooldown +
+            ", scaleOutCooldown=" + scaleOutCooldown +
+            '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        DynamoDBAutoScaling that = (DynamoDBAutoScaling) o;
+        return Objects.equals(minReadCapacity, that.minReadCapacity) &&
+            Objects.equals(maxReadCapacity, that.maxReadCapacity) &&
+            Objects.equals(minWriteCapacity, that.minWriteCapacity) &&
+            Objects.equals(maxWriteCapacity, that.maxWriteCapacity) &&
+            Objects.equals(targetUtilization, that.targetUtilization) &&
+            Objects.equals(scaleInCooldown, that.scaleInCooldown) &&
+            Objects.equals(scaleOutCooldown, that.scaleOutCooldown);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(minReadCapacity, maxReadCapacity, minWriteCapacity, maxWriteCapacity, targetUtilization,
+            scaleInCooldown, scaleOutCooldown);
+    }
+}
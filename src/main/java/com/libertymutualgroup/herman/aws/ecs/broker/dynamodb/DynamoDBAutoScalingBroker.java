@@ -0,0 +1,217 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.broker.dynamodb;
+
+import com.amazonaws.services.applicationautoscaling.AWSApplicationAutoScaling;
+import com.amazonaws.services.applicationautoscaling.model.DeregisterScalableTargetRequest;
+import com.amazonaws.services.applicationautoscaling.model.DescribeScalableTargetsRequest;
+import com.amazonaws.services.applicationautoscaling.model.DescribeScalableTargetsResult;
+import com.amazonaws.services.applicationautoscaling.model.DescribeScalingPoliciesRequest;
+import com.amazonaws.services.applicationautoscaling.model.DescribeScalingPoliciesResult;
+import com.amazonaws.services.applicationautoscaling.model.MetricType;
+import com.amazonaws.services.applicationautoscaling.model.PolicyType;
+import com.amazonaws.services.applicationautoscaling.model.PredefinedMetricSpecification;
+import com.amazonaws.services.applicationautoscaling.model.PutScalingPolicyRequest;
+import com.amazonaws.services.applicationautoscaling.model.RegisterScalableTargetRequest;
+import com.amazonaws.services.applicationautoscaling.model.ScalableDimension;
+import com.amazonaws.services.applicationautoscaling.model.ScalableTarget;
+import com.amazonaws.services.applicationautoscaling.model.ScalingPolicy;
+import com.amazonaws.services.applicationautoscaling.model.ServiceNamespace;
+import com.amazonaws.services.applicationautoscaling.model.TargetTrackingScalingPolicyConfiguration;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndex;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Registers Application Auto Scaling targets and target tracking policies for a table and its global indexes,
+ * changing only what differs. Targets that are no longer configured are removed only when Herman created them,
+ * which is marked by its target tracking policy, so scaling set up outside of Herman is left alone.
+ */
+public class DynamoDBAutoScalingBroker {
+
+    private static final String POLICY_SUFFIX = "-herman-target-tracking";
+
+    private HermanLogger buildLogger;
+    private AWSApplicationAutoScaling client;
+
+    public DynamoDBAutoScalingBroker(HermanLogger buildLogger, AWSApplicationAutoScaling client) {
+        this.buildLogger = buildLogger;
+        this.client = client;
+    }
+
+    public void brokerAutoScaling(DynamoDBTable table) {
+        List<String> resourceIds = new ArrayList<>();
+        List<ScalingTarget> desiredTargets = new ArrayList<>();
+        String tableResourceId = "table/" + table.getTableName();
+        resourceIds.add(tableResourceId);
+        addTargets(desiredTargets, table, table.getAutoScaling(), tableResourceId,
+            ScalableDimension.DynamodbTableReadCapacityUnits, ScalableDimension.DynamodbTableWriteCapacityUnits);
+        if (table.getGlobalSecondaryIndexes() != null) {
+            for (GlobalSecondaryIndex index : table.getGlobalSecondaryIndexes()) {
+                String indexResourceId = tableResourceId + "/index/" + index.getIndexName();
+                resourceIds.add(indexResourceId);
+                addTargets(desiredTargets, table, table.getAutoScaling(index.getIndexName()), indexResourceId,
+                    ScalableDimension.DynamodbIndexReadCapacityUnits, ScalableDimension.DynamodbIndexWriteCapacityUnits);
+            }
+        }
+
+        Map<String, ScalableTarget> currentTargets = getCurrentTargets(resourceIds);
+        for (ScalingTarget target : desiredTargets) {
+            ScalableTarget current = currentTargets.remove(target.key());
+            if (current == null || !Objects.equals(current.getMinCapacity(), target.minCapacity)
+                || !Objects.equals(current.getMaxCapacity(), target.maxCapacity)) {
+                buildLogger.addLogEntry(String.format("... Registering auto scaling for %s %s: %d - %d", target.resourceId,
+                    target.dimension, target.minCapacity, target.maxCapacity));
+                client.registerScalableTarget(new RegisterScalableTargetRequest()
+                    .withServiceNamespace(ServiceNamespace.Dynamodb)
+                    .withResourceId(target.resourceId)
+                    .withScalableDimension(target.dimension)
+                    .withMinCapacity(target.minCapacity)
+                    .withMaxCapacity(target.maxCapacity));
+            }
+            brokerPolicy(target);
+        }
+
+        for (ScalableTarget stale : currentTargets.values()) {
+            if (!isHermanManaged(stale)) {
+                buildLogger.addLogEntry(String.format("... Leaving auto scaling for %s %s, it is not managed by Herman",
+                    stale.getResourceId(), stale.getScalableDimension()));
+                continue;
+            }
+            buildLogger.addLogEntry(String.format("... Removing auto scaling for %s %s", stale.getResourceId(),
+                stale.getScalableDimension()));
+            client.deregisterScalableTarget(new DeregisterScalableTargetRequest()
+                .withServiceNamespace(ServiceNamespace.Dynamodb)
+                .withResourceId(stale.getResourceId())
+                .withScalableDimension(stale.getScalableDimension()));
+        }
+    }
+
+    private void addTargets(List<ScalingTarget> targets, DynamoDBTable table, DynamoDBAutoScaling autoScaling,
+        String resourceId, ScalableDimension readDimension, ScalableDimension writeDimension) {
+        if (table.isPayPerRequest() || autoScaling == null) {
+            return;
+        }
+        if (autoScaling.scalesReads()) {
+            targets.add(new ScalingTarget(resourceId, readDimension, autoScaling.getMinReadCapacity(),
+                autoScaling.getMaxReadCapacity(), MetricType.DynamoDBReadCapacityUtilization, autoScaling));
+        }
+        if (autoScaling.scalesWrites()) {
+            targets.add(new ScalingTarget(resourceId, writeDimension, autoScaling.getMinWriteCapacity(),
+                autoScaling.getMaxWriteCapacity(), MetricType.DynamoDBWriteCapacityUtilization, autoScaling));
+        }
+    }
+
+    private Map<String, ScalableTarget> getCurrentTargets(List<String> resourceIds) {
+        Map<String, ScalableTarget> targets = new HashMap<>();
+        String nextToken = null;
+        do {
+            DescribeScalableTargetsResult result = client.describeScalableTargets(new DescribeScalableTargetsRequest()
+                .withServiceNamespace(ServiceNamespace.Dynamodb)
+                .withResourceIds(resourceIds)
+                .withNextToken(nextToken));
+            for (ScalableTarget target : result.getScalableTargets()) {
+                targets.put(target.getResourceId() + ":" + target.getScalableDimension(), target);
+            }
+            nextToken = result.getNextToken();
+        } while (nextToken != null);
+        return targets;
+    }
+
+    private boolean isHermanManaged(ScalableTarget target) {
+        String nextToken = null;
+        do {
+            DescribeScalingPoliciesResult result = client.describeScalingPolicies(new DescribeScalingPoliciesRequest()
+                .withServiceNamespace(ServiceNamespace.Dynamodb)
+                .withResourceId(target.getResourceId())
+                .withScalableDimension(target.getScalableDimension())
+                .withNextToken(nextToken));
+            if (result.getScalingPolicies().stream()
+                .anyMatch(policy -> policy.getPolicyName() != null && policy.getPolicyName().endsWith(POLICY_SUFFIX))) {
+                return true;
+            }
+            nextToken = result.getNextToken();
+        } while (nextToken != null);
+        return false;
+    }
+
+    private void brokerPolicy(ScalingTarget target) {
+        String policyName = target.dimension.toString().replace(':', '-') + POLICY_SUFFIX;
+        TargetTrackingScalingPolicyConfiguration desired = new TargetTrackingScalingPolicyConfiguration()
+            .withPredefinedMetricSpecification(new PredefinedMetricSpecification().withPredefinedMetricType(target.metricType))
+            .withTargetValue(target.autoScaling.getTargetUtilization())
+            .withScaleInCooldown(target.autoScaling.getScaleInCooldown())
+            .withScaleOutCooldown(target.autoScaling.getScaleOutCooldown());
+
+        List<ScalingPolicy> policies = client.describeScalingPolicies(new DescribeScalingPoliciesRequest()
+            .withServiceNamespace(ServiceNamespace.Dynamodb)
+            .withResourceId(target.resourceId)
+            .withScalableDimension(target.dimension)
+            .withPolicyNames(policyName)).getScalingPolicies();
+        if (!policies.isEmpty() && isSamePolicy(desired, policies.get(0).getTargetTrackingScalingPolicyConfiguration())) {
+            return;
+        }
+
+        buildLogger.addLogEntry(String.format("... Setting %s target to %s%% for %s", target.metricType,
+            target.autoScaling.getTargetUtilization(), target.resourceId));
+        client.putScalingPolicy(new PutScalingPolicyRequest()
+            .withPolicyName(policyName)
+            .withPolicyType(PolicyType.TargetTrackingScaling)
+            .withServiceNamespace(ServiceNamespace.Dynamodb)
+            .withResourceId(target.resourceId)
+            .withScalableDimension(target.dimension)
+            .withTargetTrackingScalingPolicyConfiguration(desired));
+    }
+
+    private boolean isSamePolicy(TargetTrackingScalingPolicyConfiguration desired,
+        TargetTrackingScalingPolicyConfiguration current) {
+        return current != null
+            && current.getPredefinedMetricSpecification() != null
+            && Objects.equals(desired.getPredefinedMetricSpecification().getPredefinedMetricType(),
+                current.getPredefinedMetricSpecification().getPredefinedMetricType())
+            && Objects.equals(desired.getTargetValue(), current.getTargetValue())
+            && Objects.equals(desired.getScaleInCooldown(), current.getScaleInCooldown())
+            && Objects.equals(desired.getScaleOutCooldown(), current.getScaleOutCooldown());
+    }
+
+    private static class ScalingTarget {
+        private final String resourceId;
+        private final ScalableDimension dimension;
+        private final Integer minCapacity;
+        private final Integer maxCapacity;
+        private final MetricType metricType;
+        private final DynamoDBAutoScaling autoScaling;
+
+        ScalingTarget(String resourceId, ScalableDimension dimension, Integer minCapacity, Integer maxCapacity,
+            MetricType metricType, DynamoDBAutoScaling autoScaling) {
+            this.resourceId = resourceId;
+            this.dimension = dimension;
+            this.minCapacity = minCapacity;
+            this.maxCapacity = maxCapacity;
+            this.metricType = metricType;
+            this.autoScaling = autoScaling;
+        }
+
+        String key() {
+            return resourceId + ":" + dimension;
+        }
+    }
+}
@@ -15,62 +15,122 @@
  */
 package com.libertymutualgroup.herman.aws.ecs.broker.dynamodb;
 
+import com.amazonaws.services.applicationautoscaling.AWSApplicationAutoScaling;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.model.AttributeDefinition;
+import com.amazonaws.services.dynamodbv2.model.BillingMode;
 import com.amazonaws.services.dynamodbv2.model.CreateGlobalSecondaryIndexAction;
 import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
-import com.amazonaws.services.dynamodbv2.model.CreateTableResult;
 import com.amazonaws.services.dynamodbv2.model.DeleteGlobalSecondaryIndexAction;
 import com.amazonaws.services.dynamodbv2.model.DescribeTableResult;
 import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndex;
 import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndexDescription;
 import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndexUpdate;
+import com.amazonaws.services.dynamodbv2.model.IndexStatus;
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughput;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputDescription;
 import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.amazonaws.services.dynamodbv2.model.TableStatus;
 import com.amazonaws.services.dynamodbv2.model.TagResourceRequest;
 import com.amazonaws.services.dynamodbv2.model.UpdateGlobalSecondaryIndexAction;
 import com.amazonaws.services.dynamodbv2.model.UpdateTableRequest;
-import com.amazonaws.services.dynamodbv2.model.UpdateTableResult;
-import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.aws.tags.HermanTag;
 import com.libertymutualgroup.herman.aws.tags.TagUtil;
 import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.logging.PrefixedLogger;
+import com.libertymutualgroup.herman.util.AdaptivePoller;
+import com.libertymutualgroup.herman.util.ConcurrencyUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class DynamoDBBroker {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DynamoDBBroker.class);
-    private static final String INTERRUPTED_WHILE_POLLING = "Interrupted while polling";
+    private static final int MAX_CONCURRENT_TABLES = 5;
+    private static final long DEFAULT_WAIT_BUDGET_MS = TimeUnit.MINUTES.toMillis(30);
+    private static final long BACKFILL_PROGRESS_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long MIN_POLLING_INTERVAL_MS = 2000;
+    private static final long MAX_POLLING_INTERVAL_MS = 30000;
+    private static final double POLLING_GROWTH_FACTOR = 1.5;
+    private static final long BILLING_MODE_SWITCH_INTERVAL_MS = TimeUnit.HOURS.toMillis(24);
 
     private HermanLogger buildLogger;
     private DynamoAppDefinition pushDefinition;
+    private long waitBudgetMillis;
+    private Supplier<AdaptivePoller> pollerFactory;
 
     /**
      * Default constructor
      */
     public DynamoDBBroker(HermanLogger buildLogger, DynamoAppDefinition pushDefinition) {
+        this(buildLogger, pushDefinition, DEFAULT_WAIT_BUDGET_MS);
+    }
+
+    /**
+     * @param waitBudgetMillis how long to wait for each table to settle after a change, e.g. a GSI backfill
+     */
+    public DynamoDBBroker(HermanLogger buildLogger, DynamoAppDefinition pushDefinition, long waitBudgetMillis) {
+        this(buildLogger, pushDefinition, waitBudgetMillis,
+            () -> new AdaptivePoller(MIN_POLLING_INTERVAL_MS, MAX_POLLING_INTERVAL_MS, POLLING_GROWTH_FACTOR));
+    }
+
+    public DynamoDBBroker(HermanLogger buildLogger, DynamoAppDefinition pushDefinition, long waitBudgetMillis,
+        Supplier<AdaptivePoller> pollerFactory) {
         this.buildLogger = buildLogger;
         this.pushDefinition = pushDefinition;
+        this.waitBudgetMillis = waitBudgetMillis > 0 ? waitBudgetMillis : DEFAULT_WAIT_BUDGET_MS;
+        this.pollerFactory = pollerFactory;
+    }
+
+    public void createDynamoDBTables(AmazonDynamoDB client) {
+        createDynamoDBTables(client, null);
     }
 
     /**
-     * Entry point
+     * Entry point. Tables are independent of each other, so they are brokered concurrently.
+     *
+     * @param autoScalingClient used to manage table and index auto scaling, may be null if no table uses it
      */
-    public void createDynamoDBTables(AmazonDynamoDB client) {
-        for (DynamoDBTable table : pushDefinition.getDynamoDBTables()) {
+    public void createDynamoDBTables(AmazonDynamoDB client, AWSApplicationAutoScaling autoScalingClient) {
+        List<DynamoDBTable> tables = pushDefinition.getDynamoDBTables();
+        if (tables.isEmpty()) {
+            return;
+        }
+        for (DynamoDBTable table : tables) {
             // prefix table name with app name
             table.setTableName(pushDefinition.getAppName() + "-" + table.getTableName());
-            brokerDynamoDBTable(client, table);
         }
+        if (tables.size() == 1) {
+            brokerDynamoDBTable(client, autoScalingClient, tables.get(0));
+            return;
+        }
+
+        List<Runnable> tableBrokers = tables.stream()
+            .map(table -> (Runnable) () -> new DynamoDBBroker(new PrefixedLogger(buildLogger, table.getTableName()),
+                pushDefinition, waitBudgetMillis, pollerFactory).brokerDynamoDBTable(client, autoScalingClient, table))
+            .collect(Collectors.toList());
+        ConcurrencyUtil.runAll(tableBrokers, MAX_CONCURRENT_TABLES);
     }
 
     /**
      * Creates and updates tables
      */
-    private void brokerDynamoDBTable(AmazonDynamoDB client, DynamoDBTable table) {
+    private void brokerDynamoDBTable(AmazonDynamoDB client, AWSApplicationAutoScaling autoScalingClient,
+        DynamoDBTable table) {
         buildLogger.addLogEntry("Brokering table: " + table.getTableName());
 
         // Check if table exists
@@ -82,25 +142,39 @@ public class DynamoDBBroker {
         }
 
         // Check if updating or new
+        boolean success;
         if (describeTableResult != null) {
-            updateTable(client, table, describeTableResult);
+            success = updateTable(client, autoScalingClient, table, describeTableResult.getTable());
         } else {
             // If the table is new, create it
-            createTable(client, table);
+            success = createTable(client, table);
+        }
+        if (success && !table.isPayPerRequest()) {
+            brokerAutoScaling(autoScalingClient, table);
         }
         if (this.pushDefinition.getTags() != null) {
             tagTable(client, table.getTableName(), this.pushDefinition.getTags());
         }
     }
 
+    private void brokerAutoScaling(AWSApplicationAutoScaling autoScalingClient, DynamoDBTable table) {
+        if (autoScalingClient != null) {
+            new DynamoDBAutoScalingBroker(buildLogger, autoScalingClient).brokerAutoScaling(table);
+        } else if (table.getAutoScaling() != null || table.getIndexAutoScaling() != null) {
+            buildLogger.addErrorLogEntry("Auto scaling is not available here, skipping it for " + table.getTableName());
+        }
+    }
+
     /**
      * Create a table
      */
-    private void createTable(AmazonDynamoDB client, DynamoDBTable table) {
+    private boolean createTable(AmazonDynamoDB client, DynamoDBTable table) {
         buildLogger.addLogEntry("Creating table: " + table.getTableName());
         buildLogger.addLogEntry("Table spec: \n" + table.toString());
+        boolean payPerRequest = table.isPayPerRequest();
         CreateTableRequest createTableRequest = new CreateTableRequest(table.getAttributes(), table.getTableName(),
-            table.getKeySchema(), table.getProvisionedThroughput());
+            table.getKeySchema(), payPerRequest ? null : table.getProvisionedThroughput())
+            .withBillingMode(payPerRequest ? BillingMode.PAY_PER_REQUEST : BillingMode.PROVISIONED);
 
         if (table.getSseSpecification() != null) {
             createTableRequest.setSSESpecification(table.getSseSpecification());
@@ -110,92 +184,220 @@ public class DynamoDBBroker {
             createTableRequest.setLocalSecondaryIndexes(table.getLocalSecondaryIndexes());
         }
         if (table.getGlobalSecondaryIndexes() != null) {
-            createTableRequest.setGlobalSecondaryIndexes(table.getGlobalSecondaryIndexes());
+            createTableRequest.setGlobalSecondaryIndexes(payPerRequest
+                ? table.getGlobalSecondaryIndexes().stream()
+                    .map(index -> index.clone().withProvisionedThroughput(null))
+                    .collect(Collectors.toList())
+                : table.getGlobalSecondaryIndexes());
         }
 
         if (table.getStreamSpecification() != null) {
             createTableRequest.setStreamSpecification(table.getStreamSpecification());
         }
 
-        CreateTableResult tableResult = client.createTable(createTableRequest);
+        client.createTable(createTableRequest);
 
-        boolean success = waitForIt(client, table.getTableName());
+        boolean success = waitForTable(client, table.getTableName(), true);
 
         if (!success) {
             buildLogger.addErrorLogEntry(
                 "Seems we failed to create the table " + table.getTableName() + " . Check AWS console");
         }
+        return success;
     }
 
     /**
      * Updates a table enumerating on updatable elements
      * Things that can't be updated are silently ignored
      */
-    private void updateTable(AmazonDynamoDB client, DynamoDBTable table, DescribeTableResult describeTableResult) {
-        // check if anything needs to be updated and if so, update
-        // Updates need to be done one by one and you have to wait for the update to finish before applying the next
-
+    private boolean updateTable(AmazonDynamoDB client, AWSApplicationAutoScaling autoScalingClient,
+        DynamoDBTable table, TableDescription currentTable) {
         buildLogger.addLogEntry("Checking for updates on: " + table.getTableName());
 
-        // Update attributes
-        if (!checkAndUpdateAttributes(client, table, describeTableResult)) {
-            buildLogger.addErrorLogEntry("Something has gone wrong updating attributes and is now abandoning updates");
-            return;
+        List<UpdateTableRequest> updates = planUpdates(table, currentTable);
+        for (int i = 0; i < updates.size(); i++) {
+            // Scaling targets have to go before the table can switch to on-demand capacity. A switch put off by
+            // the once a day limit leaves the table provisioned, so its auto scaling stays until then.
+            if (BillingMode.PAY_PER_REQUEST.toString().equals(updates.get(i).getBillingMode())) {
+                brokerAutoScaling(autoScalingClient, table);
+            }
+            client.updateTable(updates.get(i));
+            // Between steps, a new index only needs to have started backfilling; the last step waits for all of them
+            boolean lastUpdate = i == updates.size() - 1;
+            if (!waitForTable(client, table.getTableName(), lastUpdate)) {
+                buildLogger.addErrorLogEntry("Something went wrong updating table " + table.getTableName()
+                    + " and is now abandoning updates");
+                return false;
+            }
         }
+        return true;
+    }
 
-        // Update global indexes
-        if (!checkAndUpdateGlobalSecondaryIndex(client, table, describeTableResult)) {
-            buildLogger
-                .addErrorLogEntry("Something went wrong with updating index on table and is now abandoning updates");
-            return;
+    /**
+     * Groups the changes into as few UpdateTable calls as DynamoDB accepts: index deletes and creates need a
+     * call each, while table and index throughput changes share one. Deletes go first to free up the table.
+     * Dimensions managed by auto scaling keep whatever capacity auto scaling last set.
+     */
+    List<UpdateTableRequest> planUpdates(DynamoDBTable table, TableDescription currentTable) {
+        String tableName = table.getTableName();
+        Map<String, GlobalSecondaryIndex> desiredIndexes = new LinkedHashMap<>();
+        if (table.getGlobalSecondaryIndexes() != null) {
+            table.getGlobalSecondaryIndexes().forEach(index -> desiredIndexes.put(index.getIndexName(), index));
+        }
+        Map<String, GlobalSecondaryIndexDescription> currentIndexes = new LinkedHashMap<>();
+        if (currentTable.getGlobalSecondaryIndexes() != null) {
+            currentTable.getGlobalSecondaryIndexes().forEach(index -> currentIndexes.put(index.getIndexName(), index));
         }
 
-        // Update provision throughput
-        if (!checkAndUpdateProvisionedThroughputs(client, table, describeTableResult)) {
-            buildLogger.addErrorLogEntry(
-                "Something went wrong with updating provionedThroughput and is now abandoning updates");
-            return;
+        List<UpdateTableRequest> updates = new ArrayList<>();
+        for (String indexName : currentIndexes.keySet()) {
+            if (!desiredIndexes.containsKey(indexName)) {
+                buildLogger.addLogEntry("Deleting index " + indexName + " on " + tableName);
+                updates.add(new UpdateTableRequest().withTableName(tableName).withGlobalSecondaryIndexUpdates(
+                    new GlobalSecondaryIndexUpdate().withDelete(new DeleteGlobalSecondaryIndexAction().withIndexName(indexName))));
+            }
         }
 
-        // Update stream specification
-        if (!checkAndUpdateStreamSpecification(client, table, describeTableResult)) {
-            buildLogger.addErrorLogEntry(
-                "Something went wrong with updating streamSpecification and is now abandoning updates");
-            return;
+        boolean payPerRequest = table.isPayPerRequest();
+        boolean currentlyPayPerRequest = currentTable.getBillingModeSummary() != null
+            && BillingMode.PAY_PER_REQUEST.toString().equals(currentTable.getBillingModeSummary().getBillingMode());
+        if (payPerRequest && !currentlyPayPerRequest) {
+            Date lastSwitch = currentTable.getBillingModeSummary() != null
+                ? currentTable.getBillingModeSummary().getLastUpdateToPayPerRequestDateTime() : null;
+            if (lastSwitch != null && System.currentTimeMillis() - lastSwitch.getTime() < BILLING_MODE_SWITCH_INTERVAL_MS) {
+                buildLogger.addErrorLogEntry("Table " + tableName + " was switched to on-demand capacity within the last "
+                    + "24 hours, which is as often as DynamoDB allows. Leaving it provisioned for now.");
+            } else {
+                buildLogger.addLogEntry("Switching " + tableName + " to on-demand capacity");
+                updates.add(new UpdateTableRequest().withTableName(tableName).withBillingMode(BillingMode.PAY_PER_REQUEST));
+            }
+        } else if (!payPerRequest && currentlyPayPerRequest) {
+            // Going back to provisioned needs throughput for the table and every existing index in the same call
+            buildLogger.addLogEntry("Switching " + tableName + " to provisioned capacity");
+            List<GlobalSecondaryIndexUpdate> indexThroughputUpdates = desiredIndexes.values().stream()
+                .filter(index -> currentIndexes.containsKey(index.getIndexName()))
+                .map(index -> new GlobalSecondaryIndexUpdate().withUpdate(new UpdateGlobalSecondaryIndexAction()
+                    .withIndexName(index.getIndexName())
+                    .withProvisionedThroughput(index.getProvisionedThroughput())))
+                .collect(Collectors.toList());
+            UpdateTableRequest modeUpdate = new UpdateTableRequest()
+                .withTableName(tableName)
+                .withBillingMode(BillingMode.PROVISIONED)
+                .withProvisionedThroughput(table.getProvisionedThroughput());
+            if (!indexThroughputUpdates.isEmpty()) {
+                modeUpdate.setGlobalSecondaryIndexUpdates(indexThroughputUpdates);
+            }
+            updates.add(modeUpdate);
+        } else if (!payPerRequest) {
+            UpdateTableRequest throughputUpdate = new UpdateTableRequest().withTableName(tableName);
+            ProvisionedThroughput tableThroughput = unmanagedThroughput(table.getProvisionedThroughput(),
+                currentTable.getProvisionedThroughput(), table.getAutoScaling());
+            if (isThroughputDifferent(tableThroughput, currentTable.getProvisionedThroughput())) {
+                buildLogger.addLogEntry("Updating Provisioned Throughput");
+                throughputUpdate.setProvisionedThroughput(tableThroughput);
+            }
+            List<GlobalSecondaryIndexUpdate> indexThroughputUpdates = new ArrayList<>();
+            for (GlobalSecondaryIndex index : desiredIndexes.values()) {
+                GlobalSecondaryIndexDescription current = currentIndexes.get(index.getIndexName());
+                if (current == null) {
+                    continue;
+                }
+                ProvisionedThroughput indexThroughput = unmanagedThroughput(index.getProvisionedThroughput(),
+                    current.getProvisionedThroughput(), table.getAutoScaling(index.getIndexName()));
+                if (isThroughputDifferent(indexThroughput, current.getProvisionedThroughput())) {
+                    buildLogger.addLogEntry("Updating index " + index.getIndexName() + " throughput on " + tableName);
+                    indexThroughputUpdates.add(new GlobalSecondaryIndexUpdate().withUpdate(new UpdateGlobalSecondaryIndexAction()
+                        .withIndexName(index.getIndexName())
+                        .withProvisionedThroughput(indexThroughput)));
+                }
+            }
+            if (!indexThroughputUpdates.isEmpty()) {
+                throughputUpdate.setGlobalSecondaryIndexUpdates(indexThroughputUpdates);
+            }
+            if (throughputUpdate.getProvisionedThroughput() != null || throughputUpdate.getGlobalSecondaryIndexUpdates() != null) {
+                updates.add(throughputUpdate);
+            }
         }
 
-    }
+        boolean indexCreated = false;
+        for (GlobalSecondaryIndex index : desiredIndexes.values()) {
+            if (!currentIndexes.containsKey(index.getIndexName())) {
+                buildLogger.addLogEntry("Creating index " + index.getIndexName() + " on " + tableName);
+                // New index key attributes can only be defined together with the index
+                updates.add(new UpdateTableRequest()
+                    .withTableName(tableName)
+                    .withAttributeDefinitions(keyAttributeDefinitions(table, currentTable, index))
+                    .withGlobalSecondaryIndexUpdates(new GlobalSecondaryIndexUpdate().withCreate(new CreateGlobalSecondaryIndexAction()
+                        .withIndexName(index.getIndexName())
+                        .withKeySchema(index.getKeySchema())
+                        .withProjection(index.getProjection())
+                        .withProvisionedThroughput(payPerRequest ? null : index.getProvisionedThroughput()))));
+                indexCreated = true;
+            }
+        }
+        if (!indexCreated && table.getAttributes() != null && currentTable.getAttributeDefinitions() != null
+            && (!table.getAttributes().containsAll(currentTable.getAttributeDefinitions())
+            || !currentTable.getAttributeDefinitions().containsAll(table.getAttributes()))) {
+            buildLogger.addLogEntry("Attribute definitions differ but only change with a new index, skipping");
+        }
 
-    private void tagTable(AmazonDynamoDB client, String tableName, List<HermanTag> tags) {
-        this.buildLogger.addLogEntry("...Setting tags on table " + tableName);
-        DescribeTableResult describeResult = client.describeTable(tableName);
-        TagResourceRequest tagRequest = new TagResourceRequest()
-            .withResourceArn(describeResult.getTable().getTableArn())
-            .withTags(TagUtil.hermanToDynamoTags(tags));
-        client.tagResource(tagRequest);
+        if (table.getStreamSpecification() != null && checkIfStreamIsDifferent(currentTable, table)) {
+            buildLogger.addLogEntry("Updating Stream Specification");
+            updates.add(new UpdateTableRequest().withTableName(tableName).withStreamSpecification(table.getStreamSpecification()));
+        }
+        return updates;
     }
 
     /**
-     * @return true = success / false = fail
+     * Definitions of the table's key attributes and the new index's, the only ones UpdateTable accepts
      */
-    private boolean checkAndUpdateStreamSpecification(AmazonDynamoDB client, DynamoDBTable table,
-        DescribeTableResult describeTableResult) {
+    private List<AttributeDefinition> keyAttributeDefinitions(DynamoDBTable table, TableDescription currentTable,
+        GlobalSecondaryIndex index) {
+        Map<String, AttributeDefinition> definitions = new LinkedHashMap<>();
+        Optional.ofNullable(currentTable.getAttributeDefinitions()).orElse(Collections.emptyList())
+            .forEach(definition -> definitions.put(definition.getAttributeName(), definition));
+        Optional.ofNullable(table.getAttributes()).orElse(Collections.emptyList())
+            .forEach(definition -> definitions.put(definition.getAttributeName(), definition));
+
+        List<AttributeDefinition> keyDefinitions = Stream.of(currentTable.getKeySchema(), index.getKeySchema())
+            .filter(Objects::nonNull)
+            .flatMap(List::stream)
+            .map(KeySchemaElement::getAttributeName)
+            .distinct()
+            .map(definitions::get)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+        return keyDefinitions.isEmpty() ? null : keyDefinitions;
+    }
 
-        if (describeTableResult.getTable().getStreamSpecification() == null && table.getStreamSpecification() == null) {
-            return true;
+    /**
+     * The desired throughput with auto scaled dimensions replaced by their current values
+     */
+    private ProvisionedThroughput unmanagedThroughput(ProvisionedThroughput desired,
+        ProvisionedThroughputDescription current, DynamoDBAutoScaling autoScaling) {
+        if (desired == null || current == null || autoScaling == null) {
+            return desired;
         }
+        return new ProvisionedThroughput(
+            autoScaling.scalesReads() ? current.getReadCapacityUnits() : desired.getReadCapacityUnits(),
+            autoScaling.scalesWrites() ? current.getWriteCapacityUnits() : desired.getWriteCapacityUnits());
+    }
 
-        if (checkIfStreamIsDifferent(describeTableResult.getTable(), table)) {
-            buildLogger.addLogEntry("Updating Stream Specification");
-            UpdateTableRequest updateTableRequest = new UpdateTableRequest();
-            updateTableRequest.setTableName(table.getTableName());
-            updateTableRequest.setStreamSpecification(table.getStreamSpecification());
-            client.updateTable(updateTableRequest);
-            return waitForIt(client, table.getTableName());
+    private boolean isThroughputDifferent(ProvisionedThroughput desired, ProvisionedThroughputDescription current) {
+        if (desired == null || current == null) {
+            return false;
         }
+        return !Objects.equals(desired.getReadCapacityUnits(), current.getReadCapacityUnits())
+            || !Objects.equals(desired.getWriteCapacityUnits(), current.getWriteCapacityUnits());
+    }
 
-        // no change
-        return true;
+    private void tagTable(AmazonDynamoDB client, String tableName, List<HermanTag> tags) {
+        this.buildLogger.addLogEntry("...Setting tags on table " + tableName);
+        DescribeTableResult describeResult = client.describeTable(tableName);
+        TagResourceRequest tagRequest = new TagResourceRequest()
+            .withResourceArn(describeResult.getTable().getTableArn())
+            .withTags(TagUtil.hermanToDynamoTags(tags));
+        client.tagResource(tagRequest);
     }
 
     private boolean checkIfStreamIsBeingEnabled(TableDescription currentTable, DynamoDBTable updatedTable) {
@@ -204,7 +406,7 @@ public class DynamoDBBroker {
     }
 
     private boolean checkIfStreamIsDifferent(TableDescription currentTable, DynamoDBTable updatedTable) {
-        if (updatedTable.getStreamSpecification().isStreamEnabled() == null && currentTable.getStreamSpecification().getStreamEnabled() == null) {
+        if (updatedTable.getStreamSpecification().isStreamEnabled() == null) {
             return false;
         }
 
@@ -222,186 +424,80 @@ public class DynamoDBBroker {
         // If stream is on, return if changed
         return !updatedTable.getStreamSpecification().isStreamEnabled()
             .equals(currentTable.getStreamSpecification().isStreamEnabled())
-            || !updatedTable.getStreamSpecification().getStreamViewType()
-            .equals(currentTable.getStreamSpecification().getStreamViewType());
+            || !Objects.equals(updatedTable.getStreamSpecification().getStreamViewType(),
+            currentTable.getStreamSpecification().getStreamViewType());
     }
 
     /**
-     * @return true = success / false = failed
+     * Waits with adaptive backoff until the table is ACTIVE and each index is ACTIVE, or, when
+     * untilIndexesActive is false, at least backfilling, which is enough to send the next update.
+     *
+     * @return false if the wait budget ran out
      */
-    private boolean checkAndUpdateProvisionedThroughputs(AmazonDynamoDB client, DynamoDBTable table,
-        DescribeTableResult describeTableResult) {
-        if (!table.getProvisionedThroughput().getReadCapacityUnits().equals(describeTableResult.getTable().getProvisionedThroughput().getReadCapacityUnits()) ||
-            !table.getProvisionedThroughput().getWriteCapacityUnits().equals(describeTableResult.getTable().getProvisionedThroughput().getWriteCapacityUnits())) {
-            buildLogger.addLogEntry("Updating Provisioned Throughput");
-            UpdateTableRequest updateTableRequest = new UpdateTableRequest();
-            updateTableRequest.setTableName(table.getTableName());
-            updateTableRequest.setProvisionedThroughput(table.getProvisionedThroughput());
-            client.updateTable(updateTableRequest);
-            return waitForIt(client, table.getTableName());
-        }
-
-        // no change
-        return true;
-    }
-
-    /**
-     * @return true if success / false if not
-     */
-    private boolean checkAndUpdateGlobalSecondaryIndex(AmazonDynamoDB client, DynamoDBTable table,
-        DescribeTableResult describeTableResult) {
-        List<GlobalSecondaryIndex> globalSecondaryIndexes = table.getGlobalSecondaryIndexes();
-        List<GlobalSecondaryIndexDescription> currentGlobalSecondaryIndexes = describeTableResult.getTable()
-            .getGlobalSecondaryIndexes();
-        List<GlobalSecondaryIndexUpdate> globalSecondaryIndexUpdate = new ArrayList<>();
-
-        if (globalSecondaryIndexes == null) {
-            globalSecondaryIndexes = new ArrayList<>();
-        }
-
-        if (currentGlobalSecondaryIndexes == null) {
-            currentGlobalSecondaryIndexes = new ArrayList<>();
-        }
-
-        for (GlobalSecondaryIndex globalSecondaryIndex : globalSecondaryIndexes) {
-            // Check for new
-            boolean found = false;
-            for (GlobalSecondaryIndexDescription current : currentGlobalSecondaryIndexes) {
-                if (current.getIndexName().equals(globalSecondaryIndex.getIndexName())) {
-                    // check for updates (only provisioned throughput is allowed)
-                    if (!current.getProvisionedThroughput().getReadCapacityUnits()
-                        .equals(globalSecondaryIndex.getProvisionedThroughput().getReadCapacityUnits()) ||
-                        !current.getProvisionedThroughput().getWriteCapacityUnits()
-                            .equals(globalSecondaryIndex.getProvisionedThroughput().getWriteCapacityUnits())) {
-                        // push update
-                        UpdateGlobalSecondaryIndexAction updateAction = new UpdateGlobalSecondaryIndexAction();
-                        updateAction.setIndexName(globalSecondaryIndex.getIndexName());
-                        updateAction.setProvisionedThroughput(globalSecondaryIndex.getProvisionedThroughput());
-                        buildLogger.addLogEntry("Updating index for " + table.getTableName());
-                        globalSecondaryIndexUpdate.add(new GlobalSecondaryIndexUpdate().withUpdate(updateAction));
-                    }
-                    found = true;
-                }
+    boolean waitForTable(AmazonDynamoDB client, String tableName, boolean untilIndexesActive) {
+        AdaptivePoller poller = pollerFactory.get();
+        long start = System.currentTimeMillis();
+        long lastProgressLog = start;
+        String lastState = null;
+        while (true) {
+            // the first pause also lets AWS react to the request
+            poller.sleep();
+
+            TableDescription table = client.describeTable(tableName).getTable();
+            String state = describeState(table);
+            long now = System.currentTimeMillis();
+            if (!state.equals(lastState)) {
+                buildLogger.addLogEntry("... Status: " + state);
+                poller.progressed();
+                lastState = state;
+                lastProgressLog = now;
+            } else if (state.contains("backfilling") && now - lastProgressLog >= BACKFILL_PROGRESS_INTERVAL_MS) {
+                buildLogger.addLogEntry(String.format("... Still %s after %d minutes", state,
+                    TimeUnit.MILLISECONDS.toMinutes(now - start)));
+                lastProgressLog = now;
             }
 
-            if (!found) {
-                buildLogger.addLogEntry("Creating index on " + table.getTableName());
-                CreateGlobalSecondaryIndexAction createAction = new CreateGlobalSecondaryIndexAction()
-                    .withIndexName(globalSecondaryIndex.getIndexName())
-                    .withKeySchema(globalSecondaryIndex.getKeySchema())
-                    .withProjection(globalSecondaryIndex.getProjection())
-                    .withProvisionedThroughput(globalSecondaryIndex.getProvisionedThroughput());
-                globalSecondaryIndexUpdate.add(new GlobalSecondaryIndexUpdate().withCreate(createAction));
+            if (isSettled(table, untilIndexesActive)) {
+                return true;
             }
-        }
-
-        // Now loop the other way to look for deletes
-        for (GlobalSecondaryIndexDescription current : currentGlobalSecondaryIndexes) {
-            boolean found = false;
-            for (GlobalSecondaryIndex globalSecondaryIndex : globalSecondaryIndexes) {
-                if (globalSecondaryIndex.getIndexName().equals(current.getIndexName())) {
-                    found = true;
-                }
-            }
-            if (!found) {
-                buildLogger.addLogEntry("Deleting index on " + table.getTableName());
-                DeleteGlobalSecondaryIndexAction deleteAction = new DeleteGlobalSecondaryIndexAction();
-                deleteAction.setIndexName(current.getIndexName());
-                globalSecondaryIndexUpdate.add(new GlobalSecondaryIndexUpdate().withDelete(deleteAction));
+            if (now - start > waitBudgetMillis) {
+                buildLogger.addErrorLogEntry(String.format("Waited %d minutes for table %s to update, exiting",
+                    TimeUnit.MILLISECONDS.toMinutes(waitBudgetMillis), tableName));
+                return false;
             }
         }
-
-        // push the global index change
-        if (!globalSecondaryIndexUpdate.isEmpty()) {
-            buildLogger.addLogEntry("Updating global secondary indexes");
-            UpdateTableRequest updateTableRequest = new UpdateTableRequest();
-            updateTableRequest.setGlobalSecondaryIndexUpdates(globalSecondaryIndexUpdate);
-            client.updateTable(updateTableRequest);
-            return waitForIt(client, table.getTableName());
-        }
-
-        // No change
-        return true;
     }
 
-    /**
-     * @return Success = true / failed = false
-     */
-    private boolean checkAndUpdateAttributes(AmazonDynamoDB client, DynamoDBTable table,
-        DescribeTableResult describeTableResult) {
-        final List<AttributeDefinition> attributes = table.getAttributes();
-        final List<AttributeDefinition> existingAttributes = describeTableResult.getTable().getAttributeDefinitions();
-        buildLogger.addLogEntry("Checking for attribute updates");
-
-        // Check if update needed
-        if (!existingAttributes.containsAll(attributes) || !attributes.containsAll(existingAttributes)) {
-
-            // Create update request
-            buildLogger.addLogEntry("Found attribute change, updating");
-            UpdateTableRequest updateTableRequest = new UpdateTableRequest();
-            updateTableRequest.setAttributeDefinitions(attributes);
-
-            // make update
-            UpdateTableResult updateTableResult = client.updateTable(updateTableRequest);
-            if (!updateTableResult.getTableDescription().getAttributeDefinitions().containsAll(attributes)) {
-                buildLogger.addErrorLogEntry("Updating attribute definition seems to have failed");
-            }
-
-            // wait for update to apply
-            boolean result = waitForIt(client, table.getTableName());
-            if (result) {
-                buildLogger.addLogEntry("Attributes updated");
-            } else {
-                buildLogger.addLogEntry("Timed out waiting for attribute update");
+    private boolean isSettled(TableDescription table, boolean untilIndexesActive) {
+        if (!TableStatus.ACTIVE.toString().equals(table.getTableStatus())) {
+            return false;
+        }
+        if (table.getGlobalSecondaryIndexes() == null) {
+            return true;
+        }
+        for (GlobalSecondaryIndexDescription index : table.getGlobalSecondaryIndexes()) {
+            boolean active = IndexStatus.ACTIVE.toString().equals(index.getIndexStatus());
+            boolean backfilling = IndexStatus.CREATING.toString().equals(index.getIndexStatus())
+                && Boolean.TRUE.equals(index.getBackfilling());
+            if (!active && (untilIndexesActive || !backfilling)) {
+                return false;
             }
-            return result;
         }
-
-        // Nothing to do
         return true;
-
     }
 
-    /**
-     * Waits for table to not be in "UPDATING" or "CREATING" (deleting is fine cause what's to wait for?)
-     */
-    private boolean waitForIt(AmazonDynamoDB client, String tableName) {
-
-        // wait at most 60 seconds?
-        int maxCount = 20;
-        int currentCount = 0;
-        int wait = 3000;
-        int pause = 1000;
-
-        // pause to let AWS react to the request
-        try {
-            Thread.sleep(pause);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            buildLogger.addLogEntry(INTERRUPTED_WHILE_POLLING);
-            throw new AwsExecException(INTERRUPTED_WHILE_POLLING);
-        }
-
-        String tableStatus = client.describeTable(tableName).getTable().getTableStatus();
-        buildLogger.addLogEntry("Table status is " + tableStatus + "...");
-        while (tableStatus.matches("CREATING|UPDATING")) {
-
-            if (currentCount > maxCount) {
-                buildLogger.addErrorLogEntry("Waiting too long to update/create table, exiting");
-                return false;
-            }
-            currentCount++;
-            try {
-                Thread.sleep(wait);
-                tableStatus = client.describeTable(tableName).getTable().getTableStatus();
-                buildLogger.addLogEntry("... Status: " + tableStatus);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                buildLogger.addLogEntry(INTERRUPTED_WHILE_POLLING);
-                throw new AwsExecException(INTERRUPTED_WHILE_POLLING);
+    private String describeState(TableDescription table) {
+        StringBuilder state = new StringBuilder(table.getTableStatus());
+        if (table.getGlobalSecondaryIndexes() != null) {
+            for (GlobalSecondaryIndexDescription index : table.getGlobalSecondaryIndexes()) {
+                if (!IndexStatus.ACTIVE.toString().equals(index.getIndexStatus())) {
+                    state.append(", index ").append(index.getIndexName()).append(' ').append(index.getIndexStatus());
+                    if (Boolean.TRUE.equals(index.getBackfilling())) {
+                        state.append(" (backfilling)");
+                    }
+                }
             }
-
         }
-        return true;
+        return state.toString();
     }
 }
@@ -16,6 +16,7 @@
 package com.libertymutualgroup.herman.aws.ecs.broker.dynamodb;
 
 import com.amazonaws.services.dynamodbv2.model.AttributeDefinition;
+import com.amazonaws.services.dynamodbv2.model.BillingMode;
 import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndex;
 import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
 import com.amazonaws.services.dynamodbv2.model.LocalSecondaryIndex;
@@ -23,6 +24,7 @@ import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughput;
 import com.amazonaws.services.dynamodbv2.model.SSESpecification;
 import com.amazonaws.services.dynamodbv2.model.StreamSpecification;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 public class DynamoDBTable {
@@ -37,6 +39,9 @@ public class DynamoDBTable {
     private SSESpecification sseSpecification;
     private StreamSpecification streamSpecification;
     private String tableName;
+    private String billingMode;
+    private DynamoDBAutoScaling autoScaling;
+    private Map<String, DynamoDBAutoScaling> indexAutoScaling;
 
     public static long getDefaultReadCapacity() {
         return defaultReadCapacity;
@@ -110,6 +115,47 @@ public class DynamoDBTable {
         this.tableName = tableName;
     }
 
+    /**
+     * PROVISIONED (default) or PAY_PER_REQUEST
+     */
+    public String getBillingMode() {
+        return billingMode;
+    }
+
+    public void setBillingMode(String billingMode) {
+        this.billingMode = billingMode;
+    }
+
+    /**
+     * Auto scaling for the table, also used for each global index without an entry in indexAutoScaling
+     */
+    public DynamoDBAutoScaling getAutoScaling() {
+        return autoScaling;
+    }
+
+    public void setAutoScaling(DynamoDBAutoScaling autoScaling) {
+        this.autoScaling = autoScaling;
+    }
+
+    public Map<String, DynamoDBAutoScaling> getIndexAutoScaling() {
+        return indexAutoScaling;
+    }
+
+    public void setIndexAutoScaling(Map<String, DynamoDBAutoScaling> indexAutoScaling) {
+        this.indexAutoScaling = indexAutoScaling;
+    }
+
+    boolean isPayPerRequest() {
+        return BillingMode.PAY_PER_REQUEST.toString().equals(billingMode);
+    }
+
+    DynamoDBAutoScaling getAutoScaling(String indexName) {
+        if (indexAutoScaling != null && indexAutoScaling.containsKey(indexName)) {
+            return indexAutoScaling.get(indexName);
+        }
+        return autoScaling;
+    }
+
     @Override
     public String toString() {
         return "DynamoDBTable{" +
@@ -121,6 +167,9 @@ public class DynamoDBTable {
             ", sseSpecification=" + sseSpecification +
             ", streamSpecification=" + streamSpecification +
             ", tableName='" + tableName + '\'' +
+            ", billingMode='" + billingMode + '\'' +
+            ", autoScaling=" + autoScaling +
+            ", indexAutoScaling=" + indexAutoScaling +
             '}';
     }
 
@@ -140,13 +189,16 @@ public class DynamoDBTable {
             Objects.equals(provisionedThroughput, that.provisionedThroughput) &&
             Objects.equals(sseSpecification, that.sseSpecification) &&
             Objects.equals(streamSpecification, that.streamSpecification) &&
-            Objects.equals(tableName, that.tableName);
+            Objects.equals(tableName, that.tableName) &&
+            Objects.equals(billingMode, that.billingMode) &&
+            Objects.equals(autoScaling, that.autoScaling) &&
+            Objects.equals(indexAutoScaling, that.indexAutoScaling);
     }
 
     @Override
     public int hashCode() {
 
         return Objects.hash(attributes, globalSecondaryIndexes, keySchema, localSecondaryIndexes, provisionedThroughput,
-            sseSpecification, streamSpecification, tableName);
+            sseSpecification, streamSpecification, tableName, billingMode, autoScaling, indexAutoScaling);
     }
 }
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.broker.elasticache;
+
+import com.amazonaws.services.elasticache.AmazonElastiCache;
+import com.amazonaws.services.elasticache.model.AddTagsToResourceRequest;
+import com.amazonaws.services.elasticache.model.CacheCluster;
+import com.amazonaws.services.elasticache.model.CacheSubnetGroupNotFoundException;
+import com.amazonaws.services.elasticache.model.CreateCacheSubnetGroupRequest;
+import com.amazonaws.services.elasticache.model.CreateReplicationGroupRequest;
+import com.amazonaws.services.elasticache.model.DecreaseReplicaCountRequest;
+import com.amazonaws.services.elasticache.model.DescribeCacheClustersRequest;
+import com.amazonaws.services.elasticache.model.DescribeCacheSubnetGroupsRequest;
+import com.amazonaws.services.elasticache.model.DescribeReplicationGroupsRequest;
+import com.amazonaws.services.elasticache.model.Endpoint;
+import com.amazonaws.services.elasticache.model.IncreaseReplicaCountRequest;
+import com.amazonaws.services.elasticache.model.ModifyCacheSubnetGroupRequest;
+import com.amazonaws.services.elasticache.model.ModifyReplicationGroupRequest;
+import com.amazonaws.services.elasticache.model.ModifyReplicationGroupShardConfigurationRequest;
+import com.amazonaws.services.elasticache.model.NodeGroup;
+import com.amazonaws.services.elasticache.model.ReplicationGroup;
+import com.amazonaws.services.elasticache.model.ReplicationGroupNotFoundException;
+import com.amazonaws.services.elasticache.model.SecurityGroupMembership;
+import com.amazonaws.services.elasticache.model.Subnet;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.aws.ecs.EcsPushDefinition;
+import com.libertymutualgroup.herman.aws.ecs.broker.ManagedClusterUtil;
+import com.libertymutualgroup.herman.aws.ecs.cluster.EcsClusterMetadata;
+import com.libertymutualgroup.herman.aws.tags.HermanTag;
+import com.libertymutualgroup.herman.aws.tags.TagUtil;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.util.AdaptivePoller;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Brokers a Redis replication group and its subnet group. Creating or resizing a group takes several minutes,
+ * so the work runs in the background and the caller joins it once the endpoints are needed.
+ */
+public class ElastiCacheBroker {
+
+    static final int MAX_REPLICATION_GROUP_ID_LENGTH = 40;
+
+    private HermanLogger buildLogger;
+    private AmazonElastiCache client;
+    private long waitBudgetMillis;
+    private Supplier<AdaptivePoller> pollerFactory;
+
+    public ElastiCacheBroker(HermanLogger buildLogger, AmazonElastiCache client, long waitBudgetMillis) {
+        this(buildLogger, client, waitBudgetMillis,
+            ManagedClusterUtil::newPoller);
+    }
+
+    public ElastiCacheBroker(HermanLogger buildLogger, AmazonElastiCache client, long waitBudgetMillis,
+        Supplier<AdaptivePoller> pollerFactory) {
+        this.buildLogger = buildLogger;
+        this.client = client;
+        this.waitBudgetMillis = waitBudgetMillis;
+        this.pollerFactory = pollerFactory;
+    }
+
+    /**
+     * @param kmsKeyId the app's key for encryption at rest, or empty for the AWS managed key
+     * @return completes with the cache definition, endpoints set, once the group is available
+     */
+    public CompletableFuture<ElastiCacheCluster> brokerReplicationGroup(EcsPushDefinition definition,
+        EcsClusterMetadata clusterMetadata, String kmsKeyId, List<HermanTag> tags) {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            return CompletableFuture.supplyAsync(() -> broker(definition, clusterMetadata, kmsKeyId, tags), executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    ElastiCacheCluster broker(EcsPushDefinition definition, EcsClusterMetadata clusterMetadata, String kmsKeyId,
+        List<HermanTag> tags) {
+        ElastiCacheCluster cache = definition.getCache();
+        String groupId = cache.getReplicationGroupId() != null ? cache.getReplicationGroupId()
+            : defaultReplicationGroupId(definition.getAppName());
+        String subnetGroupName = definition.getAppName() + "-cache";
+        buildLogger.addLogEntry("Brokering ElastiCache replication group: " + groupId);
+
+        brokerSubnetGroup(subnetGroupName, clusterMetadata.getPrivateSubnets());
+
+        List<String> securityGroups = new ArrayList<>();
+        securityGroups.add(clusterMetadata.getRdsSecurityGroup());
+        if (cache.getAdditionalSecurityGroups() != null) {
+            securityGroups.addAll(cache.getAdditionalSecurityGroups());
+        }
+
+        ReplicationGroup group = getReplicationGroup(groupId);
+        if (group == null) {
+            if (cache.getNumNodeGroups() > 1 && cache.getCacheParameterGroupName() == null) {
+                throw new AwsExecException("More than one shard needs a cacheParameterGroupName with cluster mode "
+                    + "enabled, e.g. default.redis7.cluster.on");
+            }
+            buildLogger.addLogEntry("... Creating replication group, this will take about ten minutes.");
+            CreateReplicationGroupRequest request = new CreateReplicationGroupRequest()
+                .withReplicationGroupId(groupId)
+                .withReplicationGroupDescription("Cache for " + definition.getAppName())
+                .withEngine("redis")
+                .withEngineVersion(cache.getEngineVersion())
+                .withCacheNodeType(cache.getNodeType())
+                .withNumNodeGroups(cache.getNumNodeGroups())
+                .withReplicasPerNodeGroup(cache.getReplicasPerNodeGroup())
+                .withAutomaticFailoverEnabled(cache.getReplicasPerNodeGroup() > 0)
+                .withMultiAZEnabled(cache.getReplicasPerNodeGroup() > 0)
+                .withCacheParameterGroupName(cache.getCacheParameterGroupName())
+                .withCacheSubnetGroupName(subnetGroupName)
+                .withSecurityGroupIds(securityGroups)
+                .withPort(cache.getPort())
+                .withAtRestEncryptionEnabled(cache.getAtRestEncryptionEnabled())
+                .withTransitEncryptionEnabled(cache.getTransitEncryptionEnabled())
+                .withTags(TagUtil.hermanToElastiCacheTags(tags));
+            if (Boolean.TRUE.equals(cache.getAtRestEncryptionEnabled()) && StringUtils.isNotEmpty(kmsKeyId)) {
+                request.setKmsKeyId(kmsKeyId);
+            }
+            client.createReplicationGroup(request);
+            group = waitForReplicationGroup(groupId);
+        } else {
+            group = waitForReplicationGroup(groupId);
+            group = updateReplicationGroup(group, cache, securityGroups);
+            client.addTagsToResource(new AddTagsToResourceRequest()
+                .withResourceName(group.getARN())
+                .withTags(TagUtil.hermanToElastiCacheTags(tags)));
+        }
+
+        setEndpoints(cache, group);
+        buildLogger.addLogEntry("... Cache endpoint: " + cache.getPrimaryEndpoint() + ":" + cache.getEndpointPort());
+        return cache;
+    }
+
+    /**
+     * Replication group ids are limited to 40 characters, so long app names are cut down
+     */
+    static String defaultReplicationGroupId(String appName) {
+        return ManagedClusterUtil.truncateName(appName, MAX_REPLICATION_GROUP_ID_LENGTH);
+    }
+
+    private void brokerSubnetGroup(String subnetGroupName, List<String> subnets) {
+        Set<String> currentSubnets;
+        try {
+            currentSubnets = client.describeCacheSubnetGroups(new DescribeCacheSubnetGroupsRequest()
+                .withCacheSubnetGroupName(subnetGroupName)).getCacheSubnetGroups().get(0).getSubnets().stream()
+                .map(Subnet::getSubnetIdentifier)
+                .collect(Collectors.toSet());
+        } catch (CacheSubnetGroupNotFoundException e) {
+            currentSubnets = null;
+        }
+        ManagedClusterUtil.brokerSubnetGroup("cache subnet group", subnetGroupName, subnets, currentSubnets,
+            () -> client.createCacheSubnetGroup(new CreateCacheSubnetGroupRequest()
+                .withCacheSubnetGroupName(subnetGroupName)
+                .withCacheSubnetGroupDescription("Herman managed subnet group")
+                .withSubnetIds(subnets)),
+            () -> client.modifyCacheSubnetGroup(new ModifyCacheSubnetGroupRequest()
+                .withCacheSubnetGroupName(subnetGroupName)
+                .withSubnetIds(subnets)),
+            buildLogger);
+    }
+
+    private ReplicationGroup updateReplicationGroup(ReplicationGroup group, ElastiCacheCluster cache,
+        List<String> securityGroups) {
+        String groupId = group.getReplicationGroupId();
+        if (!Objects.equals(cache.getAtRestEncryptionEnabled(), group.getAtRestEncryptionEnabled())
+            || !Objects.equals(cache.getTransitEncryptionEnabled(), group.getTransitEncryptionEnabled())) {
+            buildLogger.addErrorLogEntry("Cache encryption settings can't be changed in place, skipping. "
+                + "Use a new replicationGroupId to replace the cache.");
+        }
+
+        ModifyReplicationGroupRequest modify = new ModifyReplicationGroupRequest()
+            .withReplicationGroupId(groupId)
+            .withApplyImmediately(true);
+        boolean modified = false;
+        if (!Objects.equals(cache.getNodeType(), group.getCacheNodeType())) {
+            buildLogger.addLogEntry(String.format("... Changing node type: %s to %s", group.getCacheNodeType(),
+                cache.getNodeType()));
+            modify.setCacheNodeType(cache.getNodeType());
+            modified = true;
+        }
+        if (!getSecurityGroups(group).equals(new HashSet<>(securityGroups))) {
+            buildLogger.addLogEntry("... Updating security groups");
+            modify.setSecurityGroupIds(securityGroups);
+            modified = true;
+        }
+        if (modified) {
+            client.modifyReplicationGroup(modify);
+            group = waitForReplicationGroup(groupId);
+        }
+
+        int currentShards = group.getNodeGroups().size();
+        if (cache.getNumNodeGroups() != currentShards) {
+            if (!Boolean.TRUE.equals(group.getClusterEnabled())) {
+                buildLogger.addErrorLogEntry("Shards can only be changed with cluster mode enabled, skipping");
+            } else {
+                buildLogger.addLogEntry(String.format("... Resharding: %d to %d shards", currentShards,
+                    cache.getNumNodeGroups()));
+                ModifyReplicationGroupShardConfigurationRequest reshard = new ModifyReplicationGroupShardConfigurationRequest()
+                    .withReplicationGroupId(groupId)
+                    .withNodeGroupCount(cache.getNumNodeGroups())
+                    .withApplyImmediately(true);
+                if (cache.getNumNodeGroups() < currentShards) {
+                    // slots from the removed shards are moved to the remaining ones
+                    reshard.setNodeGroupsToRemove(group.getNodeGroups().stream()
+                        .map(NodeGroup::getNodeGroupId)
+                        .sorted(Comparator.reverseOrder())
+                        .limit(currentShards - cache.getNumNodeGroups())
+                        .collect(Collectors.toList()));
+                }
+                client.modifyReplicationGroupShardConfiguration(reshard);
+                group = waitForReplicationGroup(groupId);
+            }
+        }
+
+        int currentReplicas = group.getNodeGroups().get(0).getNodeGroupMembers().size() - 1;
+        if (cache.getReplicasPerNodeGroup() > currentReplicas) {
+            buildLogger.addLogEntry(String.format("... Adding replicas: %d to %d", currentReplicas,
+                cache.getReplicasPerNodeGroup()));
+            client.increaseReplicaCount(new IncreaseReplicaCountRequest()
+                .withReplicationGroupId(groupId)
+                .withNewReplicaCount(cache.getReplicasPerNodeGroup())
+                .withApplyImmediately(true));
+            group = waitForReplicationGroup(groupId);
+        } else if (cache.getReplicasPerNodeGroup() < currentReplicas) {
+            buildLogger.addLogEntry(String.format("... Removing replicas: %d to %d", currentReplicas,
+                cache.getReplicasPerNodeGroup()));
+            client.decreaseReplicaCount(new DecreaseReplicaCountRequest()
+                .withReplicationGroupId(groupId)
+                .withNewReplicaCount(cache.getReplicasPerNodeGroup())
+                .withApplyImmediately(true));
+            group = waitForReplicationGroup(groupId);
+        }
+        return group;
+    }
+
+    private Set<String> getSecurityGroups(ReplicationGroup group) {
+        if (group.getMemberClusters() == null || group.getMemberClusters().isEmpty()) {
+            return new HashSet<>();
+        }
+        CacheCluster member = client.describeCacheClusters(new DescribeCacheClustersRequest()
+            .withCacheClusterId(group.getMemberClusters().get(0))).getCacheClusters().get(0);
+        return member.getSecurityGroups().stream()
+            .map(SecurityGroupMembership::getSecurityGroupId)
+            .collect(Collectors.toSet());
+    }
+
+    private void setEndpoints(ElastiCacheCluster cache, ReplicationGroup group) {
+        Endpoint primary;
+        Endpoint reader = null;
+        if (group.getConfigurationEndpoint() != null) {
+            primary = group.getConfigurationEndpoint();
+        } else {
+            primary = group.getNodeGroups().get(0).getPrimaryEndpoint();
+            reader = group.getNodeGroups().get(0).getReaderEndpoint();
+        }
+        cache.setPrimaryEndpoint(primary.getAddress());
+        cache.setEndpointPort(primary.getPort());
+        cache.setReaderEndpoint(reader != null ? reader.getAddress() : primary.getAddress());
+    }
+
+    private ReplicationGroup getReplicationGroup(String groupId) {
+        try {
+            return client.describeReplicationGroups(new DescribeReplicationGroupsRequest()
+                .withReplicationGroupId(groupId)).getReplicationGroups().get(0);
+        } catch (ReplicationGroupNotFoundException e) {
+            return null;
+        }
+    }
+
+    ReplicationGroup waitForReplicationGroup(String groupId) {
+        return ManagedClusterUtil.waitUntilAvailable("replication group", groupId, () -> getReplicationGroup(groupId),
+            ReplicationGroup::getStatus, pollerFactory.get(), waitBudgetMillis, buildLogger);
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.broker.elasticache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Redis replication group for app caching. Encryption settings are fixed once the group exists; node type,
+ * shards and replicas are changed in place.
+ */
+public class ElastiCacheCluster {
+
+    private String replicationGroupId;
+    private String nodeType = "cache.t3.small";
+    private String engineVersion;
+    private Integer numNodeGroups = 1;
+    private Integer replicasPerNodeGroup = 1;
+    private String cacheParameterGroupName;
+    private Boolean atRestEncryptionEnabled = true;
+    private Boolean transitEncryptionEnabled = true;
+    private Integer port = 6379;
+    private List<String> additionalSecurityGroups = new ArrayList<>();
+    private ElastiCacheInjectConfiguration injectNames = new ElastiCacheInjectConfiguration();
+    private String primaryEndpoint;
+    private String readerEndpoint;
+    private Integer endpointPort;
+
+    public String getReplicationGroupId() {
+        return replicationGroupId;
+    }
+
+    public void setReplicationGroupId(String replicationGroupId) {
+        this.replicationGroupId = replicationGroupId;
+    }
+
+    public String getNodeType() {
+        return nodeType;
+    }
+
+    public void setNodeType(String nodeType) {
+        this.nodeType = nodeType;
+    }
+
+    public String getEngineVersion() {
+        return engineVersion;
+    }
+
+    public void setEngineVersion(String engineVersion) {
+        this.engineVersion = engineVersion;
+    }
+
+    public Integer getNumNodeGroups() {
+        return numNodeGroups;
+    }
+
+    public void setNumNodeGroups(Integer numNodeGroups) {
+        this.numNodeGroups = numNodeGroups;
+    }
+
+    public Integer getReplicasPerNodeGroup() {
+        return replicasPerNodeGroup;
+    }
+
+    public void setReplicasPerNodeGroup(Integer replicasPerNodeGroup) {
+        this.replicasPerNodeGroup = replicasPerNodeGroup;
+    }
+
+    public String getCacheParameterGroupName() {
+        return cacheParameterGroupName;
+    }
+
+    public void setCacheParameterGroupName(String cacheParameterGroupName) {
+        this.cacheParameterGroupName = cacheParameterGroupName;
+    }
+
+    public Boolean getAtRestEncryptionEnabled() {
+        return atRestEncryptionEnabled;
+    }
+
+    public void setAtRestEncryptionEnabled(Boolean atRestEncryptionEnabled) {
+        this.atRestEncryptionEnabled = atRestEncryptionEnabled;
+    }
+
+    public Boolean getTransitEncryptionEnabled() {
+        return transitEncryptionEnabled;
+    }
+
+    public void setTransitEncryptionEnabled(Boolean transitEncryptionEnabled) {
+        this.transitEncryptionEnabled = transitEncryptionEnabled;
+    }
+
+    public Integer getPort() {
+        return port;
+    }
+
+    public void setPort(Integer port) {
+        this.port = port;
+    }
+
+    public List<String> getAdditionalSecurityGroups() {
+        return additionalSecurityGroups;
+    }
+
+    public void setAdditionalSecurityGroups(List<String> additionalSecurityGroups) {
+        this.additionalSecurityGroups = additionalSecurityGroups;
+    }
+
+    public ElastiCacheInjectConfiguration getInjectNames() {
+        return injectNames;
+    }
+
+    public void setInjectNames(ElastiCacheInjectConfiguration injectNames) {
+        this.injectNames = injectNames;
+    }
+
+    public String getPrimaryEndpoint() {
+        return primaryEndpoint;
+    }
+
+    public void setPrimaryEndpoint(String primaryEndpoint) {
+        this.primaryEndpoint = primaryEndpoint;
+    }
+
+    public String getReaderEndpoint() {
+        return readerEndpoint;
+    }
+
+    public void setReaderEndpoint(String readerEndpoint) {
+        this.readerEndpoint = readerEndpoint;
+    }
+
+    public Integer getEndpointPort() {
+        return endpointPort;
+    }
+
+    public void setEndpointPort(Integer endpointPort) {
+        this.endpointPort = endpointPort;
+    }
+
+    @Override
+    public String toString() {
+        return "ElastiCacheCluster{" +
+            "replicationGroupId='" + replicationGroupId + '\'' +
+            ", nodeType='" + nodeType + '\'' +
+            ", engineVersion='" + engineVersion + '\'' +
+            ", numNodeGroups=" + numNodeGroups +
+            ", replicasPerNodeGroup=" + replicasPerNodeGroup +
+            ", cacheParameterGroupName='" + cacheParameterGroupName + '\'' +
+            ", atRestEncryptionEnabled=" + atRestEncryptionEnabled +
+            ", transitEncryptionEnabled=" + transitEncryptionEnabled +
+            ", port=" + port +
+            ", additionalSecurityGroups=" + additionalSecurityGroups +
+            ", injectNames=" + injectNames +
+            '}';
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.broker.elasticache;
+
+public class ElastiCacheInjectConfiguration {
+
+    private String host = "REDIS_HOST";
+    private String readerHost = "REDIS_READER_HOST";
+    private String port = "REDIS_PORT";
+    private String tls = "REDIS_TLS";
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public String getReaderHost() {
+        return readerHost;
+    }
+
+    public void setReaderHost(String readerHost) {
+        this.readerHost = readerHost;
+    }
+
+    public String getPort() {
+        return port;
+    }
+
+    public void setPort(String port) {
+        this.port = port;
+    }
+
+    public String getTls() {
+        return tls;
+    }
+
+    public void setTls(String tls) {
+        this.tls = tls;
+    }
+
+    @Override
+    public String toString() {
+        return "ElastiCacheInjectConfiguration{" +
+            "host='" + host + '\'' +
+            ", readerHost='" + readerHost + '\'' +
+            ", port='" + port + '\'' +
+            ", tls='" + tls + '\'' +
+            '}';
+    }
+}
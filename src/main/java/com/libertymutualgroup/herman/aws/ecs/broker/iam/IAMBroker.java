@@ -35,6 +35,8 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
 
 public class IAMBroker {
 
@@ -57,14 +59,7 @@ public class IAMBroker {
         String appName = definition.getAppName();
         Role role = getRole(client, appName);
 
-        String assumePolicy;
-        try {
-            InputStream policyStream = getClass()
-                .getResourceAsStream("/iam/assume-role-policy-" + pushType.name().toLowerCase() + ".json");
-            assumePolicy = IOUtils.toString(policyStream);
-        } catch (IOException e) {
-            throw new AwsExecException("Error getting assume policy", e);
-        }
+        String assumePolicy = getAssumePolicy(pushType.name().toLowerCase());
 
         if (role == null) {
             buildLogger.addLogEntry("... Creating new role: " + definition.getAppName());
@@ -102,6 +97,75 @@ public class IAMBroker {
         }
 
         role = getRole(client, appName);
+        waitForRole();
+        buildLogger.addLogEntry("... App role ARN: " + role.getArn());
+        return role;
+
+    }
+
+    /**
+     * Brokers a role assumed by an AWS service on the app's behalf, e.g. a DAX cluster reading DynamoDB
+     *
+     * @param service suffix of the /iam/assume-role-policy-*.json resource trusting the service
+     */
+    public Role brokerServiceRole(AmazonIdentityManagement client, String roleName, String service, String rolePolicy) {
+        String assumePolicy = getAssumePolicy(service);
+        Role role = getRole(client, roleName);
+        if (role == null) {
+            buildLogger.addLogEntry("... Creating new " + service + " role: " + roleName);
+            client.createRole(new CreateRoleRequest()
+                .withPath("/aws-ecs/")
+                .withRoleName(roleName)
+                .withAssumeRolePolicyDocument(assumePolicy));
+        } else {
+            client.updateAssumeRolePolicy(new UpdateAssumeRolePolicyRequest().withRoleName(roleName)
+                .withPolicyDocument(assumePolicy));
+        }
+        boolean policyChanged = putRolePolicy(client, roleName, roleName + POLICY_SUFFIX, rolePolicy);
+
+        if (role == null || policyChanged) {
+            role = getRole(client, roleName);
+            waitForRole();
+        }
+        return role;
+    }
+
+    /**
+     * Adds or replaces an inline policy next to the app policy, leaving the app policy untouched
+     *
+     * @return true if the policy was changed
+     */
+    public boolean putRolePolicy(AmazonIdentityManagement client, String roleName, String policyName, String policy) {
+        try {
+            String current = client.getRolePolicy(new GetRolePolicyRequest().withPolicyName(policyName)
+                .withRoleName(roleName)).getPolicyDocument();
+            if (current != null && policy.equals(URLDecoder.decode(current, "UTF-8"))) {
+                return false;
+            }
+        } catch (NoSuchEntityException e) {
+            LOGGER.debug("Role policy does not exist: " + policyName, e);
+        } catch (UnsupportedEncodingException e) {
+            throw new AwsExecException(e);
+        }
+        buildLogger.addLogEntry("... Updating role policy " + policyName);
+        client.putRolePolicy(new PutRolePolicyRequest()
+            .withPolicyName(policyName)
+            .withRoleName(roleName)
+            .withPolicyDocument(policy));
+        return true;
+    }
+
+    private String getAssumePolicy(String principal) {
+        try {
+            InputStream policyStream = getClass()
+                .getResourceAsStream("/iam/assume-role-policy-" + principal + ".json");
+            return IOUtils.toString(policyStream);
+        } catch (IOException e) {
+            throw new AwsExecException("Error getting assume policy", e);
+        }
+    }
+
+    private void waitForRole() {
         try {
             //Roles take a short bit to percolate in IAM, no real status
             Thread.sleep(10000);
@@ -109,9 +173,6 @@ public class IAMBroker {
             Thread.currentThread().interrupt();
             throw new AwsExecException(e);
         }
-        buildLogger.addLogEntry("... App role ARN: " + role.getArn());
-        return role;
-
     }
 
     public Role getRole(AmazonIdentityManagement client, String roleName) {
@@ -15,78 +15,142 @@
  */
 package com.libertymutualgroup.herman.aws.ecs.broker.kinesis;
 
-import com.amazonaws.AmazonServiceException;
+import com.amazonaws.regions.Regions;
 import com.amazonaws.services.kinesis.AmazonKinesis;
 import com.amazonaws.services.kinesis.model.AddTagsToStreamRequest;
 import com.amazonaws.services.kinesis.model.CreateStreamRequest;
+import com.amazonaws.services.kinesis.model.DecreaseStreamRetentionPeriodRequest;
 import com.amazonaws.services.kinesis.model.DeleteStreamRequest;
-import com.amazonaws.services.kinesis.model.DescribeStreamRequest;
-import com.amazonaws.services.kinesis.model.DescribeStreamResult;
+import com.amazonaws.services.kinesis.model.DescribeStreamSummaryRequest;
+import com.amazonaws.services.kinesis.model.DisableEnhancedMonitoringRequest;
+import com.amazonaws.services.kinesis.model.EnableEnhancedMonitoringRequest;
 import com.amazonaws.services.kinesis.model.EncryptionType;
-import com.amazonaws.services.kinesis.model.ListStreamsRequest;
-import com.amazonaws.services.kinesis.model.ListStreamsResult;
-import com.amazonaws.services.kinesis.model.ListTagsForStreamRequest;
-import com.amazonaws.services.kinesis.model.ListTagsForStreamResult;
+import com.amazonaws.services.kinesis.model.EnhancedMetrics;
+import com.amazonaws.services.kinesis.model.IncreaseStreamRetentionPeriodRequest;
 import com.amazonaws.services.kinesis.model.ResourceNotFoundException;
+import com.amazonaws.services.kinesis.model.ScalingType;
 import com.amazonaws.services.kinesis.model.StartStreamEncryptionRequest;
-import com.amazonaws.services.kinesis.model.StreamDescription;
-import com.amazonaws.services.kinesis.model.Tag;
+import com.amazonaws.services.kinesis.model.StreamDescriptionSummary;
+import com.amazonaws.services.kinesis.model.StreamMode;
+import com.amazonaws.services.kinesis.model.StreamModeDetails;
+import com.amazonaws.services.kinesis.model.UpdateShardCountRequest;
+import com.amazonaws.services.kinesis.model.UpdateStreamModeRequest;
+import com.amazonaws.services.resourcegroupstaggingapi.AWSResourceGroupsTaggingAPI;
+import com.amazonaws.services.resourcegroupstaggingapi.model.GetResourcesRequest;
+import com.amazonaws.services.resourcegroupstaggingapi.model.GetResourcesResult;
+import com.amazonaws.services.resourcegroupstaggingapi.model.ResourceTagMapping;
+import com.amazonaws.services.resourcegroupstaggingapi.model.TagFilter;
+import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.aws.tags.HermanTag;
 import com.libertymutualgroup.herman.aws.tags.TagUtil;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import com.libertymutualgroup.herman.task.common.CommonTaskProperties;
+import com.libertymutualgroup.herman.util.AdaptivePoller;
+import com.libertymutualgroup.herman.util.ConcurrencyUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public class KinesisBroker {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(KinesisBroker.class);
+    private static final String STREAM_RESOURCE_TYPE = "kinesis:stream";
+    private static final String STREAM_ARN_PREFIX = ":stream/";
+    // DeleteStream is limited to 5 transactions per second per account
+    private static final int MAX_CONCURRENT_DELETES = 5;
+    private static final String ACTIVE = "ACTIVE";
+    private static final long MIN_POLLING_INTERVAL_MS = 2000;
+    private static final long MAX_POLLING_INTERVAL_MS = 20000;
+    private static final double POLLING_GROWTH_FACTOR = 1.5;
+    // Streams may be created for the app by other agents, so a cached ownership check is only trusted for a while
+    static final long OWNERSHIP_TTL_MS = TimeUnit.MINUTES.toMillis(5);
+    // Streams each app owned after its last cleanup, keyed by account, region and app
+    private static final Map<String, OwnedStreams> OWNED_STREAMS = new ConcurrentHashMap<>();
 
     private HermanLogger buildLogger;
     private AmazonKinesis client;
+    private AWSResourceGroupsTaggingAPI taggingClient;
     private KinesisAppDefinition definition;
     private CommonTaskProperties taskProperties;
+    private String ownershipKey;
+    private Supplier<AdaptivePoller> pollerFactory;
+    private long ownershipTtlMillis;
 
-    public KinesisBroker(HermanLogger buildLogger, AmazonKinesis client, KinesisAppDefinition definition, CommonTaskProperties taskProperties) {
+    public KinesisBroker(HermanLogger buildLogger, AmazonKinesis client, AWSResourceGroupsTaggingAPI taggingClient,
+        KinesisAppDefinition definition, CommonTaskProperties taskProperties, String accountId, Regions region) {
+        this(buildLogger, client, taggingClient, definition, taskProperties, accountId, region,
+            () -> new AdaptivePoller(MIN_POLLING_INTERVAL_MS, MAX_POLLING_INTERVAL_MS, POLLING_GROWTH_FACTOR));
+    }
+
+    public KinesisBroker(HermanLogger buildLogger, AmazonKinesis client, AWSResourceGroupsTaggingAPI taggingClient,
+        KinesisAppDefinition definition, CommonTaskProperties taskProperties, String accountId, Regions region,
+        Supplier<AdaptivePoller> pollerFactory) {
+        this(buildLogger, client, taggingClient, definition, taskProperties, accountId, region, pollerFactory,
+            OWNERSHIP_TTL_MS);
+    }
+
+    KinesisBroker(HermanLogger buildLogger, AmazonKinesis client, AWSResourceGroupsTaggingAPI taggingClient,
+        KinesisAppDefinition definition, CommonTaskProperties taskProperties, String accountId, Regions region,
+        Supplier<AdaptivePoller> pollerFactory, long ownershipTtlMillis) {
         this.buildLogger = buildLogger;
         this.client = client;
+        this.taggingClient = taggingClient;
         this.definition = definition;
         this.taskProperties = taskProperties;
+        this.ownershipKey = accountId + ":" + region.getName() + ":" + definition.getAppName();
+        this.pollerFactory = pollerFactory;
+        this.ownershipTtlMillis = ownershipTtlMillis;
     }
 
-    public void brokerStream(KinesisStream stream) {
+    /**
+     * Creates the stream or applies changed settings to it. Shard count changes run in the background, since
+     * each resharding step can take minutes; the returned future completes when the target count is reached.
+     */
+    public CompletableFuture<Void> brokerStream(KinesisStream stream) {
+        StreamDescriptionSummary summary;
         try {
             // Describe the Stream and check if it already exists
-            DescribeStreamRequest describeStreamRequest = new DescribeStreamRequest().withStreamName(stream.getName());
-            StreamDescription streamDescription = client.describeStream(describeStreamRequest).getStreamDescription();
+            summary = describeStream(stream.getName());
             buildLogger
                 .addLogEntry(String
-                    .format("Stream %s has a status of %s.%n", stream.getName(), streamDescription.getStreamStatus()));
+                    .format("Stream %s has a status of %s.%n", stream.getName(), summary.getStreamStatus()));
 
-            if ("DELETING".equals(streamDescription.getStreamStatus())) {
+            if ("DELETING".equals(summary.getStreamStatus())) {
                 buildLogger.addLogEntry(String.format("Stream %s is being deleted.", stream.getName()));
             }
 
             // Wait for the stream to become active if it is not yet ACTIVE.
-            if (!"ACTIVE".equals(streamDescription.getStreamStatus())) {
-                waitForStreamToBecomeAvailable(stream.getName());
+            if (!ACTIVE.equals(summary.getStreamStatus())) {
+                summary = waitForStreamToBecomeAvailable(stream.getName());
             }
         } catch (ResourceNotFoundException ex) {
             LOGGER.debug("Stream not found: " + stream.getName(), ex);
             buildLogger.addLogEntry(String.format("Stream %s does not exist. Creating it now.", stream.getName()));
 
-            CreateStreamRequest createStreamRequest = new CreateStreamRequest();
-            createStreamRequest.setStreamName(stream.getName());
-            createStreamRequest.setShardCount(stream.getShardCount());
+            CreateStreamRequest createStreamRequest = new CreateStreamRequest()
+                .withStreamName(stream.getName())
+                .withStreamModeDetails(new StreamModeDetails().withStreamMode(getStreamMode(stream)));
+            if (StreamMode.PROVISIONED.toString().equals(getStreamMode(stream))) {
+                createStreamRequest.setShardCount(stream.getShardCount());
+            }
             client.createStream(createStreamRequest);
 
-            // Stream is now created. Waiting for it to become active so we can add tags and encryption.
+            // Stream is now created. Waiting for it to become active so we can add tags and settings.
             try {
-                waitForStreamToBecomeAvailable(stream.getName());
+                summary = waitForStreamToBecomeAvailable(stream.getName());
                 ArrayList<HermanTag> tags = new ArrayList<>(definition.getTags());
                 tags.add(new HermanTag(this.taskProperties.getSbuTagKey(), this.taskProperties.getSbu()));
                 tags.add(new HermanTag(this.taskProperties.getOrgTagKey(), this.taskProperties.getOrg()));
@@ -98,101 +162,312 @@ public class KinesisBroker {
                     .withTags(TagUtil.hermanToMap(tags));
 
                 client.addTagsToStream(addTagsToStreamRequest);
-
-                // Add encryption to stream
-                StartStreamEncryptionRequest startStreamEncryptionRequest = new StartStreamEncryptionRequest();
-                startStreamEncryptionRequest.setEncryptionType(EncryptionType.KMS);
-                startStreamEncryptionRequest.setKeyId("alias/aws/kinesis");
-                startStreamEncryptionRequest.setStreamName(stream.getName());
-                client.startStreamEncryption(startStreamEncryptionRequest);
             } catch (Exception e) {
                 LOGGER.debug("Stream did not become active: " + stream.getName(), e);
                 buildLogger.addErrorLogEntry(String
-                    .format("Stream %s never became active, failed to add tags or failed to start encryption: %s",
-                        stream.getName(), e.getMessage()));
+                    .format("Stream %s never became active or failed to add tags: %s", stream.getName(), e.getMessage()));
+                return CompletableFuture.completedFuture(null);
             }
+            applySettings(stream, summary);
+            return CompletableFuture.completedFuture(null);
         } catch (Exception e) {
             LOGGER.debug("Stream did not become active: " + stream.getName(), e);
             buildLogger.addErrorLogEntry(String
                 .format("Stream %s never became active while trying to check if it already exists.", stream.getName()));
+            return CompletableFuture.completedFuture(null);
+        }
+        summary = applySettings(stream, summary);
+        return scaleShards(stream, summary);
+    }
+
+    /**
+     * Applies capacity mode, retention, enhanced monitoring and encryption, calling only the APIs whose
+     * setting differs from the stream. Each change leaves the stream UPDATING, so wait before the next one.
+     * A change that fails or is denied fails the push.
+     */
+    private StreamDescriptionSummary applySettings(KinesisStream stream, StreamDescriptionSummary summary) {
+        try {
+            return updateSettings(stream, summary);
+        } catch (RuntimeException e) {
+            buildLogger.addErrorLogEntry(String.format("Failed to update Stream %s settings: %s", stream.getName(),
+                e.getMessage()));
+            throw new AwsExecException("Failed to update settings of Stream " + stream.getName(), e);
+        }
+    }
+
+    private StreamDescriptionSummary updateSettings(KinesisStream stream, StreamDescriptionSummary summary) {
+        String streamName = stream.getName();
+
+        if (stream.getStreamMode() != null && !getStreamMode(stream).equals(getCurrentStreamMode(summary))) {
+            buildLogger.addLogEntry(String.format("Updating Stream %s capacity mode to %s", streamName, getStreamMode(stream)));
+            client.updateStreamMode(new UpdateStreamModeRequest()
+                .withStreamARN(summary.getStreamARN())
+                .withStreamModeDetails(new StreamModeDetails().withStreamMode(getStreamMode(stream))));
+            summary = waitForStreamToBecomeAvailable(streamName);
+        }
+
+        Integer retention = stream.getRetentionPeriodHours();
+        if (retention != null && !retention.equals(summary.getRetentionPeriodHours())) {
+            buildLogger.addLogEntry(String.format("Updating Stream %s retention to %d hours", streamName, retention));
+            if (retention > summary.getRetentionPeriodHours()) {
+                client.increaseStreamRetentionPeriod(new IncreaseStreamRetentionPeriodRequest()
+                    .withStreamName(streamName).withRetentionPeriodHours(retention));
+            } else {
+                client.decreaseStreamRetentionPeriod(new DecreaseStreamRetentionPeriodRequest()
+                    .withStreamName(streamName).withRetentionPeriodHours(retention));
+            }
+            summary = waitForStreamToBecomeAvailable(streamName);
+        }
+
+        if (stream.getShardLevelMetrics() != null) {
+            Set<String> currentMetrics = new HashSet<>();
+            if (summary.getEnhancedMonitoring() != null) {
+                for (EnhancedMetrics metrics : summary.getEnhancedMonitoring()) {
+                    currentMetrics.addAll(metrics.getShardLevelMetrics());
+                }
+            }
+            List<String> metricsToEnable = stream.getShardLevelMetrics().stream()
+                .filter(metric -> !currentMetrics.contains(metric))
+                .collect(Collectors.toList());
+            List<String> metricsToDisable = currentMetrics.stream()
+                .filter(metric -> !stream.getShardLevelMetrics().contains(metric))
+                .collect(Collectors.toList());
+            if (!metricsToEnable.isEmpty()) {
+                buildLogger.addLogEntry(String.format("Enabling Stream %s shard metrics %s", streamName, metricsToEnable));
+                client.enableEnhancedMonitoring(new EnableEnhancedMonitoringRequest()
+                    .withStreamName(streamName).withShardLevelMetrics(metricsToEnable));
+                summary = waitForStreamToBecomeAvailable(streamName);
+            }
+            if (!metricsToDisable.isEmpty()) {
+                buildLogger.addLogEntry(String.format("Disabling Stream %s shard metrics %s", streamName, metricsToDisable));
+                client.disableEnhancedMonitoring(new DisableEnhancedMonitoringRequest()
+                    .withStreamName(streamName).withShardLevelMetrics(metricsToDisable));
+                summary = waitForStreamToBecomeAvailable(streamName);
+            }
+        }
+
+        if (!EncryptionType.KMS.toString().equals(summary.getEncryptionType())
+            || !stream.getEncryptionKeyId().equals(summary.getKeyId())) {
+            buildLogger.addLogEntry(String.format("Starting Stream %s encryption with %s", streamName, stream.getEncryptionKeyId()));
+            client.startStreamEncryption(new StartStreamEncryptionRequest()
+                .withStreamName(streamName)
+                .withEncryptionType(EncryptionType.KMS)
+                .withKeyId(stream.getEncryptionKeyId()));
+            summary = waitForStreamToBecomeAvailable(streamName);
+        }
+        return summary;
+    }
+
+    private CompletableFuture<Void> scaleShards(KinesisStream stream, StreamDescriptionSummary summary) {
+        Integer target = stream.getShardCount();
+        if (!StreamMode.PROVISIONED.toString().equals(getCurrentStreamMode(summary)) || target == null
+            || target.equals(summary.getOpenShardCount())) {
+            return CompletableFuture.completedFuture(null);
+        }
+        int current = summary.getOpenShardCount();
+
+        buildLogger.addLogEntry(String.format("Resharding Stream %s from %d to %d shards in the background",
+            stream.getName(), current, target));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            return CompletableFuture.runAsync(() -> reshard(stream.getName(), current, target), executor);
+        } finally {
+            executor.shutdown();
         }
     }
 
-    private void deleteStream(String streamName) {
+    /**
+     * UpdateShardCount only accepts targets between half and double the open shard count, so larger changes
+     * are applied in steps, waiting for the stream to become ACTIVE after each one
+     */
+    private void reshard(String streamName, int initial, int target) {
+        int current = initial;
+        try {
+            while (current != target) {
+                int next = nextShardCount(current, target);
+                client.updateShardCount(new UpdateShardCountRequest()
+                    .withStreamName(streamName)
+                    .withTargetShardCount(next)
+                    .withScalingType(ScalingType.UNIFORM_SCALING));
+                waitForStreamToBecomeAvailable(streamName);
+                buildLogger.addLogEntry(String.format("Stream %s resharded to %d shards", streamName, next));
+                current = next;
+            }
+        } catch (Exception e) {
+            String message = String.format("Stream %s could not be resharded from %d to %d shards: %s",
+                streamName, current, target, e.getMessage());
+            buildLogger.addErrorLogEntry(message);
+            throw new AwsExecException(message, e);
+        }
+    }
+
+    /**
+     * Waits for the background resharding of every stream, failing if any stream could not be resharded
+     */
+    public static void awaitResharding(List<CompletableFuture<Void>> streamScaling, HermanLogger logger) {
+        if (streamScaling.stream().anyMatch(future -> !future.isDone())) {
+            logger.addLogEntry("Waiting for Kinesis streams to finish resharding...");
+        }
+        List<String> failures = new ArrayList<>();
+        for (CompletableFuture<Void> future : streamScaling) {
+            try {
+                ConcurrencyUtil.join(future);
+            } catch (RuntimeException ex) {
+                failures.add(ex.getMessage());
+            }
+        }
+        if (!failures.isEmpty()) {
+            throw new AwsExecException(String.join("; ", failures));
+        }
+    }
+
+    static int nextShardCount(int current, int target) {
+        if (target > current) {
+            return Math.min(target, current * 2);
+        }
+        return Math.max(target, (current + 1) / 2);
+    }
+
+    private String getStreamMode(KinesisStream stream) {
+        return Optional.ofNullable(stream.getStreamMode()).orElse(StreamMode.PROVISIONED.toString());
+    }
+
+    private String getCurrentStreamMode(StreamDescriptionSummary summary) {
+        return summary.getStreamModeDetails() == null
+            ? StreamMode.PROVISIONED.toString() : summary.getStreamModeDetails().getStreamMode();
+    }
+
+    private StreamDescriptionSummary describeStream(String streamName) {
+        return client.describeStreamSummary(new DescribeStreamSummaryRequest().withStreamName(streamName))
+            .getStreamDescriptionSummary();
+    }
+
+    private boolean deleteStream(String streamName) {
         try {
             DeleteStreamRequest deleteStreamRequest = new DeleteStreamRequest();
             deleteStreamRequest.setStreamName(streamName);
             client.deleteStream(deleteStreamRequest);
+            return true;
+        } catch (ResourceNotFoundException e) {
+            LOGGER.debug("Stream already deleted: " + streamName, e);
+            return true;
         } catch (Exception e) {
             LOGGER.debug("Error deleting stream: " + streamName, e);
             buildLogger.addErrorLogEntry(String.format("Error deleting Stream %s.", streamName));
+            return false;
         }
     }
 
-    private void waitForStreamToBecomeAvailable(String streamName) throws InterruptedException {
+    private StreamDescriptionSummary waitForStreamToBecomeAvailable(String streamName) {
         buildLogger.addLogEntry(String.format("Waiting for Stream %s to become ACTIVE...%n", streamName));
 
-        long startTime = System.currentTimeMillis();
-        long endTime = startTime + TimeUnit.MINUTES.toMillis(10);
+        AdaptivePoller poller = pollerFactory.get();
+        String lastStatus = null;
+        long endTime = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(10);
         while (System.currentTimeMillis() < endTime) {
-            Thread.sleep(TimeUnit.SECONDS.toMillis(20));
+            poller.sleep();
 
             try {
-                DescribeStreamRequest describeStreamRequest = new DescribeStreamRequest();
-                describeStreamRequest.setStreamName(streamName);
-                // ask for no more than 10 shards at a time -- this is an optional parameter
-                describeStreamRequest.setLimit(10);
-                DescribeStreamResult describeStreamResponse = client.describeStream(describeStreamRequest);
-
-                String streamStatus = describeStreamResponse.getStreamDescription().getStreamStatus();
-                buildLogger.addLogEntry(String.format("Current state: %s", streamStatus));
+                StreamDescriptionSummary summary = describeStream(streamName);
+                String streamStatus = summary.getStreamStatus();
+                if (!streamStatus.equals(lastStatus)) {
+                    buildLogger.addLogEntry(String.format("Current state: %s", streamStatus));
+                    poller.progressed();
+                    lastStatus = streamStatus;
+                }
 
-                if ("ACTIVE".equals(streamStatus)) {
-                    return;
+                if (ACTIVE.equals(streamStatus)) {
+                    return summary;
                 }
             } catch (ResourceNotFoundException ex) {
                 // ResourceNotFound means the stream doesn't exist yet,
                 // so ignore this error and just keep polling.
                 LOGGER.debug("Stream does not exist: " + streamName, ex);
-            } catch (AmazonServiceException ase) {
-                throw ase;
             }
         }
 
         throw new RuntimeException(String.format("Stream %s never became active", streamName));
     }
 
+    /**
+     * Deletes streams tagged with this app that are no longer in the definition. Ownership is discovered with a
+     * tag query, and skipped when the app owned no streams at a check in the last {@link #OWNERSHIP_TTL_MS} and
+     * still declares none.
+     */
     public void checkStreamsToBeDeleted() {
-        ListStreamsRequest listStreamsRequest = new ListStreamsRequest();
-        ListStreamsResult listStreamsResult = client.listStreams(listStreamsRequest);
-        List<String> streamNames = listStreamsResult.getStreamNames();
-
-        for (String streamName : streamNames) {
-            ListTagsForStreamRequest listTagsForStreamRequest = new ListTagsForStreamRequest();
-            listTagsForStreamRequest.setStreamName(streamName);
-            ListTagsForStreamResult listTagsForStreamResult = client.listTagsForStream(listTagsForStreamRequest);
-            List<Tag> tags = listTagsForStreamResult.getTags();
-
-            for (Tag tag : tags) {
-                if (definition.getAppName().equals(tag.withKey(this.taskProperties.getAppTagKey()).getValue())) {
-                    if (definition.getStreams() != null) {
-                        List<KinesisStream> kinesisStreams = definition.getStreams();
-                        List<String> kinesisStreamNames = new ArrayList<>();
-                        for (KinesisStream ks : kinesisStreams) {
-                            kinesisStreamNames.add(ks.getName());
-                        }
-
-                        if (!kinesisStreamNames.contains(streamName)) {
-                            deleteStream(streamName);
-                            buildLogger.addLogEntry(String.format("Deleted Stream %s.", streamName));
-                        }
-                    } else {
-                        deleteStream(streamName);
-                        buildLogger.addLogEntry(String.format("Deleted Stream %s.", streamName));
-                    }
+        Set<String> declaredStreams = new HashSet<>();
+        if (definition.getStreams() != null) {
+            for (KinesisStream stream : definition.getStreams()) {
+                declaredStreams.add(stream.getName());
+            }
+        }
+
+        OWNED_STREAMS.values().removeIf(owned -> owned.isExpired(ownershipTtlMillis));
+        OwnedStreams cachedOwnedStreams = OWNED_STREAMS.get(ownershipKey);
+        if (declaredStreams.isEmpty() && cachedOwnedStreams != null && cachedOwnedStreams.streamNames.isEmpty()) {
+            LOGGER.debug("Skipping stream cleanup, app owns no streams: " + ownershipKey);
+            return;
+        }
+
+        List<String> streamsToDelete = findOwnedStreams().stream()
+            .filter(streamName -> !declaredStreams.contains(streamName))
+            .collect(Collectors.toList());
+        Set<String> failedDeletes = deleteStreams(streamsToDelete);
+
+        Set<String> ownedStreams = new HashSet<>(declaredStreams);
+        ownedStreams.addAll(failedDeletes);
+        OWNED_STREAMS.put(ownershipKey, new OwnedStreams(ownedStreams));
+    }
+
+    private List<String> findOwnedStreams() {
+        List<String> streamNames = new ArrayList<>();
+        String paginationToken = null;
+        do {
+            GetResourcesResult result = taggingClient.getResources(new GetResourcesRequest()
+                .withResourceTypeFilters(STREAM_RESOURCE_TYPE)
+                .withTagFilters(new TagFilter().withKey(this.taskProperties.getAppTagKey()).withValues(definition.getAppName()))
+                .withPaginationToken(paginationToken));
+            if (result.getResourceTagMappingList() != null) {
+                for (ResourceTagMapping mapping : result.getResourceTagMappingList()) {
+                    String arn = mapping.getResourceARN();
+                    streamNames.add(arn.substring(arn.indexOf(STREAM_ARN_PREFIX) + STREAM_ARN_PREFIX.length()));
                 }
             }
+            paginationToken = result.getPaginationToken();
+        } while (paginationToken != null && !paginationToken.isEmpty());
+        return streamNames;
+    }
+
+    /**
+     * @return the streams that could not be deleted
+     */
+    private Set<String> deleteStreams(List<String> streamNames) {
+        Set<String> failedDeletes = ConcurrentHashMap.newKeySet();
+        if (streamNames.isEmpty()) {
+            return failedDeletes;
+        }
+        ConcurrencyUtil.runAll(streamNames.stream()
+            .map(streamName -> (Runnable) () -> {
+                if (deleteStream(streamName)) {
+                    buildLogger.addLogEntry(String.format("Deleted Stream %s.", streamName));
+                } else {
+                    failedDeletes.add(streamName);
+                }
+            })
+            .collect(Collectors.toList()), MAX_CONCURRENT_DELETES);
+        return failedDeletes;
+    }
+
+    private static class OwnedStreams {
+        private final Set<String> streamNames;
+        private final long checkedAt = System.currentTimeMillis();
+
+        OwnedStreams(Set<String> streamNames) {
+            this.streamNames = streamNames;
         }
 
+        boolean isExpired(long ttlMillis) {
+            return System.currentTimeMillis() - checkedAt >= ttlMillis;
+        }
     }
 }
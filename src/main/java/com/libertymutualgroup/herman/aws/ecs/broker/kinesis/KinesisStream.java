@@ -15,10 +15,16 @@
  */
 package com.libertymutualgroup.herman.aws.ecs.broker.kinesis;
 
+import java.util.List;
+
 public class KinesisStream {
 
     private String name;
-    private int shardCount;
+    private Integer shardCount;
+    private String streamMode;
+    private Integer retentionPeriodHours;
+    private List<String> shardLevelMetrics;
+    private String encryptionKeyId = "alias/aws/kinesis";
 
     public String getName() {
         return name;
@@ -28,19 +34,61 @@ public class KinesisStream {
         this.name = name;
     }
 
-    public int getShardCount() {
+    /**
+     * Target shard count for PROVISIONED streams; existing streams are resharded towards it
+     */
+    public Integer getShardCount() {
         return shardCount;
     }
 
-    public void setShardCount(int shardCount) {
+    public void setShardCount(Integer shardCount) {
         this.shardCount = shardCount;
     }
 
+    /**
+     * PROVISIONED or ON_DEMAND. Left unchanged on existing streams when not set.
+     */
+    public String getStreamMode() {
+        return streamMode;
+    }
+
+    public void setStreamMode(String streamMode) {
+        this.streamMode = streamMode;
+    }
+
+    public Integer getRetentionPeriodHours() {
+        return retentionPeriodHours;
+    }
+
+    public void setRetentionPeriodHours(Integer retentionPeriodHours) {
+        this.retentionPeriodHours = retentionPeriodHours;
+    }
+
+    public List<String> getShardLevelMetrics() {
+        return shardLevelMetrics;
+    }
+
+    public void setShardLevelMetrics(List<String> shardLevelMetrics) {
+        this.shardLevelMetrics = shardLevelMetrics;
+    }
+
+    public String getEncryptionKeyId() {
+        return encryptionKeyId;
+    }
+
+    public void setEncryptionKeyId(String encryptionKeyId) {
+        this.encryptionKeyId = encryptionKeyId;
+    }
+
     @Override
     public String toString() {
         return "KinesisStream{" +
             "name='" + name + '\'' +
             ", shardCount=" + shardCount +
+            ", streamMode='" + streamMode + '\'' +
+            ", retentionPeriodHours=" + retentionPeriodHours +
+            ", shardLevelMetrics=" + shardLevelMetrics +
+            ", encryptionKeyId='" + encryptionKeyId + '\'' +
             '}';
     }
 }
@@ -19,7 +19,6 @@ import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.kms.AWSKMS;
 import com.amazonaws.services.kms.model.AWSKMSException;
-import com.amazonaws.services.kms.model.AliasListEntry;
 import com.amazonaws.services.kms.model.CancelKeyDeletionRequest;
 import com.amazonaws.services.kms.model.CreateAliasRequest;
 import com.amazonaws.services.kms.model.CreateKeyRequest;
@@ -31,15 +30,10 @@ import com.amazonaws.services.kms.model.EnableKeyRequest;
 import com.amazonaws.services.kms.model.EnableKeyRotationRequest;
 import com.amazonaws.services.kms.model.GetKeyRotationStatusRequest;
 import com.amazonaws.services.kms.model.GetKeyRotationStatusResult;
-import com.amazonaws.services.kms.model.KeyListEntry;
-import com.amazonaws.services.kms.model.ListAliasesRequest;
-import com.amazonaws.services.kms.model.ListAliasesResult;
-import com.amazonaws.services.kms.model.ListKeysRequest;
-import com.amazonaws.services.kms.model.ListKeysResult;
-import com.amazonaws.services.kms.model.ListResourceTagsRequest;
-import com.amazonaws.services.kms.model.ListResourceTagsResult;
+import com.amazonaws.services.kms.model.NotFoundException;
 import com.amazonaws.services.kms.model.PutKeyPolicyRequest;
 import com.amazonaws.services.kms.model.ScheduleKeyDeletionRequest;
+import com.amazonaws.services.kms.model.ScheduleKeyDeletionResult;
 import com.amazonaws.services.kms.model.Tag;
 import com.amazonaws.services.kms.model.TagResourceRequest;
 import com.libertymutualgroup.herman.aws.ecs.EcsPushDefinition;
@@ -51,7 +45,6 @@ import com.libertymutualgroup.herman.util.FileUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -68,6 +61,7 @@ public class KmsBroker {
     private AWSCredentials sessionCredentials;
     private String customConfigurationBucket;
     private Regions region;
+    private KmsKeyIndex keyIndex;
 
     public KmsBroker(HermanLogger hermanLogger, PropertyHandler handler, FileUtil fileUtil,
         CommonTaskProperties taskProperties, AWSCredentials sessionCredentials, String customConfigurationBucket, Regions region) {
@@ -104,6 +98,7 @@ public class KmsBroker {
                 .withTargetKeyId(key.getKeyMetadata().getArn());
             client.createAlias(aliasReq);
             keyId = key.getKeyMetadata().getKeyId();
+            getKeyIndex().record(definition.getAppName(), key.getKeyMetadata().getArn());
         } else {
             DescribeKeyResult key = client.describeKey(new DescribeKeyRequest().withKeyId(keyId));
             if (key.getKeyMetadata().getDeletionDate() != null) {
@@ -151,65 +146,43 @@ public class KmsBroker {
     }
 
     private String getExistingKeyId(AWSKMS client, String appKeyAlias) {
-        String keyId = null;
-        String listAliasesNextMarker = null;
-        do {
-            ListAliasesResult aliases = client.listAliases(new ListAliasesRequest().withMarker(listAliasesNextMarker));
-            listAliasesNextMarker = aliases.getNextMarker();
-
-            Optional<AliasListEntry> aliasOptional = aliases.getAliases().stream()
-                .filter(alias -> appKeyAlias.equals(alias.getAliasName()))
-                .findAny();
-            if (aliasOptional.isPresent()) {
-                keyId = aliasOptional.get().getTargetKeyId();
-                hermanLogger.addLogEntry("... KMS key found: " + appKeyAlias + ":" + keyId);
-            }
-        } while (Optional.ofNullable(listAliasesNextMarker).isPresent() && !Optional.ofNullable(keyId).isPresent());
-        return keyId;
+        try {
+            DescribeKeyResult key = client.describeKey(new DescribeKeyRequest().withKeyId(appKeyAlias));
+            String keyId = key.getKeyMetadata().getKeyId();
+            hermanLogger.addLogEntry("... KMS key found: " + appKeyAlias + ":" + keyId);
+            return keyId;
+        } catch (NotFoundException ex) {
+            LOGGER.debug("No KMS key found for alias " + appKeyAlias, ex);
+            return null;
+        }
     }
 
     private String getExistingDeletedKey(AWSKMS client, KmsAppDefinition definition, String appKeyAlias) {
-        String keyId = null;
-        String listKeysNextMarker = null;
-        do {
-            ListKeysResult listKeysResult = client.listKeys(new ListKeysRequest().withMarker(listKeysNextMarker));
-            listKeysNextMarker = listKeysResult.getNextMarker();
-
-            for (KeyListEntry key : listKeysResult.getKeys()) {
-                List<Tag> tags = Collections.emptyList();
-                try {
-                    ListResourceTagsResult keyTags = client
-                        .listResourceTags(new ListResourceTagsRequest().withKeyId(key.getKeyId()));
-                    tags = keyTags.getTags();
-                } catch (AWSKMSException ex) {
-                    LOGGER.debug("Error getting tags for " + key.getKeyId(), ex);
-                }
-                for (Tag t : tags) {
-                    if (this.taskProperties.getAppTagKey().equals(t.getTagKey()) && t.getTagValue()
-                        .equals(definition.getAppName())) {
-                        DescribeKeyResult hiddenKey = client
-                            .describeKey(new DescribeKeyRequest().withKeyId(key.getKeyArn()));
-                        if (hiddenKey.getKeyMetadata().getDeletionDate() != null) {
-                            hermanLogger.addLogEntry(
-                                "... KMS Key found: " + appKeyAlias + ":" + key.getKeyId() + " - Revoking the delete");
-                            client.cancelKeyDeletion(new CancelKeyDeletionRequest().withKeyId(key.getKeyArn()));
-                            client.enableKey(new EnableKeyRequest().withKeyId(key.getKeyArn()));
-                            keyId = key.getKeyId();
-                            CreateAliasRequest aliasReq = new CreateAliasRequest().withAliasName(appKeyAlias)
-                                .withTargetKeyId(keyId);
-                            client.createAlias(aliasReq);
-                        }
-                    }
-                }
-
-                if (Optional.ofNullable(keyId).isPresent()) {
-                    break;
-                }
+        for (String keyArn : getKeyIndex().findKeyArns(definition.getAppName())) {
+            DescribeKeyResult hiddenKey;
+            try {
+                hiddenKey = client.describeKey(new DescribeKeyRequest().withKeyId(keyArn));
+            } catch (AWSKMSException ex) {
+                LOGGER.debug("Error describing " + keyArn, ex);
+                continue;
             }
+            if (hiddenKey.getKeyMetadata().getDeletionDate() != null) {
+                String keyId = hiddenKey.getKeyMetadata().getKeyId();
+                hermanLogger.addLogEntry("... KMS Key found: " + appKeyAlias + ":" + keyId + " - Revoking the delete");
+                client.cancelKeyDeletion(new CancelKeyDeletionRequest().withKeyId(keyArn));
+                client.enableKey(new EnableKeyRequest().withKeyId(keyArn));
+                client.createAlias(new CreateAliasRequest().withAliasName(appKeyAlias).withTargetKeyId(keyId));
+                return keyId;
+            }
+        }
+        return null;
+    }
 
-        } while (Optional.ofNullable(listKeysNextMarker).isPresent() && !Optional.ofNullable(keyId).isPresent());
-
-        return keyId;
+    private KmsKeyIndex getKeyIndex() {
+        if (keyIndex == null) {
+            keyIndex = KmsKeyIndex.shared(sessionCredentials, region, taskProperties.getAppTagKey());
+        }
+        return keyIndex;
     }
 
     private String getKeyName(KmsAppDefinition definition) {
@@ -245,7 +218,8 @@ public class KmsBroker {
         if (Optional.ofNullable(keyId).isPresent()) {
             hermanLogger.addLogEntry("Key exists but yml cleared - deleting: " + appKeyAlias);
             client.deleteAlias(new DeleteAliasRequest().withAliasName(appKeyAlias));
-            client.scheduleKeyDeletion(new ScheduleKeyDeletionRequest().withKeyId(keyId));
+            ScheduleKeyDeletionResult deletion = client.scheduleKeyDeletion(new ScheduleKeyDeletionRequest().withKeyId(keyId));
+            getKeyIndex().record(definition.getAppName(), deletion.getKeyId());
         }
     }
 
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.broker.kms;
+
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.resourcegroupstaggingapi.AWSResourceGroupsTaggingAPI;
+import com.amazonaws.services.resourcegroupstaggingapi.AWSResourceGroupsTaggingAPIClientBuilder;
+import com.amazonaws.services.resourcegroupstaggingapi.model.GetResourcesRequest;
+import com.amazonaws.services.resourcegroupstaggingapi.model.GetResourcesResult;
+import com.amazonaws.services.resourcegroupstaggingapi.model.ResourceTagMapping;
+import com.amazonaws.services.resourcegroupstaggingapi.model.Tag;
+import com.amazonaws.services.resourcegroupstaggingapi.model.TagFilter;
+import com.amazonaws.services.securitytoken.AWSSecurityTokenServiceClientBuilder;
+import com.amazonaws.services.securitytoken.model.GetCallerIdentityRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Index of the KMS keys in an account and region by their app tag, loaded with a single tag query instead of
+ * listing and inspecting every key. Indexes are shared per account so the ECS, Lambda and S3 brokers of a push reuse
+ * the same lookup, and are reloaded with the current push's credentials once they are older than {@link #INDEX_TTL_MS}.
+ */
+public class KmsKeyIndex {
+
+    static final long INDEX_TTL_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final Logger LOGGER = LoggerFactory.getLogger(KmsKeyIndex.class);
+    private static final String KMS_KEY_RESOURCE_TYPE = "kms:key";
+    private static final Map<String, KmsKeyIndex> INDEXES = new ConcurrentHashMap<>();
+
+    private final String appTagKey;
+    private final long ttlMillis;
+    private volatile AWSResourceGroupsTaggingAPI taggingClient;
+    private volatile Map<String, Set<String>> keyArnsByApp;
+    private volatile long loadedAt;
+
+    KmsKeyIndex(AWSResourceGroupsTaggingAPI taggingClient, String appTagKey) {
+        this(taggingClient, appTagKey, INDEX_TTL_MS);
+    }
+
+    KmsKeyIndex(AWSResourceGroupsTaggingAPI taggingClient, String appTagKey, long ttlMillis) {
+        this.taggingClient = taggingClient;
+        this.appTagKey = appTagKey;
+        this.ttlMillis = ttlMillis;
+    }
+
+    public static KmsKeyIndex shared(AWSCredentials sessionCredentials, Regions region, String appTagKey) {
+        AWSStaticCredentialsProvider credentialsProvider = new AWSStaticCredentialsProvider(sessionCredentials);
+        String account = AWSSecurityTokenServiceClientBuilder.standard()
+            .withCredentials(credentialsProvider)
+            .withRegion(region)
+            .build()
+            .getCallerIdentity(new GetCallerIdentityRequest())
+            .getAccount();
+        AWSResourceGroupsTaggingAPI taggingClient = AWSResourceGroupsTaggingAPIClientBuilder.standard()
+            .withCredentials(credentialsProvider)
+            .withRegion(region)
+            .build();
+
+        INDEXES.values().removeIf(KmsKeyIndex::isExpired);
+        KmsKeyIndex index = INDEXES.computeIfAbsent(account + ":" + region.getName() + ":" + appTagKey,
+            key -> new KmsKeyIndex(taggingClient, appTagKey));
+        // Session credentials are temporary, so any reload uses the credentials of the latest push
+        index.taggingClient = taggingClient;
+        return index;
+    }
+
+    /**
+     * ARNs of the keys tagged with the given app name, including keys pending deletion
+     */
+    public List<String> findKeyArns(String appName) {
+        Set<String> keyArns = getIndex().get(appName);
+        if (keyArns == null) {
+            return Collections.emptyList();
+        }
+        synchronized (keyArns) {
+            return new ArrayList<>(keyArns);
+        }
+    }
+
+    /**
+     * Records a key created or tagged during this session, which the tag query may not return yet
+     */
+    public void record(String appName, String keyArn) {
+        Set<String> keyArns = getIndex().computeIfAbsent(appName, app -> Collections.synchronizedSet(new LinkedHashSet<>()));
+        keyArns.add(keyArn);
+    }
+
+    private Map<String, Set<String>> getIndex() {
+        if (keyArnsByApp == null || isExpired()) {
+            synchronized (this) {
+                if (keyArnsByApp == null || isExpired()) {
+                    keyArnsByApp = load();
+                    loadedAt = System.currentTimeMillis();
+                }
+            }
+        }
+        return keyArnsByApp;
+    }
+
+    private boolean isExpired() {
+        return keyArnsByApp != null && System.currentTimeMillis() - loadedAt > ttlMillis;
+    }
+
+    private Map<String, Set<String>> load() {
+        Map<String, Set<String>> index = new ConcurrentHashMap<>();
+        String paginationToken = null;
+        int keyCount = 0;
+        do {
+            GetResourcesResult result = taggingClient.getResources(new GetResourcesRequest()
+                .withResourceTypeFilters(KMS_KEY_RESOURCE_TYPE)
+                .withTagFilters(new TagFilter().withKey(appTagKey))
+                .withPaginationToken(paginationToken));
+            List<ResourceTagMapping> mappings = Optional.ofNullable(result.getResourceTagMappingList())
+                .orElse(Collections.emptyList());
+            for (ResourceTagMapping mapping : mappings) {
+                for (Tag tag : Optional.ofNullable(mapping.getTags()).orElse(Collections.emptyList())) {
+                    if (appTagKey.equals(tag.getKey())) {
+                        index.computeIfAbsent(tag.getValue(), app -> Collections.synchronizedSet(new LinkedHashSet<>()))
+                            .add(mapping.getResourceARN());
+                        keyCount++;
+                    }
+                }
+            }
+            paginationToken = result.getPaginationToken();
+        } while (paginationToken != null && !paginationToken.isEmpty());
+        LOGGER.debug("Indexed " + keyCount + " KMS keys tagged with " + appTagKey);
+        return index;
+    }
+}
@@ -19,7 +19,7 @@ import com.fasterxml.jackson.annotation.JsonSetter;
 
 public class RdsBrokerMixIns {
 
-    interface ParameterMixIn {
+    public interface ParameterMixIn {
 
         @JsonSetter
         void setApplyMethod(String applyMethod);
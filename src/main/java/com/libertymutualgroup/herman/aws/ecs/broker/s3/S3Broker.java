@@ -22,10 +22,14 @@ import com.amazonaws.services.kms.model.DescribeKeyRequest;
 import com.amazonaws.services.kms.model.Tag;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.s3.model.AbortIncompleteMultipartUpload;
 import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.BucketLifecycleConfiguration.NoncurrentVersionExpiration;
+import com.amazonaws.services.s3.model.BucketLifecycleConfiguration.Rule;
+import com.amazonaws.services.s3.model.BucketLifecycleConfiguration.Transition;
+import com.amazonaws.services.s3.model.BucketLifecycleConfiguration;
 import com.amazonaws.services.s3.model.BucketLoggingConfiguration;
 import com.amazonaws.services.s3.model.BucketNotificationConfiguration;
-import com.amazonaws.services.s3.model.BucketPolicy;
 import com.amazonaws.services.s3.model.BucketTaggingConfiguration;
 import com.amazonaws.services.s3.model.BucketWebsiteConfiguration;
 import com.amazonaws.services.s3.model.CannedAccessControlList;
@@ -33,7 +37,10 @@ import com.amazonaws.services.s3.model.CreateBucketRequest;
 import com.amazonaws.services.s3.model.DeleteBucketEncryptionRequest;
 import com.amazonaws.services.s3.model.HeadBucketRequest;
 import com.amazonaws.services.s3.model.LambdaConfiguration;
+import com.amazonaws.services.s3.model.ListBucketIntelligentTieringConfigurationsRequest;
+import com.amazonaws.services.s3.model.ListBucketIntelligentTieringConfigurationsResult;
 import com.amazonaws.services.s3.model.NotificationConfiguration;
+import com.amazonaws.services.s3.model.S3Event;
 import com.amazonaws.services.s3.model.SSEAlgorithm;
 import com.amazonaws.services.s3.model.ServerSideEncryptionByDefault;
 import com.amazonaws.services.s3.model.ServerSideEncryptionConfiguration;
@@ -42,9 +49,16 @@ import com.amazonaws.services.s3.model.SetBucketEncryptionRequest;
 import com.amazonaws.services.s3.model.SetBucketLoggingConfigurationRequest;
 import com.amazonaws.services.s3.model.SetBucketNotificationConfigurationRequest;
 import com.amazonaws.services.s3.model.SetBucketPolicyRequest;
+import com.amazonaws.services.s3.model.TagSet;
+import com.amazonaws.services.s3.model.intelligenttiering.IntelligentTieringAccessTier;
+import com.amazonaws.services.s3.model.intelligenttiering.IntelligentTieringConfiguration;
+import com.amazonaws.services.s3.model.intelligenttiering.IntelligentTieringFilter;
+import com.amazonaws.services.s3.model.intelligenttiering.IntelligentTieringPrefixPredicate;
+import com.amazonaws.services.s3.model.intelligenttiering.IntelligentTieringStatus;
+import com.amazonaws.services.s3.model.intelligenttiering.Tiering;
+import com.amazonaws.services.s3.model.lifecycle.LifecycleFilter;
+import com.amazonaws.services.s3.model.lifecycle.LifecyclePrefixPredicate;
 import com.amazonaws.util.IOUtils;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.aws.credentials.BambooCredentialsHandler;
 import com.libertymutualgroup.herman.aws.ecs.EcsPushDefinition;
@@ -54,8 +68,12 @@ import com.libertymutualgroup.herman.aws.ecs.cluster.EcsClusterMetadata;
 import com.libertymutualgroup.herman.aws.tags.HermanTag;
 import com.libertymutualgroup.herman.aws.tags.TagUtil;
 import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.logging.PrefixedLogger;
 import com.libertymutualgroup.herman.task.s3.S3CreateTaskProperties;
+import com.libertymutualgroup.herman.util.ConcurrencyUtil;
 import com.libertymutualgroup.herman.util.FileUtil;
+import com.libertymutualgroup.herman.util.HermanJackson;
+import com.libertymutualgroup.herman.util.TemplateFormat;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -67,8 +85,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -78,6 +101,8 @@ public class S3Broker {
     private static final Logger LOGGER = LoggerFactory.getLogger(S3Broker.class);
     private static final String S3_TEMPLATE_JSON = "s3_template.json";
     private static final String S3_TEMPLATE_YML = "s3_template.yml";
+    private static final int MAX_CONCURRENT_BUCKETS = 5;
+    private static final int MAX_CONCURRENT_FETCHES = 4;
 
     private HermanLogger buildLogger;
     private PropertyHandler handler;
@@ -119,8 +144,7 @@ public class S3Broker {
         AmazonS3 client = AmazonS3ClientBuilder.standard()
             .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
             .withClientConfiguration(BambooCredentialsHandler.getConfiguration()).withRegion(context.getRegion()).build();
-        brokerBucket(client, configuration, tags, policy);
-        updateNotificationConfiguration(configuration, client);
+        brokerBucket(client, configuration, tags, mapPolicy(policy));
 
         buildLogger.addLogEntry("Setting bamboo.s3.brokered.name = " + configuration.getAppName());
         buildLogger.addLogEntry("Setting bamboo.s3.brokered.region = " + client.getRegionName());
@@ -151,8 +175,44 @@ public class S3Broker {
         return keyArn;
     }
 
+    /**
+     * Brokers independent buckets concurrently. Policies are loaded and resolved up front, as template
+     * lookups and property handlers are not shared across threads.
+     */
+    public void brokerBucketsFromEcsPush(AmazonS3 s3Client, AWSKMS kmsClient, List<S3Bucket> buckets,
+        Function<S3Bucket, String> policyLoader, String kmsKeyId, EcsClusterMetadata clusterMetadata,
+        EcsPushDefinition definition) {
+        if (buckets == null || buckets.isEmpty()) {
+            return;
+        }
+        List<String> policies = buckets.stream()
+            .map(bucket -> mapPolicy(policyLoader.apply(bucket)))
+            .collect(Collectors.toList());
+        if (buckets.size() == 1) {
+            brokerMappedBucketFromEcsPush(s3Client, kmsClient, buckets.get(0), policies.get(0), kmsKeyId,
+                clusterMetadata, definition);
+            return;
+        }
+
+        List<Runnable> bucketBrokers = new ArrayList<>();
+        for (int i = 0; i < buckets.size(); i++) {
+            S3Bucket bucket = buckets.get(i);
+            String policy = policies.get(i);
+            S3Broker bucketBroker = withBuildLogger(new PrefixedLogger(buildLogger, bucket.getName()));
+            bucketBrokers.add(() -> bucketBroker.brokerMappedBucketFromEcsPush(s3Client, kmsClient, bucket, policy,
+                kmsKeyId, clusterMetadata, definition));
+        }
+        ConcurrencyUtil.runAll(bucketBrokers, MAX_CONCURRENT_BUCKETS);
+    }
+
     public void brokerBucketFromEcsPush(AmazonS3 s3Client, AWSKMS kmsClient, S3Bucket bucket, String bucketPolicy, String kmsKeyId,
             EcsClusterMetadata clusterMetadata, EcsPushDefinition definition) {
+        brokerMappedBucketFromEcsPush(s3Client, kmsClient, bucket, mapPolicy(bucketPolicy), kmsKeyId, clusterMetadata,
+            definition);
+    }
+
+    private void brokerMappedBucketFromEcsPush(AmazonS3 s3Client, AWSKMS kmsClient, S3Bucket bucket, String bucketPolicy,
+        String kmsKeyId, EcsClusterMetadata clusterMetadata, EcsPushDefinition definition) {
         ArrayList<HermanTag> tags = new ArrayList<>();
         if (taskProperties != null) {
             tags.add(new HermanTag(taskProperties.getSbuTagKey(), clusterMetadata.getNewrelicSbuTag()));
@@ -170,6 +230,8 @@ public class S3Broker {
         configuration.setOrg(clusterMetadata.getNewrelicOrgTag());
         configuration.setEncryptionOption(bucket.getEncryptionOption() == null ?
             taskProperties.getS3().getDefaultEncryption() : bucket.getEncryptionOption());
+        configuration.setLifecycleRules(bucket.getLifecycleRules());
+        configuration.setIntelligentTiering(bucket.getIntelligentTiering());
 
         if (S3EncryptionOption.KMS.equals(configuration.getEncryptionOption()) && kmsKeyId != null) {
             String kmsKeyArn = kmsClient.describeKey(new DescribeKeyRequest().withKeyId(kmsKeyId)).getKeyMetadata().getArn();
@@ -182,28 +244,31 @@ public class S3Broker {
         brokerBucket(s3Client, configuration, tags, bucketPolicy);
     }
 
-    private void updateNotificationConfiguration(S3InjectConfiguration configuration, AmazonS3 client) {
-        if (configuration.getLambdaNotifications() != null) {
-            buildLogger.addLogEntry("Setting Lambda notification configurations: " + configuration.getLambdaNotifications());
-            Map<String, NotificationConfiguration> lambdaConfigurationMap = new HashMap<>();
-            configuration.getLambdaNotifications().stream().forEach(it -> lambdaConfigurationMap.put(
-                it.getName(),
-                new LambdaConfiguration(it.getFunctionARN(), it.getEvents())));
+    private S3Broker withBuildLogger(HermanLogger logger) {
+        return new S3Broker(new S3CreateContext()
+            .withLogger(logger)
+            .withPropertyHandler(context.getPropertyHandler())
+            .withSessionCredentials(context.getSessionCredentials())
+            .withRegion(context.getRegion())
+            .withRootPath(context.getRootPath())
+            .withTaskProperties(context.getTaskProperties())
+            .withFileUtil(context.getFileUtil()));
+    }
 
-            client.setBucketNotificationConfiguration(new SetBucketNotificationConfigurationRequest(
-                configuration.getAppName(),
-                new BucketNotificationConfiguration().withNotificationConfiguration(lambdaConfigurationMap)));
-        }
+    private String mapPolicy(String bucketPolicy) {
+        return bucketPolicy == null ? null : handler.mapInProperties(bucketPolicy);
     }
 
-    private void brokerBucket(AmazonS3 client, S3InjectConfiguration configuration, List<HermanTag> tags, String bucketPolicy) {
+    void brokerBucket(AmazonS3 client, S3InjectConfiguration configuration, List<HermanTag> tags, String bucketPolicy) {
         String bucketName = configuration.getAppName();
         buildLogger.addLogEntry("Deploying S3 Bucket to " + client.getRegionName());
         buildLogger.addLogEntry("Checking for existing bucket: " + bucketName);
         boolean exists = client.doesBucketExistV2(bucketName);
+        S3BucketState current;
         if (!exists) {
             buildLogger.addLogEntry("Bucket not found, creating...");
             client.createBucket(new CreateBucketRequest(bucketName));
+            current = S3BucketState.empty();
         } else {
             try {
                 client.headBucket(new HeadBucketRequest(bucketName)).getBucketRegion();
@@ -218,35 +283,181 @@ public class S3Broker {
                 throw ex;
             }
             buildLogger.addLogEntry("Existing bucket found, updating...");
+            current = fetchBucketState(client, configuration);
         }
 
-        setBucketPolicy(client, bucketPolicy, bucketName);
+        setBucketPolicy(client, bucketPolicy, bucketName, current.getPolicyText());
 
         if (configuration.getWebsite()) {
+            updateWebsiteConfiguration(client, configuration, current.getWebsite());
+        }
+
+        updateEncryption(client, configuration, current.getEncryption());
+
+        if (tags != null) {
+            TagSet desiredTags = TagUtil.hermanToTagSet(tags);
+            if (desiredTags.getAllTags().equals(current.getTags())) {
+                buildLogger.addLogEntry("Bucket tags are up to date");
+            } else {
+                client.setBucketTaggingConfiguration(bucketName, new BucketTaggingConfiguration().withTagSets(desiredTags));
+            }
+        }
+
+        updateLoggingConfiguration(client, bucketName, current.getLoggingBucket());
+        updateNotificationConfiguration(client, configuration, current.getNotifications());
+        updateLifecycleConfiguration(client, configuration, current.getLifecycleRules());
+        updateIntelligentTiering(client, configuration, current.getIntelligentTiering());
+    }
+
+    private S3BucketState fetchBucketState(AmazonS3 client, S3InjectConfiguration configuration) {
+        String bucketName = configuration.getAppName();
+        return ConcurrencyUtil.withExecutor(MAX_CONCURRENT_FETCHES, executor -> {
+            CompletableFuture<String> policy = CompletableFuture
+                .supplyAsync(() -> client.getBucketPolicy(bucketName).getPolicyText(), executor);
+            CompletableFuture<ServerSideEncryptionByDefault> encryption = CompletableFuture
+                .supplyAsync(() -> getEncryption(client, bucketName), executor);
+            CompletableFuture<Map<String, String>> tags = CompletableFuture
+                .supplyAsync(() -> getTags(client, bucketName), executor);
+            CompletableFuture<String> loggingBucket = CompletableFuture
+                .supplyAsync(() -> getLoggingBucket(client, bucketName), executor);
+            CompletableFuture<BucketWebsiteConfiguration> website = configuration.getWebsite()
+                ? CompletableFuture.supplyAsync(() -> client.getBucketWebsiteConfiguration(bucketName), executor)
+                : CompletableFuture.completedFuture(null);
+            CompletableFuture<Map<String, NotificationConfiguration>> notifications =
+                configuration.getLambdaNotifications() != null
+                    ? CompletableFuture.supplyAsync(
+                        () -> client.getBucketNotificationConfiguration(bucketName).getConfigurations(), executor)
+                    : CompletableFuture.completedFuture(null);
+            CompletableFuture<List<Rule>> lifecycleRules = configuration.getLifecycleRules() != null
+                ? CompletableFuture.supplyAsync(() -> getLifecycleRules(client, bucketName), executor)
+                : CompletableFuture.completedFuture(null);
+            CompletableFuture<List<IntelligentTieringConfiguration>> intelligentTiering =
+                configuration.getIntelligentTiering() != null
+                    ? CompletableFuture.supplyAsync(() -> listIntelligentTiering(client, bucketName), executor)
+                    : CompletableFuture.completedFuture(null);
+
+            return new S3BucketState()
+                .withPolicyText(policy.join())
+                .withEncryption(encryption.join())
+                .withTags(tags.join())
+                .withLoggingBucket(loggingBucket.join())
+                .withWebsite(website.join())
+                .withNotifications(notifications.join())
+                .withLifecycleRules(lifecycleRules.join())
+                .withIntelligentTiering(intelligentTiering.join());
+        });
+    }
+
+    private ServerSideEncryptionByDefault getEncryption(AmazonS3 client, String bucketName) {
+        try {
+            ServerSideEncryptionConfiguration encryption = client.getBucketEncryption(bucketName)
+                .getServerSideEncryptionConfiguration();
+            if (encryption == null || encryption.getRules() == null || encryption.getRules().isEmpty()) {
+                return null;
+            }
+            return encryption.getRules().get(0).getApplyServerSideEncryptionByDefault();
+        } catch (AmazonS3Exception ex) {
+            LOGGER.debug("No default encryption found for bucket " + bucketName, ex);
+            return null;
+        }
+    }
+
+    private Map<String, String> getTags(AmazonS3 client, String bucketName) {
+        Map<String, String> tags = new HashMap<>();
+        BucketTaggingConfiguration tagging = client.getBucketTaggingConfiguration(bucketName);
+        if (tagging != null && tagging.getAllTagSets() != null) {
+            tagging.getAllTagSets().forEach(tagSet -> tags.putAll(tagSet.getAllTags()));
+        }
+        return tags;
+    }
+
+    private String getLoggingBucket(AmazonS3 client, String bucketName) {
+        BucketLoggingConfiguration logging = client.getBucketLoggingConfiguration(bucketName);
+        return logging != null && logging.isLoggingEnabled() ? logging.getDestinationBucketName() : null;
+    }
+
+    private List<Rule> getLifecycleRules(AmazonS3 client, String bucketName) {
+        BucketLifecycleConfiguration lifecycle = client.getBucketLifecycleConfiguration(bucketName);
+        return lifecycle == null || lifecycle.getRules() == null ? new ArrayList<>() : lifecycle.getRules();
+    }
+
+    private List<IntelligentTieringConfiguration> listIntelligentTiering(AmazonS3 client, String bucketName) {
+        List<IntelligentTieringConfiguration> configurations = new ArrayList<>();
+        String continuationToken = null;
+        do {
+            ListBucketIntelligentTieringConfigurationsResult result = client.listBucketIntelligentTieringConfigurations(
+                new ListBucketIntelligentTieringConfigurationsRequest()
+                    .withBucketName(bucketName)
+                    .withContinuationToken(continuationToken));
+            if (result.getIntelligentTieringConfigurationList() != null) {
+                configurations.addAll(result.getIntelligentTieringConfigurationList());
+            }
+            continuationToken = result.isTruncated() ? result.getNextContinuationToken() : null;
+        } while (continuationToken != null);
+        return configurations;
+    }
+
+    private void setBucketPolicy(AmazonS3 client, String fullPolicy, String bucketName, String currentPolicy) {
+        if (fullPolicy != null) {
+            if (HermanJackson.isSameJson(fullPolicy, currentPolicy)) {
+                buildLogger.addLogEntry("Bucket policy is up to date");
+                return;
+            }
+            try {
+                client.setBucketPolicy(new SetBucketPolicyRequest(bucketName, fullPolicy));
+            } catch (Exception ex) {
+                buildLogger.addLogEntry(
+                    String.format("Error setting bucket policy for %s: Policy = %s", bucketName, fullPolicy));
+                throw new AwsExecException("Error setting bucket policy", ex);
+            }
+        } else {
+            if (currentPolicy != null) {
+                buildLogger.addLogEntry("No bucket policy specified, deleting current bucket policy");
+                client.deleteBucketPolicy(bucketName);
+            } else {
+                buildLogger.addLogEntry("No bucket policy specified and no bucket policy previously existed");
+            }
+        }
+    }
+
+    private void updateWebsiteConfiguration(AmazonS3 client, S3InjectConfiguration configuration,
+        BucketWebsiteConfiguration current) {
+        String bucketName = configuration.getAppName();
+        String bucketWebsiteUrl = "http://" + bucketName + ".s3-website-" + client.getRegionName() + ".amazonaws.com";
+        // The ACL can drift on its own, so it is set even when the website configuration is unchanged
+        client.setBucketAcl(bucketName, CannedAccessControlList.PublicRead);
+        if (current != null && Objects.equals(configuration.getIndexFile(), current.getIndexDocumentSuffix())
+            && Objects.equals(configuration.getErrorFile(), current.getErrorDocument())) {
+            buildLogger.addLogEntry(bucketName + " is already configured as website at URL: " + bucketWebsiteUrl);
+        } else {
             client.setBucketWebsiteConfiguration(bucketName,
                 new BucketWebsiteConfiguration(configuration.getIndexFile(), configuration.getErrorFile()));
-            BucketWebsiteConfiguration websiteConfiguration = client.getBucketWebsiteConfiguration(bucketName);
-            client.setBucketAcl(bucketName, CannedAccessControlList.PublicRead);
-            String bucketWebsiteUrl =
-                "http://" + bucketName + ".s3-website-" + client.getRegionName() + ".amazonaws.com";
-            String websiteConfigurationString = "Configured " + bucketName + " as website using index document: " +
-                websiteConfiguration.getIndexDocumentSuffix() + " and error document: " + websiteConfiguration
-                .getErrorDocument()
-                + " at URL: " + bucketWebsiteUrl;
+            buildLogger.addLogEntry("Configured " + bucketName + " as website using index document: " +
+                configuration.getIndexFile() + " and error document: " + configuration.getErrorFile()
+                + " at URL: " + bucketWebsiteUrl);
+        }
+    }
 
-            buildLogger.addLogEntry(websiteConfigurationString);
+    private void updateEncryption(AmazonS3 client, S3InjectConfiguration configuration,
+        ServerSideEncryptionByDefault current) {
+        String bucketName = configuration.getAppName();
+        S3EncryptionOption encryptionOption = configuration.getEncryptionOption();
+        if (S3EncryptionOption.KMS.equals(encryptionOption) && configuration.getKmsKeyArn() == null) {
+            throw new AwsExecException("KMS key arn is required if encryption option is set to KMS. Other options are AES256 and NONE.");
+        }
+        if (isSameEncryption(encryptionOption, configuration.getKmsKeyArn(), current)) {
+            if (encryptionOption != null) {
+                buildLogger.addLogEntry(String.format("%s encryption is already configured for the bucket", encryptionOption));
+            }
+            return;
         }
 
-        if (S3EncryptionOption.NONE.equals(configuration.getEncryptionOption())) {
+        if (S3EncryptionOption.NONE.equals(encryptionOption)) {
             client.deleteBucketEncryption(new DeleteBucketEncryptionRequest().withBucketName(bucketName));
             buildLogger.addLogEntry("Encryption is disabled for bucket " + bucketName);
 
-        } else if (S3EncryptionOption.KMS.equals(configuration.getEncryptionOption())) {
-            buildLogger.addLogEntry(String.format("Enabling %s encryption for the bucket", configuration.getEncryptionOption()));
-            if (configuration.getKmsKeyArn() == null) {
-                throw new AwsExecException("KMS key arn is required if encryption option is set to KMS. Other options are AES256 and NONE.");
-            }
-
+        } else if (S3EncryptionOption.KMS.equals(encryptionOption)) {
+            buildLogger.addLogEntry(String.format("Enabling %s encryption for the bucket", encryptionOption));
             SetBucketEncryptionRequest request = new SetBucketEncryptionRequest()
                 .withBucketName(bucketName)
                 .withServerSideEncryptionConfiguration(new ServerSideEncryptionConfiguration()
@@ -257,9 +468,8 @@ public class S3Broker {
             client.setBucketEncryption(request);
             buildLogger.addLogEntry(String.format("... KMS key: %s", configuration.getKmsKeyArn()));
 
-
-        } else if (S3EncryptionOption.AES256.equals(configuration.getEncryptionOption())) {
-            buildLogger.addLogEntry(String.format("Enabling %s encryption for the bucket", configuration.getEncryptionOption()));
+        } else if (S3EncryptionOption.AES256.equals(encryptionOption)) {
+            buildLogger.addLogEntry(String.format("Enabling %s encryption for the bucket", encryptionOption));
             SetBucketEncryptionRequest request = new SetBucketEncryptionRequest()
                 .withBucketName(bucketName)
                 .withServerSideEncryptionConfiguration(new ServerSideEncryptionConfiguration()
@@ -268,44 +478,239 @@ public class S3Broker {
                             .withSSEAlgorithm(SSEAlgorithm.AES256))));
             client.setBucketEncryption(request);
         }
+    }
 
-        if (tags != null) {
-            client.setBucketTaggingConfiguration(bucketName, new BucketTaggingConfiguration().withTagSets(TagUtil.hermanToTagSet(tags)));
-        }
-
-        if (StringUtils.isNotBlank(taskProperties.getLogsBucket())) {
-            buildLogger.addLogEntry(String.format("Enabling S3 access logging using logs bucket %s", taskProperties.getLogsBucket()));
+    private void updateLoggingConfiguration(AmazonS3 client, String bucketName, String currentLoggingBucket) {
+        String logsBucket = taskProperties.getLogsBucket();
+        if (StringUtils.isNotBlank(logsBucket)) {
+            if (logsBucket.equals(currentLoggingBucket)) {
+                buildLogger.addLogEntry(String.format("S3 access logging to %s is already enabled", logsBucket));
+                return;
+            }
+            buildLogger.addLogEntry(String.format("Enabling S3 access logging using logs bucket %s", logsBucket));
             client.setBucketLoggingConfiguration(new SetBucketLoggingConfigurationRequest(
-                configuration.getAppName(),
-                new BucketLoggingConfiguration(taskProperties.getLogsBucket(), null)));
-        } else {
+                bucketName,
+                new BucketLoggingConfiguration(logsBucket, null)));
+        } else if (currentLoggingBucket != null) {
             buildLogger.addLogEntry("Disabling S3 access logging");
             client.setBucketLoggingConfiguration(new SetBucketLoggingConfigurationRequest(
-                configuration.getAppName(),
+                bucketName,
                 new BucketLoggingConfiguration()));
         }
     }
 
-    private void setBucketPolicy(AmazonS3 client, String bucketPolicy, String bucketName) {
-        if (bucketPolicy != null) {
-            String fullPolicy = handler.mapInProperties(bucketPolicy);
-
-            try {
-                client.setBucketPolicy(new SetBucketPolicyRequest(bucketName, fullPolicy));
-            } catch (Exception ex) {
-                buildLogger.addLogEntry(
-                    String.format("Error setting bucket policy for %s: Policy = %s", bucketName, fullPolicy));
-                throw new AwsExecException("Error setting bucket policy", ex);
+    private void updateNotificationConfiguration(AmazonS3 client, S3InjectConfiguration configuration,
+        Map<String, NotificationConfiguration> current) {
+        if (configuration.getLambdaNotifications() != null) {
+            if (isSameNotifications(configuration.getLambdaNotifications(), current)) {
+                buildLogger.addLogEntry("Lambda notification configurations are up to date");
+                return;
             }
+            buildLogger.addLogEntry("Setting Lambda notification configurations: " + configuration.getLambdaNotifications());
+            Map<String, NotificationConfiguration> lambdaConfigurationMap = new HashMap<>();
+            configuration.getLambdaNotifications().stream().forEach(it -> lambdaConfigurationMap.put(
+                it.getName(),
+                new LambdaConfiguration(it.getFunctionARN(), it.getEvents())));
+
+            client.setBucketNotificationConfiguration(new SetBucketNotificationConfigurationRequest(
+                configuration.getAppName(),
+                new BucketNotificationConfiguration().withNotificationConfiguration(lambdaConfigurationMap)));
+        }
+    }
+
+    private void updateLifecycleConfiguration(AmazonS3 client, S3InjectConfiguration configuration, List<Rule> current) {
+        if (configuration.getLifecycleRules() == null) {
+            return;
+        }
+        String bucketName = configuration.getAppName();
+        List<Rule> rules = configuration.getLifecycleRules().stream()
+            .map(S3Broker::toLifecycleRule)
+            .collect(Collectors.toList());
+        if (isSameLifecycle(rules, current)) {
+            buildLogger.addLogEntry("Lifecycle rules are up to date");
+        } else if (rules.isEmpty()) {
+            buildLogger.addLogEntry("Removing lifecycle rules");
+            client.deleteBucketLifecycleConfiguration(bucketName);
         } else {
-            BucketPolicy currentPolicy = client.getBucketPolicy(bucketName);
-            if (currentPolicy.getPolicyText() != null) {
-                buildLogger.addLogEntry("No bucket policy specified, deleting current bucket policy");
-                client.deleteBucketPolicy(bucketName);
+            buildLogger.addLogEntry("Setting lifecycle rules: " + configuration.getLifecycleRules());
+            client.setBucketLifecycleConfiguration(bucketName, new BucketLifecycleConfiguration(rules));
+        }
+    }
+
+    private void updateIntelligentTiering(AmazonS3 client, S3InjectConfiguration configuration,
+        List<IntelligentTieringConfiguration> current) {
+        if (configuration.getIntelligentTiering() == null) {
+            return;
+        }
+        String bucketName = configuration.getAppName();
+        Map<String, IntelligentTieringConfiguration> unmatched = new HashMap<>();
+        current.forEach(it -> unmatched.put(it.getId(), it));
+        for (S3IntelligentTiering tiering : configuration.getIntelligentTiering()) {
+            IntelligentTieringConfiguration desired = toIntelligentTieringConfiguration(tiering);
+            IntelligentTieringConfiguration existing = unmatched.remove(desired.getId());
+            if (existing != null && intelligentTieringKey(existing).equals(intelligentTieringKey(desired))) {
+                buildLogger.addLogEntry("Intelligent-Tiering configuration " + desired.getId() + " is up to date");
             } else {
-                buildLogger.addLogEntry("No bucket policy specified and no bucket policy previously existed");
+                buildLogger.addLogEntry("Setting Intelligent-Tiering configuration: " + tiering);
+                client.setBucketIntelligentTieringConfiguration(bucketName, desired);
             }
         }
+        for (String id : unmatched.keySet()) {
+            buildLogger.addLogEntry("Removing Intelligent-Tiering configuration " + id);
+            client.deleteBucketIntelligentTieringConfiguration(bucketName, id);
+        }
+    }
+
+    static boolean isSameEncryption(S3EncryptionOption encryptionOption, String kmsKeyArn,
+        ServerSideEncryptionByDefault current) {
+        if (encryptionOption == null) {
+            return true;
+        } else if (S3EncryptionOption.NONE.equals(encryptionOption)) {
+            // Buckets without a configuration fall back to SSE-S3, so only other algorithms need removing
+            return current == null || SSEAlgorithm.AES256.getAlgorithm().equals(current.getSSEAlgorithm());
+        } else if (current == null) {
+            return false;
+        } else if (S3EncryptionOption.AES256.equals(encryptionOption)) {
+            return SSEAlgorithm.AES256.getAlgorithm().equals(current.getSSEAlgorithm());
+        }
+        String currentKey = current.getKMSMasterKeyID();
+        return SSEAlgorithm.KMS.getAlgorithm().equals(current.getSSEAlgorithm()) && currentKey != null
+            && (currentKey.equals(kmsKeyArn) || kmsKeyArn.endsWith("/" + currentKey));
+    }
+
+    static boolean isSameNotifications(List<S3LambdaNotificationConfiguration> desired,
+        Map<String, NotificationConfiguration> current) {
+        if (current == null || current.size() != desired.size()) {
+            return false;
+        }
+        for (S3LambdaNotificationConfiguration notification : desired) {
+            NotificationConfiguration existing = current.get(notification.getName());
+            if (!(existing instanceof LambdaConfiguration)
+                || !Objects.equals(notification.getFunctionARN(), ((LambdaConfiguration) existing).getFunctionARN())) {
+                return false;
+            }
+            Set<String> events = notification.getEvents() == null ? new HashSet<>()
+                : notification.getEvents().stream().map(S3Event::toString).collect(Collectors.toSet());
+            if (!events.equals(new HashSet<>(existing.getEvents()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean isSameLifecycle(List<Rule> desired, List<Rule> current) {
+        if (current == null) {
+            return desired.isEmpty();
+        }
+        return lifecycleKeys(desired).equals(lifecycleKeys(current));
+    }
+
+    static Rule toLifecycleRule(S3LifecycleRule rule) {
+        if (rule.getId() == null) {
+            throw new AwsExecException("Lifecycle rules require an id");
+        }
+        Rule lifecycleRule = new Rule()
+            .withId(rule.getId())
+            .withFilter(new LifecycleFilter(new LifecyclePrefixPredicate(
+                rule.getPrefix() == null ? "" : rule.getPrefix())))
+            .withStatus(Boolean.FALSE.equals(rule.getEnabled())
+                ? BucketLifecycleConfiguration.DISABLED : BucketLifecycleConfiguration.ENABLED);
+        if (rule.getTransitions() != null) {
+            List<Transition> transitions = new ArrayList<>();
+            for (S3LifecycleTransition transition : rule.getTransitions()) {
+                if (transition.getDays() == null || transition.getStorageClass() == null) {
+                    throw new AwsExecException("Lifecycle transitions require days and a storageClass: " + rule.getId());
+                }
+                transitions.add(new Transition()
+                    .withDays(transition.getDays())
+                    .withStorageClass(transition.getStorageClass()));
+            }
+            lifecycleRule.withTransitions(transitions);
+        }
+        if (rule.getExpirationDays() != null) {
+            lifecycleRule.withExpirationInDays(rule.getExpirationDays());
+        }
+        if (rule.getNoncurrentVersionExpirationDays() != null) {
+            lifecycleRule.withNoncurrentVersionExpiration(
+                new NoncurrentVersionExpiration().withDays(rule.getNoncurrentVersionExpirationDays()));
+        }
+        if (rule.getAbortIncompleteMultipartUploadDays() != null) {
+            lifecycleRule.withAbortIncompleteMultipartUpload(new AbortIncompleteMultipartUpload()
+                .withDaysAfterInitiation(rule.getAbortIncompleteMultipartUploadDays()));
+        }
+        return lifecycleRule;
+    }
+
+    private static List<String> lifecycleKeys(List<Rule> rules) {
+        return rules.stream().map(S3Broker::lifecycleKey).sorted().collect(Collectors.toList());
+    }
+
+    // Covers the settings Herman manages, so rules that only differ in unmanaged settings are replaced
+    private static String lifecycleKey(Rule rule) {
+        String filter = rule.getPrefix();
+        if (rule.getFilter() != null && rule.getFilter().getPredicate() instanceof LifecyclePrefixPredicate) {
+            filter = ((LifecyclePrefixPredicate) rule.getFilter().getPredicate()).getPrefix();
+        } else if (rule.getFilter() != null && rule.getFilter().getPredicate() != null) {
+            filter = rule.getFilter().getPredicate().getClass().getSimpleName();
+        }
+        int noncurrentDays = rule.getNoncurrentVersionExpiration() != null
+            ? rule.getNoncurrentVersionExpiration().getDays() : rule.getNoncurrentVersionExpirationInDays();
+        int abortDays = rule.getAbortIncompleteMultipartUpload() != null
+            ? rule.getAbortIncompleteMultipartUpload().getDaysAfterInitiation() : -1;
+        String transitions = rule.getTransitions() == null ? "" : rule.getTransitions().stream()
+            .map(transition -> transition.getDays() + ":" + transition.getStorageClassAsString())
+            .sorted()
+            .collect(Collectors.joining(","));
+        int unmanagedSettings = (rule.getNoncurrentVersionTransitions() == null ? 0
+            : rule.getNoncurrentVersionTransitions().size()) + (rule.getExpirationDate() == null ? 0 : 1);
+        return String.join("|", rule.getId(), rule.getStatus(), StringUtils.defaultString(filter),
+            days(rule.getExpirationInDays()), days(noncurrentDays), days(abortDays), transitions,
+            String.valueOf(unmanagedSettings));
+    }
+
+    private static String days(int days) {
+        return days > 0 ? String.valueOf(days) : "-";
+    }
+
+    static IntelligentTieringConfiguration toIntelligentTieringConfiguration(S3IntelligentTiering tiering) {
+        if (tiering.getId() == null
+            || (tiering.getArchiveAccessDays() == null && tiering.getDeepArchiveAccessDays() == null)) {
+            throw new AwsExecException(
+                "Intelligent-Tiering configurations require an id and archiveAccessDays or deepArchiveAccessDays");
+        }
+        List<Tiering> tierings = new ArrayList<>();
+        if (tiering.getArchiveAccessDays() != null) {
+            tierings.add(new Tiering().withDays(tiering.getArchiveAccessDays())
+                .withIntelligentTieringAccessTier(IntelligentTieringAccessTier.ARCHIVE_ACCESS));
+        }
+        if (tiering.getDeepArchiveAccessDays() != null) {
+            tierings.add(new Tiering().withDays(tiering.getDeepArchiveAccessDays())
+                .withIntelligentTieringAccessTier(IntelligentTieringAccessTier.DEEP_ARCHIVE_ACCESS));
+        }
+        IntelligentTieringConfiguration configuration = new IntelligentTieringConfiguration()
+            .withId(tiering.getId())
+            .withStatus(IntelligentTieringStatus.Enabled)
+            .withTierings(tierings);
+        if (StringUtils.isNotEmpty(tiering.getPrefix())) {
+            configuration.withFilter(new IntelligentTieringFilter(new IntelligentTieringPrefixPredicate(tiering.getPrefix())));
+        }
+        return configuration;
+    }
+
+    static String intelligentTieringKey(IntelligentTieringConfiguration configuration) {
+        String filter = "";
+        if (configuration.getFilter() != null
+            && configuration.getFilter().getPredicate() instanceof IntelligentTieringPrefixPredicate) {
+            filter = ((IntelligentTieringPrefixPredicate) configuration.getFilter().getPredicate()).getPrefix();
+        } else if (configuration.getFilter() != null && configuration.getFilter().getPredicate() != null) {
+            filter = configuration.getFilter().getPredicate().getClass().getSimpleName();
+        }
+        String tierings = configuration.getTierings() == null ? "" : configuration.getTierings().stream()
+            .map(tiering -> tiering.getAccessTier() + ":" + tiering.getDays())
+            .sorted()
+            .collect(Collectors.joining(","));
+        return String.join("|", configuration.getId(), String.valueOf(configuration.getStatus()),
+            StringUtils.defaultString(filter), tierings);
     }
 
     private S3InjectConfiguration getS3Configuration() {
@@ -332,8 +737,9 @@ public class S3Broker {
                 throw new AwsExecException("No S3 template provided!");
             }
 
-            ObjectMapper mapper = isJson ? new ObjectMapper() : new ObjectMapper(new YAMLFactory());
-            definition = mapper.readValue(handler.mapInProperties(template), S3InjectConfiguration.class);
+            TemplateFormat format = isJson ? TemplateFormat.JSON : TemplateFormat.YML;
+            definition = HermanJackson.reader(S3InjectConfiguration.class, format)
+                .readValue(handler.mapInProperties(template));
         } catch (FileNotFoundException e1) {
             LOGGER.debug("No template found: " + S3_TEMPLATE_JSON, e1);
             throw new AwsExecException("No template found at " + S3_TEMPLATE_JSON);
@@ -15,11 +15,15 @@
  */
 package com.libertymutualgroup.herman.aws.ecs.broker.s3;
 
+import java.util.List;
+
 public class S3Bucket {
 
     private String name;
     private String policyName;
     private S3EncryptionOption encryptionOption;
+    private List<S3LifecycleRule> lifecycleRules;
+    private List<S3IntelligentTiering> intelligentTiering;
 
     public String getName() {
         return name;
@@ -45,6 +49,22 @@ public class S3Bucket {
         this.encryptionOption = encryptionOption;
     }
 
+    public List<S3LifecycleRule> getLifecycleRules() {
+        return lifecycleRules;
+    }
+
+    public void setLifecycleRules(List<S3LifecycleRule> lifecycleRules) {
+        this.lifecycleRules = lifecycleRules;
+    }
+
+    public List<S3IntelligentTiering> getIntelligentTiering() {
+        return intelligentTiering;
+    }
+
+    public void setIntelligentTiering(List<S3IntelligentTiering> intelligentTiering) {
+        this.intelligentTiering = intelligentTiering;
+    }
+
     public S3Bucket withName(final String name) {
         this.name = name;
         return this;
@@ -61,12 +81,24 @@ public class S3Bucket {
         return this;
     }
 
+    public S3Bucket withLifecycleRules(final List<S3LifecycleRule> lifecycleRules) {
+        this.lifecycleRules = lifecycleRules;
+        return this;
+    }
+
+    public S3Bucket withIntelligentTiering(final List<S3IntelligentTiering> intelligentTiering) {
+        this.intelligentTiering = intelligentTiering;
+        return this;
+    }
+
     @Override
     public String toString() {
         return "S3Bucket{" +
             "name='" + name + '\'' +
             ", policyName='" + policyName + '\'' +
             ", encryptionOption=" + encryptionOption +
+            ", lifecycleRules=" + lifecycleRules +
+            ", intelligentTiering=" + intelligentTiering +
             '}';
     }
 }
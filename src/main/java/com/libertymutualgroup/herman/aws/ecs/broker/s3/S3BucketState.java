@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.broker.s3;
+
+import com.amazonaws.services.s3.model.BucketLifecycleConfiguration.Rule;
+import com.amazonaws.services.s3.model.BucketWebsiteConfiguration;
+import com.amazonaws.services.s3.model.NotificationConfiguration;
+import com.amazonaws.services.s3.model.ServerSideEncryptionByDefault;
+import com.amazonaws.services.s3.model.intelligenttiering.IntelligentTieringConfiguration;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Current configuration of an existing bucket. Parts that the template does not manage are not fetched and stay null.
+ */
+class S3BucketState {
+
+    private String policyText;
+    private ServerSideEncryptionByDefault encryption;
+    private Map<String, String> tags = Collections.emptyMap();
+    private String loggingBucket;
+    private BucketWebsiteConfiguration website;
+    private Map<String, NotificationConfiguration> notifications;
+    private List<Rule> lifecycleRules;
+    private List<IntelligentTieringConfiguration> intelligentTiering;
+
+    static S3BucketState empty() {
+        return new S3BucketState()
+            .withNotifications(Collections.emptyMap())
+            .withLifecycleRules(Collections.emptyList())
+            .withIntelligentTiering(Collections.emptyList());
+    }
+
+    String getPolicyText() {
+        return policyText;
+    }
+
+    ServerSideEncryptionByDefault getEncryption() {
+        return encryption;
+    }
+
+    Map<String, String> getTags() {
+        return tags;
+    }
+
+    String getLoggingBucket() {
+        return loggingBucket;
+    }
+
+    BucketWebsiteConfiguration getWebsite() {
+        return website;
+    }
+
+    Map<String, NotificationConfiguration> getNotifications() {
+        return notifications;
+    }
+
+    List<Rule> getLifecycleRules() {
+        return lifecycleRules;
+    }
+
+    List<IntelligentTieringConfiguration> getIntelligentTiering() {
+        return intelligentTiering;
+    }
+
+    S3BucketState withPolicyText(final String policyText) {
+        this.policyText = policyText;
+        return this;
+    }
+
+    S3BucketState withEncryption(final ServerSideEncryptionByDefault encryption) {
+        this.encryption = encryption;
+        return this;
+    }
+
+    S3BucketState withTags(final Map<String, String> tags) {
+        this.tags = tags;
+        return this;
+    }
+
+    S3BucketState withLoggingBucket(final String loggingBucket) {
+        this.loggingBucket = loggingBucket;
+        return this;
+    }
+
+    S3BucketState withWebsite(final BucketWebsiteConfiguration website) {
+        this.website = website;
+        return this;
+    }
+
+    S3BucketState withNotifications(final Map<String, NotificationConfiguration> notifications) {
+        this.notifications = notifications;
+        return this;
+    }
+
+    S3BucketState withLifecycleRules(final List<Rule> lifecycleRules) {
+        this.lifecycleRules = lifecycleRules;
+        return this;
+    }
+
+    S3BucketState withIntelligentTiering(final List<IntelligentTieringConfiguration> intelligentTiering) {
+        this.intelligentTiering = intelligentTiering;
+        return this;
+    }
+}
@@ -35,6 +35,8 @@ public class S3InjectConfiguration implements KmsAppDefinition {
     private String kmsKeyArn;
     private String kmsKeyName;
     private List<HermanTag> tags;
+    private List<S3LifecycleRule> lifecycleRules;
+    private List<S3IntelligentTiering> intelligentTiering;
 
     // Index and Error files used for website buckets
     private String indexFile = "index.html";
@@ -147,6 +149,22 @@ public class S3InjectConfiguration implements KmsAppDefinition {
         this.tags = tags;
     }
 
+    public List<S3LifecycleRule> getLifecycleRules() {
+        return lifecycleRules;
+    }
+
+    public void setLifecycleRules(List<S3LifecycleRule> lifecycleRules) {
+        this.lifecycleRules = lifecycleRules;
+    }
+
+    public List<S3IntelligentTiering> getIntelligentTiering() {
+        return intelligentTiering;
+    }
+
+    public void setIntelligentTiering(List<S3IntelligentTiering> intelligentTiering) {
+        this.intelligentTiering = intelligentTiering;
+    }
+
     public S3InjectConfiguration withAppName(final String appName) {
         this.appName = appName;
         return this;
@@ -209,6 +227,16 @@ public class S3InjectConfiguration implements KmsAppDefinition {
         return this;
     }
 
+    public S3InjectConfiguration withLifecycleRules(final List<S3LifecycleRule> lifecycleRules) {
+        this.lifecycleRules = lifecycleRules;
+        return this;
+    }
+
+    public S3InjectConfiguration withIntelligentTiering(final List<S3IntelligentTiering> intelligentTiering) {
+        this.intelligentTiering = intelligentTiering;
+        return this;
+    }
+
     @Override
     public String toString() {
         return "S3InjectConfiguration{" +
@@ -224,6 +252,8 @@ public class S3InjectConfiguration implements KmsAppDefinition {
             ", kmsKeyName='" + kmsKeyName + '\'' +
             ", indexFile='" + indexFile + '\'' +
             ", errorFile='" + errorFile + '\'' +
+            ", lifecycleRules=" + lifecycleRules +
+            ", intelligentTiering=" + intelligentTiering +
             '}';
     }
 }
\ No newline at end of file
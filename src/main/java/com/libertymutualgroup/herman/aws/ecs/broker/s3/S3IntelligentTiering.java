@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.broker.s3;
+
+public class S3IntelligentTiering {
+
+    private String id;
+    private String prefix;
+    private Integer archiveAccessDays;
+    private Integer deepArchiveAccessDays;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public Integer getArchiveAccessDays() {
+        return archiveAccessDays;
+    }
+
+    public void setArchiveAccessDays(Integer archiveAccessDays) {
+        this.archiveAccessDays = archiveAccessDays;
+    }
+
+    public Integer getDeepArchiveAccessDays() {
+        return deepArchiveAccessDays;
+    }
+
+    public void setDeepArchiveAccessDays(Integer deepArchiveAccessDays) {
+        this.deepArchiveAccessDays = deepArchiveAccessDays;
+    }
+
+    @Override
+    public String toString() {
+        return "S3IntelligentTiering{" +
+            "id='" + id + '\'' +
+            ", prefix='" + prefix + '\'' +
+            ", archiveAccessDays=" + archiveAccessDays +
+            ", deepArchiveAccessDays=" + deepArchiveAccessDays +
+            '}';
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.broker.s3;
+
+import java.util.List;
+
+public class S3LifecycleRule {
+
+    private String id;
+    private String prefix = "";
+    private Boolean enabled = true;
+    private List<S3LifecycleTransition> transitions;
+    private Integer expirationDays;
+    private Integer noncurrentVersionExpirationDays;
+    private Integer abortIncompleteMultipartUploadDays;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(Boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public List<S3LifecycleTransition> getTransitions() {
+        return transitions;
+    }
+
+    public void setTransitions(List<S3LifecycleTransition> transitions) {
+        this.transitions = transitions;
+    }
+
+    public Integer getExpirationDays() {
+        return expirationDays;
+    }
+
+    public void setExpirationDays(Integer expirationDays) {
+        this.expirationDays = expirationDays;
+    }
+
+    public Integer getNoncurrentVersionExpirationDays() {
+        return noncurrentVersionExpirationDays;
+    }
+
+    public void setNoncurrentVersionExpirationDays(Integer noncurrentVersionExpirationDays) {
+        this.noncurrentVersionExpirationDays = noncurrentVersionExpirationDays;
+    }
+
+    public Integer getAbortIncompleteMultipartUploadDays() {
+        return abortIncompleteMultipartUploadDays;
+    }
+
+    public void setAbortIncompleteMultipartUploadDays(Integer abortIncompleteMultipartUploadDays) {
+        this.abortIncompleteMultipartUploadDays = abortIncompleteMultipartUploadDays;
+    }
+
+    @Override
+    public String toString() {
+        return "S3LifecycleRule{" +
+            "id='" + id + '\'' +
+            ", prefix='" + prefix + '\'' +
+            ", enabled=" + enabled +
+            ", transitions=" + transitions +
+            ", expirationDays=" + expirationDays +
+            ", noncurrentVersionExpirationDays=" + noncurrentVersionExpirationDays +
+            ", abortIncompleteMultipartUploadDays=" + abortIncompleteMultipartUploadDays +
+            '}';
+    }
+}
@@ -18,6 +18,9 @@ package com.libertymutualgroup.herman.aws.ecs.broker.sns;
 import com.amazonaws.services.sns.AmazonSNS;
 import com.amazonaws.services.sns.model.CreateTopicRequest;
 import com.amazonaws.services.sns.model.CreateTopicResult;
+import com.amazonaws.services.sns.model.ListSubscriptionsByTopicRequest;
+import com.amazonaws.services.sns.model.ListSubscriptionsByTopicResult;
+import com.amazonaws.services.sns.model.SetSubscriptionAttributesRequest;
 import com.amazonaws.services.sns.model.SetTopicAttributesRequest;
 import com.amazonaws.services.sns.model.SubscribeRequest;
 import com.amazonaws.services.sns.model.Subscription;
@@ -25,16 +28,29 @@ import com.amazonaws.services.sns.model.UnsubscribeRequest;
 import com.amazonaws.util.StringUtils;
 import com.libertymutualgroup.herman.aws.ecs.PropertyHandler;
 import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.util.ConcurrencyUtil;
+import com.libertymutualgroup.herman.util.HermanJackson;
+import com.libertymutualgroup.herman.util.RateLimiter;
 import org.apache.commons.collections4.CollectionUtils;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 
 public class SnsBroker {
 
-
     public static final String AND_ENDPOINT = " and endpoint: ";
+    static final String RAW_MESSAGE_DELIVERY = "RawMessageDelivery";
+    static final String FILTER_POLICY = "FilterPolicy";
+    static final String FILTER_POLICY_SCOPE = "FilterPolicyScope";
+    private static final int MAX_CONCURRENT_CHANGES = 5;
+    private static final RateLimiter SUBSCRIPTION_LIMITER = RateLimiter.shared("sns:Subscriptions", 10, 10);
+
     private HermanLogger logger;
     private PropertyHandler handler;
 
@@ -67,42 +83,117 @@ public class SnsBroker {
         updateDeliveryStatusAttributes(client, topic, topicArn);
 
         if (topic.getSubscriptions() != null) {
-            //automatically remove subscriptions
-            autoDeleteSubscriptions(client, topic, topicArn);
-
-            addSubscriptions(client, topic, topicArn);
+            reconcileSubscriptions(client, topic, topicArn);
         }
     }
 
-    private void addSubscriptions(AmazonSNS client, SnsTopic topic, String topicArn) {
+    private void reconcileSubscriptions(AmazonSNS client, SnsTopic topic, String topicArn) {
+        List<Subscription> existing = listAllSubscriptions(client, topicArn);
+
+        List<Runnable> changes = new ArrayList<>();
         for (SnsSubscription subscription : topic.getSubscriptions()) {
             String protocol = subscription.getProtocol();
             String endpoint = subscription.getEndpoint();
-            if (!StringUtils.isNullOrEmpty(protocol) && !StringUtils.isNullOrEmpty(endpoint)) {
-                logger.addLogEntry("Adding subscription with protocol: " + protocol + AND_ENDPOINT + endpoint);
-                SubscribeRequest subscribeRequest = new SubscribeRequest(topicArn, protocol, endpoint);
-                client.subscribe(subscribeRequest);
-            } else {
+            if (StringUtils.isNullOrEmpty(protocol) || StringUtils.isNullOrEmpty(endpoint)) {
                 logger.addLogEntry("Skipping subscription with protocol: " + protocol + AND_ENDPOINT + endpoint);
+                continue;
+            }
+            Optional<Subscription> match = existing.stream().filter(sub -> matches(subscription, sub)).findFirst();
+            if (!match.isPresent()) {
+                changes.add(() -> subscribe(client, topicArn, subscription));
+            } else if (isConfirmed(match.get()) && subscription.hasManagedAttributes()) {
+                changes.add(() -> updateSubscriptionAttributes(client, subscription, match.get()));
             }
         }
-    }
 
-    private void autoDeleteSubscriptions(AmazonSNS client, SnsTopic topic, String topicArn) {
         if (topic.getAutoRemoveSubscriptions() != null && topic.getAutoRemoveSubscriptions()) {
-            for (Subscription subscription : client.listSubscriptionsByTopic(topicArn).getSubscriptions()) {
-                boolean subscriptionExists = topic.getSubscriptions().stream().anyMatch(
-                    sub -> equalsWithoutNonEndpointCharacters(sub.getEndpoint(), subscription.getEndpoint()) &&
-                        equalsWithoutNonEndpointCharacters(sub.getProtocol(), subscription.getProtocol()));
-                if (!subscriptionExists) {
-                    logger.addLogEntry(
-                        "Delete subscription with protocol: " + subscription.getProtocol() + AND_ENDPOINT + subscription
-                            .getEndpoint() +
-                            " as it is no longer in the subscription list");
-                    client.unsubscribe(new UnsubscribeRequest(subscription.getSubscriptionArn()));
+            for (Subscription subscription : existing) {
+                boolean subscriptionExists = topic.getSubscriptions().stream()
+                    .anyMatch(sub -> sub.getProtocol() != null && sub.getEndpoint() != null && matches(sub, subscription));
+                if (!subscriptionExists && isConfirmed(subscription)) {
+                    changes.add(() -> unsubscribe(client, subscription));
                 }
             }
         }
+
+        if (changes.isEmpty()) {
+            logger.addLogEntry("Subscriptions for " + topic.getName() + " are up to date");
+            return;
+        }
+        ConcurrencyUtil.runAll(changes, MAX_CONCURRENT_CHANGES);
+    }
+
+    private List<Subscription> listAllSubscriptions(AmazonSNS client, String topicArn) {
+        List<Subscription> subscriptions = new ArrayList<>();
+        String nextToken = null;
+        do {
+            SUBSCRIPTION_LIMITER.acquire();
+            ListSubscriptionsByTopicResult result = client
+                .listSubscriptionsByTopic(new ListSubscriptionsByTopicRequest(topicArn, nextToken));
+            subscriptions.addAll(result.getSubscriptions());
+            nextToken = result.getNextToken();
+        } while (nextToken != null);
+        return subscriptions;
+    }
+
+    private void subscribe(AmazonSNS client, String topicArn, SnsSubscription subscription) {
+        logger.addLogEntry("Adding subscription with protocol: " + subscription.getProtocol() + AND_ENDPOINT
+            + subscription.getEndpoint());
+        SubscribeRequest subscribeRequest = new SubscribeRequest(topicArn, subscription.getProtocol(),
+            subscription.getEndpoint()).withReturnSubscriptionArn(true);
+        Map<String, String> attributes = subscription.toAttributes();
+        if (!attributes.isEmpty()) {
+            subscribeRequest.setAttributes(attributes);
+        }
+        SUBSCRIPTION_LIMITER.acquire();
+        client.subscribe(subscribeRequest);
+    }
+
+    private void updateSubscriptionAttributes(AmazonSNS client, SnsSubscription desired, Subscription subscription) {
+        SUBSCRIPTION_LIMITER.acquire();
+        Map<String, String> current = client.getSubscriptionAttributes(subscription.getSubscriptionArn())
+            .getAttributes();
+        diffSubscriptionAttributes(desired.toAttributes(), current).forEach((name, value) -> {
+            logger.addLogEntry("Updating subscription attribute " + name + " for endpoint: "
+                + subscription.getEndpoint());
+            SUBSCRIPTION_LIMITER.acquire();
+            client.setSubscriptionAttributes(
+                new SetSubscriptionAttributesRequest(subscription.getSubscriptionArn(), name, value));
+        });
+    }
+
+    private void unsubscribe(AmazonSNS client, Subscription subscription) {
+        logger.addLogEntry(
+            "Delete subscription with protocol: " + subscription.getProtocol() + AND_ENDPOINT + subscription
+                .getEndpoint() +
+                " as it is no longer in the subscription list");
+        SUBSCRIPTION_LIMITER.acquire();
+        client.unsubscribe(new UnsubscribeRequest(subscription.getSubscriptionArn()));
+    }
+
+    private boolean matches(SnsSubscription desired, Subscription actual) {
+        return equalsWithoutNonEndpointCharacters(desired.getEndpoint(), actual.getEndpoint()) &&
+            equalsWithoutNonEndpointCharacters(desired.getProtocol(), actual.getProtocol());
+    }
+
+    // Unconfirmed subscriptions have no ARN yet and can be neither updated nor unsubscribed
+    private boolean isConfirmed(Subscription subscription) {
+        return subscription.getSubscriptionArn() != null
+            && subscription.getSubscriptionArn().startsWith("arn:");
+    }
+
+    static Map<String, String> diffSubscriptionAttributes(Map<String, String> desired, Map<String, String> current) {
+        Map<String, String> changes = new LinkedHashMap<>();
+        desired.forEach((name, value) -> {
+            String currentValue = current == null ? null : current.get(name);
+            boolean same = FILTER_POLICY.equals(name)
+                ? HermanJackson.isSameJson(value, currentValue)
+                : value.equalsIgnoreCase(currentValue == null ? "" : currentValue);
+            if (!same) {
+                changes.put(name, value);
+            }
+        });
+        return changes;
     }
 
     private void updateDeliveryStatusAttributes(AmazonSNS client, SnsTopic topic, String topicArn) {
@@ -126,7 +217,8 @@ public class SnsBroker {
         Map<String, String> updatedDeliveryStatusTopicAttributeNameValueMap = new HashMap<>(
             requestedTopicAttributeNameValueMap);
 
-        client.getTopicAttributes(topicArn).getAttributes().forEach((k, v) -> {
+        Map<String, String> currentAttributes = client.getTopicAttributes(topicArn).getAttributes();
+        currentAttributes.forEach((k, v) -> {
             if (possibleDeliveryAttributeNameValueMap.get(k) != null && !requestedTopicAttributeNameValueMap
                 .containsKey(k)) {
                 logger.addLogEntry("Defaulting topic delivery status attribute. Key: " + k + " and value: "
@@ -136,10 +228,16 @@ public class SnsBroker {
             }
         });
 
-        updatedDeliveryStatusTopicAttributeNameValueMap
-            .forEach((k, v) -> logger.addLogEntry("Attributes to be updated - key : " + k + " value : " + v));
-
+        Map<String, String> changes = new HashMap<>();
         updatedDeliveryStatusTopicAttributeNameValueMap.forEach((k, v) -> {
+            if (!Objects.equals(v, currentAttributes.get(k))) {
+                changes.put(k, v);
+            }
+        });
+
+        changes.forEach((k, v) -> logger.addLogEntry("Attributes to be updated - key : " + k + " value : " + v));
+
+        changes.forEach((k, v) -> {
             SetTopicAttributesRequest setTopicAttributesRequest =
                 new SetTopicAttributesRequest().withAttributeName(k).withAttributeValue(v);
             client.setTopicAttributes(setTopicAttributesRequest.withTopicArn(topicArn));
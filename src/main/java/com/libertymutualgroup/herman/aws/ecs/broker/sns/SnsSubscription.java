@@ -15,10 +15,18 @@
  */
 package com.libertymutualgroup.herman.aws.ecs.broker.sns;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 public class SnsSubscription {
 
     private String protocol;
     private String endpoint;
+    private Boolean rawMessageDelivery;
+    private JsonNode filterPolicy;
+    private String filterPolicyScope;
 
     public String getProtocol() {
         return protocol;
@@ -35,4 +43,47 @@ public class SnsSubscription {
     public void setEndpoint(String endpoint) {
         this.endpoint = endpoint;
     }
+
+    public Boolean getRawMessageDelivery() {
+        return rawMessageDelivery;
+    }
+
+    public void setRawMessageDelivery(Boolean rawMessageDelivery) {
+        this.rawMessageDelivery = rawMessageDelivery;
+    }
+
+    public JsonNode getFilterPolicy() {
+        return filterPolicy;
+    }
+
+    public void setFilterPolicy(JsonNode filterPolicy) {
+        this.filterPolicy = filterPolicy;
+    }
+
+    public String getFilterPolicyScope() {
+        return filterPolicyScope;
+    }
+
+    public void setFilterPolicyScope(String filterPolicyScope) {
+        this.filterPolicyScope = filterPolicyScope;
+    }
+
+    boolean hasManagedAttributes() {
+        return rawMessageDelivery != null || filterPolicy != null || filterPolicyScope != null;
+    }
+
+    // Attributes left unset in the template are not managed, so existing values are left alone
+    Map<String, String> toAttributes() {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        if (rawMessageDelivery != null) {
+            attributes.put(SnsBroker.RAW_MESSAGE_DELIVERY, rawMessageDelivery.toString());
+        }
+        if (filterPolicy != null) {
+            attributes.put(SnsBroker.FILTER_POLICY, filterPolicy.toString());
+        }
+        if (filterPolicyScope != null) {
+            attributes.put(SnsBroker.FILTER_POLICY_SCOPE, filterPolicyScope);
+        }
+        return attributes;
+    }
 }
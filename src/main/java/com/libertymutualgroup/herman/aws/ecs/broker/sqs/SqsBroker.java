@@ -18,7 +18,6 @@ package com.libertymutualgroup.herman.aws.ecs.broker.sqs;
 import com.amazonaws.services.sqs.AmazonSQS;
 import com.amazonaws.services.sqs.model.CreateQueueRequest;
 import com.amazonaws.services.sqs.model.GetQueueAttributesRequest;
-import com.amazonaws.services.sqs.model.GetQueueAttributesResult;
 import com.amazonaws.services.sqs.model.QueueAttributeName;
 import com.amazonaws.services.sqs.model.QueueDoesNotExistException;
 import com.libertymutualgroup.herman.aws.AwsExecException;
@@ -26,18 +25,26 @@ import com.libertymutualgroup.herman.aws.ecs.PropertyHandler;
 import com.libertymutualgroup.herman.aws.tags.HermanTag;
 import com.libertymutualgroup.herman.aws.tags.TagUtil;
 import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.logging.PrefixedLogger;
+import com.libertymutualgroup.herman.util.ConcurrencyUtil;
+import com.libertymutualgroup.herman.util.HermanJackson;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 public class SqsBroker {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SqsBroker.class);
+    private static final int MAX_CONCURRENT_QUEUES = 5;
+    private static final String FIFO_QUEUE = QueueAttributeName.FifoQueue.toString();
 
     private HermanLogger buildLogger;
     private PropertyHandler handler;
@@ -47,6 +54,37 @@ public class SqsBroker {
         this.handler = handler;
     }
 
+    /**
+     * Brokers queues concurrently. Each queue only depends on its own DLQ, which is brokered first.
+     *
+     * @param policyLoader looks up the policy for a queue, may return null
+     */
+    public void brokerQueues(AmazonSQS client, List<SqsQueue> queues, Function<SqsQueue, String> policyLoader,
+        List<HermanTag> tags) {
+        if (queues.isEmpty()) {
+            return;
+        }
+        // Policy files and properties are resolved up front, outside of the worker threads
+        List<String> policies = new ArrayList<>();
+        for (SqsQueue queue : queues) {
+            String policy = policyLoader.apply(queue);
+            policies.add(policy != null ? handler.mapInProperties(policy) : null);
+        }
+        if (queues.size() == 1) {
+            brokerMappedQueue(client, queues.get(0), policies.get(0), tags);
+            return;
+        }
+
+        List<Runnable> queueBrokers = new ArrayList<>();
+        for (int i = 0; i < queues.size(); i++) {
+            SqsQueue queue = queues.get(i);
+            String policy = policies.get(i);
+            queueBrokers.add(() -> new SqsBroker(new PrefixedLogger(buildLogger, queue.getName()), handler)
+                .brokerMappedQueue(client, queue, policy, tags));
+        }
+        ConcurrencyUtil.runAll(queueBrokers, MAX_CONCURRENT_QUEUES);
+    }
+
     /**
      * http://docs.aws.amazon.com/AWSSimpleQueueService/latest/APIReference/API_SetQueueAttributes.html
      * <p>
@@ -56,9 +94,13 @@ public class SqsBroker {
      * LastModifiedTimestamp | QueueArn | ApproximateNumberOfMessagesDelayed |
      * DelaySeconds | ReceiveMessageWaitTimeSeconds | RedrivePolicy | FifoQueue
      * | ContentBasedDeduplication | KmsMasterKeyId |
-     * KmsDataKeyReusePeriodSeconds
+     * KmsDataKeyReusePeriodSeconds | DeduplicationScope | FifoThroughputLimit
      */
     public void brokerQueue(AmazonSQS client, SqsQueue queue, String queuePolicy, List<HermanTag> tags) {
+        brokerMappedQueue(client, queue, queuePolicy != null ? handler.mapInProperties(queuePolicy) : null, tags);
+    }
+
+    private void brokerMappedQueue(AmazonSQS client, SqsQueue queue, String fullPolicy, List<HermanTag> tags) {
         buildLogger.addLogEntry("Starting SQS Broker with queue: " + queue.getName());
         Map<String, String> attributes = new HashMap<>();
         Map<String, String> dlqAttributes = new HashMap<>();
@@ -80,15 +122,21 @@ public class SqsBroker {
                 throw new AwsExecException("Unable to create fifo queue because queueName does not end with .fifo");
             }
 
-            attributes.put("FifoQueue", "true");
+            attributes.put(FIFO_QUEUE, "true");
             attributes.put("ContentBasedDeduplication", "true");
-            dlqAttributes.put("FifoQueue", "true");
+            dlqAttributes.put(FIFO_QUEUE, "true");
             dlqAttributes.put("ContentBasedDeduplication", "true");
             dlqName = dlqName.replace(".fifo", "") + ".fifo" ;
+
+            // High throughput mode partitions deduplication and throughput by message group
+            boolean highThroughput = Boolean.TRUE.equals(queue.getHighThroughputFifo());
+            attributes.put("DeduplicationScope", highThroughput ? "messageGroup" : "queue");
+            attributes.put("FifoThroughputLimit", highThroughput ? "perMessageGroupId" : "perQueue");
+            dlqAttributes.put("DeduplicationScope", highThroughput ? "messageGroup" : "queue");
+            dlqAttributes.put("FifoThroughputLimit", highThroughput ? "perMessageGroupId" : "perQueue");
         }
 
-        if (queuePolicy != null) {
-            String fullPolicy = handler.mapInProperties(queuePolicy);
+        if (fullPolicy != null) {
             attributes.put("Policy", fullPolicy);
         }
 
@@ -109,72 +157,104 @@ public class SqsBroker {
             }
         }
 
-        if(queue.getRedrivePolicy() != null){
-            try { // Check for existing DLQ and update if found
-                updateQueueAttributes(client, dlqName, dlqAttributes);
-            } catch (QueueDoesNotExistException ex) { // Create new
-                LOGGER.debug("Error updating DLQ queue: " + queue.getName(), ex);
-                createNewQueue(client, dlqName, dlqAttributes);
-            }
-
-            String dlqArn = getQueueArn(client, dlqName);
+        if (queue.getRedrivePolicy() != null) {
+            // The DLQ has to exist before the source queue can point at it
+            String dlqArn = brokerQueueAttributes(client, dlqName, dlqAttributes, null);
             String maximumReceiveCount = queue.getRedrivePolicy().getMaximumReceiveCount();
 
-            attributes.put(QueueAttributeName.RedrivePolicy.toString(), "{\"maxReceiveCount\": \"" + maximumReceiveCount + "\", \"deadLetterTargetArn\": \"" + dlqArn + "\"}");
+            attributes.put(QueueAttributeName.RedrivePolicy.toString(), "{\"maxReceiveCount\": " + maximumReceiveCount + ", \"deadLetterTargetArn\": \"" + dlqArn + "\"}");
         }
 
-        try { // Check for existing and update if found
-            updateQueueAttributes(client, queue.getName(), attributes);
-        } catch (QueueDoesNotExistException ex) { // Create new
-            LOGGER.debug("Error updating queue: " + queue.getName(), ex);
-            createNewQueue(client, queue.getName(), attributes);
+        brokerQueueAttributes(client, queue.getName(), attributes, tags);
+    }
+
+    /**
+     * Creates the queue, or applies only the attributes and tags that differ from the existing queue
+     *
+     * @return the queue ARN
+     */
+    private String brokerQueueAttributes(AmazonSQS client, String queueName, Map<String, String> attributes,
+        List<HermanTag> tags) {
+        String queueUrl;
+        try {
+            queueUrl = client.getQueueUrl(queueName).getQueueUrl();
+        } catch (QueueDoesNotExistException ex) {
+            LOGGER.debug("Queue does not exist: " + queueName, ex);
+            return createNewQueue(client, queueName, attributes, tags);
         }
+
+        Map<String, String> current = client.getQueueAttributes(new GetQueueAttributesRequest(queueUrl)
+            .withAttributeNames(QueueAttributeName.All)).getAttributes();
+        Map<String, String> changes = diffAttributes(attributes, current);
+        if (changes.isEmpty()) {
+            buildLogger.addLogEntry("Queue " + queueName + " is up to date");
+        } else {
+            buildLogger.addLogEntry("Updating queue " + queueName + " attributes: " + changes.keySet());
+            try {
+                client.setQueueAttributes(queueUrl, changes);
+            } catch (Exception sqaEx) {
+                buildLogger.addErrorLogEntry(
+                    String.format("Error updating attributes for queue %s: %s", queueName, changes));
+                throw sqaEx;
+            }
+        }
+
         if (tags != null) {
-            tagQueue(client, queue.getName(), tags);
+            Map<String, String> currentTags = client.listQueueTags(queueUrl).getTags();
+            Map<String, String> changedTags = TagUtil.hermanToMap(tags).entrySet().stream()
+                .filter(tag -> currentTags == null || !Objects.equals(tag.getValue(), currentTags.get(tag.getKey())))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+            if (!changedTags.isEmpty()) {
+                buildLogger.addLogEntry("...Adding tags to queue: " + queueName);
+                client.tagQueue(queueUrl, changedTags);
+            }
         }
+        return current.get(QueueAttributeName.QueueArn.toString());
     }
 
-    private String getQueueArn(AmazonSQS client, String queueName){
-        String queueUrl = client.getQueueUrl(queueName).getQueueUrl();
-        GetQueueAttributesResult queueAttributes = client.getQueueAttributes(
-                new GetQueueAttributesRequest(queueUrl)
-                        .withAttributeNames("QueueArn"));
-        return queueAttributes.getAttributes().get("QueueArn");
+    /**
+     * Desired attributes that differ from the current ones. FifoQueue can't be changed after creation, and
+     * JSON documents are compared by content rather than formatting.
+     */
+    static Map<String, String> diffAttributes(Map<String, String> desired, Map<String, String> current) {
+        Map<String, String> changes = new HashMap<>();
+        for (Map.Entry<String, String> attribute : desired.entrySet()) {
+            String name = attribute.getKey();
+            String currentValue = current.get(name);
+            boolean same;
+            if (FIFO_QUEUE.equals(name)) {
+                same = true;
+            } else if ("Policy".equals(name) || QueueAttributeName.RedrivePolicy.toString().equals(name)) {
+                same = HermanJackson.isSameJson(attribute.getValue(), currentValue);
+            } else {
+                same = Objects.equals(attribute.getValue(), currentValue);
+            }
+            if (!same) {
+                changes.put(name, attribute.getValue());
+            }
+        }
+        return changes;
     }
 
-    private void createNewQueue(AmazonSQS client, String queueName, Map<String, String> attributes) {
+    private String createNewQueue(AmazonSQS client, String queueName, Map<String, String> attributes,
+        List<HermanTag> tags) {
         buildLogger
             .addLogEntry("Could not find queue with name: " + queueName + ". Attempting to create...");
 
         CreateQueueRequest request = new CreateQueueRequest().withQueueName(queueName).withAttributes(attributes);
+        if (tags != null) {
+            request.setTags(TagUtil.hermanToMap(tags));
+        }
+        String queueUrl;
         try {
-            client.createQueue(request);
+            queueUrl = client.createQueue(request).getQueueUrl();
             buildLogger.addLogEntry("Created queue: " + queueName);
         } catch (Exception createQueueEx) {
             buildLogger.addErrorLogEntry(
                 String.format("Error creating queue %s: %s", request.getQueueName(), request.getAttributes()));
             throw createQueueEx;
         }
-    }
-
-    private void updateQueueAttributes(AmazonSQS client, String queueName, Map<String, String> attributes) {
-        String queueUrl;
-        queueUrl = client.getQueueUrl(queueName).getQueueUrl();
-        buildLogger.addLogEntry("Queue with name " + queueName + " already exists, attempting update.");
-
-        try {
-            client.setQueueAttributes(queueUrl, attributes);
-            buildLogger.addLogEntry("Updated queue: " + queueName);
-        } catch (Exception sqaEx) {
-            buildLogger.addErrorLogEntry(
-                String.format("Error updating attributes for queue %s: %s", queueName, attributes));
-            throw sqaEx;
-        }
-    }
-
-    private void tagQueue(AmazonSQS client, String queueName, List<HermanTag> tags) {
-        String queueUrl = client.getQueueUrl(queueName).getQueueUrl();
-        buildLogger.addLogEntry("...Adding tags to queue: " + queueName);
-        client.tagQueue(queueUrl, TagUtil.hermanToMap(tags));
+        return client.getQueueAttributes(new GetQueueAttributesRequest(queueUrl)
+            .withAttributeNames(QueueAttributeName.QueueArn)).getAttributes().get(QueueAttributeName.QueueArn.toString());
     }
 }
@@ -22,10 +22,11 @@ public class SqsQueue {
     private String delaySeconds;
     private String maximumMessageSize;
     private String messageRetentionPeriod;
-    private String receiveMessageWaitTimeSeconds;
+    private String receiveMessageWaitTimeSeconds = "20";
     private String visibilityTimeout;
     private String kmsMasterKeyId;
     private String fifoQueue;
+    private Boolean highThroughputFifo = false;
     private Boolean serverSideEncryption = true;
     private RedrivePolicy redrivePolicy;
 
@@ -101,6 +102,14 @@ public class SqsQueue {
         this.fifoQueue = fifoQueue;
     }
 
+    public Boolean getHighThroughputFifo() {
+        return highThroughputFifo;
+    }
+
+    public void setHighThroughputFifo(Boolean highThroughputFifo) {
+        this.highThroughputFifo = highThroughputFifo;
+    }
+
     public Boolean getServerSideEncryption() {
         return serverSideEncryption;
     }
@@ -129,6 +138,7 @@ public class SqsQueue {
                 ", visibilityTimeout='" + visibilityTimeout + '\'' +
                 ", kmsMasterKeyId='" + kmsMasterKeyId + '\'' +
                 ", fifoQueue='" + fifoQueue + '\'' +
+                ", highThroughputFifo=" + highThroughputFifo +
                 ", serverSideEncryption=" + serverSideEncryption +
                 ", redrivePolicy=" + redrivePolicy +
                 '}';
@@ -0,0 +1,383 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+import com.amazonaws.services.autoscaling.model.AutoScalingGroup;
+import com.amazonaws.services.ecs.model.Attribute;
+import com.amazonaws.services.ecs.model.ContainerDefinition;
+import com.amazonaws.services.ecs.model.ContainerInstance;
+import com.amazonaws.services.ecs.model.ContainerInstanceStatus;
+import com.amazonaws.services.ecs.model.DeploymentConfiguration;
+import com.amazonaws.services.ecs.model.PortMapping;
+import com.amazonaws.services.ecs.model.Resource;
+import com.amazonaws.services.ecs.model.TaskDefinition;
+import com.amazonaws.services.ecs.model.TaskDefinitionPlacementConstraint;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.aws.asg.AutoscalingGroupHandler;
+import com.libertymutualgroup.herman.aws.ecs.service.CapacityCheckMode;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.util.AdaptivePoller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Checks before a service rollout that the cluster has room for the tasks the rollout has to start before old
+ * tasks stop, and optionally scales the cluster out when it does not.
+ */
+public class ClusterCapacityPlanner {
+
+    private static final Pattern ATTRIBUTE_TERM = Pattern.compile("attribute:(\\S+)\\s*(==|!=|!exists|exists)\\s*(\\S*)");
+    // Bound for tasks without reservations, which ECS places without limit
+    private static final int MAX_SLOTS_PER_INSTANCE = 1024;
+    private static final String ASG_NAME_TAG = "aws:autoscaling:groupName";
+    private static final long MIN_POLLING_INTERVAL_MS = 10000;
+    private static final long MAX_POLLING_INTERVAL_MS = 30000;
+    private static final double POLLING_GROWTH_FACTOR = 1.5;
+    // New instances boot and register within minutes; waiting longer only delays the rollout's own failure
+    private static final long SCALE_OUT_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final Pattern TASK_SIZE = Pattern.compile("(?i)\\s*(\\d+(?:\\.\\d+)?)\\s*(vcpu|gb)?\\s*");
+
+    private ContainerInstanceHandler containerInstanceHandler;
+    private AutoscalingGroupHandler asgHandler;
+    private HermanLogger logger;
+    private Supplier<AdaptivePoller> pollerFactory;
+
+    public ClusterCapacityPlanner(ContainerInstanceHandler containerInstanceHandler, AutoscalingGroupHandler asgHandler,
+        HermanLogger logger) {
+        this(containerInstanceHandler, asgHandler, logger,
+            () -> new AdaptivePoller(MIN_POLLING_INTERVAL_MS, MAX_POLLING_INTERVAL_MS, POLLING_GROWTH_FACTOR));
+    }
+
+    public ClusterCapacityPlanner(ContainerInstanceHandler containerInstanceHandler, AutoscalingGroupHandler asgHandler,
+        HermanLogger logger, Supplier<AdaptivePoller> pollerFactory) {
+        this.containerInstanceHandler = containerInstanceHandler;
+        this.asgHandler = asgHandler;
+        this.logger = logger;
+        this.pollerFactory = pollerFactory;
+    }
+
+    /**
+     * Checks the rollout fits and applies the mode when it does not
+     *
+     * @param runningCount tasks the service runs now, 0 for a new service
+     */
+    public void ensureCapacity(String cluster, TaskDefinition taskDefinition, int desiredCount, int runningCount,
+        DeploymentConfiguration deploymentConfiguration, CapacityCheckMode mode, long timeoutMillis) {
+        int requiredTasks = requiredTasks(desiredCount, runningCount, deploymentConfiguration);
+        CapacityPlan plan = plan(cluster, taskDefinition, requiredTasks);
+        if (plan.fits()) {
+            this.logger.addLogEntry("Capacity check passed: " + plan);
+            return;
+        }
+
+        if (mode == CapacityCheckMode.WARN) {
+            this.logger.addErrorLogEntry("Capacity check: the cluster may not have room for this rollout, tasks may stay PENDING. " + plan);
+            return;
+        }
+        if (mode == CapacityCheckMode.FAIL) {
+            throw new AwsExecException("Cluster " + cluster + " does not have room for this rollout. " + plan);
+        }
+
+        scaleOut(cluster, plan);
+        AdaptivePoller poller = this.pollerFactory.get();
+        long deadline = System.currentTimeMillis() + Math.min(timeoutMillis, SCALE_OUT_TIMEOUT_MS);
+        while (!plan.fits()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AwsExecException("Timed out waiting for cluster " + cluster + " to scale out. " + plan);
+            }
+            poller.sleep();
+            plan = plan(cluster, taskDefinition, requiredTasks);
+            this.logger.addLogEntry("... Waiting for capacity: " + plan);
+        }
+        this.logger.addLogEntry("Capacity check passed after scale out: " + plan);
+    }
+
+    /**
+     * Free slots the rollout needs to make progress. Tasks added to the service each need a slot. Replacing tasks
+     * only needs one free slot when no old task may stop first, since ECS then starts one new task, stops an old
+     * one and reuses its capacity.
+     */
+    static int requiredTasks(int desiredCount, int runningCount, DeploymentConfiguration deploymentConfiguration) {
+        if (runningCount == 0) {
+            return desiredCount;
+        }
+        int maximumPercent = 200;
+        int minimumHealthyPercent = 100;
+        if (deploymentConfiguration != null) {
+            maximumPercent = Optional.ofNullable(deploymentConfiguration.getMaximumPercent()).orElse(maximumPercent);
+            minimumHealthyPercent = Optional.ofNullable(deploymentConfiguration.getMinimumHealthyPercent()).orElse(minimumHealthyPercent);
+        }
+        int surge = Math.max(0, desiredCount * maximumPercent / 100 - runningCount);
+        int keep = (int) Math.ceil(desiredCount * minimumHealthyPercent / 100.0);
+        int stoppable = Math.max(0, runningCount - keep);
+        int addedTasks = Math.min(surge, Math.max(0, desiredCount - runningCount));
+        int replacementTasks = stoppable == 0 && surge > 0 ? 1 : 0;
+        return Math.max(addedTasks, replacementTasks);
+    }
+
+    CapacityPlan plan(String cluster, TaskDefinition taskDefinition, int requiredTasks) {
+        CapacityPlan plan = new CapacityPlan(requiredTasks, taskCpu(taskDefinition), taskMemory(taskDefinition),
+            staticHostPorts(taskDefinition));
+        List<ContainerInstance> instances = this.containerInstanceHandler.getContainerInstances(cluster);
+        if (instances == null) {
+            return plan;
+        }
+        List<TaskDefinitionPlacementConstraint> constraints = taskDefinition.getPlacementConstraints() == null
+            ? new ArrayList<>() : taskDefinition.getPlacementConstraints();
+        for (ContainerInstance instance : instances) {
+            plan.slotsPerNewInstance = Math.max(plan.slotsPerNewInstance, plan.slots(instance.getRegisteredResources(), false));
+            if (!ContainerInstanceStatus.ACTIVE.toString().equals(instance.getStatus())
+                || Boolean.FALSE.equals(instance.getAgentConnected())) {
+                continue;
+            }
+            if (!satisfies(instance, constraints)) {
+                plan.excludedInstances++;
+                continue;
+            }
+            plan.eligibleInstances.add(instance);
+            plan.availableSlots += plan.slots(instance.getRemainingResources(), true);
+        }
+        return plan;
+    }
+
+    private void scaleOut(String cluster, CapacityPlan plan) {
+        if (plan.slotsPerNewInstance == 0) {
+            throw new AwsExecException("No instance in cluster " + cluster + " is large enough for one task. " + plan);
+        }
+        String asgName = findAsgName(cluster, plan)
+            .orElseThrow(() -> new AwsExecException("Unable to find the autoscaling group of cluster " + cluster + ". " + plan));
+        AutoScalingGroup asg = this.asgHandler.getAsg(asgName);
+        int missingSlots = plan.requiredTasks - plan.availableSlots;
+        int additionalInstances = (missingSlots + plan.slotsPerNewInstance - 1) / plan.slotsPerNewInstance;
+        int desiredCapacity = asg.getDesiredCapacity() + additionalInstances;
+        if (desiredCapacity > asg.getMaxSize()) {
+            throw new AwsExecException("Cluster " + cluster + " needs " + additionalInstances + " more instances but "
+                + asgName + " is limited to " + asg.getMaxSize() + ". " + plan);
+        }
+        this.logger.addLogEntry("Capacity check: scaling out " + asgName + " by " + additionalInstances + " instances. " + plan);
+        this.asgHandler.setDesiredCapacity(asgName, desiredCapacity);
+    }
+
+    private Optional<String> findAsgName(String cluster, CapacityPlan plan) {
+        Set<String> asgNames = new TreeSet<>(this.containerInstanceHandler
+            .getContainerInstanceTagValues(plan.eligibleInstances, ASG_NAME_TAG).values());
+        if (asgNames.size() > 1) {
+            throw new AwsExecException("Cluster " + cluster + " has instances in several autoscaling groups ("
+                + String.join(", ", asgNames) + "), an instance rotation may be in progress. " + plan);
+        }
+        return asgNames.stream().findFirst();
+    }
+
+    /**
+     * Evaluates memberOf constraints made of attribute terms joined by "and"/"or" (the form Herman itself uses).
+     * Anything else is assumed to match, since the cluster query language is only fully evaluated by ECS.
+     */
+    static boolean satisfies(ContainerInstance instance, List<TaskDefinitionPlacementConstraint> constraints) {
+        for (TaskDefinitionPlacementConstraint constraint : constraints) {
+            if (!"memberOf".equals(constraint.getType()) || constraint.getExpression() == null) {
+                continue;
+            }
+            boolean anyMatch = false;
+            for (String alternative : constraint.getExpression().split("(?i)\\s+or\\s+")) {
+                boolean allMatch = true;
+                for (String term : alternative.split("(?i)\\s+and\\s+")) {
+                    Boolean matches = evaluate(instance, term.trim());
+                    if (matches == null) {
+                        return true;
+                    }
+                    allMatch &= matches;
+                }
+                anyMatch |= allMatch;
+            }
+            if (!anyMatch) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Boolean evaluate(ContainerInstance instance, String term) {
+        Matcher matcher = ATTRIBUTE_TERM.matcher(term);
+        if (!matcher.matches()) {
+            return null;
+        }
+        String value = null;
+        boolean exists = false;
+        if (instance.getAttributes() != null) {
+            for (Attribute attribute : instance.getAttributes()) {
+                if (matcher.group(1).equals(attribute.getName())) {
+                    exists = true;
+                    value = attribute.getValue();
+                }
+            }
+        }
+        switch (matcher.group(2)) {
+            case "exists":
+                return exists;
+            case "!exists":
+                return !exists;
+            case "==":
+                return Objects.equals(value, matcher.group(3));
+            default:
+                return !Objects.equals(value, matcher.group(3));
+        }
+    }
+
+    private int taskCpu(TaskDefinition taskDefinition) {
+        Optional<Integer> taskCpu = parseTaskSize(taskDefinition.getCpu(), "vcpu", "CPU");
+        if (taskCpu.isPresent()) {
+            return taskCpu.get();
+        }
+        return taskDefinition.getContainerDefinitions().stream()
+            .mapToInt(container -> Optional.ofNullable(container.getCpu()).orElse(0))
+            .sum();
+    }
+
+    private int taskMemory(TaskDefinition taskDefinition) {
+        Optional<Integer> taskMemory = parseTaskSize(taskDefinition.getMemory(), "gb", "memory");
+        if (taskMemory.isPresent()) {
+            return taskMemory.get();
+        }
+        int memory = 0;
+        for (ContainerDefinition container : taskDefinition.getContainerDefinitions()) {
+            if (container.getMemoryReservation() != null) {
+                memory += container.getMemoryReservation();
+            }
+            else if (container.getMemory() != null) {
+                memory += container.getMemory();
+            }
+        }
+        return memory;
+    }
+
+    /**
+     * Task level sizes are CPU units or MiB, or the same amounts written as "1 vCPU" and "2 GB"
+     */
+    private Optional<Integer> parseTaskSize(String size, String unit, String resource) {
+        if (size == null) {
+            return Optional.empty();
+        }
+        Matcher matcher = TASK_SIZE.matcher(size);
+        if (!matcher.matches() || (matcher.group(2) != null && !unit.equalsIgnoreCase(matcher.group(2)))) {
+            this.logger.addErrorLogEntry("Capacity check: unable to read task " + resource + " '" + size
+                + "', using the container reservations instead");
+            return Optional.empty();
+        }
+        double amount = Double.parseDouble(matcher.group(1));
+        return Optional.of((int) (matcher.group(2) == null ? amount : amount * 1024));
+    }
+
+    private List<String> staticHostPorts(TaskDefinition taskDefinition) {
+        List<String> ports = new ArrayList<>();
+        if ("awsvpc".equals(taskDefinition.getNetworkMode())) {
+            return ports;
+        }
+        boolean hostNetwork = "host".equals(taskDefinition.getNetworkMode());
+        for (ContainerDefinition container : taskDefinition.getContainerDefinitions()) {
+            if (container.getPortMappings() == null) {
+                continue;
+            }
+            for (PortMapping mapping : container.getPortMappings()) {
+                Integer port = hostNetwork ? mapping.getContainerPort() : mapping.getHostPort();
+                if (port != null && port != 0) {
+                    ports.add(String.valueOf(port));
+                }
+            }
+        }
+        return ports;
+    }
+
+    static class CapacityPlan {
+        private final int requiredTasks;
+        private final int cpuPerTask;
+        private final int memoryPerTask;
+        private final List<String> staticHostPorts;
+        private final List<ContainerInstance> eligibleInstances = new ArrayList<>();
+        private int availableSlots;
+        private int excludedInstances;
+        private int slotsPerNewInstance;
+
+        CapacityPlan(int requiredTasks, int cpuPerTask, int memoryPerTask, List<String> staticHostPorts) {
+            this.requiredTasks = requiredTasks;
+            this.cpuPerTask = cpuPerTask;
+            this.memoryPerTask = memoryPerTask;
+            this.staticHostPorts = staticHostPorts;
+        }
+
+        boolean fits() {
+            return availableSlots >= requiredTasks;
+        }
+
+        int getAvailableSlots() {
+            return availableSlots;
+        }
+
+        int getExcludedInstances() {
+            return excludedInstances;
+        }
+
+        /**
+         * Tasks that fit in the given resources; tasks with static host ports fit at most once per instance
+         */
+        int slots(List<Resource> resources, boolean checkPortsInUse) {
+            int slots = Math.min(fit(resource(resources, "CPU"), cpuPerTask), fit(resource(resources, "MEMORY"), memoryPerTask));
+            if (!staticHostPorts.isEmpty()) {
+                slots = Math.min(slots, 1);
+                if (checkPortsInUse && resources != null) {
+                    for (Resource resource : resources) {
+                        if ("PORTS".equals(resource.getName()) && resource.getStringSetValue() != null
+                            && staticHostPorts.stream().anyMatch(resource.getStringSetValue()::contains)) {
+                            return 0;
+                        }
+                    }
+                }
+            }
+            return slots;
+        }
+
+        private int fit(int available, int perTask) {
+            return perTask <= 0 ? MAX_SLOTS_PER_INSTANCE : Math.min(MAX_SLOTS_PER_INSTANCE, available / perTask);
+        }
+
+        private int resource(List<Resource> resources, String name) {
+            if (resources != null) {
+                for (Resource resource : resources) {
+                    if (name.equals(resource.getName()) && resource.getIntegerValue() != null) {
+                        return resource.getIntegerValue();
+                    }
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return requiredTasks + " tasks to place (" + cpuPerTask + " CPU, " + memoryPerTask + " MiB"
+                + (staticHostPorts.isEmpty() ? "" : ", host ports " + String.join(",", staticHostPorts)) + " each), "
+                + availableSlots + " slots free on " + eligibleInstances.size() + " eligible instances, "
+                + excludedInstances + " instances excluded by placement constraints";
+        }
+    }
+}
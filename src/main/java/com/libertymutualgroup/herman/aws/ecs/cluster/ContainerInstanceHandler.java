@@ -5,6 +5,7 @@
  */
 package com.libertymutualgroup.herman.aws.ecs.cluster;
 
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.autoscaling.model.Instance;
 import com.amazonaws.services.ec2.AmazonEC2;
 import com.amazonaws.services.ec2.model.DescribeTagsRequest;
@@ -14,21 +15,42 @@ import com.amazonaws.services.ec2.model.TagDescription;
 import com.amazonaws.services.ecs.AmazonECS;
 import com.amazonaws.services.ecs.model.Attribute;
 import com.amazonaws.services.ecs.model.ContainerInstance;
+import com.amazonaws.services.ecs.model.ContainerInstanceStatus;
 import com.amazonaws.services.ecs.model.DescribeContainerInstancesRequest;
 import com.amazonaws.services.ecs.model.DescribeContainerInstancesResult;
 import com.amazonaws.services.ecs.model.ListContainerInstancesRequest;
 import com.amazonaws.services.ecs.model.ListContainerInstancesResult;
 import com.amazonaws.services.ecs.model.PutAttributesRequest;
+import com.amazonaws.services.ecs.model.TargetNotFoundException;
 import com.amazonaws.services.ecs.model.TargetType;
+import com.amazonaws.services.ecs.model.UpdateContainerInstancesStateRequest;
+import com.google.common.collect.Lists;
+import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.aws.asg.AutoscalingGroupHandler;
 import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.util.ConcurrencyUtil;
+import com.libertymutualgroup.herman.util.RateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class ContainerInstanceHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContainerInstanceHandler.class);
+    static final int PUT_ATTRIBUTES_BATCH_SIZE = 10;
+    static final int DESCRIBE_BATCH_SIZE = 100;
+    static final int UPDATE_STATE_BATCH_SIZE = 10;
+    private static final int DESCRIBE_TAGS_BATCH_SIZE = 200;
+    private static final int MAX_CONCURRENT_REQUESTS = 4;
+    private static final RateLimiter PUT_ATTRIBUTES_LIMITER = RateLimiter.shared("ecs:PutAttributes", 10, 20);
+
     private AmazonECS ecsClient;
     private AmazonEC2 ec2Client;
     private HermanLogger logger;
@@ -40,17 +62,35 @@ public class ContainerInstanceHandler {
     }
 
     public List<ContainerInstance> getContainerInstances(String cluster) {
-        ListContainerInstancesRequest listRequest = new ListContainerInstancesRequest()
-            .withCluster(cluster);
-        ListContainerInstancesResult listResult = this.ecsClient.listContainerInstances(listRequest);
-        if (listResult.getContainerInstanceArns().isEmpty()) {
+        List<String> containerInstanceArns = new ArrayList<>();
+        String nextToken = null;
+        do {
+            ListContainerInstancesResult listResult = this.ecsClient.listContainerInstances(new ListContainerInstancesRequest()
+                .withCluster(cluster)
+                .withNextToken(nextToken));
+            containerInstanceArns.addAll(listResult.getContainerInstanceArns());
+            nextToken = listResult.getNextToken();
+        } while (nextToken != null);
+
+        if (containerInstanceArns.isEmpty()) {
             return null;
         }
-        DescribeContainerInstancesRequest descrRequest = new DescribeContainerInstancesRequest()
-            .withCluster(cluster)
-            .withContainerInstances(listResult.getContainerInstanceArns());
-        DescribeContainerInstancesResult descrResult = this.ecsClient.describeContainerInstances(descrRequest);
-        return descrResult.getContainerInstances();
+        return describeContainerInstances(cluster, containerInstanceArns);
+    }
+
+    /**
+     * Describes the container instances, {@value #DESCRIBE_BATCH_SIZE} instances per call
+     */
+    public List<ContainerInstance> describeContainerInstances(String cluster, List<String> containerInstanceArns) {
+        List<ContainerInstance> containerInstances = new ArrayList<>();
+        for (List<String> batch : Lists.partition(containerInstanceArns, DESCRIBE_BATCH_SIZE)) {
+            DescribeContainerInstancesRequest descrRequest = new DescribeContainerInstancesRequest()
+                .withCluster(cluster)
+                .withContainerInstances(batch);
+            DescribeContainerInstancesResult descrResult = this.ecsClient.describeContainerInstances(descrRequest);
+            containerInstances.addAll(descrResult.getContainerInstances());
+        }
+        return containerInstances;
     }
 
     public void setAttributeOnCluster(String cluster, String key, String value) {
@@ -58,11 +98,62 @@ public class ContainerInstanceHandler {
         List<ContainerInstance> containerInstances = getContainerInstances(cluster);
         if (containerInstances == null) {
             this.logger.addLogEntry("... No container instances found in cluster, skipping attribute set");
+            return;
+        }
+
+        setAttributeOnInstances(cluster, containerInstances.stream()
+            .map(ContainerInstance::getContainerInstanceArn)
+            .collect(Collectors.toList()), key, value);
+    }
+
+    /**
+     * Sets the attribute on the given container instances, {@value #PUT_ATTRIBUTES_BATCH_SIZE} instances per
+     * PutAttributes call. Batches that fail are retried one instance at a time so a single bad target does not block
+     * the rest; instances that left the cluster in the meantime are skipped.
+     */
+    public void setAttributeOnInstances(String cluster, List<String> containerInstanceArns, String key, String value) {
+        if (containerInstanceArns.isEmpty()) {
+            return;
+        }
+        List<List<String>> batches = Lists.partition(containerInstanceArns, PUT_ATTRIBUTES_BATCH_SIZE);
+        Map<String, String> failures = new ConcurrentHashMap<>();
+        ConcurrencyUtil.runAll(batches.stream()
+            .map(batch -> (Runnable) () -> setAttributeWithRetry(cluster, batch, key, value, failures))
+            .collect(Collectors.toList()), MAX_CONCURRENT_REQUESTS);
+
+        if (!failures.isEmpty()) {
+            failures.forEach((arn, error) -> this.logger.addErrorLogEntry("... Unable to set " + key + " on " + arn + ": " + error));
+            throw new AwsExecException("Unable to set " + key + ": " + value + " on " + failures.size() + " of "
+                + containerInstanceArns.size() + " container instances in cluster " + cluster);
+        }
+        this.logger.addLogEntry("... Set " + key + " on " + containerInstanceArns.size() + " container instances");
+    }
+
+    /**
+     * @return the cluster's container instances keyed by EC2 instance id
+     */
+    public Map<String, ContainerInstance> getContainerInstancesByEc2InstanceId(String cluster) {
+        List<ContainerInstance> containerInstances = getContainerInstances(cluster);
+        if (containerInstances == null) {
+            return new HashMap<>();
         }
-        else {
-            for (ContainerInstance containerInstance : containerInstances) {
-                this.setAttribute(cluster, containerInstance.getContainerInstanceArn(), key, value);
+        return containerInstances.stream()
+            .collect(Collectors.toMap(ContainerInstance::getEc2InstanceId, instance -> instance, (first, second) -> first));
+    }
+
+    /**
+     * Sets the status of the container instances, {@value #UPDATE_STATE_BATCH_SIZE} instances per call
+     */
+    public void setContainerInstanceStatus(String cluster, List<String> containerInstanceArns, ContainerInstanceStatus status) {
+        for (List<String> batch : Lists.partition(containerInstanceArns, UPDATE_STATE_BATCH_SIZE)) {
+            for (String arn : batch) {
+                this.logger.addLogEntry("... Setting instance " + arn + " status to " + status);
             }
+            UpdateContainerInstancesStateRequest updateStateRequest = new UpdateContainerInstancesStateRequest()
+                .withCluster(cluster)
+                .withContainerInstances(batch)
+                .withStatus(status);
+            this.ecsClient.updateContainerInstancesState(updateStateRequest);
         }
     }
 
@@ -105,6 +196,32 @@ public class ContainerInstanceHandler {
         return tags;
     }
 
+    /**
+     * Value of one EC2 tag for each of the instances, by EC2 instance id. Instances without the tag are left out.
+     */
+    public Map<String, String> getContainerInstanceTagValues(List<ContainerInstance> containerInstances, String key) {
+        List<String> instanceIds = containerInstances.stream()
+            .map(ContainerInstance::getEc2InstanceId)
+            .distinct()
+            .collect(Collectors.toList());
+        Map<String, String> values = new HashMap<>();
+        for (List<String> batch : Lists.partition(instanceIds, DESCRIBE_TAGS_BATCH_SIZE)) {
+            String nextToken = null;
+            do {
+                DescribeTagsResult tagsResult = this.ec2Client.describeTags(new DescribeTagsRequest()
+                    .withFilters(
+                        new Filter("resource-type").withValues("instance"),
+                        new Filter("resource-id").withValues(batch),
+                        new Filter("key").withValues(key))
+                    .withNextToken(nextToken));
+                for (TagDescription tag : tagsResult.getTags()) {
+                    values.put(tag.getResourceId(), tag.getValue());
+                }
+                nextToken = tagsResult.getNextToken();
+            } while (nextToken != null);
+        }
+        return values;
+    }
 
     private String getInstanceAttributeValue(ContainerInstance instance, String key) {
         for (Attribute attribute : instance.getAttributes()) {
@@ -115,15 +232,45 @@ public class ContainerInstanceHandler {
         return null;
     }
 
-    private void setAttribute(String cluster, String containerInstanceId, String key, String value) {
-        Attribute attribute = new Attribute()
-            .withName(key)
-            .withValue(value)
-            .withTargetType(TargetType.ContainerInstance)
-            .withTargetId(containerInstanceId);
+    private void setAttributeWithRetry(String cluster, List<String> containerInstanceArns, String key, String value,
+        Map<String, String> failures) {
+        try {
+            setAttribute(cluster, containerInstanceArns, key, value);
+            return;
+        }
+        catch (AmazonServiceException ex) {
+            if (containerInstanceArns.size() == 1 && !(ex instanceof TargetNotFoundException)) {
+                failures.put(containerInstanceArns.get(0), ex.getErrorMessage());
+                return;
+            }
+            LOGGER.debug("PutAttributes failed for batch, retrying per instance", ex);
+        }
+
+        for (String containerInstanceArn : containerInstanceArns) {
+            try {
+                setAttribute(cluster, Collections.singletonList(containerInstanceArn), key, value);
+            }
+            catch (TargetNotFoundException ex) {
+                this.logger.addLogEntry("... " + containerInstanceArn + " is no longer in the cluster, skipping");
+            }
+            catch (AmazonServiceException ex) {
+                failures.put(containerInstanceArn, ex.getErrorMessage());
+            }
+        }
+    }
+
+    private void setAttribute(String cluster, List<String> containerInstanceArns, String key, String value) {
+        List<Attribute> attributes = containerInstanceArns.stream()
+            .map(containerInstanceArn -> new Attribute()
+                .withName(key)
+                .withValue(value)
+                .withTargetType(TargetType.ContainerInstance)
+                .withTargetId(containerInstanceArn))
+            .collect(Collectors.toList());
         PutAttributesRequest putAttributesRequest = new PutAttributesRequest()
-            .withAttributes(attribute)
+            .withAttributes(attributes)
             .withCluster(cluster);
+        PUT_ATTRIBUTES_LIMITER.acquire();
         this.ecsClient.putAttributes(putAttributesRequest);
     }
 }
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+import com.amazonaws.services.ecs.model.ContainerInstance;
+import com.amazonaws.services.ecs.model.ContainerInstanceStatus;
+import com.amazonaws.services.ecs.model.Resource;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.util.AdaptivePoller;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Drains old container instances through a sliding window. A new instance starts draining as soon as one
+ * finishes and the new instances have enough free CPU and memory for its tasks, rather than waiting for a
+ * whole batch. Instances with the fewest running tasks go first, so capacity frees up as early as possible.
+ */
+public class DrainScheduler {
+
+    private static final long MIN_POLLING_INTERVAL_MS = 5000;
+    private static final long MAX_POLLING_INTERVAL_MS = 15000;
+    private static final double POLLING_GROWTH_FACTOR = 1.5;
+
+    private ContainerInstanceHandler containerInstanceHandler;
+    private HermanLogger logger;
+    private Supplier<AdaptivePoller> pollerFactory;
+
+    public DrainScheduler(ContainerInstanceHandler containerInstanceHandler, HermanLogger logger) {
+        this(containerInstanceHandler, logger,
+            () -> new AdaptivePoller(MIN_POLLING_INTERVAL_MS, MAX_POLLING_INTERVAL_MS, POLLING_GROWTH_FACTOR));
+    }
+
+    public DrainScheduler(ContainerInstanceHandler containerInstanceHandler, HermanLogger logger,
+        Supplier<AdaptivePoller> pollerFactory) {
+        this.containerInstanceHandler = containerInstanceHandler;
+        this.logger = logger;
+        this.pollerFactory = pollerFactory;
+    }
+
+    /**
+     * @param maxConcurrentDraining size of the window of instances draining at once
+     * @param stallTimeoutMillis give up when no instance finishes draining for this long
+     * @return true if every old instance drained
+     */
+    public boolean drain(String cluster, List<String> oldInstanceArns, List<String> newInstanceArns,
+        int maxConcurrentDraining, long stallTimeoutMillis) {
+        AdaptivePoller poller = pollerFactory.get();
+        Set<String> queued = new LinkedHashSet<>(oldInstanceArns);
+        Map<String, Integer> tasksAtDrainStart = new HashMap<>();
+        Set<String> drained = new LinkedHashSet<>();
+        int tasksMigrated = 0;
+        long start = System.currentTimeMillis();
+        long lastProgress = start;
+
+        this.logger.addLogEntry("... Draining " + oldInstanceArns.size() + " instances, up to " + maxConcurrentDraining + " at a time");
+        while (drained.size() < oldInstanceArns.size()) {
+            Map<String, ContainerInstance> oldInstances = describe(cluster, oldInstanceArns);
+            boolean progressed = false;
+
+            for (String arn : tasksAtDrainStart.keySet()) {
+                ContainerInstance instance = oldInstances.get(arn);
+                if (!drained.contains(arn) && (instance == null || isEmpty(instance))) {
+                    drained.add(arn);
+                    tasksMigrated += tasksAtDrainStart.get(arn);
+                    progressed = true;
+                    this.logger.addLogEntry("... Drained " + arn + (instance == null ? "" : " (" + instance.getEc2InstanceId() + ")"));
+                }
+            }
+
+            List<String> toStart = selectInstancesToDrain(cluster, queued, oldInstances, newInstanceArns,
+                tasksAtDrainStart.size() - drained.size(), maxConcurrentDraining);
+            if (!toStart.isEmpty()) {
+                for (String arn : toStart) {
+                    queued.remove(arn);
+                    ContainerInstance instance = oldInstances.get(arn);
+                    tasksAtDrainStart.put(arn, instance == null ? 0 : instance.getRunningTasksCount());
+                }
+                this.containerInstanceHandler.setContainerInstanceStatus(cluster, toStart, ContainerInstanceStatus.DRAINING);
+                progressed = true;
+            }
+
+            long now = System.currentTimeMillis();
+            double minutes = Math.max(now - start, 1) / 60000.0;
+            this.logger.addLogEntry(String.format("... %d/%d instances drained, %d draining, %d tasks migrated (%.1f tasks/min)",
+                drained.size(), oldInstanceArns.size(), tasksAtDrainStart.size() - drained.size(), tasksMigrated,
+                tasksMigrated / minutes));
+
+            if (drained.size() == oldInstanceArns.size()) {
+                break;
+            }
+            if (progressed) {
+                lastProgress = now;
+                poller.progressed();
+            } else if (now - lastProgress > stallTimeoutMillis) {
+                this.logger.addErrorLogEntry("Unable to drain all instances! Manual cleanup of old stack may be required.");
+                return false;
+            }
+            poller.sleep();
+        }
+        return true;
+    }
+
+    /**
+     * Fills free slots in the window with the queued instances whose tasks fit in the new instances' spare
+     * capacity, after setting aside what the instances already draining still need. At least one instance is
+     * always draining so a rotation cannot stall on an undersized estimate.
+     */
+    List<String> selectInstancesToDrain(String cluster, Set<String> queued, Map<String, ContainerInstance> oldInstances,
+        List<String> newInstanceArns, int draining, int maxConcurrentDraining) {
+        int freeSlots = maxConcurrentDraining - draining;
+        if (freeSlots <= 0 || queued.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        long freeCpu = 0;
+        long freeMemory = 0;
+        for (ContainerInstance instance : describe(cluster, newInstanceArns).values()) {
+            // Warm pool instances can be registered but stopped, so only count connected agents
+            if (ContainerInstanceStatus.ACTIVE.toString().equals(instance.getStatus())
+                && !Boolean.FALSE.equals(instance.getAgentConnected())) {
+                freeCpu += resource(instance.getRemainingResources(), "CPU");
+                freeMemory += resource(instance.getRemainingResources(), "MEMORY");
+            }
+        }
+        for (ContainerInstance instance : oldInstances.values()) {
+            if (ContainerInstanceStatus.DRAINING.toString().equals(instance.getStatus())) {
+                freeCpu -= usedResource(instance, "CPU");
+                freeMemory -= usedResource(instance, "MEMORY");
+            }
+        }
+
+        List<ContainerInstance> candidates = queued.stream()
+            .map(oldInstances::get)
+            .filter(instance -> instance != null)
+            .sorted(Comparator.comparing(ContainerInstance::getRunningTasksCount))
+            .collect(Collectors.toList());
+
+        List<String> selected = new ArrayList<>();
+        for (ContainerInstance candidate : candidates) {
+            if (selected.size() >= freeSlots) {
+                break;
+            }
+            long cpu = usedResource(candidate, "CPU");
+            long memory = usedResource(candidate, "MEMORY");
+            boolean nothingDraining = draining == 0 && selected.isEmpty();
+            if (nothingDraining || (cpu <= freeCpu && memory <= freeMemory)) {
+                selected.add(candidate.getContainerInstanceArn());
+                freeCpu -= cpu;
+                freeMemory -= memory;
+            }
+        }
+        // Instances that disappeared from the cluster have nothing left to drain
+        queued.stream()
+            .filter(arn -> !oldInstances.containsKey(arn))
+            .limit(Math.max(0, freeSlots - selected.size()))
+            .forEach(selected::add);
+        return selected;
+    }
+
+    private Map<String, ContainerInstance> describe(String cluster, List<String> containerInstanceArns) {
+        Map<String, ContainerInstance> instances = new HashMap<>();
+        for (ContainerInstance instance : this.containerInstanceHandler.describeContainerInstances(cluster, containerInstanceArns)) {
+            instances.put(instance.getContainerInstanceArn(), instance);
+        }
+        return instances;
+    }
+
+    private boolean isEmpty(ContainerInstance instance) {
+        return instance.getRunningTasksCount() == 0 && instance.getPendingTasksCount() == 0;
+    }
+
+    private long usedResource(ContainerInstance instance, String name) {
+        return resource(instance.getRegisteredResources(), name) - resource(instance.getRemainingResources(), name);
+    }
+
+    private long resource(List<Resource> resources, String name) {
+        if (resources == null) {
+            return 0;
+        }
+        for (Resource resource : resources) {
+            if (name.equals(resource.getName()) && resource.getIntegerValue() != null) {
+                return resource.getIntegerValue();
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.regions.Regions;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands out one {@link EcsClusterClients} per region for a set of credentials
+ */
+public class EcsClusterClientRegistry {
+
+    private final AWSCredentials sessionCredentials;
+    private final ClientConfiguration awsClientConfig;
+    private final HermanLogger logger;
+    private final Map<Regions, EcsClusterClients> clients = new ConcurrentHashMap<>();
+
+    public EcsClusterClientRegistry(AWSCredentials sessionCredentials, ClientConfiguration awsClientConfig, HermanLogger logger) {
+        this.sessionCredentials = sessionCredentials;
+        this.awsClientConfig = awsClientConfig;
+        this.logger = logger;
+    }
+
+    public EcsClusterClients get(Regions region) {
+        return clients.computeIfAbsent(region,
+            key -> new EcsClusterClients(this.sessionCredentials, this.awsClientConfig, key, this.logger));
+    }
+}
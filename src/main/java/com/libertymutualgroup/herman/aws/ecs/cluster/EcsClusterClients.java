@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.autoscaling.AmazonAutoScaling;
+import com.amazonaws.services.autoscaling.AmazonAutoScalingClientBuilder;
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.AmazonCloudFormationClientBuilder;
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.AmazonEC2ClientBuilder;
+import com.amazonaws.services.ecs.AmazonECS;
+import com.amazonaws.services.ecs.AmazonECSClientBuilder;
+import com.libertymutualgroup.herman.aws.cft.StackIndex;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+
+/**
+ * The AWS clients a cluster push uses in one region, plus the region's stack index. Clients are thread safe, so
+ * pushes of several clusters in the same region share one instance (see {@link EcsClusterClientRegistry}).
+ */
+public class EcsClusterClients {
+
+    private final AmazonCloudFormation cfnClient;
+    private final AmazonECS ecsClient;
+    private final AmazonEC2 ec2Client;
+    private final AmazonAutoScaling asgClient;
+    private final StackIndex stackIndex;
+
+    public EcsClusterClients(AWSCredentials sessionCredentials, ClientConfiguration awsClientConfig, Regions region,
+        HermanLogger logger) {
+        AWSStaticCredentialsProvider credentialsProvider = new AWSStaticCredentialsProvider(sessionCredentials);
+        this.cfnClient = AmazonCloudFormationClientBuilder.standard()
+            .withCredentials(credentialsProvider)
+            .withClientConfiguration(awsClientConfig).withRegion(region).build();
+        this.ecsClient = AmazonECSClientBuilder.standard()
+            .withCredentials(credentialsProvider)
+            .withClientConfiguration(awsClientConfig).withRegion(region).build();
+        this.ec2Client = AmazonEC2ClientBuilder.standard()
+            .withCredentials(credentialsProvider)
+            .withClientConfiguration(awsClientConfig).withRegion(region).build();
+        this.asgClient = AmazonAutoScalingClientBuilder.standard()
+            .withCredentials(credentialsProvider)
+            .withClientConfiguration(awsClientConfig).withRegion(region).build();
+        this.stackIndex = new StackIndex(this.cfnClient, logger);
+    }
+
+    public AmazonCloudFormation getCfnClient() {
+        return cfnClient;
+    }
+
+    public AmazonECS getEcsClient() {
+        return ecsClient;
+    }
+
+    public AmazonEC2 getEc2Client() {
+        return ec2Client;
+    }
+
+    public AmazonAutoScaling getAsgClient() {
+        return asgClient;
+    }
+
+    public StackIndex getStackIndex() {
+        return stackIndex;
+    }
+}
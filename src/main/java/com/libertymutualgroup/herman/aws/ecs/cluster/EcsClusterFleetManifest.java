@@ -0,0 +1,53 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A fleet of clusters pushed together. All clusters are pushed with the same credentials, so
+ * {@code maxConcurrency} limits concurrent rotations within that account.
+ */
+public class EcsClusterFleetManifest {
+
+    private List<EcsClusterFleetMember> clusters = new ArrayList<>();
+    private Integer maxConcurrency = 3;
+
+    public List<EcsClusterFleetMember> getClusters() {
+        return clusters;
+    }
+
+    public void setClusters(List<EcsClusterFleetMember> clusters) {
+        this.clusters = clusters;
+    }
+
+    public Integer getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(Integer maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    @Override
+    public String toString() {
+        return "EcsClusterFleetManifest{" +
+            "clusters=" + clusters +
+            ", maxConcurrency=" + maxConcurrency +
+            '}';
+    }
+}
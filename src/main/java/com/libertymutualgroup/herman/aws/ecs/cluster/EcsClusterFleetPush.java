@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.logging.PrefixedLogger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Pushes several clusters concurrently. Once a cluster fails no further clusters are started; rotations already
+ * under way run to completion (or their own rollback) rather than being abandoned half way.
+ */
+public class EcsClusterFleetPush {
+
+    public enum Status {
+        QUEUED, RUNNING, COMPLETE, FAILED, SKIPPED
+    }
+
+    private HermanLogger logger;
+
+    public EcsClusterFleetPush(HermanLogger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * @param pushes pushes keyed by a label for the cluster; each is handed a logger that prefixes its entries with the label
+     * @return the final status of each cluster
+     */
+    public Map<String, Status> push(Map<String, Consumer<HermanLogger>> pushes, int maxConcurrency) {
+        Map<String, Status> statuses = new ConcurrentHashMap<>();
+        pushes.keySet().forEach(label -> statuses.put(label, Status.QUEUED));
+        AtomicBoolean failed = new AtomicBoolean();
+        long start = System.currentTimeMillis();
+        this.logger.addLogEntry("Pushing " + pushes.size() + " clusters, up to " + maxConcurrency + " at a time");
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(maxConcurrency, pushes.size())));
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (Map.Entry<String, Consumer<HermanLogger>> push : pushes.entrySet()) {
+                futures.add(CompletableFuture.runAsync(() -> pushCluster(push.getKey(), push.getValue(), statuses, failed), executor));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        }
+        catch (CompletionException ex) {
+            throw new AwsExecException(ex);
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        Map<String, Status> result = new LinkedHashMap<>();
+        pushes.keySet().forEach(label -> result.put(label, statuses.get(label)));
+        this.logger.addLogEntry("Fleet push finished in " + TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis() - start) + " minutes:");
+        result.forEach((label, status) -> this.logger.addLogEntry("... " + label + ": " + status));
+
+        List<String> failures = labelsWithStatus(result, Status.FAILED);
+        if (!failures.isEmpty()) {
+            throw new AwsExecException("Cluster pushes failed: " + String.join(", ", failures));
+        }
+        return result;
+    }
+
+    private void pushCluster(String label, Consumer<HermanLogger> push, Map<String, Status> statuses, AtomicBoolean failed) {
+        if (failed.get()) {
+            statuses.put(label, Status.SKIPPED);
+            reportProgress(statuses);
+            return;
+        }
+        statuses.put(label, Status.RUNNING);
+        reportProgress(statuses);
+        try {
+            push.accept(new PrefixedLogger(this.logger, label));
+            statuses.put(label, Status.COMPLETE);
+        }
+        catch (RuntimeException ex) {
+            failed.set(true);
+            statuses.put(label, Status.FAILED);
+            this.logger.addErrorLogEntry("[" + label + "] Cluster push failed, no further clusters will be started: " + ex.getMessage());
+        }
+        reportProgress(statuses);
+    }
+
+    private void reportProgress(Map<String, Status> statuses) {
+        Map<Status, Long> counts = statuses.values().stream()
+            .collect(Collectors.groupingBy(status -> status, Collectors.counting()));
+        this.logger.addLogEntry(String.format("Fleet progress: %d complete, %d running, %d queued, %d failed, %d skipped",
+            counts.getOrDefault(Status.COMPLETE, 0L), counts.getOrDefault(Status.RUNNING, 0L),
+            counts.getOrDefault(Status.QUEUED, 0L), counts.getOrDefault(Status.FAILED, 0L),
+            counts.getOrDefault(Status.SKIPPED, 0L)));
+    }
+
+    private List<String> labelsWithStatus(Map<String, Status> statuses, Status status) {
+        return statuses.entrySet().stream()
+            .filter(entry -> entry.getValue() == status)
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toList());
+    }
+}
@@ -23,49 +23,70 @@ import com.amazonaws.services.cloudformation.model.DescribeStackResourcesResult;
 import com.amazonaws.services.cloudformation.model.DescribeStacksRequest;
 import com.amazonaws.services.cloudformation.model.DescribeStacksResult;
 import com.amazonaws.services.cloudformation.model.Parameter;
+import com.amazonaws.services.cloudformation.model.Stack;
 import com.amazonaws.services.cloudformation.model.StackResource;
-import com.amazonaws.services.cloudformation.model.Tag;
 import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.model.DescribeSubnetsRequest;
 import com.amazonaws.services.ec2.model.DescribeSubnetsResult;
+import com.amazonaws.services.ec2.model.DescribeVpcsRequest;
 import com.amazonaws.services.ec2.model.DescribeVpcsResult;
+import com.amazonaws.services.ec2.model.Filter;
 import com.amazonaws.services.ec2.model.Subnet;
 import com.amazonaws.services.ec2.model.Vpc;
 import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Collectors;
 
 public class EcsClusterIntrospector {
 
+    private static final List<String> VPC_NAME_IDS = Arrays.asList("sandbox", "dev", "nonprod", "prod");
+    private static final List<String> SUBNET_NAME_IDS = Arrays.asList("private-elb", "public");
+
     private AmazonCloudFormation cftClient;
     private AmazonEC2 ec2Client;
     private HermanLogger logger;
+    private EcsClusterMetadataCache cache;
 
     public EcsClusterIntrospector(AmazonCloudFormation cftClient, AmazonEC2 ec2Client, HermanLogger logger) {
+        this(cftClient, ec2Client, logger, EcsClusterMetadataCache.shared());
+    }
+
+    public EcsClusterIntrospector(AmazonCloudFormation cftClient, AmazonEC2 ec2Client, HermanLogger logger,
+        EcsClusterMetadataCache cache) {
         this.cftClient = cftClient;
         this.ec2Client = ec2Client;
         this.logger = logger;
+        this.cache = cache;
     }
 
     public EcsClusterMetadata introspect(String name, Regions region) {
-        EcsClusterMetadata ecsClusterMetadata = new EcsClusterMetadata();
-
-        String stackName = name;
-
-        DescribeStackResourcesRequest req = new DescribeStackResourcesRequest()
-            .withStackName(stackName);
-        DescribeStackResourcesResult clusterStackResult;
-        try {
-            clusterStackResult = cftClient.describeStackResources(req);
-        }
-        catch (AmazonCloudFormationException ex) {
-            stackName += "-shared";
-            req.setStackName(stackName);
-            clusterStackResult = cftClient.describeStackResources(req);
+        Stack clusterStack = findClusterStack(name);
+        String stackName = clusterStack.getStackName();
+
+        // The stack's last update time is the only freshness check needed while the cluster is unchanged
+        String freshnessToken = getFreshnessToken(clusterStack);
+        EcsClusterMetadata cachedMetadata = cache.get(name, region, freshnessToken);
+        if (cachedMetadata != null) {
+            // Secrets are not cached on disk, and the stack parameters are already at hand
+            Iterator<Parameter> stackParams = clusterStack.getParameters().iterator();
+            while (stackParams.hasNext()) {
+                updateClusterMetadataWithStackParamValue(cachedMetadata, stackParams);
+            }
+            logger.addLogEntry("Using cached cluster metadata for " + stackName + " (" + freshnessToken + ")");
+            logger.addLogEntry(cachedMetadata.toString());
+            return cachedMetadata;
         }
 
+        EcsClusterMetadata ecsClusterMetadata = new EcsClusterMetadata();
+
+        DescribeStackResourcesResult clusterStackResult = cftClient.describeStackResources(
+            new DescribeStackResourcesRequest().withStackName(stackName));
         if (clusterStackResult == null) {
             throw new AwsExecException("Unable to find cluster to introspect from stack: " + name);
         }
@@ -74,16 +95,15 @@ public class EcsClusterIntrospector {
             updateClusterMetadataWithStackResourceValue(ecsClusterMetadata, r);
         }
 
-        DescribeStacksResult stackResult = cftClient.describeStacks(new DescribeStacksRequest().withStackName(stackName));
-        List<Tag> clusterCftStackTags = stackResult.getStacks().get(0).getTags();
-        ecsClusterMetadata.setClusterCftStackTags(clusterCftStackTags);
+        ecsClusterMetadata.setClusterCftStackTags(clusterStack.getTags());
 
-        Iterator<Parameter> stackParams = stackResult.getStacks().get(0).getParameters().iterator();
+        Iterator<Parameter> stackParams = clusterStack.getParameters().iterator();
         while (stackParams.hasNext()) {
             updateClusterMetadataWithStackParamValue(ecsClusterMetadata, stackParams);
         }
 
-        DescribeVpcsResult res = ec2Client.describeVpcs();
+        DescribeVpcsResult res = ec2Client.describeVpcs(new DescribeVpcsRequest()
+            .withFilters(new Filter("tag:Name").withValues(toWildcards(VPC_NAME_IDS))));
 
         Vpc vpc = null;
         for (Vpc v: res.getVpcs()) {
@@ -98,7 +118,10 @@ public class EcsClusterIntrospector {
         List<String> elbSubnets = ecsClusterMetadata.getElbSubnets();
         List<String> publicSubnets = ecsClusterMetadata.getPublicSubnets();
 
-        DescribeSubnetsResult sub = ec2Client.describeSubnets();
+        DescribeSubnetsResult sub = ec2Client.describeSubnets(new DescribeSubnetsRequest()
+            .withFilters(
+                new Filter("vpc-id").withValues(vpc.getVpcId()),
+                new Filter("tag:Name").withValues(toWildcards(SUBNET_NAME_IDS))));
 
         for (Subnet net: sub.getSubnets()) {
             if (subnetMatches(vpc, net)) {
@@ -114,11 +137,55 @@ public class EcsClusterIntrospector {
             }
         }
 
+        cache.put(name, region, freshnessToken, ecsClusterMetadata);
+
         logger.addLogEntry("Introspection complete:");
         logger.addLogEntry(ecsClusterMetadata.toString());
         return ecsClusterMetadata;
     }
 
+    private Stack findClusterStack(String name) {
+        DescribeStacksResult stackResult;
+        try {
+            stackResult = cftClient.describeStacks(new DescribeStacksRequest().withStackName(name));
+        }
+        catch (AmazonCloudFormationException ex) {
+            if (!isStackMissing(ex)) {
+                throw new AwsExecException("Unable to find cluster to introspect from stack: " + name, ex);
+            }
+            stackResult = null;
+        }
+        if (stackResult == null || stackResult.getStacks().isEmpty()) {
+            try {
+                stackResult = cftClient.describeStacks(new DescribeStacksRequest().withStackName(name + "-shared"));
+            }
+            catch (AmazonCloudFormationException ex) {
+                throw new AwsExecException("Unable to find cluster to introspect from stack: " + name, ex);
+            }
+        }
+
+        if (stackResult == null || stackResult.getStacks().isEmpty()) {
+            throw new AwsExecException("Unable to find cluster to introspect from stack: " + name);
+        }
+        return stackResult.getStacks().get(0);
+    }
+
+    private boolean isStackMissing(AmazonCloudFormationException ex) {
+        return ex.getErrorMessage() != null && ex.getErrorMessage().contains("does not exist");
+    }
+
+    private String getFreshnessToken(Stack stack) {
+        Date lastChange = stack.getLastUpdatedTime() != null ? stack.getLastUpdatedTime() : stack.getCreationTime();
+        if (stack.getStackId() == null || lastChange == null) {
+            return null;
+        }
+        return stack.getStackId() + "@" + lastChange.getTime();
+    }
+
+    private List<String> toWildcards(List<String> ids) {
+        return ids.stream().map(id -> "*" + id + "*").collect(Collectors.toCollection(ArrayList::new));
+    }
+
     private void updateClusterMetadataWithStackParamValue(EcsClusterMetadata ecsClusterMetadata,
         Iterator<Parameter> stackParams) {
         Parameter p = stackParams.next();
@@ -161,11 +228,9 @@ public class EcsClusterIntrospector {
     }
 
     private boolean isProperVpc(Vpc vpc) {
-        String[] defaultIds = {"sandbox", "dev", "nonprod", "prod"};
-
         for (com.amazonaws.services.ec2.model.Tag t: vpc.getTags()) {
             if ("Name".equals(t.getKey())
-                    && Arrays.asList(defaultIds).stream()
+                    && VPC_NAME_IDS.stream()
                         .filter(defaultId -> t.getValue().contains(defaultId)).findAny().isPresent()) {
                 return true;
             }
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+import com.amazonaws.regions.Regions;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.libertymutualgroup.herman.util.HermanJackson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches introspected cluster metadata per cluster and region. Entries are only valid for the
+ * freshness token they were stored with (the cluster stack's id and last update time), so a
+ * changed cluster stack always forces a full introspection. Entries persisted to disk leave out the
+ * New Relic license key and Splunk URL, which callers read from the cluster stack's parameters instead.
+ */
+public class EcsClusterMetadataCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EcsClusterMetadataCache.class);
+    private static final EcsClusterMetadataCache SHARED = new EcsClusterMetadataCache();
+
+    private final Map<String, CacheEntry> entries = new ConcurrentHashMap<>();
+    private final File cacheDirectory;
+
+    public EcsClusterMetadataCache() {
+        this(null);
+    }
+
+    /**
+     * @param cacheDirectory directory used to persist entries between runs, or null for an in-memory only cache
+     */
+    public EcsClusterMetadataCache(File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * In-memory cache shared by every push running in this JVM (e.g. all Bamboo deployments on an agent)
+     */
+    public static EcsClusterMetadataCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Disk-backed cache under ~/.herman/cache for CLI runs, where each push is a new JVM
+     */
+    public static EcsClusterMetadataCache onDisk() {
+        return new EcsClusterMetadataCache(
+            new File(System.getProperty("user.home") + File.separator + ".herman" + File.separator + "cache"));
+    }
+
+    public EcsClusterMetadata get(String clusterName, Regions region, String freshnessToken) {
+        if (freshnessToken == null) {
+            return null;
+        }
+        String key = toKey(clusterName, region);
+        CacheEntry entry = entries.get(key);
+        if (entry == null) {
+            entry = readFromDisk(key);
+            if (entry != null) {
+                entries.put(key, entry);
+            }
+        }
+        if (entry == null || !Objects.equals(freshnessToken, entry.getFreshnessToken())) {
+            return null;
+        }
+        return copyOf(entry.getMetadata());
+    }
+
+    public void put(String clusterName, Regions region, String freshnessToken, EcsClusterMetadata metadata) {
+        if (freshnessToken == null) {
+            return;
+        }
+        String key = toKey(clusterName, region);
+        CacheEntry entry = new CacheEntry();
+        entry.setFreshnessToken(freshnessToken);
+        entry.setMetadata(copyOf(metadata));
+        entries.put(key, entry);
+        writeToDisk(key, entry);
+    }
+
+    // Callers mutate the metadata they receive (e.g. security group lists), so never hand out the cached instance
+    private EcsClusterMetadata copyOf(EcsClusterMetadata metadata) {
+        return HermanJackson.copy(metadata, EcsClusterMetadata.class);
+    }
+
+    private CacheEntry readFromDisk(String key) {
+        if (cacheDirectory == null) {
+            return null;
+        }
+        File file = new File(cacheDirectory, key + ".json");
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            return HermanJackson.jsonReader(CacheEntry.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .readValue(file);
+        } catch (IOException e) {
+            LOGGER.debug("Unable to read cluster metadata cache entry: " + file, e);
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, CacheEntry entry) {
+        if (cacheDirectory == null) {
+            return;
+        }
+        if (!cacheDirectory.exists() && !cacheDirectory.mkdirs()) {
+            LOGGER.debug("Unable to create cluster metadata cache directory: " + cacheDirectory);
+            return;
+        }
+        restrictToOwner(cacheDirectory);
+
+        CacheEntry persistedEntry = new CacheEntry();
+        persistedEntry.setFreshnessToken(entry.getFreshnessToken());
+        persistedEntry.setMetadata(copyOf(entry.getMetadata()));
+        persistedEntry.getMetadata().setNewrelicLicenseKey(null);
+        persistedEntry.getMetadata().setSplunkUrl(null);
+
+        File file = new File(cacheDirectory, key + ".json");
+        try {
+            if (!file.exists() && file.createNewFile()) {
+                restrictToOwner(file);
+            }
+            HermanJackson.jsonWriter().writeValue(file, persistedEntry);
+        } catch (IOException e) {
+            LOGGER.debug("Unable to write cluster metadata cache entry: " + key, e);
+        }
+    }
+
+    private void restrictToOwner(File file) {
+        boolean restricted = file.setReadable(false, false) && file.setReadable(true, true)
+            && file.setWritable(false, false) && file.setWritable(true, true);
+        if (file.isDirectory()) {
+            restricted = restricted && file.setExecutable(false, false) && file.setExecutable(true, true);
+        }
+        if (!restricted) {
+            LOGGER.debug("Unable to restrict cluster metadata cache permissions: " + file);
+        }
+    }
+
+    private String toKey(String clusterName, Regions region) {
+        return "cluster-metadata-" + clusterName + "-" + region.getName();
+    }
+
+    public static class CacheEntry {
+        private String freshnessToken;
+        private EcsClusterMetadata metadata;
+
+        public String getFreshnessToken() {
+            return freshnessToken;
+        }
+
+        public void setFreshnessToken(String freshnessToken) {
+            this.freshnessToken = freshnessToken;
+        }
+
+        public EcsClusterMetadata getMetadata() {
+            return metadata;
+        }
+
+        public void setMetadata(EcsClusterMetadata metadata) {
+            this.metadata = metadata;
+        }
+    }
+}
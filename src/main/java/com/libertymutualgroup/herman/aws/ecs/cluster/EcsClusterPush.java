@@ -15,64 +15,62 @@
  */
 package com.libertymutualgroup.herman.aws.ecs.cluster;
 
-import com.amazonaws.auth.AWSStaticCredentialsProvider;
-import com.amazonaws.services.autoscaling.AmazonAutoScaling;
-import com.amazonaws.services.autoscaling.AmazonAutoScalingClientBuilder;
 import com.amazonaws.services.autoscaling.model.Instance;
 import com.amazonaws.services.cloudformation.AmazonCloudFormation;
-import com.amazonaws.services.cloudformation.AmazonCloudFormationClientBuilder;
 import com.amazonaws.services.cloudformation.model.AmazonCloudFormationException;
 import com.amazonaws.services.cloudformation.model.DeleteStackRequest;
 import com.amazonaws.services.cloudformation.model.DescribeStackResourcesRequest;
 import com.amazonaws.services.cloudformation.model.DescribeStacksRequest;
 import com.amazonaws.services.cloudformation.model.DescribeStacksResult;
-import com.amazonaws.services.cloudformation.model.GetTemplateRequest;
 import com.amazonaws.services.cloudformation.model.Parameter;
 import com.amazonaws.services.cloudformation.model.Stack;
 import com.amazonaws.services.cloudformation.model.StackResource;
+import com.amazonaws.services.cloudformation.model.StackSummary;
 import com.amazonaws.services.ec2.AmazonEC2;
-import com.amazonaws.services.ec2.AmazonEC2ClientBuilder;
 import com.amazonaws.services.ec2.model.TagDescription;
 import com.amazonaws.services.ecs.AmazonECS;
-import com.amazonaws.services.ecs.AmazonECSClientBuilder;
 import com.amazonaws.services.ecs.model.Cluster;
 import com.amazonaws.services.ecs.model.ContainerInstance;
 import com.amazonaws.services.ecs.model.ContainerInstanceStatus;
 import com.amazonaws.services.ecs.model.CreateClusterRequest;
 import com.amazonaws.services.ecs.model.DescribeClustersRequest;
 import com.amazonaws.services.ecs.model.DescribeClustersResult;
-import com.amazonaws.services.ecs.model.DescribeContainerInstancesRequest;
-import com.amazonaws.services.ecs.model.DescribeContainerInstancesResult;
 import com.amazonaws.services.ecs.model.ListContainerInstancesRequest;
 import com.amazonaws.services.ecs.model.ListContainerInstancesResult;
-import com.amazonaws.services.ecs.model.UpdateContainerInstancesStateRequest;
-import com.amazonaws.util.StringUtils;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
-import com.google.common.collect.Lists;
 import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.aws.asg.AutoscalingGroupHandler;
-import com.libertymutualgroup.herman.aws.cft.CftPush;
 import com.libertymutualgroup.herman.aws.cft.CftPushContext;
+import com.libertymutualgroup.herman.aws.cft.CftPushSession;
+import com.libertymutualgroup.herman.aws.cft.StackChangePlan;
 import com.libertymutualgroup.herman.aws.cft.StackUtils;
+import com.libertymutualgroup.herman.aws.cft.TemplateAnalyzer.TemplateParameter;
+import com.libertymutualgroup.herman.aws.cft.TemplateAnalyzer;
+import com.libertymutualgroup.herman.aws.cft.TemplateHashOutput;
+import com.libertymutualgroup.herman.aws.cft.TemplateStager;
 import com.libertymutualgroup.herman.aws.ecs.EcsPushContext;
 import com.libertymutualgroup.herman.aws.ecs.PropertyHandler;
 import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.logging.PrefixedLogger;
 import com.libertymutualgroup.herman.task.cft.CftPushPropertyFactory;
 import com.libertymutualgroup.herman.task.cft.CftPushTaskProperties;
+import com.libertymutualgroup.herman.util.ConcurrencyUtil;
 import com.libertymutualgroup.herman.util.FileUtil;
+import com.libertymutualgroup.herman.util.HermanJackson;
 import com.libertymutualgroup.herman.util.TemplateFormat;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -87,40 +85,59 @@ public class EcsClusterPush {
     private EcsClusterPushDefinition definition;
     private AutoscalingGroupHandler asgHandler;
     private ContainerInstanceHandler containerInstanceHandler;
+    private DrainScheduler drainScheduler;
+    private InstanceRefreshRollout instanceRefreshRollout;
+    private WarmPoolHandler warmPoolHandler;
     private StackUtils stackUtils;
+    private CftPushSession pushSession;
     private HashMap<String, String> cftParams = new HashMap<>();
 
     private final String TEMPLATE_NAME = "template";
+    private final String INSTANCE_STACK_INFIX = "-instances-";
+    private final String SHARED_STACK_NAME_PARAM = "SharedStackName";
+    // Values that differ on every push without the cluster changing
+    private final List<String> PER_PUSH_PARAMETERS = Arrays.asList("ClusterName", "ClusterArn", "BuildId", "RandomPassword");
     private final int POLLING_INTERVAL_MS = 10000;
 
     public EcsClusterPush(EcsPushContext context) {
+        this(context, new EcsClusterClients(context.getSessionCredentials(), context.getAwsClientConfig(),
+            context.getRegion(), context.getLogger()));
+    }
+
+    /**
+     * @param clients clients (and stack index) that may be shared with pushes of other clusters in the same region
+     */
+    public EcsClusterPush(EcsPushContext context, EcsClusterClients clients) {
         this.context = context;
         this.logger = context.getLogger();
 
-        this.cfnClient = AmazonCloudFormationClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(context.getAwsClientConfig()).withRegion(context.getRegion()).build();
-
-        this.ecsClient = AmazonECSClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(context.getAwsClientConfig()).withRegion(context.getRegion()).build();
-
-        this.ec2Client = AmazonEC2ClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(context.getAwsClientConfig()).withRegion(context.getRegion()).build();
+        this.cfnClient = clients.getCfnClient();
+        this.ecsClient = clients.getEcsClient();
+        this.ec2Client = clients.getEc2Client();
 
         this.propertyHandler = context.getPropertyHandler();
 
         this.fileUtil = new FileUtil(context.getRootPath(), this.logger);
         this.definition = loadConfiguration();
 
-        AmazonAutoScaling asgClient = AmazonAutoScalingClientBuilder.standard()
-            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
-            .withClientConfiguration(context.getAwsClientConfig()).withRegion(context.getRegion()).build();
-
-        this.asgHandler = new AutoscalingGroupHandler(asgClient, this.logger);
+        this.asgHandler = new AutoscalingGroupHandler(clients.getAsgClient(), this.logger);
         this.containerInstanceHandler = new ContainerInstanceHandler(this.ecsClient, this.ec2Client, this.logger);
-        this.stackUtils = new StackUtils(this.cfnClient, this.logger);
+        this.drainScheduler = new DrainScheduler(this.containerInstanceHandler, this.logger);
+        this.instanceRefreshRollout = new InstanceRefreshRollout(this.asgHandler, this.containerInstanceHandler, this.logger);
+        this.warmPoolHandler = new WarmPoolHandler(this.asgHandler, this.definition.getWarmPool());
+        this.stackUtils = new StackUtils(this.cfnClient, this.logger, clients.getStackIndex());
+
+        CftPushTaskProperties cftPushTaskProperties = CftPushPropertyFactory.getTaskProperties(context.getSessionCredentials(), this.logger, context.getRegion(), this.propertyHandler);
+        CftPushContext cftPushContext = new CftPushContext()
+            .withLogger(this.logger)
+            .withEnvName(context.getEnvName())
+            .withRootPath(context.getRootPath())
+            .withPropertyHandler(context.getPropertyHandler())
+            .withSessionCredentials(context.getSessionCredentials())
+            .withAwsClientConfig(context.getAwsClientConfig())
+            .withRegion(context.getRegion())
+            .withTaskProperties(cftPushTaskProperties);
+        this.pushSession = new CftPushSession(cftPushContext, this.cfnClient, this.stackUtils);
     }
 
     public void pushCluster() {
@@ -128,6 +145,8 @@ public class EcsClusterPush {
         EcsClusterDeployState existingStackState = findExistingStack(this.definition.getClusterName());
         String sharedStackTemplate = loadStackFile(this.definition.getSharedCftName());
         String instanceStackTemplate = loadStackFile(this.definition.getInstanceCftName());
+        String instanceTemplateHash = TemplateStager.hash(instanceStackTemplate);
+        instanceStackTemplate = TemplateHashOutput.addTo(instanceStackTemplate, instanceTemplateHash);
 
         String sharedStackName = this.definition.getClusterName() + "-shared";
         int instanceStackNumber;
@@ -142,20 +161,32 @@ public class EcsClusterPush {
             addClusterProperties(newCluster);
 
             // Shared stack
-            pushStack(sharedStackName, sharedStackTemplate);
-            this.cftParams.put("SharedStackName", sharedStackName);
+            CompletableFuture<Stack> sharedStackPush = startSharedStackPush(sharedStackName, sharedStackTemplate, instanceStackTemplate);
+            this.cftParams.put(SHARED_STACK_NAME_PARAM, sharedStackName);
 
             // Instance Stack
             instanceStackNumber = 1;
 
-            String instanceStackName = this.definition.getClusterName() + "-instances-" + instanceStackNumber;
+            String instanceStackName = this.definition.getClusterName() + INSTANCE_STACK_INFIX + instanceStackNumber;
             this.logger.addLogEntry("... Creating new instance stack with name: " + instanceStackName);
-            Stack newInstanceStack = pushStack(instanceStackName, instanceStackTemplate);
+            Stack newInstanceStack;
+            RuntimeException failure = null;
+            try {
+                newInstanceStack = pushStack(instanceStackName, instanceStackTemplate, instanceStackLogger(sharedStackPush));
+            }
+            catch (RuntimeException ex) {
+                failure = ex;
+                throw ex;
+            }
+            finally {
+                awaitSharedStackPush(sharedStackPush, failure);
+            }
             String newAsgName = this.findAsgInStack(newInstanceStack.getStackName());
             waitForInstanceStartup(newAsgName, Optional.empty());
             waitForInstanceEcsRegistration(this.definition.getClusterName(), newAsgName);
 
             this.containerInstanceHandler.setAttributeOnCluster(this.definition.getClusterName(), "state", "running");
+            this.warmPoolHandler.apply(newAsgName);
 
         }
         else { // Update Cluster
@@ -168,95 +199,143 @@ public class EcsClusterPush {
 
             addClusterProperties(existingCluster);
             // Shared Stack
-            pushStack(sharedStackName, sharedStackTemplate);
-            this.cftParams.put("SharedStackName", sharedStackName);
+            CompletableFuture<Stack> sharedStackPush = startSharedStackPush(sharedStackName, sharedStackTemplate, instanceStackTemplate);
+            this.cftParams.put(SHARED_STACK_NAME_PARAM, sharedStackName);
 
-            // Instance Stack
-            GetTemplateRequest existingTemplateRequest = new GetTemplateRequest()
-                .withStackName(existingStackState.getInstanceStack().getStackName());
-            String existingInstanceTemplate = this.cfnClient.getTemplate(existingTemplateRequest).getTemplateBody();
-
-            if (!existingInstanceTemplate.equals(instanceStackTemplate) || parametersUpdated(existingStackState.getInstanceStack().getParameters())) {
-                String instanceStackName = this.findNextStackName(this.definition.getClusterName());
-
-                // Find old container instances
-                List<String> oldContainerInstanceArns = null;
-                ListContainerInstancesResult listContainerInstancesResult = this.ecsClient.listContainerInstances(new ListContainerInstancesRequest().withCluster(this.definition.getClusterName()));
-                if (listContainerInstancesResult.getContainerInstanceArns() != null) {
-                    oldContainerInstanceArns = listContainerInstancesResult.getContainerInstanceArns();
-                }
+            RuntimeException failure = null;
+            try {
+                updateInstanceStack(existingStackState, existingCluster, instanceStackTemplate, instanceTemplateHash, sharedStackPush);
+            }
+            catch (RuntimeException ex) {
+                failure = ex;
+                throw ex;
+            }
+            finally {
+                awaitSharedStackPush(sharedStackPush, failure);
+            }
+        }
+    }
 
+    /**
+     * Rolls out, updates in place or leaves alone the instance stack, depending on how its template changed
+     */
+    private void updateInstanceStack(EcsClusterDeployState existingStackState, Cluster existingCluster, String instanceStackTemplate,
+        String instanceTemplateHash, CompletableFuture<Stack> sharedStackPush) {
+        // Instance Stack
+        InstanceStackChange instanceStackChange = planInstanceStack(existingStackState.getInstanceStack(), instanceStackTemplate,
+            instanceTemplateHash);
+        boolean instanceStackChanged = instanceStackChange == InstanceStackChange.ROLLOUT;
+        if (instanceStackChanged && EcsClusterUpdateStrategy.INSTANCE_REFRESH.equals(this.definition.getUpdateStrategy())) {
+            refreshInstances(existingStackState.getInstanceStack().getStackName(), instanceStackTemplate, sharedStackPush);
+            this.logger.addLogEntry("Cluster Update Complete!");
+        }
+        else if (instanceStackChanged) {
+            String instanceStackName = this.findNextStackName(this.definition.getClusterName());
+
+            // Find old container instances
+            List<String> oldContainerInstanceArns = null;
+            ListContainerInstancesResult listContainerInstancesResult = this.ecsClient.listContainerInstances(new ListContainerInstancesRequest().withCluster(this.definition.getClusterName()));
+            if (listContainerInstancesResult.getContainerInstanceArns() != null) {
+                oldContainerInstanceArns = listContainerInstancesResult.getContainerInstanceArns();
+            }
 
-                ArrayList<String> newContainerInstanceArns = new ArrayList<>();
-                String oldAsgName = this.findAsgInStack(existingStackState.getInstanceStack().getStackName());
-                try {
-                    // Set pre-drain to avoid placing containers on old boxes
-                    this.containerInstanceHandler.setAttributeOnCluster(this.definition.getClusterName(), "state", "pre-drain");
 
-                    this.logger.addLogEntry("... Creating new instance stack with name: " + instanceStackName);
-                    Stack newInstanceStack = pushStack(instanceStackName, instanceStackTemplate);
-                    String newAsgName = this.findAsgInStack(newInstanceStack.getStackName());
-                    waitForInstanceStartup(newAsgName, Optional.empty());
-                    waitForInstanceEcsRegistration(this.definition.getClusterName(), newAsgName);
+            ArrayList<String> newContainerInstanceArns = new ArrayList<>();
+            String newAsgName = null;
+            String oldAsgName = this.findAsgInStack(existingStackState.getInstanceStack().getStackName());
+            try {
+                // Set pre-drain to avoid placing containers on old boxes
+                this.containerInstanceHandler.setAttributeOnCluster(this.definition.getClusterName(), "state", "pre-drain");
+
+                this.logger.addLogEntry("... Creating new instance stack with name: " + instanceStackName);
+                Stack newInstanceStack = pushStack(instanceStackName, instanceStackTemplate, instanceStackLogger(sharedStackPush));
+                awaitStackPush(sharedStackPush);
+                newAsgName = this.findAsgInStack(newInstanceStack.getStackName());
+                waitForInstanceStartup(newAsgName, Optional.empty());
+                waitForInstanceEcsRegistration(this.definition.getClusterName(), newAsgName);
 
-                    // Pause scaling operations to prevent bringing anymore old boxes online
-                    this.asgHandler.pauseScalingOperations(oldAsgName);
+                // Pause scaling operations to prevent bringing anymore old boxes online
+                this.asgHandler.pauseScalingOperations(oldAsgName);
 
-                    List<String> midUpdateInstanceArns = this.ecsClient.listContainerInstances(new ListContainerInstancesRequest().withCluster(this.definition.getClusterName())).getContainerInstanceArns();
+                List<String> midUpdateInstanceArns = this.ecsClient.listContainerInstances(new ListContainerInstancesRequest().withCluster(this.definition.getClusterName())).getContainerInstanceArns();
 
-                    if (oldContainerInstanceArns != null) {
-                        for (String arn : midUpdateInstanceArns) {
-                            if (!oldContainerInstanceArns.contains(arn)) {
-                                newContainerInstanceArns.add(arn);
-                            }
+                if (oldContainerInstanceArns != null) {
+                    for (String arn : midUpdateInstanceArns) {
+                        if (!oldContainerInstanceArns.contains(arn)) {
+                            newContainerInstanceArns.add(arn);
                         }
                     }
-                    else {
-                        newContainerInstanceArns.addAll(midUpdateInstanceArns);
-                    }
+                }
+                else {
+                    newContainerInstanceArns.addAll(midUpdateInstanceArns);
+                }
 
-                    // Set instances to draining
-                    if (this.definition.isDrainingEnabled() && oldContainerInstanceArns != null && !oldContainerInstanceArns.isEmpty()) {
-                        this.logger.addLogEntry("Moving " + existingCluster.getRunningTasksCount() + " tasks across " + existingCluster.getActiveServicesCount() + " services to new container instances.");
-                        List<List<String>> partitionedInstanceArns = Lists.partition(oldContainerInstanceArns, this.definition.getMaxConcurrentDraining());
-                        this.logger.addLogEntry("... Draining instances in sets of " + this.definition.getMaxConcurrentDraining());
-                        for (List<String> instancePartition : partitionedInstanceArns) {
-                            setContainerInstanceStatus(this.definition.getClusterName(), instancePartition, ContainerInstanceStatus.DRAINING);
-                            waitForDrainingComplete(this.definition.getClusterName(), instancePartition);
-                        }
+                // Set instances to draining
+                if (this.definition.isDrainingEnabled() && oldContainerInstanceArns != null && !oldContainerInstanceArns.isEmpty()) {
+                    this.logger.addLogEntry("Moving " + existingCluster.getRunningTasksCount() + " tasks across " + existingCluster.getActiveServicesCount() + " services to new container instances.");
+                    boolean drained = this.drainScheduler.drain(this.definition.getClusterName(), oldContainerInstanceArns,
+                        newContainerInstanceArns, this.definition.getMaxConcurrentDraining(), TimeUnit.MINUTES.toMillis(this.context.getTimeout()));
+                    if (drained) {
                         this.logger.addLogEntry("... All old instances drained.");
                     }
                 }
-                catch (Exception ex) { // Don't leave cluster in pre-drain state if anything goes wrong
-                    this.logger.addErrorLogEntry("Error occurred while updating cluster. Recovering old instances...");
-                    this.logger.addErrorLogEntry(ex.toString());
-                    if (oldContainerInstanceArns != null && !oldContainerInstanceArns.isEmpty()) {
-                        setContainerInstanceStatus(this.definition.getClusterName(), oldContainerInstanceArns, ContainerInstanceStatus.ACTIVE);
-                        try {
-                            Thread.sleep(POLLING_INTERVAL_MS); // Wait 1 cycle to allow ACTIVE status to set before killing
-                        } catch (InterruptedException e) {
-                            e.printStackTrace();
-                        }
-                    }
-                    if (this.definition.isDrainingEnabled() && !newContainerInstanceArns.isEmpty()) {
-                        setContainerInstanceStatus(this.definition.getClusterName(), newContainerInstanceArns, ContainerInstanceStatus.DRAINING);
-                        waitForDrainingComplete(this.definition.getClusterName(), newContainerInstanceArns);
+            }
+            catch (Exception ex) { // Don't leave cluster in pre-drain state if anything goes wrong
+                this.logger.addErrorLogEntry("Error occurred while updating cluster. Recovering old instances...");
+                this.logger.addErrorLogEntry(ex.toString());
+                if (oldContainerInstanceArns != null && !oldContainerInstanceArns.isEmpty()) {
+                    this.containerInstanceHandler.setContainerInstanceStatus(this.definition.getClusterName(), oldContainerInstanceArns, ContainerInstanceStatus.ACTIVE);
+                    try {
+                        Thread.sleep(POLLING_INTERVAL_MS); // Wait 1 cycle to allow ACTIVE status to set before killing
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
                     }
-                    this.containerInstanceHandler.setAttributeOnCluster(this.definition.getClusterName(), "state", "active");
-                    this.asgHandler.resumeScalingOperations(oldAsgName);
-                    throw new AwsExecException(ex);
                 }
+                if (this.definition.isDrainingEnabled() && !newContainerInstanceArns.isEmpty()) {
+                    this.drainScheduler.drain(this.definition.getClusterName(), newContainerInstanceArns,
+                        oldContainerInstanceArns == null ? new ArrayList<>() : oldContainerInstanceArns, newContainerInstanceArns.size(), TimeUnit.MINUTES.toMillis(this.context.getTimeout()));
+                }
+                this.containerInstanceHandler.setAttributeOnCluster(this.definition.getClusterName(), "state", "active");
+                this.asgHandler.resumeScalingOperations(oldAsgName);
+                throw new AwsExecException(ex);
+            }
 
-                // Instances empty, continue to delete
-                deleteStack(existingStackState.getInstanceStack().getStackName());
-                this.logger.addLogEntry("Cluster Update Complete!");
+            // Instances empty, continue to delete
+            this.warmPoolHandler.delete(oldAsgName);
+            deleteStack(existingStackState.getInstanceStack().getStackName());
+            // A new group launches its in-service instances itself, so its warm pool is only added once the rotation
+            // is done and serves later scale-outs
+            this.warmPoolHandler.apply(newAsgName);
+            this.logger.addLogEntry("Cluster Update Complete!");
+        }
+        else {
+            awaitStackPush(sharedStackPush);
+            if (instanceStackChange == InstanceStackChange.IN_PLACE) {
+                this.logger.addLogEntry("... Updating tags, outputs and parameters of instance stack in place");
+                pushStack(existingStackState.getInstanceStack().getStackName(), instanceStackTemplate);
             }
             else {
                 this.logger.addLogEntry("... No instance updates to apply, skipping...");
             }
+            this.warmPoolHandler.apply(this.findAsgInStack(existingStackState.getInstanceStack().getStackName()));
         }
     }
 
+    /**
+     * Updates the instance stack in place and replaces its instances with an instance refresh instead of
+     * rotating to a new instance stack
+     */
+    private void refreshInstances(String instanceStackName, String instanceStackTemplate, CompletableFuture<Stack> sharedStackPush) {
+        this.logger.addLogEntry("... Updating instance stack in place: " + instanceStackName);
+        pushStack(instanceStackName, instanceStackTemplate, instanceStackLogger(sharedStackPush));
+        awaitStackPush(sharedStackPush);
+        String asgName = this.findAsgInStack(instanceStackName);
+        this.warmPoolHandler.apply(asgName);
+        this.instanceRefreshRollout.rollout(this.definition.getClusterName(), asgName, this.definition,
+            TimeUnit.MINUTES.toMillis(this.context.getTimeout()));
+        waitForInstanceEcsRegistration(this.definition.getClusterName(), asgName);
+    }
+
     private EcsClusterDeployState findExistingStack(String clusterName) {
         logger.addLogEntry("Looking for existing stacks");
         logger.addLogEntry("... Searching for shared stack with name: " + clusterName + "-shared");
@@ -280,27 +359,23 @@ public class EcsClusterPush {
         logger.addLogEntry("... Found shared stack: " + sharedStack.getStackName());
         logger.addLogEntry("... Searching for instance stack");
         List<ContainerInstance> existingContainerInstances = containerInstanceHandler.getContainerInstances(clusterName);
-        List<Stack> instanceFilteredStacks;
+        Stack latestInstanceStack;
         if (existingContainerInstances == null || existingContainerInstances.size() == 0) {
-            List<Stack> allAccountStacks = getAllStacks();
-            instanceFilteredStacks = allAccountStacks.stream()
-                .filter(stack -> stack.getStackName().contains(this.definition.getClusterName() + "-instances"))
-                .sorted(Comparator.comparing(Stack::getStackName).reversed())
-                .collect(Collectors.toList());
+            NavigableMap<Integer, StackSummary> generations = instanceStackGenerations(clusterName);
+            latestInstanceStack = generations.isEmpty() ? null : getStackWithName(generations.lastEntry().getValue().getStackName());
         }
         else {
             List<TagDescription> existingContainerInstanceTags = containerInstanceHandler.getContainerInstanceTags(existingContainerInstances.get(0));
             String existingStackName = existingContainerInstanceTags.stream().filter(tag -> "aws:cloudformation:stack-name".equals(tag.getKey())).collect(Collectors.toList()).get(0).getValue();
-            instanceFilteredStacks = Collections.singletonList(getStackWithName(existingStackName));
+            latestInstanceStack = getStackWithName(existingStackName);
         }
 
-        if (instanceFilteredStacks.size() == 0) {
+        if (latestInstanceStack == null) {
             logger.addLogEntry("... Unable to find instance stack");
             return new EcsClusterDeployState()
                 .withClusterName(this.definition.getClusterName())
                 .withSharedStack(sharedStack);
         }
-        Stack latestInstanceStack = instanceFilteredStacks.get(0);
         logger.addLogEntry("... Found latest instance stack: " + latestInstanceStack.getStackName());
 
         return new EcsClusterDeployState()
@@ -323,59 +398,107 @@ public class EcsClusterPush {
     }
 
     private Stack pushStack(String stackName, String stackTemplate) {
-        this.logger.addLogEntry("Pushing stack: " + stackName + "...");
+        return pushStack(stackName, stackTemplate, this.logger);
+    }
 
-        CftPushTaskProperties cftPushTaskProperties = CftPushPropertyFactory.getTaskProperties(context.getSessionCredentials(), this.logger, context.getRegion(), this.propertyHandler);
-        CftPushContext cftPushContext = new CftPushContext()
-            .withLogger(this.logger)
-            .withEnvName(context.getEnvName())
-            .withRootPath(context.getRootPath())
-            .withPropertyHandler(context.getPropertyHandler())
-            .withSessionCredentials(context.getSessionCredentials())
-            .withAwsClientConfig(context.getAwsClientConfig())
-            .withRegion(context.getRegion())
-            .withTemplateParameters(this.cftParams)
-            .withTaskProperties(cftPushTaskProperties);
-        CftPush cftPush = new CftPush(cftPushContext);
+    private Stack pushStack(String stackName, String stackTemplate, HermanLogger stackLogger) {
+        return pushStack(stackName, stackTemplate, new HashMap<>(this.cftParams), stackLogger);
+    }
+
+    private Stack pushStack(String stackName, String stackTemplate, Map<String, String> templateParameters,
+        HermanLogger stackLogger) {
+        stackLogger.addLogEntry("Pushing stack: " + stackName + "...");
 
-        cftPush.push(stackName, stackTemplate);
+        this.pushSession.push(stackName, stackTemplate, templateParameters, stackLogger);
+        this.stackUtils.getStackIndex().invalidate();
 
         return this.cfnClient.describeStacks(new DescribeStacksRequest().withStackName(stackName)).getStacks().get(0);
     }
 
+    /**
+     * Pushes the shared stack in the background unless the instance stack takes the shared stack as a parameter
+     * or imports exported values, which may be the shared stack's, in which case it is pushed before returning.
+     */
+    private CompletableFuture<Stack> startSharedStackPush(String sharedStackName, String sharedStackTemplate,
+        String instanceStackTemplate) {
+        Map<String, TemplateParameter> instanceParameters = TemplateAnalyzer.parameters(instanceStackTemplate);
+        if (instanceParameters == null || instanceParameters.containsKey(SHARED_STACK_NAME_PARAM)
+            || TemplateAnalyzer.usesImports(instanceStackTemplate)) {
+            return CompletableFuture.completedFuture(pushStack(sharedStackName, sharedStackTemplate));
+        }
+
+        this.logger.addLogEntry("... Instance stack does not use " + SHARED_STACK_NAME_PARAM
+            + " or imported values, pushing shared stack alongside it");
+        Map<String, String> templateParameters = new HashMap<>(this.cftParams);
+        HermanLogger sharedStackLogger = new PrefixedLogger(this.logger, "shared");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            return CompletableFuture.supplyAsync(() -> pushStack(sharedStackName, sharedStackTemplate, templateParameters,
+                sharedStackLogger), executor);
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    private Stack awaitStackPush(CompletableFuture<Stack> stackPush) {
+        return ConcurrencyUtil.join(stackPush);
+    }
+
+    /**
+     * Waits for the shared stack push once the instance stack steps have ended. If those steps failed, a failed
+     * shared stack push is logged and added to their failure rather than replacing it.
+     */
+    private void awaitSharedStackPush(CompletableFuture<Stack> sharedStackPush, RuntimeException failure) {
+        if (failure == null) {
+            awaitStackPush(sharedStackPush);
+            return;
+        }
+        try {
+            awaitStackPush(sharedStackPush);
+        }
+        catch (RuntimeException sharedFailure) {
+            this.logger.addErrorLogEntry("Shared stack push failed: " + sharedFailure.getMessage());
+            if (sharedFailure != failure && sharedFailure != failure.getCause()) {
+                failure.addSuppressed(sharedFailure);
+            }
+        }
+    }
+
+    /**
+     * Prefixes the instance stack's logs while the shared stack is still being pushed alongside it
+     */
+    private HermanLogger instanceStackLogger(CompletableFuture<Stack> sharedStackPush) {
+        return sharedStackPush.isDone() ? this.logger : new PrefixedLogger(this.logger, "instances");
+    }
+
     private void deleteStack(String stackName) {
         this.logger.addLogEntry("Deleting stack: " + stackName);
         DeleteStackRequest deleteStackRequest = new DeleteStackRequest()
             .withStackName(stackName);
+        String lastEventId = this.stackUtils.findLastEventId(stackName);
         this.cfnClient.deleteStack(deleteStackRequest);
         try {
-            this.stackUtils.waitForCompletion(stackName);
+            this.stackUtils.waitForCompletion(stackName, lastEventId);
         }
         catch (AmazonCloudFormationException ex) {
             this.logger.addLogEntry("DELETE_COMPLETE");
         }
+        this.stackUtils.getStackIndex().invalidate();
     }
 
     private EcsClusterPushDefinition loadConfiguration() {
-        ObjectMapper mapper;
-
         for (TemplateFormat format : TemplateFormat.values()) {
             if (fileUtil.fileExists(TEMPLATE_NAME + "." + format.toSuffix())) {
                 String template = fileUtil.findFile(TEMPLATE_NAME + "." + format.toSuffix(), false);
 
-                if (TemplateFormat.YML.equals(format)) {
-                    mapper = new ObjectMapper(new YAMLFactory());
-                }
-                else {
-                    mapper = new ObjectMapper();
-                }
-
                 try {
                     String deployEnvironment = this.context.getEnvName();
                     if (deployEnvironment != null) {
                         this.propertyHandler.addProperty("DeployEnvironment", deployEnvironment);
                     }
-                    return mapper.readValue(this.propertyHandler.mapInProperties(template), EcsClusterPushDefinition.class);
+                    return HermanJackson.reader(EcsClusterPushDefinition.class, format)
+                        .readValue(this.propertyHandler.mapInProperties(template));
                 } catch (IOException e) {
                     throw new AwsExecException(e);
                 }
@@ -384,35 +507,19 @@ public class EcsClusterPush {
         throw new AwsExecException("No template provided!");
     }
 
-    private List<Stack> getAllStacks() {
-        DescribeStacksResult stacksResult = this.cfnClient.describeStacks();
-        ArrayList<Stack> stacks = new ArrayList<>(stacksResult.getStacks());
-        String nextToken = stacksResult.getNextToken();
-        while (nextToken != null) {
-            DescribeStacksRequest pagedRequest = new DescribeStacksRequest().withNextToken(nextToken);
-            DescribeStacksResult pagedResult = this.cfnClient.describeStacks(pagedRequest);
-            stacks.addAll(pagedResult.getStacks());
-            nextToken = pagedResult.getNextToken();
-        }
-
-        return stacks;
-    }
-
     private Stack getStackWithName(String stackName) {
         DescribeStacksResult stacksResult = this.cfnClient.describeStacks(new DescribeStacksRequest().withStackName(stackName));
         return stacksResult.getStacks().get(0);
     }
 
+    private NavigableMap<Integer, StackSummary> instanceStackGenerations(String clusterName) {
+        return this.stackUtils.getStackIndex().findGenerations(clusterName + INSTANCE_STACK_INFIX);
+    }
+
     private String findNextStackName(String clusterName) {
-        List<Stack> allAccountStacks = getAllStacks();
-        List<Stack> instanceFilteredStacks = allAccountStacks.stream()
-            .filter(stack -> stack.getStackName().contains(clusterName + "-instances"))
-            .sorted(Comparator.comparing(Stack::getStackName).reversed())
-            .collect(Collectors.toList());
-        Stack latestStack = instanceFilteredStacks.get(0);
-        String[] stackNameSplit = latestStack.getStackName().split("-");
-        int stackNumber = Integer.parseInt(stackNameSplit[stackNameSplit.length - 1]) + 1;
-        return clusterName + "-instances-" + stackNumber;
+        NavigableMap<Integer, StackSummary> generations = instanceStackGenerations(clusterName);
+        int stackNumber = generations.isEmpty() ? 1 : generations.lastKey() + 1;
+        return clusterName + INSTANCE_STACK_INFIX + stackNumber;
     }
 
     private long waitForInstanceStartup(String asgName, Optional<Long> timeout) {
@@ -498,50 +605,6 @@ public class EcsClusterPush {
 
     }
 
-    private void waitForDrainingComplete(String cluster, List<String> containerInstanceArns) {
-        long timeoutMillis = TimeUnit.MINUTES.toMillis(this.context.getTimeout());
-
-        boolean drained = false;
-        while (!drained && timeoutMillis > 0) {
-            DescribeContainerInstancesRequest describeInstancesRequest = new DescribeContainerInstancesRequest()
-                .withCluster(cluster)
-                .withContainerInstances(containerInstanceArns);
-            DescribeContainerInstancesResult describeInstancesResult = this.ecsClient.describeContainerInstances(describeInstancesRequest);
-            for (ContainerInstance instance : describeInstancesResult.getContainerInstances()) {
-                this.logger.addLogEntry("..." + instance.getContainerInstanceArn() + " - " + instance.getEc2InstanceId() + " - Tasks: " + instance.getRunningTasksCount() + " - DRAINING");
-            }
-
-            drained = describeInstancesResult.getContainerInstances()
-                .stream()
-                .allMatch(instance -> instance.getRunningTasksCount() == 0);
-
-            try {
-                Thread.sleep(POLLING_INTERVAL_MS);
-            }
-            catch (InterruptedException ex) {
-                Thread.currentThread().interrupt();
-                throw new AwsExecException("Interrupted while waiting for instances to drain");
-            }
-            timeoutMillis -= POLLING_INTERVAL_MS;
-        }
-
-        if (!drained) {
-            this.logger.addErrorLogEntry("Unable to drain all instances! Manual cleanup of old stack may be required.");
-        }
-        this.logger.addLogEntry("... Draining complete for: " + String.join(", ", containerInstanceArns));
-    }
-
-    private void setContainerInstanceStatus(String cluster, List<String> containerInstanceArns, ContainerInstanceStatus status) {
-        for (String arn : containerInstanceArns) {
-            this.logger.addLogEntry("... Setting instance " + arn + " status to " + status.toString());
-        }
-        UpdateContainerInstancesStateRequest updateStateRequest = new UpdateContainerInstancesStateRequest()
-            .withCluster(cluster)
-            .withContainerInstances(containerInstanceArns)
-            .withStatus(status);
-        this.ecsClient.updateContainerInstancesState(updateStateRequest);
-    }
-
     private void addClusterProperties(Cluster cluster) {
         this.cftParams.put("ClusterName", cluster.getClusterName());
         this.cftParams.put("ClusterArn", cluster.getClusterArn());
@@ -551,18 +614,33 @@ public class EcsClusterPush {
         return fileUtil.findFile(stackFileName, false);
     }
 
-    private boolean parametersUpdated(List<Parameter> existingStackParameters) {
-        List<String> ignoreList = Arrays.asList("ClusterName", "ClusterArn");
-        this.logger.addLogEntry("Checking parameter updates...");
-        List<Parameter> filteredParameters = existingStackParameters.stream().filter(parameter -> !ignoreList.contains(parameter.getParameterKey())).collect(Collectors.toList());
-        for (Parameter existingStackParam : filteredParameters) {
-            String deployProperty = this.propertyHandler.lookupVariable(existingStackParam.getParameterKey());
-            this.logger.addLogEntry("... " + existingStackParam.getParameterKey() + " ---  Stack: " + existingStackParam.getParameterValue() + " Deploy: " + deployProperty);
-            if (!StringUtils.isNullOrEmpty(deployProperty) && !existingStackParam.getParameterValue().equals(deployProperty)) {
-                return true;
-            }
+    /**
+     * Plans the new instance template against the running instance stack. A resource change beyond tags means a
+     * new generation of instances is rolled out; tag, output and parameter changes are applied in place.
+     */
+    private InstanceStackChange planInstanceStack(Stack instanceStack, String instanceStackTemplate,
+        String instanceTemplateHash) {
+        this.logger.addLogEntry("Checking instance stack for updates...");
+        Optional<String> deployedTemplateHash = TemplateHashOutput.readFrom(instanceStack);
+        if (deployedTemplateHash.isPresent() && !deployedTemplateHash.get().equals(instanceTemplateHash)) {
+            this.logger.addLogEntry("... Instance template changed");
+            return InstanceStackChange.ROLLOUT;
         }
-        return false;
+
+        List<String> keepPreviousParameters = instanceStack.getParameters().stream()
+            .map(Parameter::getParameterKey)
+            .filter(PER_PUSH_PARAMETERS::contains)
+            .collect(Collectors.toList());
+        StackChangePlan plan = this.pushSession.plan(instanceStack.getStackName(), instanceStackTemplate,
+            new HashMap<>(this.cftParams), keepPreviousParameters);
+        if (plan.hasChangesBeyondTags()) {
+            return InstanceStackChange.ROLLOUT;
+        }
+        return plan.isEmpty() ? InstanceStackChange.NONE : InstanceStackChange.IN_PLACE;
+    }
+
+    private enum InstanceStackChange {
+        NONE, IN_PLACE, ROLLOUT
     }
 
 }
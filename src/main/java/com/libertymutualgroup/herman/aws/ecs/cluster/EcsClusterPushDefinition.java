@@ -12,6 +12,10 @@ public class EcsClusterPushDefinition {
     private int instanceRegistrationTimeout = 3;
     private boolean drainingEnabled = true;
     private int maxConcurrentDraining = 3;
+    private EcsClusterUpdateStrategy updateStrategy = EcsClusterUpdateStrategy.NEW_STACK;
+    private int minHealthyPercentage = 90;
+    private int instanceWarmup = 300;
+    private EcsClusterWarmPool warmPool;
 
     public String getClusterName() {
         return clusterName;
@@ -60,4 +64,36 @@ public class EcsClusterPushDefinition {
     public void setMaxConcurrentDraining(int maxConcurrentDraining) {
         this.maxConcurrentDraining = maxConcurrentDraining;
     }
+
+    public EcsClusterUpdateStrategy getUpdateStrategy() {
+        return updateStrategy;
+    }
+
+    public void setUpdateStrategy(EcsClusterUpdateStrategy updateStrategy) {
+        this.updateStrategy = updateStrategy;
+    }
+
+    public int getMinHealthyPercentage() {
+        return minHealthyPercentage;
+    }
+
+    public void setMinHealthyPercentage(int minHealthyPercentage) {
+        this.minHealthyPercentage = minHealthyPercentage;
+    }
+
+    public int getInstanceWarmup() {
+        return instanceWarmup;
+    }
+
+    public void setInstanceWarmup(int instanceWarmup) {
+        this.instanceWarmup = instanceWarmup;
+    }
+
+    public EcsClusterWarmPool getWarmPool() {
+        return warmPool;
+    }
+
+    public void setWarmPool(EcsClusterWarmPool warmPool) {
+        this.warmPool = warmPool;
+    }
 }
@@ -0,0 +1,26 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+/**
+ * How a cluster update rolls out a changed instance template
+ */
+public enum EcsClusterUpdateStrategy {
+    /** Create a new -instances-N stack, drain the old instances onto it and delete the old stack */
+    NEW_STACK,
+    /** Update the instance stack in place and replace instances with an Auto Scaling instance refresh */
+    INSTANCE_REFRESH
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+/**
+ * Warm pool of pre-initialized instances kept next to a cluster's autoscaling group
+ */
+public class EcsClusterWarmPool {
+
+    private int minSize = 0;
+    private Integer maxGroupPreparedCapacity;
+    private String poolState = "Stopped";
+    private boolean reuseOnScaleIn = false;
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public void setMinSize(int minSize) {
+        this.minSize = minSize;
+    }
+
+    public Integer getMaxGroupPreparedCapacity() {
+        return maxGroupPreparedCapacity;
+    }
+
+    public void setMaxGroupPreparedCapacity(Integer maxGroupPreparedCapacity) {
+        this.maxGroupPreparedCapacity = maxGroupPreparedCapacity;
+    }
+
+    public String getPoolState() {
+        return poolState;
+    }
+
+    public void setPoolState(String poolState) {
+        this.poolState = poolState;
+    }
+
+    public boolean isReuseOnScaleIn() {
+        return reuseOnScaleIn;
+    }
+
+    public void setReuseOnScaleIn(boolean reuseOnScaleIn) {
+        this.reuseOnScaleIn = reuseOnScaleIn;
+    }
+}
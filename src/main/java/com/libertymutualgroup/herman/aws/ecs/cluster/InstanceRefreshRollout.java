@@ -0,0 +1,186 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+import com.amazonaws.services.autoscaling.model.AmazonAutoScalingException;
+import com.amazonaws.services.autoscaling.model.Instance;
+import com.amazonaws.services.autoscaling.model.InstanceRefresh;
+import com.amazonaws.services.autoscaling.model.InstanceRefreshStatus;
+import com.amazonaws.services.autoscaling.model.LifecycleState;
+import com.amazonaws.services.ecs.model.ContainerInstance;
+import com.amazonaws.services.ecs.model.ContainerInstanceStatus;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.aws.asg.AutoscalingGroupHandler;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.util.AdaptivePoller;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Replaces the instances of a cluster's Auto Scaling group in place with an instance refresh. A termination
+ * lifecycle hook holds each instance the refresh replaces until ECS has drained it; draining instances get
+ * the same state=pre-drain attribute as a stack rotation so nothing new is placed on them.
+ */
+public class InstanceRefreshRollout {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InstanceRefreshRollout.class);
+    static final String DRAIN_HOOK_NAME = "herman-ecs-drain";
+    private static final int MIN_HEARTBEAT_TIMEOUT_SECONDS = 30;
+    private static final int MAX_HEARTBEAT_TIMEOUT_SECONDS = 7200;
+    private static final long MIN_POLLING_INTERVAL_MS = 5000;
+    private static final long MAX_POLLING_INTERVAL_MS = 30000;
+    private static final double POLLING_GROWTH_FACTOR = 1.5;
+
+    private AutoscalingGroupHandler asgHandler;
+    private ContainerInstanceHandler containerInstanceHandler;
+    private HermanLogger logger;
+    private Supplier<AdaptivePoller> pollerFactory;
+
+    public InstanceRefreshRollout(AutoscalingGroupHandler asgHandler, ContainerInstanceHandler containerInstanceHandler,
+        HermanLogger logger) {
+        this(asgHandler, containerInstanceHandler, logger,
+            () -> new AdaptivePoller(MIN_POLLING_INTERVAL_MS, MAX_POLLING_INTERVAL_MS, POLLING_GROWTH_FACTOR));
+    }
+
+    public InstanceRefreshRollout(AutoscalingGroupHandler asgHandler, ContainerInstanceHandler containerInstanceHandler,
+        HermanLogger logger, Supplier<AdaptivePoller> pollerFactory) {
+        this.asgHandler = asgHandler;
+        this.containerInstanceHandler = containerInstanceHandler;
+        this.logger = logger;
+        this.pollerFactory = pollerFactory;
+    }
+
+    /**
+     * Runs an instance refresh to completion. The refresh is cancelled if it makes no progress for
+     * {@code stallTimeoutMillis} or anything else goes wrong.
+     */
+    public void rollout(String cluster, String asgName, EcsClusterPushDefinition definition, long stallTimeoutMillis) {
+        int heartbeatTimeout = (int) Math.max(MIN_HEARTBEAT_TIMEOUT_SECONDS,
+            Math.min(MAX_HEARTBEAT_TIMEOUT_SECONDS, stallTimeoutMillis / 1000));
+        this.asgHandler.putTerminationLifecycleHook(asgName, DRAIN_HOOK_NAME, heartbeatTimeout);
+        try {
+            String refreshId = this.asgHandler.startInstanceRefresh(asgName, definition.getMinHealthyPercentage(),
+                definition.getInstanceWarmup());
+            awaitRefresh(cluster, asgName, refreshId, definition.isDrainingEnabled(), stallTimeoutMillis);
+        }
+        finally {
+            // Left in place, the hook would hold every later scale-in for the full heartbeat timeout
+            this.asgHandler.deleteLifecycleHook(asgName, DRAIN_HOOK_NAME);
+        }
+    }
+
+    private void awaitRefresh(String cluster, String asgName, String refreshId, boolean drainingEnabled,
+        long stallTimeoutMillis) {
+        AdaptivePoller poller = this.pollerFactory.get();
+        Set<String> draining = new HashSet<>();
+        Integer lastPercentage = null;
+        long lastProgress = System.currentTimeMillis();
+        try {
+            while (true) {
+                boolean progressed = releaseTerminatingInstances(cluster, asgName, drainingEnabled, draining);
+
+                InstanceRefresh refresh = this.asgHandler.getInstanceRefresh(asgName, refreshId);
+                String status = refresh.getStatus();
+                if (!Objects.equals(lastPercentage, refresh.getPercentageComplete())) {
+                    lastPercentage = refresh.getPercentageComplete();
+                    progressed = true;
+                    this.logger.addLogEntry("... Instance refresh " + status + ": " + (lastPercentage == null ? 0 : lastPercentage)
+                        + "% complete, " + refresh.getInstancesToUpdate() + " instances left to replace");
+                }
+
+                if (InstanceRefreshStatus.Successful.toString().equals(status)) {
+                    this.logger.addLogEntry("... Instance refresh complete");
+                    return;
+                }
+                if (InstanceRefreshStatus.Failed.toString().equals(status)
+                    || InstanceRefreshStatus.Cancelled.toString().equals(status)) {
+                    throw new AwsExecException("Instance refresh " + status + ": " + refresh.getStatusReason());
+                }
+
+                long now = System.currentTimeMillis();
+                if (progressed) {
+                    lastProgress = now;
+                    poller.progressed();
+                }
+                else if (now - lastProgress > stallTimeoutMillis) {
+                    throw new AwsExecException("Instance refresh made no progress for "
+                        + (stallTimeoutMillis / 60000) + " minutes");
+                }
+                poller.sleep();
+            }
+        }
+        catch (RuntimeException ex) {
+            this.logger.addErrorLogEntry("Instance refresh did not complete, cancelling...");
+            this.asgHandler.cancelInstanceRefresh(asgName);
+            throw ex;
+        }
+    }
+
+    /**
+     * Starts draining instances the refresh is terminating and lets the ones that are empty go
+     *
+     * @return true if any instance started draining or was released
+     */
+    private boolean releaseTerminatingInstances(String cluster, String asgName, boolean drainingEnabled, Set<String> draining) {
+        List<Instance> terminating = this.asgHandler.getAsgInstancesInState(asgName, LifecycleState.TerminatingWait);
+        if (terminating.isEmpty()) {
+            return false;
+        }
+
+        Map<String, ContainerInstance> containerInstances = this.containerInstanceHandler.getContainerInstancesByEc2InstanceId(cluster);
+        List<String> toDrain = new ArrayList<>();
+        boolean progressed = false;
+        for (Instance instance : terminating) {
+            String instanceId = instance.getInstanceId();
+            ContainerInstance containerInstance = containerInstances.get(instanceId);
+            if (!drainingEnabled || containerInstance == null || (draining.contains(instanceId)
+                && containerInstance.getRunningTasksCount() == 0 && containerInstance.getPendingTasksCount() == 0)) {
+                release(asgName, instanceId);
+                draining.remove(instanceId);
+                progressed = true;
+            }
+            else if (draining.add(instanceId)) {
+                toDrain.add(containerInstance.getContainerInstanceArn());
+            }
+        }
+
+        if (!toDrain.isEmpty()) {
+            this.containerInstanceHandler.setAttributeOnInstances(cluster, toDrain, "state", "pre-drain");
+            this.containerInstanceHandler.setContainerInstanceStatus(cluster, toDrain, ContainerInstanceStatus.DRAINING);
+            progressed = true;
+        }
+        return progressed;
+    }
+
+    private void release(String asgName, String instanceId) {
+        try {
+            this.asgHandler.completeLifecycleAction(asgName, DRAIN_HOOK_NAME, instanceId);
+            this.logger.addLogEntry("... " + instanceId + " drained, releasing for termination");
+        }
+        catch (AmazonAutoScalingException ex) {
+            // Already released, or the hook timed out and the instance is gone
+            LOGGER.debug("Unable to complete lifecycle action for " + instanceId, ex);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+import com.amazonaws.services.autoscaling.model.DescribeWarmPoolResult;
+import com.amazonaws.services.autoscaling.model.WarmPoolConfiguration;
+import com.libertymutualgroup.herman.aws.asg.AutoscalingGroupHandler;
+
+import java.util.Objects;
+
+/**
+ * Keeps the warm pool of a cluster's autoscaling groups in line with the cluster definition. Without a
+ * configured warm pool nothing is touched, so a pool managed in the instance template is left alone.
+ */
+public class WarmPoolHandler {
+
+    private AutoscalingGroupHandler asgHandler;
+    private EcsClusterWarmPool warmPool;
+
+    /**
+     * @param warmPool configured warm pool, or null if the cluster definition has none
+     */
+    public WarmPoolHandler(AutoscalingGroupHandler asgHandler, EcsClusterWarmPool warmPool) {
+        this.asgHandler = asgHandler;
+        this.warmPool = warmPool;
+    }
+
+    /**
+     * Adds the warm pool to the group, or updates it if its settings differ
+     */
+    public void apply(String asgName) {
+        if (warmPool == null || asgName == null) {
+            return;
+        }
+        DescribeWarmPoolResult existing = asgHandler.getWarmPool(asgName);
+        if (existing != null && matches(existing.getWarmPoolConfiguration())) {
+            return;
+        }
+        asgHandler.putWarmPool(asgName, warmPool.getMinSize(), warmPool.getMaxGroupPreparedCapacity(),
+            warmPool.getPoolState(), warmPool.isReuseOnScaleIn());
+    }
+
+    /**
+     * Deletes the warm pool of a group that is about to be removed, so its warmed instances do not hold up the
+     * stack deletion
+     */
+    public void delete(String asgName) {
+        if (warmPool == null || asgName == null || asgHandler.getWarmPool(asgName) == null) {
+            return;
+        }
+        asgHandler.deleteWarmPool(asgName);
+    }
+
+    private boolean matches(WarmPoolConfiguration configuration) {
+        boolean reuseOnScaleIn = configuration.getInstanceReusePolicy() != null
+            && Boolean.TRUE.equals(configuration.getInstanceReusePolicy().getReuseOnScaleIn());
+        return Objects.equals(configuration.getMinSize(), warmPool.getMinSize())
+            && Objects.equals(configuration.getMaxGroupPreparedCapacity(), warmPool.getMaxGroupPreparedCapacity())
+            && Objects.equals(configuration.getPoolState(), warmPool.getPoolState())
+            && reuseOnScaleIn == warmPool.isReuseOnScaleIn();
+    }
+}
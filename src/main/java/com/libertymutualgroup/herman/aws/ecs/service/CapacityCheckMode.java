@@ -0,0 +1,28 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.aws.ecs.service;
+
+/**
+ * What to do when the pre-flight capacity check finds the cluster cannot place a rollout's tasks
+ */
+public enum CapacityCheckMode {
+    /** Log the capacity report and deploy anyway */
+    WARN,
+    /** Fail the push before the service is touched */
+    FAIL,
+    /** Raise the cluster autoscaling group's desired capacity and wait for the new instances */
+    SCALE_OUT
+}
@@ -32,6 +32,7 @@ public class EcsService {
     private String protocol;
     private List<Integer> elbSourcePorts;
     private Integer healthCheckGracePeriodSeconds = 0;
+    private CapacityCheckMode capacityCheck = CapacityCheckMode.WARN;
 
     public int getInstanceCount() {
         return instanceCount;
@@ -121,6 +122,14 @@ public class EcsService {
         this.healthCheckGracePeriodSeconds = healthCheckGracePeriodSeconds;
     }
 
+    public CapacityCheckMode getCapacityCheck() {
+        return capacityCheck;
+    }
+
+    public void setCapacityCheck(CapacityCheckMode capacityCheck) {
+        this.capacityCheck = capacityCheck;
+    }
+
     @Override
     public String toString() {
         return "EcsService{" +
@@ -135,6 +144,7 @@ public class EcsService {
             ", protocol='" + protocol + '\'' +
             ", elbSourcePorts=" + elbSourcePorts +
             ", healthCheckGracePeriodSeconds=" + healthCheckGracePeriodSeconds +
+            ", capacityCheck=" + capacityCheck +
             '}';
     }
 }
\ No newline at end of file
@@ -19,12 +19,10 @@ import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.regions.Regions;
+import com.amazonaws.services.applicationautoscaling.AWSApplicationAutoScaling;
+import com.amazonaws.services.applicationautoscaling.AWSApplicationAutoScalingClientBuilder;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
-import com.amazonaws.services.dynamodbv2.model.AttributeDefinition;
-import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
-import com.amazonaws.services.dynamodbv2.model.Projection;
-import com.amazonaws.services.dynamodbv2.model.StreamSpecification;
 import com.amazonaws.services.ec2.AmazonEC2;
 import com.amazonaws.services.ec2.AmazonEC2ClientBuilder;
 import com.amazonaws.services.ec2.model.AmazonEC2Exception;
@@ -63,6 +61,11 @@ import com.amazonaws.services.lambda.model.UpdateFunctionCodeRequest;
 import com.amazonaws.services.lambda.model.UpdateFunctionConfigurationRequest;
 import com.amazonaws.services.lambda.model.UpdateFunctionConfigurationResult;
 import com.amazonaws.services.lambda.model.VpcConfig;
+import com.amazonaws.services.resourcegroupstaggingapi.AWSResourceGroupsTaggingAPI;
+import com.amazonaws.services.resourcegroupstaggingapi.AWSResourceGroupsTaggingAPIClientBuilder;
+import com.amazonaws.services.securitytoken.AWSSecurityTokenService;
+import com.amazonaws.services.securitytoken.AWSSecurityTokenServiceClientBuilder;
+import com.amazonaws.services.securitytoken.model.GetCallerIdentityRequest;
 import com.amazonaws.services.sns.AmazonSNS;
 import com.amazonaws.services.sns.AmazonSNSClientBuilder;
 import com.amazonaws.services.sqs.AmazonSQS;
@@ -71,13 +74,10 @@ import com.amazonaws.util.IOUtils;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.aws.credentials.BambooCredentialsHandler;
 import com.libertymutualgroup.herman.aws.ecs.PushType;
 import com.libertymutualgroup.herman.aws.ecs.broker.dynamodb.DynamoDBBroker;
-import com.libertymutualgroup.herman.aws.ecs.broker.dynamodb.DynamoDBMixIns;
 import com.libertymutualgroup.herman.aws.ecs.broker.iam.IAMBroker;
 import com.libertymutualgroup.herman.aws.ecs.broker.kinesis.KinesisBroker;
 import com.libertymutualgroup.herman.aws.ecs.broker.kinesis.KinesisStream;
@@ -85,11 +85,12 @@ import com.libertymutualgroup.herman.aws.ecs.broker.kms.KmsBroker;
 import com.libertymutualgroup.herman.aws.ecs.broker.sns.SnsBroker;
 import com.libertymutualgroup.herman.aws.ecs.broker.sns.SnsTopic;
 import com.libertymutualgroup.herman.aws.ecs.broker.sqs.SqsBroker;
-import com.libertymutualgroup.herman.aws.ecs.broker.sqs.SqsQueue;
 import com.libertymutualgroup.herman.aws.tags.TagUtil;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import com.libertymutualgroup.herman.task.common.CommonTaskProperties;
 import com.libertymutualgroup.herman.util.FileUtil;
+import com.libertymutualgroup.herman.util.HermanJackson;
+import com.libertymutualgroup.herman.util.TemplateFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -106,6 +107,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import static java.lang.Math.toIntExact;
@@ -131,11 +133,12 @@ public class LambdaBroker {
     private AWSCredentials credentials;
     private Regions region;
     private AmazonKinesis kinesisClient;
+    private AWSResourceGroupsTaggingAPI taggingClient;
+    private AWSSecurityTokenService stsClient;
     private AmazonSQS sqsClient;
     private AmazonSNS snsClient;
     private AmazonDynamoDB dynamoDbClient;
-
-    private ObjectMapper mapper = new ObjectMapper();
+    private AWSApplicationAutoScaling autoScalingClient;
 
     public LambdaBroker(LambdaPushContext context, HermanLogger buildLogger, Regions region) {
         this.context = context;
@@ -189,12 +192,29 @@ public class LambdaBroker {
             .withClientConfiguration(config)
             .withRegion(region)
             .build();
+        this.autoScalingClient = AWSApplicationAutoScalingClientBuilder.standard()
+            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
+            .withClientConfiguration(config)
+            .withRegion(region)
+            .build();
 
         this.kinesisClient = AmazonKinesisClientBuilder.standard()
             .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
             .withClientConfiguration(config)
             .withRegion(region)
             .build();
+
+        this.taggingClient = AWSResourceGroupsTaggingAPIClientBuilder.standard()
+            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
+            .withClientConfiguration(config)
+            .withRegion(region)
+            .build();
+
+        this.stsClient = AWSSecurityTokenServiceClientBuilder.standard()
+            .withCredentials(new AWSStaticCredentialsProvider(context.getSessionCredentials()))
+            .withClientConfiguration(config)
+            .withRegion(region)
+            .build();
     }
 
     public void brokerLambda() throws IOException {
@@ -352,8 +372,10 @@ public class LambdaBroker {
 
         brokerSns(this.configuration);
         brokerSqs(this.configuration);
-        brokerKinesisStream(this.configuration);
+        List<CompletableFuture<Void>> streamScaling = brokerKinesisStream(this.configuration);
         brokerDynamoDB(this.configuration);
+
+        KinesisBroker.awaitResharding(streamScaling, this.buildLogger);
     }
 
     private Environment getEnvironment() {
@@ -429,10 +451,10 @@ public class LambdaBroker {
             return Collections.emptyList();
         }
         try {
-            final JsonNode executionStatements = this.mapper.readTree(executionPolicyResult.getPolicy())
+            final JsonNode executionStatements = HermanJackson.treeReader().readTree(executionPolicyResult.getPolicy())
                 .get("Statement");
             final TypeReference<List<JsonNode>> listRef = new TypeReference<List<JsonNode>>() {};
-            List<JsonNode> statements = mapper.readValue(executionStatements.toString(), listRef);
+            List<JsonNode> statements = HermanJackson.jsonReader(listRef).readValue(executionStatements.toString());
             return statements.stream().map(it -> it.get("Sid").textValue()).collect(Collectors.toList());
         } catch (IOException e) {
             LOGGER.debug("Unable to parse existing execution policy", e);
@@ -450,12 +472,12 @@ public class LambdaBroker {
                 String mappedPermissionString = this.context.getBambooPropertyHandler().mapInProperties(template);
                 final TypeReference<List<LambdaPermission>> listRef = new TypeReference<List<LambdaPermission>>() {};
                 try {
-                    return this.mapper.readValue(mappedPermissionString, listRef);
+                    return HermanJackson.jsonReader(listRef).readValue(mappedPermissionString);
                 } catch (JsonMappingException jsonEx) {
                     buildLogger.addErrorLogEntry(
                         "DEPRECATION WARNING: Singleton permissions are deprecated, please pass execution permissions as an array.");
-                    LambdaPermission singletonPermission = this.mapper
-                        .readValue(mappedPermissionString, LambdaPermission.class);
+                    LambdaPermission singletonPermission = HermanJackson.jsonReader(LambdaPermission.class)
+                        .readValue(mappedPermissionString);
                     return Collections.singletonList(singletonPermission);
                 } catch (Exception ex) {
                     buildLogger.addErrorLogEntry("Error parsing permissions", ex);
@@ -503,14 +525,9 @@ public class LambdaBroker {
                 throw new AwsExecException("No Lambda template provided!");
             }
 
-            ObjectMapper mapper = isJson ? new ObjectMapper() : new ObjectMapper(new YAMLFactory());
-            mapper.addMixIn(KeySchemaElement.class, DynamoDBMixIns.class);
-            mapper.addMixIn(StreamSpecification.class, DynamoDBMixIns.class);
-            mapper.addMixIn(AttributeDefinition.class, DynamoDBMixIns.class);
-            mapper.addMixIn(Projection.class, DynamoDBMixIns.class);
-
-            definition = mapper.readValue(this.context.getBambooPropertyHandler().mapInProperties(template),
-                LambdaInjectConfiguration.class);
+            TemplateFormat format = isJson ? TemplateFormat.JSON : TemplateFormat.YML;
+            definition = HermanJackson.reader(LambdaInjectConfiguration.class, format)
+                .readValue(this.context.getBambooPropertyHandler().mapInProperties(template));
         } catch (FileNotFoundException e1) {
             buildLogger.addErrorLogEntry("No template found: " + LAMBDA_TEMPLATE_JSON, e1);
             throw new AwsExecException("No template found at " + LAMBDA_TEMPLATE_JSON);
@@ -525,14 +542,9 @@ public class LambdaBroker {
         if (definition.getQueues() != null) {
             SqsBroker sqsBroker = new SqsBroker(this.buildLogger, this.context.getBambooPropertyHandler());
             this.buildLogger.addLogEntry("Brokering SQS queues...");
-            for (SqsQueue queue : definition.getQueues()) {
-                if (queue.getPolicyName() != null) {
-                    String policy = fileUtil.findFile(queue.getPolicyName(), false);
-                    sqsBroker.brokerQueue(sqsClient, queue, policy, definition.getTags());
-                } else {
-                    sqsBroker.brokerQueue(sqsClient, queue, null, definition.getTags());
-                }
-            }
+            sqsBroker.brokerQueues(sqsClient, definition.getQueues(),
+                queue -> queue.getPolicyName() != null ? fileUtil.findFile(queue.getPolicyName(), false) : null,
+                definition.getTags());
         }
     }
 
@@ -552,25 +564,29 @@ public class LambdaBroker {
 
     }
 
-    private void brokerKinesisStream(LambdaInjectConfiguration definition) {
-        KinesisBroker kinesisBroker = new KinesisBroker(this.buildLogger, kinesisClient, definition, taskProperties);
+    private List<CompletableFuture<Void>> brokerKinesisStream(LambdaInjectConfiguration definition) {
+        String accountId = stsClient.getCallerIdentity(new GetCallerIdentityRequest()).getAccount();
+        KinesisBroker kinesisBroker = new KinesisBroker(this.buildLogger, kinesisClient, taggingClient, definition,
+            taskProperties, accountId, this.region);
 
         // delete any streams tied to this app that are no longer specified in the PushDefinition
         kinesisBroker.checkStreamsToBeDeleted();
 
+        List<CompletableFuture<Void>> streamScaling = new ArrayList<>();
         if (definition.getStreams() != null) {
             this.buildLogger.addLogEntry("Brokering Kinesis streams...");
             for (KinesisStream stream : definition.getStreams()) {
-                kinesisBroker.brokerStream(stream);
+                streamScaling.add(kinesisBroker.brokerStream(stream));
             }
         }
+        return streamScaling;
     }
 
     private void brokerDynamoDB(LambdaInjectConfiguration definition) {
         if (definition.getDynamoDBTables() != null) {
             DynamoDBBroker dynamoDBBroker = new DynamoDBBroker(this.buildLogger, definition);
             this.buildLogger.addLogEntry("Brokering DynamoDB tables");
-            dynamoDBBroker.createDynamoDBTables(dynamoDbClient);
+            dynamoDBBroker.createDynamoDBTables(dynamoDbClient, autoScalingClient);
         }
     }
 }
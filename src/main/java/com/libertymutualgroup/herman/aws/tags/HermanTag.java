@@ -66,6 +66,18 @@ public class HermanTag {
             .withValue(this.value);
     }
 
+    public com.amazonaws.services.dax.model.Tag toDaxTag() {
+        return new com.amazonaws.services.dax.model.Tag()
+            .withKey(this.key)
+            .withValue(this.value);
+    }
+
+    public com.amazonaws.services.elasticache.model.Tag toElastiCacheTag() {
+        return new com.amazonaws.services.elasticache.model.Tag()
+            .withKey(this.key)
+            .withValue(this.value);
+    }
+
     public String getKey() {
         return key;
     }
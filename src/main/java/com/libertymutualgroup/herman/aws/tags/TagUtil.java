@@ -48,6 +48,14 @@ public class TagUtil {
         return tags.stream().map(HermanTag::toDynamoTag).collect(Collectors.toList());
     }
 
+    public static List<com.amazonaws.services.dax.model.Tag> hermanToDaxTags(List<HermanTag> tags) {
+        return tags.stream().map(HermanTag::toDaxTag).collect(Collectors.toList());
+    }
+
+    public static List<com.amazonaws.services.elasticache.model.Tag> hermanToElastiCacheTags(List<HermanTag> tags) {
+        return tags.stream().map(HermanTag::toElastiCacheTag).collect(Collectors.toList());
+    }
+
     public static Map<String, String> hermanToMap(List<HermanTag> tags) {
         return tags.stream().collect(Collectors.toMap(HermanTag::getKey, HermanTag::getValue));
     }
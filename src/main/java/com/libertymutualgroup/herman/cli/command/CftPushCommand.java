@@ -47,6 +47,12 @@ public class CftPushCommand implements Runnable{
     @CommandLine.Option(names = {"-v", "-vars", "--variables"}, description = "Custom build variables to be injected. <KEY>=<VALUE>")
     private Map<String, String> customVariables = new HashMap<>();
 
+    @CommandLine.Option(names = {"-m", "--manifest"}, description = "Stack manifest file, pushes all stacks it declares instead of a single template")
+    private String manifestFile;
+
+    @CommandLine.Option(names = {"-p", "--plan"}, description = "Only create and log the change set, do not execute it")
+    private boolean planOnly;
+
     @Override public void run() {
         String absPath = new File(this.rootPath).getAbsolutePath();
         cli.getLogger().addLogEntry("Starting CFT Push...");
@@ -58,7 +64,9 @@ public class CftPushCommand implements Runnable{
             .withCustomConfigurationBucket(cli.getCustomConfigurationBucket())
             .withCustomVariables(customVariables)
             .withTemplateFile(templateFile)
-            .withStackName(stackName);
+            .withStackName(stackName)
+            .withPlanOnly(planOnly)
+            .withManifestFile(manifestFile);
 
         cftPushTask.runTask(config);
     }
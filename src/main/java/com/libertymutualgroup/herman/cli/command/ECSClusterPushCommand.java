@@ -45,6 +45,9 @@ public class ECSClusterPushCommand implements Runnable {
     @Option(names = {"-v", "-vars", "--variables"}, description = "Custom build variables to be injected. <KEY>=<VALUE>")
     private Map<String, String> customVariables = new HashMap<>();
 
+    @Option(names = {"-m", "--manifest"}, description = "Fleet manifest file, pushes every cluster it lists instead of the one in the directory")
+    private String manifestFile;
+
     @Override
     public void run() {
         String absPath = new File(this.rootPath).getAbsolutePath();
@@ -55,7 +58,8 @@ public class ECSClusterPushCommand implements Runnable {
             .withEnvironmentName(environmentName)
             .withRegion(cli.getRegion())
             .withCustomConfigurationBucket(cli.getCustomConfigurationBucket())
-            .withCustomVariables(customVariables);
+            .withCustomVariables(customVariables)
+            .withManifestFile(manifestFile);
 
         ECSClusterPushTask clusterPush = new ECSClusterPushTask(cli.getLogger());
         clusterPush.runTask(config);
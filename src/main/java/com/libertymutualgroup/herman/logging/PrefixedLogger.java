@@ -0,0 +1,45 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.logging;
+
+/**
+ * Prefixes every entry, so output from pushes running side by side can be told apart
+ */
+public class PrefixedLogger implements HermanLogger {
+
+    private final HermanLogger delegate;
+    private final String prefix;
+
+    public PrefixedLogger(HermanLogger delegate, String prefix) {
+        this.delegate = delegate;
+        this.prefix = "[" + prefix + "] ";
+    }
+
+    @Override
+    public void addLogEntry(String logEntry) {
+        delegate.addLogEntry(prefix + logEntry);
+    }
+
+    @Override
+    public void addErrorLogEntry(String errorLogEntry) {
+        delegate.addErrorLogEntry(prefix + errorLogEntry);
+    }
+
+    @Override
+    public void addErrorLogEntry(String errorLogEntry, Throwable exception) {
+        delegate.addErrorLogEntry(prefix + errorLogEntry, exception);
+    }
+}
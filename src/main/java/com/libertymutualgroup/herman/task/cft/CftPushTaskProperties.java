@@ -22,6 +22,7 @@ import com.libertymutualgroup.herman.task.common.CommonTaskProperties;
 public class CftPushTaskProperties extends CommonTaskProperties {
 
     private String cftPushVariableBrokerLambda;
+    private String cftTemplateBucket;
 
     public String getCftPushVariableBrokerLambda() {
         return cftPushVariableBrokerLambda;
@@ -37,10 +38,24 @@ public class CftPushTaskProperties extends CommonTaskProperties {
         return this;
     }
 
+    public String getCftTemplateBucket() {
+        return cftTemplateBucket;
+    }
+
+    public void setCftTemplateBucket(String cftTemplateBucket) {
+        this.cftTemplateBucket = cftTemplateBucket;
+    }
+
+    public CftPushTaskProperties withCftTemplateBucket(String cftTemplateBucket) {
+        this.cftTemplateBucket = cftTemplateBucket;
+        return this;
+    }
+
     @Override
     public String toString() {
         return "CftPushTaskProperties{" +
             "cftPushVariableBrokerLambda=" + cftPushVariableBrokerLambda +
+            ", cftTemplateBucket=" + cftTemplateBucket +
             "} " + super.toString();
     }
 }
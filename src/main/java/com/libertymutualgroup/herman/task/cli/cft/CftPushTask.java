@@ -9,13 +9,21 @@ import com.amazonaws.auth.AWSCredentials;
 import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.aws.cft.CftPush;
 import com.libertymutualgroup.herman.aws.cft.CftPushContext;
+import com.libertymutualgroup.herman.aws.cft.CftPushSession;
+import com.libertymutualgroup.herman.aws.cft.CftStackManifest;
+import com.libertymutualgroup.herman.aws.cft.MultiStackPush;
 import com.libertymutualgroup.herman.aws.credentials.CredentialsHandler;
 import com.libertymutualgroup.herman.aws.ecs.PropertyHandler;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import com.libertymutualgroup.herman.task.cft.CftPushPropertyFactory;
 import com.libertymutualgroup.herman.task.cft.CftPushTaskProperties;
 import com.libertymutualgroup.herman.util.FileUtil;
+import com.libertymutualgroup.herman.util.HermanJackson;
 import com.libertymutualgroup.herman.util.PropertyHandlerUtil;
+import com.libertymutualgroup.herman.util.TemplateFormat;
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.IOException;
 
 public class CftPushTask {
     private HermanLogger logger;
@@ -43,13 +51,31 @@ public class CftPushTask {
             .withAwsClientConfig(CredentialsHandler.getConfiguration())
             .withRegion(configuration.getRegion())
             .withTemplateParameters(configuration.getCustomVariables())
-            .withTaskProperties(taskProperties);
+            .withTaskProperties(taskProperties)
+            .withPlanOnly(configuration.isPlanOnly());
+
+        if (configuration.getManifestFile() != null) {
+            CftStackManifest manifest = getManifest(configuration.getManifestFile(), configuration.getRootPath(), propertyHandler);
+            FileUtil fileUtil = new FileUtil(configuration.getRootPath(), this.logger);
+            new MultiStackPush(new CftPushSession(cftPushContext), fileUtil, this.logger).push(manifest);
+            return;
+        }
 
         CftPush cftPush = new CftPush(cftPushContext);
         String template = getTemplate(configuration.getTemplateFile(), configuration.getRootPath());
         cftPush.push(configuration.getStackName(), template);
     }
 
+    private CftStackManifest getManifest(String manifestName, String rootPath, PropertyHandler propertyHandler) {
+        String manifest = getTemplate(manifestName, rootPath);
+        TemplateFormat format = TemplateFormat.fromSuffix(FilenameUtils.getExtension(manifestName).replace("yaml", "yml"));
+        try {
+            return HermanJackson.reader(CftStackManifest.class, format).readValue(propertyHandler.mapInProperties(manifest));
+        } catch (IOException e) {
+            throw new AwsExecException("Unable to parse stack manifest " + manifestName, e);
+        }
+    }
+
     private String getTemplate(String templateName, String rootPath) {
         FileUtil fileUtil = new FileUtil(rootPath, this.logger);
 
@@ -27,6 +27,8 @@ public class CftPushTaskConfiguration {
     private String templateFile;
     private Map<String, String> customVariables;
     private String customConfigurationLambda;
+    private boolean planOnly;
+    private String manifestFile;
 
     public String getRootPath() {
         return rootPath;
@@ -124,6 +126,32 @@ public class CftPushTaskConfiguration {
         return this;
     }
 
+    public boolean isPlanOnly() {
+        return planOnly;
+    }
+
+    public void setPlanOnly(boolean planOnly) {
+        this.planOnly = planOnly;
+    }
+
+    public CftPushTaskConfiguration withPlanOnly(final boolean planOnly) {
+        this.planOnly = planOnly;
+        return this;
+    }
+
+    public String getManifestFile() {
+        return manifestFile;
+    }
+
+    public void setManifestFile(String manifestFile) {
+        this.manifestFile = manifestFile;
+    }
+
+    public CftPushTaskConfiguration withManifestFile(final String manifestFile) {
+        this.manifestFile = manifestFile;
+        return this;
+    }
+
     @Override
     public String toString() {
         return "ECSPushTaskConfiguration{" +
@@ -134,6 +162,8 @@ public class CftPushTaskConfiguration {
             ", templateFile=" + templateFile +
             ", customVariables=" + customVariables +
             ", customConfigurationLambda='" + customConfigurationLambda + '\'' +
+            ", planOnly=" + planOnly +
+            ", manifestFile=" + manifestFile +
             '}';
     }
 }
\ No newline at end of file
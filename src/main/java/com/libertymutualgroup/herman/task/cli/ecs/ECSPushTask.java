@@ -20,6 +20,7 @@ import com.libertymutualgroup.herman.aws.credentials.CredentialsHandler;
 import com.libertymutualgroup.herman.aws.ecs.EcsPush;
 import com.libertymutualgroup.herman.aws.ecs.EcsPushContext;
 import com.libertymutualgroup.herman.aws.ecs.PropertyHandler;
+import com.libertymutualgroup.herman.aws.ecs.cluster.EcsClusterMetadataCache;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import com.libertymutualgroup.herman.task.ecs.ECSPushPropertyFactory;
 import com.libertymutualgroup.herman.task.ecs.ECSPushTaskProperties;
@@ -53,7 +54,8 @@ public class ECSPushTask {
             .withTimeout(configuration.getTimeout())
             .withRootPath(configuration.getRootPath())
             .withTaskProperties(taskProperties)
-            .withCustomConfigurationBucket(configuration.getCustomConfigurationBucket());
+            .withCustomConfigurationBucket(configuration.getCustomConfigurationBucket())
+            .withClusterMetadataCache(EcsClusterMetadataCache.onDisk());
         EcsPush push = new EcsPush(context);
         push.push();
 
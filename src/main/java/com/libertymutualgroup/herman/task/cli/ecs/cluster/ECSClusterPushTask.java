@@ -16,14 +16,30 @@
 package com.libertymutualgroup.herman.task.cli.ecs.cluster;
 
 import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.regions.Regions;
+import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.aws.credentials.CredentialsHandler;
-import com.libertymutualgroup.herman.aws.ecs.EcsPush;
 import com.libertymutualgroup.herman.aws.ecs.EcsPushContext;
 import com.libertymutualgroup.herman.aws.ecs.PropertyHandler;
+import com.libertymutualgroup.herman.aws.ecs.cluster.EcsClusterClientRegistry;
+import com.libertymutualgroup.herman.aws.ecs.cluster.EcsClusterFleetManifest;
+import com.libertymutualgroup.herman.aws.ecs.cluster.EcsClusterFleetMember;
+import com.libertymutualgroup.herman.aws.ecs.cluster.EcsClusterFleetPush;
+import com.libertymutualgroup.herman.aws.ecs.cluster.EcsClusterPush;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import com.libertymutualgroup.herman.task.ecs.ECSPushPropertyFactory;
 import com.libertymutualgroup.herman.task.ecs.ECSPushTaskProperties;
+import com.libertymutualgroup.herman.util.FileUtil;
+import com.libertymutualgroup.herman.util.HermanJackson;
 import com.libertymutualgroup.herman.util.PropertyHandlerUtil;
+import com.libertymutualgroup.herman.util.TemplateFormat;
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public class ECSClusterPushTask {
     private HermanLogger logger;
@@ -34,33 +50,73 @@ public class ECSClusterPushTask {
 
     public void runTask(ECSClusterPushTaskConfiguration configuration) {
         final AWSCredentials sessionCredentials = CredentialsHandler.getCredentials();
+        if (configuration.getManifestFile() != null) {
+            pushFleet(configuration, sessionCredentials);
+        }
+        else {
+            EcsClusterPush push = new EcsClusterPush(buildContext(configuration, sessionCredentials, logger,
+                configuration.getRootPath(), configuration.getEnvironmentName(), configuration.getRegion()));
+            push.pushCluster();
+        }
+
+        logger.addLogEntry("Done!");
+    }
+
+    private void pushFleet(ECSClusterPushTaskConfiguration configuration, AWSCredentials sessionCredentials) {
+        EcsClusterFleetManifest manifest = getManifest(configuration.getManifestFile(), configuration.getRootPath());
+        EcsClusterClientRegistry clientRegistry = new EcsClusterClientRegistry(sessionCredentials,
+            CredentialsHandler.getConfiguration(), logger);
+
+        Map<String, Consumer<HermanLogger>> pushes = new LinkedHashMap<>();
+        for (EcsClusterFleetMember member : manifest.getClusters()) {
+            String rootPath = new File(configuration.getRootPath(), member.getDirectory()).getAbsolutePath();
+            String environmentName = member.getEnvironment() != null ? member.getEnvironment() : configuration.getEnvironmentName();
+            Regions region = member.getRegion() != null ? Regions.fromName(member.getRegion()) : configuration.getRegion();
+            pushes.put(member.getDirectory() + " " + region.getName(), clusterLogger -> new EcsClusterPush(
+                buildContext(configuration, sessionCredentials, clusterLogger, rootPath, environmentName, region),
+                clientRegistry.get(region)).pushCluster());
+        }
+        new EcsClusterFleetPush(logger).push(pushes, manifest.getMaxConcurrency());
+    }
+
+    private EcsPushContext buildContext(ECSClusterPushTaskConfiguration configuration, AWSCredentials sessionCredentials,
+        HermanLogger pushLogger, String rootPath, String environmentName, Regions region) {
         final PropertyHandler propertyHandler = new PropertyHandlerUtil().getCliPropertyHandler(
             sessionCredentials,
-            logger,
-            configuration.getEnvironmentName(),
-            configuration.getRootPath(),
+            pushLogger,
+            environmentName,
+            rootPath,
             configuration.getCustomVariables());
         final ECSPushTaskProperties taskProperties = ECSPushPropertyFactory.getTaskProperties(
             sessionCredentials,
-            logger,
+            pushLogger,
             configuration.getCustomConfigurationBucket(),
-            configuration.getRegion(),
+            region,
             propertyHandler);
 
-        EcsPushContext context = new EcsPushContext()
-            .withLogger(logger)
+        return new EcsPushContext()
+            .withLogger(pushLogger)
             .withPropertyHandler(propertyHandler)
-            .withEnvName(configuration.getEnvironmentName())
-            .withSessionCredentials(CredentialsHandler.getCredentials())
+            .withEnvName(environmentName)
+            .withSessionCredentials(sessionCredentials)
             .withAwsClientConfig(CredentialsHandler.getConfiguration())
-            .withRegion(configuration.getRegion())
+            .withRegion(region)
             .withTimeout(configuration.getTimeout())
-            .withRootPath(configuration.getRootPath())
+            .withRootPath(rootPath)
             .withTaskProperties(taskProperties)
             .withCustomConfigurationBucket(configuration.getCustomConfigurationBucket());
-        EcsPush push = new EcsPush(context);
-        push.push();
+    }
 
-        logger.addLogEntry("Done!");
+    private EcsClusterFleetManifest getManifest(String manifestName, String rootPath) {
+        FileUtil fileUtil = new FileUtil(rootPath, this.logger);
+        if (!fileUtil.fileExists(manifestName)) {
+            throw new AwsExecException("Fleet manifest " + manifestName + " not found!");
+        }
+        TemplateFormat format = TemplateFormat.fromSuffix(FilenameUtils.getExtension(manifestName).replace("yaml", "yml"));
+        try {
+            return HermanJackson.reader(EcsClusterFleetManifest.class, format).readValue(fileUtil.findFile(manifestName, false));
+        } catch (IOException e) {
+            throw new AwsExecException("Unable to parse fleet manifest " + manifestName, e);
+        }
     }
 }
@@ -26,6 +26,7 @@ public class ECSClusterPushTaskConfiguration {
     private Regions region;
     private Map<String, String> customVariables;
     private String customConfigurationBucket;
+    private String manifestFile;
 
     public String getRootPath() {
         return rootPath;
@@ -75,6 +76,14 @@ public class ECSClusterPushTaskConfiguration {
         this.customConfigurationBucket = customConfigurationBucket;
     }
 
+    public String getManifestFile() {
+        return manifestFile;
+    }
+
+    public void setManifestFile(String manifestFile) {
+        this.manifestFile = manifestFile;
+    }
+
     public ECSClusterPushTaskConfiguration withRootPath(final String rootPath) {
         this.rootPath = rootPath;
         return this;
@@ -105,6 +114,11 @@ public class ECSClusterPushTaskConfiguration {
         return this;
     }
 
+    public ECSClusterPushTaskConfiguration withManifestFile(final String manifestFile) {
+        this.manifestFile = manifestFile;
+        return this;
+    }
+
     @Override
     public String toString() {
         return "ECSPushTaskConfiguration{" +
@@ -114,6 +128,7 @@ public class ECSClusterPushTaskConfiguration {
             ", region=" + region +
             ", customVariables=" + customVariables +
             ", customConfigurationBucket='" + customConfigurationBucket + '\'' +
+            ", manifestFile=" + manifestFile +
             '}';
     }
 }
\ No newline at end of file
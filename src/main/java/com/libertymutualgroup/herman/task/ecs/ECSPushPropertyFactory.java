@@ -17,11 +17,10 @@ package com.libertymutualgroup.herman.task.ecs;
 
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.regions.Regions;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.libertymutualgroup.herman.aws.ecs.PropertyHandler;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import com.libertymutualgroup.herman.util.ConfigurationUtil;
+import com.libertymutualgroup.herman.util.HermanJackson;
 
 public class ECSPushPropertyFactory {
 
@@ -36,10 +35,8 @@ public class ECSPushPropertyFactory {
     public static ECSPushTaskProperties getTaskProperties(AWSCredentials sessionCredentials, HermanLogger hermanLogger, String customConfigurationBucket, Regions region, PropertyHandler handler) {
         try {
             String ecsPushTaskPropertiesYml = ConfigurationUtil.getHermanConfigurationAsString(sessionCredentials, hermanLogger, customConfigurationBucket, region);
-            ObjectMapper objectMapper = new ObjectMapper(new YAMLFactory());
-            return objectMapper.readValue(
-                handler.mapInProperties(ecsPushTaskPropertiesYml),
-                ECSPushTaskProperties.class);
+            return HermanJackson.yamlReader(ECSPushTaskProperties.class)
+                .readValue(handler.mapInProperties(ecsPushTaskPropertiesYml));
         } catch (Exception ex) {
             throw new RuntimeException("Error getting ECS Push Task Properties", ex);
         }
@@ -25,8 +25,6 @@ import com.atlassian.bamboo.deployments.execution.DeploymentTaskContext;
 import com.atlassian.bamboo.task.TaskResult;
 import com.atlassian.bamboo.task.TaskResultBuilder;
 import com.atlassian.bamboo.variable.CustomVariableContext;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.libertymutualgroup.herman.aws.AbstractDeploymentTask;
 import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.aws.credentials.BambooCredentialsHandler;
@@ -38,7 +36,9 @@ import com.libertymutualgroup.herman.logging.AtlassianBuildLogger;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import com.libertymutualgroup.herman.util.ConfigurationUtil;
 import com.libertymutualgroup.herman.util.FileUtil;
+import com.libertymutualgroup.herman.util.HermanJackson;
 import com.libertymutualgroup.herman.util.PropertyHandlerUtil;
+import com.libertymutualgroup.herman.util.TemplateFormat;
 import org.springframework.beans.factory.annotation.Autowired;
 
 public class NewRelicBrokerTask extends AbstractDeploymentTask {
@@ -103,15 +103,11 @@ public class NewRelicBrokerTask extends AbstractDeploymentTask {
             throw new AwsExecException("No template provided!");
         }
 
-        ObjectMapper mapper;
-        if (isJson) {
-            mapper = new ObjectMapper();
-        } else {
-            mapper = new ObjectMapper(new YAMLFactory());
-        }
+        TemplateFormat format = isJson ? TemplateFormat.JSON : TemplateFormat.YML;
         NewRelicDefinition newRelicDefinition;
         try {
-            newRelicDefinition = mapper.readValue(handler.mapInProperties(template), NewRelicDefinition.class);
+            newRelicDefinition = HermanJackson.reader(NewRelicDefinition.class, format)
+                .readValue(handler.mapInProperties(template));
         } catch (Exception e) {
             throw new AwsExecException("Error parsing template", e);
         }
@@ -123,8 +119,8 @@ public class NewRelicBrokerTask extends AbstractDeploymentTask {
     NewRelicBrokerConfiguration getTaskProperties(AWSCredentials sessionCredentials, HermanLogger hermanLogger, Regions region, PropertyHandler handler) {
         try {
             String newRelicBrokerConfigurationYml = ConfigurationUtil.getHermanConfigurationAsString(sessionCredentials, hermanLogger, region);
-            ObjectMapper objectMapper = new ObjectMapper(new YAMLFactory());
-            return objectMapper.readValue(handler.mapInProperties(newRelicBrokerConfigurationYml), NewRelicBrokerConfiguration.class);
+            return HermanJackson.yamlReader(NewRelicBrokerConfiguration.class)
+                .readValue(handler.mapInProperties(newRelicBrokerConfigurationYml));
         } catch (Exception ex) {
             throw new RuntimeException("Error getting NewRelic Broker Configuration", ex);
         }
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.util;
+
+import com.libertymutualgroup.herman.aws.AwsExecException;
+
+/**
+ * Sleeps between polls of a long running AWS operation. The interval starts short, grows while
+ * nothing changes and drops back to the minimum as soon as the caller reports progress.
+ */
+public class AdaptivePoller {
+
+    private final long minIntervalMs;
+    private final long maxIntervalMs;
+    private final double growthFactor;
+    private long currentIntervalMs;
+
+    public AdaptivePoller(long minIntervalMs, long maxIntervalMs, double growthFactor) {
+        this.minIntervalMs = minIntervalMs;
+        this.maxIntervalMs = maxIntervalMs;
+        this.growthFactor = growthFactor;
+        this.currentIntervalMs = minIntervalMs;
+    }
+
+    /**
+     * Call when the last poll observed a change, so the next poll happens quickly
+     */
+    public void progressed() {
+        this.currentIntervalMs = minIntervalMs;
+    }
+
+    public void sleep() {
+        try {
+            doSleep(currentIntervalMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AwsExecException("Interrupted while polling");
+        }
+        currentIntervalMs = Math.min(maxIntervalMs, (long) (currentIntervalMs * growthFactor));
+    }
+
+    public long getCurrentIntervalMs() {
+        return currentIntervalMs;
+    }
+
+    protected void doSleep(long intervalMs) throws InterruptedException {
+        Thread.sleep(intervalMs);
+    }
+}
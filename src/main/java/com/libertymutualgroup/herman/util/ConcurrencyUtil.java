@@ -0,0 +1,86 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.util;
+
+import com.libertymutualgroup.herman.aws.AwsExecException;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Runs independent AWS calls on a small, short-lived thread pool. Failures surface as the exception the task threw
+ * rather than wrapped in a CompletionException.
+ */
+public class ConcurrencyUtil {
+
+    private ConcurrencyUtil() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * Runs the tasks on up to maxConcurrency threads and waits for all of them. A single task runs on the
+     * calling thread.
+     */
+    public static void runAll(List<Runnable> tasks, int maxConcurrency) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        if (tasks.size() == 1) {
+            tasks.get(0).run();
+            return;
+        }
+        withExecutor(Math.min(tasks.size(), maxConcurrency), executor -> CompletableFuture.allOf(tasks.stream()
+            .map(task -> CompletableFuture.runAsync(task, executor))
+            .toArray(CompletableFuture[]::new)).join());
+    }
+
+    /**
+     * Hands a fixed thread pool to the work, which must join the futures it starts, and shuts it down afterwards
+     */
+    public static <T> T withExecutor(int threads, Function<ExecutorService, T> work) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            return work.apply(executor);
+        } catch (CompletionException ex) {
+            throw unwrap(ex);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            throw unwrap(ex);
+        }
+    }
+
+    public static RuntimeException unwrap(CompletionException ex) {
+        Throwable cause = ex.getCause();
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new AwsExecException(cause instanceof Exception ? (Exception) cause : ex);
+    }
+}
@@ -10,8 +10,6 @@ import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.securitytoken.AWSSecurityTokenService;
 import com.amazonaws.services.securitytoken.AWSSecurityTokenServiceClientBuilder;
 import com.amazonaws.services.securitytoken.model.GetCallerIdentityRequest;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.libertymutualgroup.herman.aws.credentials.BambooCredentialsHandler;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import org.apache.commons.io.IOUtils;
@@ -107,9 +105,8 @@ public class ConfigurationUtil {
 
     public <T> T getConfigProperties(AWSCredentials sessionCredentials, HermanLogger logger, Regions region, Class<T> propertiesClass){
         String propertiesYml = ConfigurationUtil.getHermanConfigurationAsString(sessionCredentials, logger, region);
-        ObjectMapper objectMapper = new ObjectMapper(new YAMLFactory());
         try {
-            return objectMapper.readValue(propertiesYml, propertiesClass);
+            return HermanJackson.yamlReader(propertiesClass).readValue(propertiesYml);
         } catch(Exception e){
             logger.addErrorLogEntry("Error getting properties from config bucket. Continuing...", e);
         }
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared, preconfigured Jackson mappers. Building an ObjectMapper and resolving its first deserializer
+ * is expensive, so readers are created once per target type and format and reused. ObjectReader and
+ * ObjectWriter are immutable and safe to share between threads.
+ */
+public class HermanJackson {
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper().registerModule(new HermanJacksonModule());
+    private static final ObjectMapper YAML_MAPPER = new ObjectMapper(new YAMLFactory())
+        .registerModule(new HermanJacksonModule());
+
+    private static final Map<String, ObjectReader> READERS = new ConcurrentHashMap<>();
+
+    private HermanJackson() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    public static ObjectReader reader(Class<?> type, TemplateFormat format) {
+        return READERS.computeIfAbsent(toKey(type, format), key -> mapper(format).readerFor(type));
+    }
+
+    public static ObjectReader reader(TypeReference<?> type, TemplateFormat format) {
+        return READERS.computeIfAbsent(toKey(type.getType(), format), key -> mapper(format).readerFor(type));
+    }
+
+    public static ObjectReader jsonReader(Class<?> type) {
+        return reader(type, TemplateFormat.JSON);
+    }
+
+    public static ObjectReader jsonReader(TypeReference<?> type) {
+        return reader(type, TemplateFormat.JSON);
+    }
+
+    public static ObjectReader yamlReader(Class<?> type) {
+        return reader(type, TemplateFormat.YML);
+    }
+
+    public static ObjectWriter jsonWriter() {
+        return JSON_MAPPER.writer();
+    }
+
+    /**
+     * Tree reads (e.g. IAM policy documents) that do not bind to a type
+     */
+    public static ObjectReader treeReader() {
+        return JSON_MAPPER.reader();
+    }
+
+    /**
+     * Deep copy of a bean through its JSON form, e.g. to hand out cached objects that callers may mutate
+     */
+    public static <T> T copy(Object value, Class<T> type) {
+        return JSON_MAPPER.convertValue(value, type);
+    }
+
+    /**
+     * Compares JSON documents regardless of formatting and key order, e.g. a policy against the one AWS returns.
+     * Null and empty documents are equal, and documents that do not parse are compared as text.
+     */
+    public static boolean isSameJson(String first, String second) {
+        boolean firstEmpty = first == null || first.isEmpty();
+        boolean secondEmpty = second == null || second.isEmpty();
+        if (firstEmpty || secondEmpty) {
+            return firstEmpty && secondEmpty;
+        }
+        try {
+            return treeReader().readTree(first).equals(treeReader().readTree(second));
+        } catch (IOException e) {
+            return first.equals(second);
+        }
+    }
+
+    private static ObjectMapper mapper(TemplateFormat format) {
+        return TemplateFormat.YML.equals(format) ? YAML_MAPPER : JSON_MAPPER;
+    }
+
+    private static String toKey(Type type, TemplateFormat format) {
+        return format + ":" + type.getTypeName();
+    }
+}
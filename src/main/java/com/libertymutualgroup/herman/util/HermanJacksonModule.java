@@ -0,0 +1,58 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.util;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeDefinition;
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.dynamodbv2.model.Projection;
+import com.amazonaws.services.dynamodbv2.model.StreamSpecification;
+import com.amazonaws.services.ecs.model.LogConfiguration;
+import com.amazonaws.services.ecs.model.PlacementConstraint;
+import com.amazonaws.services.ecs.model.PlacementStrategy;
+import com.amazonaws.services.ecs.model.PortMapping;
+import com.amazonaws.services.ecs.model.TaskDefinitionPlacementConstraint;
+import com.amazonaws.services.ecs.model.Ulimit;
+import com.amazonaws.services.rds.model.Parameter;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.libertymutualgroup.herman.aws.ecs.EcsDefinitionMixIns;
+import com.libertymutualgroup.herman.aws.ecs.broker.dynamodb.DynamoDBMixIns;
+import com.libertymutualgroup.herman.aws.ecs.broker.rds.RdsBrokerMixIns;
+
+/**
+ * Every mix-in Herman needs to bind its definition files onto AWS SDK model classes
+ */
+public class HermanJacksonModule extends SimpleModule {
+
+    private static final long serialVersionUID = 1L;
+
+    public HermanJacksonModule() {
+        super("HermanJacksonModule");
+
+        setMixInAnnotation(PortMapping.class, EcsDefinitionMixIns.IgnoreTransportSetValueObjMixIn.class);
+        setMixInAnnotation(Ulimit.class, EcsDefinitionMixIns.IgnoreUlimitObjMixIn.class);
+        setMixInAnnotation(PlacementConstraint.class, EcsDefinitionMixIns.IgnorePlacementConstraint.class);
+        setMixInAnnotation(LogConfiguration.class, EcsDefinitionMixIns.IgnoreLogConfigLogDriver.class);
+        setMixInAnnotation(PlacementStrategy.class, EcsDefinitionMixIns.IgnorePlaceStrategyType.class);
+        setMixInAnnotation(TaskDefinitionPlacementConstraint.class, EcsDefinitionMixIns.IgnoreTaskPlacementConstraint.class);
+
+        setMixInAnnotation(KeySchemaElement.class, DynamoDBMixIns.class);
+        setMixInAnnotation(StreamSpecification.class, DynamoDBMixIns.class);
+        setMixInAnnotation(AttributeDefinition.class, DynamoDBMixIns.class);
+        setMixInAnnotation(Projection.class, DynamoDBMixIns.class);
+
+        setMixInAnnotation(Parameter.class, RdsBrokerMixIns.ParameterMixIn.class);
+    }
+}
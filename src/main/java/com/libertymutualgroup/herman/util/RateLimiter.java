@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.libertymutualgroup.herman.util;
+
+import com.libertymutualgroup.herman.aws.AwsExecException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces out calls to a throttled AWS API. Permits are handed out at a fixed rate, with up to
+ * {@code burst} permits available immediately after an idle period. Limiters obtained through
+ * {@link #shared(String, double, int)} are shared by every caller of that API in this JVM.
+ */
+public class RateLimiter {
+
+    private static final Map<String, RateLimiter> SHARED = new ConcurrentHashMap<>();
+
+    private final long intervalNanos;
+    private final int burst;
+    private long nextFreeNanos;
+
+    public RateLimiter(double permitsPerSecond, int burst) {
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.burst = Math.max(1, burst);
+        this.nextFreeNanos = System.nanoTime();
+    }
+
+    /**
+     * @param name API the limiter guards, e.g. "ecs:PutAttributes". The rate of the first caller wins.
+     */
+    public static RateLimiter shared(String name, double permitsPerSecond, int burst) {
+        return SHARED.computeIfAbsent(name, key -> new RateLimiter(permitsPerSecond, burst));
+    }
+
+    /**
+     * Blocks until a permit is available
+     */
+    public void acquire() {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long slot = Math.max(nextFreeNanos, now - (burst - 1) * intervalNanos);
+            nextFreeNanos = slot + intervalNanos;
+            waitNanos = slot - now;
+        }
+        if (waitNanos > 0) {
+            try {
+                doSleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AwsExecException("Interrupted while waiting for rate limit");
+            }
+        }
+    }
+
+    protected void doSleep(long nanos) throws InterruptedException {
+        TimeUnit.NANOSECONDS.sleep(nanos);
+    }
+}
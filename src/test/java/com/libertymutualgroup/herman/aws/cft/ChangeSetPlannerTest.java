@@ -0,0 +1,108 @@
+package com.libertymutualgroup.herman.aws.cft;
+
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.model.AmazonCloudFormationException;
+import com.amazonaws.services.cloudformation.model.Change;
+import com.amazonaws.services.cloudformation.model.ChangeSetType;
+import com.amazonaws.services.cloudformation.model.CreateChangeSetRequest;
+import com.amazonaws.services.cloudformation.model.DescribeChangeSetRequest;
+import com.amazonaws.services.cloudformation.model.DescribeChangeSetResult;
+import com.amazonaws.services.cloudformation.model.DescribeStacksRequest;
+import com.amazonaws.services.cloudformation.model.DescribeStacksResult;
+import com.amazonaws.services.cloudformation.model.Parameter;
+import com.amazonaws.services.cloudformation.model.ResourceChange;
+import com.amazonaws.services.cloudformation.model.Stack;
+import com.amazonaws.services.cloudformation.model.Tag;
+import com.libertymutualgroup.herman.logging.SysoutLogger;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ChangeSetPlannerTest {
+
+    @Mock
+    AmazonCloudFormation cftClient;
+
+    ChangeSetPlanner planner;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        planner = new ChangeSetPlanner(cftClient, new SysoutLogger());
+    }
+
+    @Test
+    public void shouldTreatChangeSetWithoutChangesAsEmptyPlan() {
+        when(cftClient.describeStacks(any(DescribeStacksRequest.class))).thenReturn(
+            new DescribeStacksResult().withStacks(new Stack().withStackName("stack").withStackStatus("UPDATE_COMPLETE")));
+        when(cftClient.describeChangeSet(any(DescribeChangeSetRequest.class))).thenReturn(
+            new DescribeChangeSetResult().withStatus("FAILED")
+                .withStatusReason("The submitted information didn't contain changes. Submit different information to create a change set."));
+
+        StackChangePlan plan = planner.plan("stack", "{}", Collections.<Parameter>emptyList(), Collections.<Tag>emptyList());
+
+        assertTrue(plan.isEmpty());
+        assertEquals(ChangeSetType.UPDATE, plan.getChangeSetType());
+    }
+
+    @Test
+    public void shouldCreateStackThroughCreateChangeSetAndCollectAllPages() {
+        when(cftClient.describeStacks(any(DescribeStacksRequest.class)))
+            .thenThrow(new AmazonCloudFormationException("Stack with id stack does not exist"));
+        when(cftClient.describeChangeSet(any(DescribeChangeSetRequest.class)))
+            .thenReturn(new DescribeChangeSetResult().withStatus("CREATE_COMPLETE")
+                .withChanges(change("Bucket")).withNextToken("page2"))
+            .thenReturn(new DescribeChangeSetResult().withStatus("CREATE_COMPLETE")
+                .withChanges(change("Queue")));
+
+        StackChangePlan plan = planner.plan("stack", "{}", Collections.<Parameter>emptyList(), Collections.<Tag>emptyList());
+
+        ArgumentCaptor<CreateChangeSetRequest> request = ArgumentCaptor.forClass(CreateChangeSetRequest.class);
+        verify(cftClient).createChangeSet(request.capture());
+        assertEquals("CREATE", request.getValue().getChangeSetType());
+        assertEquals(2, plan.getChanges().size());
+    }
+
+    @Test
+    public void shouldKeepChangeSetWithoutResourceChangesSoOutputsAreUpdated() {
+        when(cftClient.describeStacks(any(DescribeStacksRequest.class))).thenReturn(
+            new DescribeStacksResult().withStacks(new Stack().withStackName("stack").withStackStatus("UPDATE_COMPLETE")));
+        when(cftClient.describeChangeSet(any(DescribeChangeSetRequest.class))).thenReturn(
+            new DescribeChangeSetResult().withStatus("CREATE_COMPLETE"));
+
+        StackChangePlan plan = planner.plan("stack", "{}", Collections.<Parameter>emptyList(), Collections.<Tag>emptyList());
+
+        assertFalse(plan.isEmpty());
+        assertFalse(plan.hasChangesBeyondTags());
+    }
+
+    @Test
+    public void shouldIgnoreTagOnlyModificationsWhenLookingForResourceChanges() {
+        StackChangePlan tagsOnly = new StackChangePlan().withChangeSetCreated(true).withChanges(Collections.singletonList(
+            new Change().withType("Resource").withResourceChange(new ResourceChange()
+                .withAction("Modify").withLogicalResourceId("LaunchTemplate").withScope("Tags"))));
+        StackChangePlan properties = new StackChangePlan().withChangeSetCreated(true).withChanges(Collections.singletonList(
+            new Change().withType("Resource").withResourceChange(new ResourceChange()
+                .withAction("Modify").withLogicalResourceId("LaunchTemplate").withScope("Tags", "Properties"))));
+
+        assertFalse(tagsOnly.hasChangesBeyondTags());
+        assertTrue(properties.hasChangesBeyondTags());
+        assertTrue(new StackChangePlan().withChanges(Collections.singletonList(change("Bucket"))).hasChangesBeyondTags());
+    }
+
+    private Change change(String logicalId) {
+        return new Change().withType("Resource").withResourceChange(new ResourceChange()
+            .withAction("Add").withLogicalResourceId(logicalId).withResourceType("AWS::S3::Bucket"));
+    }
+}
@@ -0,0 +1,133 @@
+package com.libertymutualgroup.herman.aws.cft;
+
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.model.AmazonCloudFormationException;
+import com.amazonaws.services.cloudformation.model.DescribeStacksRequest;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.logging.SysoutLogger;
+import com.libertymutualgroup.herman.util.FileUtil;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MultiStackPushTest {
+
+    @Mock
+    CftPushSession session;
+    @Mock
+    AmazonCloudFormation cftClient;
+    @Mock
+    FileUtil fileUtil;
+
+    MultiStackPush multiStackPush;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        when(session.getCftClient()).thenReturn(cftClient);
+        multiStackPush = new MultiStackPush(session, fileUtil, new SysoutLogger());
+    }
+
+    @Test
+    public void shouldOrderStacksAfterTheirDependencies() {
+        Map<String, Set<String>> dependencies = new HashMap<>();
+        dependencies.put("app", set("network", "database"));
+        dependencies.put("database", set("network"));
+        dependencies.put("network", set());
+
+        List<String> order = multiStackPush.topologicalOrder(set("app", "database", "network"), dependencies);
+
+        assertEquals(Arrays.asList("network", "database", "app"), order);
+    }
+
+    @Test(expected = AwsExecException.class)
+    public void shouldRejectDependencyCycles() {
+        Map<String, Set<String>> dependencies = new HashMap<>();
+        dependencies.put("a", set("b"));
+        dependencies.put("b", set("a"));
+
+        multiStackPush.topologicalOrder(set("a", "b"), dependencies);
+    }
+
+    @Test
+    public void shouldRejectUnknownInputStacks() {
+        CftStackDefinition app = new CftStackDefinition();
+        app.setName("app");
+        app.setTemplate("app.yml");
+        app.getInputs().put("VpcId", "network.VpcId");
+        CftStackManifest manifest = new CftStackManifest();
+        manifest.getStacks().add(app);
+
+        try {
+            multiStackPush.push(manifest);
+        } catch (AwsExecException e) {
+            assertTrue(e.getMessage().contains("unknown stack network"));
+            return;
+        }
+        throw new AssertionError("Expected unknown stack to be rejected");
+    }
+
+    @Test
+    public void shouldPlanMissingStacksAsCreatesWithoutPlanningStacksThatNeedTheirOutputs() {
+        CftStackDefinition network = new CftStackDefinition();
+        network.setName("network");
+        network.setTemplate("network.yml");
+        CftStackDefinition app = new CftStackDefinition();
+        app.setName("app");
+        app.setTemplate("app.yml");
+        app.getInputs().put("VpcId", "network.VpcId");
+        CftStackManifest manifest = new CftStackManifest();
+        manifest.getStacks().addAll(Arrays.asList(network, app));
+
+        when(session.isPlanOnly()).thenReturn(true);
+        when(fileUtil.findFile(anyString(), eq(false))).thenReturn("Resources: {}");
+        when(session.push(eq("network"), anyString(), anyMap(), any(HermanLogger.class))).thenReturn("network");
+        when(cftClient.describeStacks(any(DescribeStacksRequest.class)))
+            .thenThrow(new AmazonCloudFormationException("Stack with id network does not exist"));
+
+        Map<String, Map<String, String>> outputs = multiStackPush.push(manifest);
+
+        assertTrue(outputs.get("network").isEmpty());
+        assertTrue(outputs.get("app").isEmpty());
+        verify(session, never()).push(eq("app"), anyString(), anyMap(), any(HermanLogger.class));
+    }
+
+    @Test(expected = AwsExecException.class)
+    public void shouldFailOnMissingStacksWhenPushing() {
+        CftStackDefinition network = new CftStackDefinition();
+        network.setName("network");
+        network.setTemplate("network.yml");
+        CftStackManifest manifest = new CftStackManifest();
+        manifest.getStacks().add(network);
+
+        when(fileUtil.findFile(anyString(), eq(false))).thenReturn("Resources: {}");
+        when(session.push(eq("network"), anyString(), anyMap(), any(HermanLogger.class))).thenReturn("network");
+        when(cftClient.describeStacks(any(DescribeStacksRequest.class)))
+            .thenThrow(new AmazonCloudFormationException("Stack with id network does not exist"));
+
+        multiStackPush.push(manifest);
+    }
+
+    private Set<String> set(String... names) {
+        return new LinkedHashSet<>(Arrays.asList(names));
+    }
+}
@@ -0,0 +1,106 @@
+package com.libertymutualgroup.herman.aws.cft;
+
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.model.DescribeStackEventsRequest;
+import com.amazonaws.services.cloudformation.model.DescribeStackEventsResult;
+import com.amazonaws.services.cloudformation.model.DescribeStacksRequest;
+import com.amazonaws.services.cloudformation.model.DescribeStacksResult;
+import com.amazonaws.services.cloudformation.model.Stack;
+import com.amazonaws.services.cloudformation.model.StackEvent;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.logging.SysoutLogger;
+import com.libertymutualgroup.herman.util.AdaptivePoller;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.when;
+
+public class StackEventTailerTest {
+
+    private static final String STACK = "my-stack-us-east-1";
+
+    HermanLogger logger = new SysoutLogger();
+
+    @Mock
+    AmazonCloudFormation cftClient;
+
+    StackEventTailer tailer;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        tailer = new StackEventTailer(cftClient, logger, () -> new AdaptivePoller(0, 0, 1) {
+            @Override
+            protected void doSleep(long intervalMs) {
+            }
+        });
+    }
+
+    @Test
+    public void shouldStreamEventsUntilStackCompletes() {
+        StackEvent old = event("e0", STACK, "AWS::CloudFormation::Stack", "UPDATE_COMPLETE", 0);
+        StackEvent stackStart = event("e1", STACK, "AWS::CloudFormation::Stack", "UPDATE_IN_PROGRESS", 1);
+        StackEvent bucketStart = event("e2", "Bucket", "AWS::S3::Bucket", "UPDATE_IN_PROGRESS", 2);
+        StackEvent bucketDone = event("e3", "Bucket", "AWS::S3::Bucket", "UPDATE_COMPLETE", 32);
+        StackEvent stackDone = event("e4", STACK, "AWS::CloudFormation::Stack", "UPDATE_COMPLETE", 33);
+
+        when(cftClient.describeStackEvents(any(DescribeStackEventsRequest.class)))
+            .thenReturn(events(bucketStart, stackStart, old))
+            .thenReturn(events(stackDone, bucketDone, bucketStart, stackStart, old));
+
+        StackTimeline timeline = tailer.tail(STACK, "e0");
+
+        assertEquals("UPDATE_COMPLETE", timeline.getFinalStatus());
+        assertEquals(1, timeline.getResourceTimings().size());
+        assertEquals(Long.valueOf(30000), timeline.getResourceTimings().get(0).getDurationMs());
+    }
+
+    @Test
+    public void shouldReportFailingResource() {
+        StackEvent stackStart = event("e1", STACK, "AWS::CloudFormation::Stack", "UPDATE_IN_PROGRESS", 1);
+        StackEvent queueFailed = event("e2", "Queue", "AWS::SQS::Queue", "UPDATE_FAILED", 2)
+            .withResourceStatusReason("Access denied");
+        StackEvent rolledBack = event("e3", STACK, "AWS::CloudFormation::Stack", "UPDATE_ROLLBACK_COMPLETE", 3);
+
+        when(cftClient.describeStackEvents(any(DescribeStackEventsRequest.class)))
+            .thenReturn(events(rolledBack, queueFailed, stackStart));
+
+        try {
+            tailer.tail(STACK, null);
+            fail("Expected rollback to fail the push");
+        } catch (AwsExecException e) {
+            assertTrue(e.getMessage().contains("UPDATE_ROLLBACK_COMPLETE"));
+            assertTrue(e.getMessage().contains("Queue: Access denied"));
+        }
+    }
+
+    @Test
+    public void shouldFinishWithoutEventsWhenNothingWasUpdated() {
+        StackEvent old = event("e0", STACK, "AWS::CloudFormation::Stack", "CREATE_COMPLETE", 0);
+        when(cftClient.describeStackEvents(any(DescribeStackEventsRequest.class))).thenReturn(events(old));
+        when(cftClient.describeStacks(any(DescribeStacksRequest.class))).thenReturn(
+            new DescribeStacksResult().withStacks(new Stack().withStackName(STACK).withStackStatus("CREATE_COMPLETE")));
+
+        StackTimeline timeline = tailer.tail(STACK, "e0");
+
+        assertEquals("CREATE_COMPLETE", timeline.getFinalStatus());
+    }
+
+    private DescribeStackEventsResult events(StackEvent... newestFirst) {
+        return new DescribeStackEventsResult().withStackEvents(newestFirst);
+    }
+
+    private StackEvent event(String id, String logicalId, String type, String status, int second) {
+        return new StackEvent().withEventId(id).withStackName(STACK).withLogicalResourceId(logicalId)
+            .withResourceType(type).withResourceStatus(status).withTimestamp(new Date(second * 1000L));
+    }
+}
@@ -0,0 +1,73 @@
+package com.libertymutualgroup.herman.aws.cft;
+
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.model.ListStacksRequest;
+import com.amazonaws.services.cloudformation.model.ListStacksResult;
+import com.amazonaws.services.cloudformation.model.StackSummary;
+import com.libertymutualgroup.herman.logging.SysoutLogger;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.NavigableMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StackIndexTest {
+
+    @Mock
+    AmazonCloudFormation cftClient;
+
+    StackIndex index;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        index = new StackIndex(cftClient, new SysoutLogger());
+
+        when(cftClient.listStacks(any(ListStacksRequest.class)))
+            .thenReturn(new ListStacksResult()
+                .withStackSummaries(summary("cluster-us-east-1-instances-9"), summary("cluster-us-east-1-shared"))
+                .withNextToken("page2"))
+            .thenReturn(new ListStacksResult()
+                .withStackSummaries(summary("cluster-us-east-1-instances-10"), summary("other-cluster-us-east-1-instances-11")));
+    }
+
+    @Test
+    public void shouldOrderGenerationsNumerically() {
+        NavigableMap<Integer, StackSummary> generations = index.findGenerations("cluster-us-east-1-instances-");
+
+        assertEquals(2, generations.size());
+        assertEquals(Integer.valueOf(10), generations.lastKey());
+        assertEquals("cluster-us-east-1-instances-10", generations.lastEntry().getValue().getStackName());
+    }
+
+    @Test
+    public void shouldListStacksOncePerIndex() {
+        index.findByPrefix("cluster-us-east-1");
+        index.findGenerations("cluster-us-east-1-instances-");
+
+        verify(cftClient, times(2)).listStacks(any(ListStacksRequest.class));
+    }
+
+    @Test
+    public void shouldExcludeDeletedStacksInRequest() {
+        index.getLiveStacks();
+
+        ArgumentCaptor<ListStacksRequest> requestCaptor = ArgumentCaptor.forClass(ListStacksRequest.class);
+        verify(cftClient, times(2)).listStacks(requestCaptor.capture());
+        assertFalse(requestCaptor.getValue().getStackStatusFilters().contains("DELETE_COMPLETE"));
+        assertEquals("page2", requestCaptor.getValue().getNextToken());
+    }
+
+    private StackSummary summary(String name) {
+        return new StackSummary().withStackName(name).withStackStatus("CREATE_COMPLETE");
+    }
+}
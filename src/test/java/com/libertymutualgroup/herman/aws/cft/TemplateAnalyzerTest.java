@@ -0,0 +1,55 @@
+package com.libertymutualgroup.herman.aws.cft;
+
+import com.libertymutualgroup.herman.aws.cft.TemplateAnalyzer.TemplateParameter;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TemplateAnalyzerTest {
+
+    @Test
+    public void shouldReadParametersFromYamlWithShortFormFunctions() throws IOException {
+        URL url = this.getClass().getResource("/cft/instances.yml");
+        String template = FileUtils.readFileToString(new File(url.getFile()));
+
+        Map<String, TemplateParameter> parameters = TemplateAnalyzer.parameters(template);
+
+        assertEquals(Arrays.asList("ClusterName", "SharedStackName", "InstanceType", "DesiredCapacity"),
+            new ArrayList<>(parameters.keySet()));
+        assertTrue(parameters.get("ClusterName").isRequired());
+        assertEquals("2", parameters.get("DesiredCapacity").getDefaultValue());
+        // "ClusterNameTag" only appears as a substring and is not a parameter
+        assertFalse(parameters.containsKey("ClusterNameTag"));
+    }
+
+    @Test
+    public void shouldReadParametersFromJsonAndCacheByContent() {
+        String template = "{\"Parameters\": {\"BucketName\": {\"Type\": \"String\", \"Default\": \"logs\"}}, \"Resources\": {}}";
+
+        Map<String, TemplateParameter> parameters = TemplateAnalyzer.parameters(template);
+
+        assertEquals("logs", parameters.get("BucketName").getDefaultValue());
+        assertSame(parameters, TemplateAnalyzer.parameters(new String(template)));
+    }
+
+    @Test
+    public void shouldDetectImportedValues() throws IOException {
+        URL url = this.getClass().getResource("/cft/instances.yml");
+        String template = FileUtils.readFileToString(new File(url.getFile()));
+
+        assertTrue(TemplateAnalyzer.usesImports(template));
+        assertTrue(TemplateAnalyzer.usesImports("Value: !ImportValue shared-VpcId"));
+        assertFalse(TemplateAnalyzer.usesImports("{\"Resources\": {}}"));
+    }
+}
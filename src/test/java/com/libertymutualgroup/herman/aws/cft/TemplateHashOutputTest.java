@@ -0,0 +1,49 @@
+package com.libertymutualgroup.herman.aws.cft;
+
+import com.amazonaws.services.cloudformation.model.Output;
+import com.amazonaws.services.cloudformation.model.Stack;
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class TemplateHashOutputTest {
+
+    @Test
+    public void shouldAddHashToExistingYamlOutputsWithoutTouchingShortFormFunctions() {
+        String template = "Resources:\n  Bucket:\n    Type: AWS::S3::Bucket\nOutputs:\n  BucketName:\n    Value: !Ref Bucket\n";
+
+        String withHash = TemplateHashOutput.addTo(template, "abc123");
+
+        assertEquals("Resources:\n  Bucket:\n    Type: AWS::S3::Bucket\nOutputs:\n"
+            + "  HermanTemplateHash:\n    Value: abc123\n"
+            + "  BucketName:\n    Value: !Ref Bucket\n", withHash);
+    }
+
+    @Test
+    public void shouldAddYamlOutputsSectionWhenMissing() {
+        String withHash = TemplateHashOutput.addTo("Resources:\n  Bucket:\n    Type: AWS::S3::Bucket", "abc123");
+
+        assertEquals("Resources:\n  Bucket:\n    Type: AWS::S3::Bucket\nOutputs:\n  HermanTemplateHash:\n    Value: abc123\n",
+            withHash);
+    }
+
+    @Test
+    public void shouldAddHashToJsonOutputs() {
+        String withHash = TemplateHashOutput.addTo("{\"Resources\": {}}", "abc123");
+
+        assertEquals("{\"Resources\":{},\"Outputs\":{\"HermanTemplateHash\":{\"Value\":\"abc123\"}}}", withHash);
+    }
+
+    @Test
+    public void shouldReadHashFromStackOutputs() {
+        Stack stack = new Stack().withOutputs(
+            new Output().withOutputKey("BucketName").withOutputValue("bucket"),
+            new Output().withOutputKey(TemplateHashOutput.OUTPUT_KEY).withOutputValue("abc123"));
+
+        assertEquals(Optional.of("abc123"), TemplateHashOutput.readFrom(stack));
+        assertFalse(TemplateHashOutput.readFrom(new Stack()).isPresent());
+    }
+}
@@ -0,0 +1,63 @@
+package com.libertymutualgroup.herman.aws.cft;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.libertymutualgroup.herman.logging.SysoutLogger;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TemplateStagerTest {
+
+    @Mock
+    AmazonS3 s3Client;
+
+    TemplateStager stager;
+
+    @Before
+    public void setup() throws MalformedURLException {
+        MockitoAnnotations.initMocks(this);
+        stager = new TemplateStager(s3Client, "templates", new SysoutLogger());
+        when(s3Client.getUrl(eq("templates"), anyString())).thenReturn(new URL("https://templates.s3.amazonaws.com/key"));
+    }
+
+    @Test
+    public void shouldUploadEachTemplateOnce() {
+        when(s3Client.doesObjectExist(eq("templates"), anyString())).thenReturn(false);
+
+        stager.stage("{\"Resources\": {}}");
+        stager.stage("{\"Resources\": {}}");
+
+        verify(s3Client, times(1)).putObject(any(PutObjectRequest.class));
+    }
+
+    @Test
+    public void shouldNotUploadTemplateAlreadyInBucket() {
+        when(s3Client.doesObjectExist(eq("templates"), anyString())).thenReturn(true);
+
+        stager.stage("{\"Resources\": {}}");
+
+        verify(s3Client, never()).putObject(any(PutObjectRequest.class));
+    }
+
+    @Test
+    public void shouldHashByContent() {
+        assertEquals(TemplateStager.hash("a: b"), TemplateStager.hash("a: b"));
+        assertFalse(TemplateStager.hash("a: b").equals(TemplateStager.hash("a: c")));
+        assertEquals(64, TemplateStager.hash("a: b").length());
+    }
+}
@@ -14,13 +14,16 @@ import com.amazonaws.services.cloudformation.model.StackResource;
 import com.amazonaws.services.cloudformation.model.StackSummary;
 import com.amazonaws.services.cloudformation.model.Tag;
 import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.model.DescribeSubnetsRequest;
 import com.amazonaws.services.ec2.model.DescribeSubnetsResult;
+import com.amazonaws.services.ec2.model.DescribeVpcsRequest;
 import com.amazonaws.services.ec2.model.DescribeVpcsResult;
 import com.amazonaws.services.ec2.model.Subnet;
 import com.amazonaws.services.ec2.model.Vpc;
 import com.libertymutualgroup.herman.aws.AwsExecException;
 import com.libertymutualgroup.herman.aws.ecs.cluster.EcsClusterIntrospector;
 import com.libertymutualgroup.herman.aws.ecs.cluster.EcsClusterMetadata;
+import com.libertymutualgroup.herman.aws.ecs.cluster.EcsClusterMetadataCache;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import com.libertymutualgroup.herman.logging.SysoutLogger;
 import org.junit.Before;
@@ -29,9 +32,13 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class EcsClusterIntrospectorTest {
@@ -48,7 +55,7 @@ public class EcsClusterIntrospectorTest {
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        introspector = new EcsClusterIntrospector(cftClient, ec2Client, logger);
+        introspector = new EcsClusterIntrospector(cftClient, ec2Client, logger, new EcsClusterMetadataCache());
     }
 
     @Test
@@ -88,7 +95,7 @@ public class EcsClusterIntrospectorTest {
         Parameter orgParam = new Parameter().withParameterKey("NrOrgTag").withParameterValue("Platform");
         Parameter sbuParam = new Parameter().withParameterKey("NrSbuTag").withParameterValue("LMB");
 
-        Stack stack = new Stack().withTags(tag).withParameters(orgParam, sbuParam);
+        Stack stack = new Stack().withStackName(stackName).withTags(tag).withParameters(orgParam, sbuParam);
         DescribeStacksResult describeStacksResult = new DescribeStacksResult().withStacks(stack);
         when(cftClient.describeStacks(new DescribeStacksRequest().withStackName(stackName)))
             .thenReturn(describeStacksResult);
@@ -96,12 +103,12 @@ public class EcsClusterIntrospectorTest {
         com.amazonaws.services.ec2.model.Tag vpcTag = new com.amazonaws.services.ec2.model.Tag().withKey("Name")
             .withValue("nonprod-vpc");
         Vpc vpc = new Vpc().withTags(vpcTag).withVpcId("vpc12345");
-        when(ec2Client.describeVpcs()).thenReturn(new DescribeVpcsResult().withVpcs(vpc));
+        when(ec2Client.describeVpcs(any(DescribeVpcsRequest.class))).thenReturn(new DescribeVpcsResult().withVpcs(vpc));
 
         com.amazonaws.services.ec2.model.Tag subnetTag = new com.amazonaws.services.ec2.model.Tag().withKey("Name")
             .withValue("private-elb-subnet");
         Subnet subnet = new Subnet().withTags(subnetTag).withVpcId("vpc12345");
-        when(ec2Client.describeSubnets()).thenReturn(new DescribeSubnetsResult().withSubnets(subnet));
+        when(ec2Client.describeSubnets(any(DescribeSubnetsRequest.class))).thenReturn(new DescribeSubnetsResult().withSubnets(subnet));
 
         //WHEN
         EcsClusterMetadata meta = introspector.introspect(stackName, Regions.US_EAST_1);
@@ -142,7 +149,7 @@ public class EcsClusterIntrospectorTest {
         resources.add(new StackResource().withLogicalResourceId("DBSubnetGroup").withPhysicalResourceId("subnet12345"));
         resources.add(new StackResource().withLogicalResourceId("InstanceRole").withPhysicalResourceId("plat-role"));
 
-        when(cftClient.describeStackResources(new DescribeStackResourcesRequest().withStackName(stackName))).thenThrow(new AmazonCloudFormationException(""));
+        when(cftClient.describeStacks(new DescribeStacksRequest().withStackName(stackName))).thenThrow(new AmazonCloudFormationException(""));
         when(cftClient.describeStackResources(new DescribeStackResourcesRequest().withStackName(sharedStackName)))
             .thenReturn(describeStackResourcesResult);
 
@@ -150,7 +157,7 @@ public class EcsClusterIntrospectorTest {
         Parameter orgParam = new Parameter().withParameterKey("NrOrgTag").withParameterValue("Platform");
         Parameter sbuParam = new Parameter().withParameterKey("NrSbuTag").withParameterValue("LMB");
 
-        Stack stack = new Stack().withTags(tag).withParameters(orgParam, sbuParam);
+        Stack stack = new Stack().withStackName(sharedStackName).withTags(tag).withParameters(orgParam, sbuParam);
         DescribeStacksResult describeStacksResult = new DescribeStacksResult().withStacks(stack);
         when(cftClient.describeStacks(new DescribeStacksRequest().withStackName(sharedStackName)))
             .thenReturn(describeStacksResult);
@@ -158,12 +165,12 @@ public class EcsClusterIntrospectorTest {
         com.amazonaws.services.ec2.model.Tag vpcTag = new com.amazonaws.services.ec2.model.Tag().withKey("Name")
             .withValue("nonprod-vpc");
         Vpc vpc = new Vpc().withTags(vpcTag).withVpcId("vpc12345");
-        when(ec2Client.describeVpcs()).thenReturn(new DescribeVpcsResult().withVpcs(vpc));
+        when(ec2Client.describeVpcs(any(DescribeVpcsRequest.class))).thenReturn(new DescribeVpcsResult().withVpcs(vpc));
 
         com.amazonaws.services.ec2.model.Tag subnetTag = new com.amazonaws.services.ec2.model.Tag().withKey("Name")
             .withValue("private-elb-subnet");
         Subnet subnet = new Subnet().withTags(subnetTag).withVpcId("vpc12345");
-        when(ec2Client.describeSubnets()).thenReturn(new DescribeSubnetsResult().withSubnets(subnet));
+        when(ec2Client.describeSubnets(any(DescribeSubnetsRequest.class))).thenReturn(new DescribeSubnetsResult().withSubnets(subnet));
 
         //WHEN
         EcsClusterMetadata meta = introspector.introspect(stackName, Regions.US_EAST_1);
@@ -188,4 +195,40 @@ public class EcsClusterIntrospectorTest {
         introspector.introspect("not-a-real-stack", Regions.US_EAST_1);
     }
 
+    @Test
+    public void testIntrospectUsesCacheWhileStackIsUnchanged() {
+        //GIVEN
+        String stackName = "some-cached-cluster-stack";
+
+        DescribeStackResourcesResult describeStackResourcesResult = new DescribeStackResourcesResult();
+        describeStackResourcesResult.getStackResources().add(new StackResource().withLogicalResourceId("ECSCluster")
+            .withPhysicalResourceId("dev-plat-cluster-WOURKSLUY"));
+        when(cftClient.describeStackResources(new DescribeStackResourcesRequest().withStackName(stackName)))
+            .thenReturn(describeStackResourcesResult);
+
+        Stack stack = new Stack().withStackName(stackName).withStackId("arn:stack/" + stackName)
+            .withCreationTime(new Date(1000L)).withLastUpdatedTime(new Date(2000L))
+            .withTags(new Tag().withKey("Name").withValue("some-cluster"));
+        when(cftClient.describeStacks(new DescribeStacksRequest().withStackName(stackName)))
+            .thenReturn(new DescribeStacksResult().withStacks(stack));
+
+        com.amazonaws.services.ec2.model.Tag vpcTag = new com.amazonaws.services.ec2.model.Tag().withKey("Name")
+            .withValue("nonprod-vpc");
+        when(ec2Client.describeVpcs(any(DescribeVpcsRequest.class)))
+            .thenReturn(new DescribeVpcsResult().withVpcs(new Vpc().withTags(vpcTag).withVpcId("vpc12345")));
+        when(ec2Client.describeSubnets(any(DescribeSubnetsRequest.class))).thenReturn(new DescribeSubnetsResult());
+
+        //WHEN
+        EcsClusterMetadata first = introspector.introspect(stackName, Regions.US_EAST_1);
+        first.getElbSecurityGroups().add("sg-mutated-by-caller");
+        EcsClusterMetadata second = introspector.introspect(stackName, Regions.US_EAST_1);
+
+        //THEN
+        verify(cftClient, times(1)).describeStackResources(any(DescribeStackResourcesRequest.class));
+        verify(ec2Client, times(1)).describeVpcs(any(DescribeVpcsRequest.class));
+        assertEquals("dev-plat-cluster-WOURKSLUY", second.getClusterId());
+        assertEquals("vpc12345", second.getVpcId());
+        assertEquals(0, second.getElbSecurityGroups().size());
+        assertEquals(1, second.getClusterCftStackTags().size());
+    }
 }
@@ -0,0 +1,67 @@
+package com.libertymutualgroup.herman.aws.ecs.broker;
+
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.logging.SysoutLogger;
+import com.libertymutualgroup.herman.util.AdaptivePoller;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class ManagedClusterUtilTest {
+
+    @Test
+    public void shouldTruncateNamesWithoutTrailingDashes() {
+        assertEquals("my-app", ManagedClusterUtil.truncateName("my-app", 20));
+        assertEquals("my-long", ManagedClusterUtil.truncateName("my-long-app", 8));
+    }
+
+    @Test
+    public void shouldOnlyUpdateSubnetGroupWhenSubnetsDiffer() {
+        AtomicInteger creates = new AtomicInteger();
+        AtomicInteger updates = new AtomicInteger();
+
+        ManagedClusterUtil.brokerSubnetGroup("subnet group", "group", Arrays.asList("subnet-a", "subnet-b"),
+            new HashSet<>(Arrays.asList("subnet-b", "subnet-a")), creates::incrementAndGet, updates::incrementAndGet,
+            new SysoutLogger());
+        assertEquals(0, creates.get() + updates.get());
+
+        ManagedClusterUtil.brokerSubnetGroup("subnet group", "group", Arrays.asList("subnet-a", "subnet-b"),
+            new HashSet<>(Arrays.asList("subnet-a")), creates::incrementAndGet, updates::incrementAndGet,
+            new SysoutLogger());
+        assertEquals(1, updates.get());
+
+        ManagedClusterUtil.brokerSubnetGroup("subnet group", "group", Arrays.asList("subnet-a"), null,
+            creates::incrementAndGet, updates::incrementAndGet, new SysoutLogger());
+        assertEquals(1, creates.get());
+        assertEquals(1, updates.get());
+    }
+
+    @Test
+    public void shouldWaitUntilAvailable() {
+        Iterator<String> statuses = Arrays.asList("creating", "modifying", "available").iterator();
+
+        String status = ManagedClusterUtil.waitUntilAvailable("cluster", "my-app", statuses::next, s -> s,
+            new AdaptivePoller(0, 0, 1), 60000, new SysoutLogger());
+
+        assertEquals("available", status);
+        assertFalse(statuses.hasNext());
+    }
+
+    @Test
+    public void shouldFailWhenResourceDisappears() {
+        try {
+            ManagedClusterUtil.waitUntilAvailable("cluster", "my-app", () -> null, s -> "available",
+                new AdaptivePoller(0, 0, 1), 60000, new SysoutLogger());
+            fail("Expected the wait to fail");
+        } catch (AwsExecException e) {
+            assertEquals("Cluster my-app disappeared while waiting for it", e.getMessage());
+        }
+    }
+}
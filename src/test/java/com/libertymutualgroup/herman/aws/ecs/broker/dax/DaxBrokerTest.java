@@ -0,0 +1,121 @@
+package com.libertymutualgroup.herman.aws.ecs.broker.dax;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.dax.AmazonDax;
+import com.amazonaws.services.dax.model.Cluster;
+import com.amazonaws.services.dax.model.ClusterNotFoundException;
+import com.amazonaws.services.dax.model.CreateClusterRequest;
+import com.amazonaws.services.dax.model.DecreaseReplicationFactorRequest;
+import com.amazonaws.services.dax.model.DescribeClustersRequest;
+import com.amazonaws.services.dax.model.DescribeClustersResult;
+import com.amazonaws.services.dax.model.DescribeParameterGroupsRequest;
+import com.amazonaws.services.dax.model.DescribeParameterGroupsResult;
+import com.amazonaws.services.dax.model.DescribeSubnetGroupsRequest;
+import com.amazonaws.services.dax.model.DescribeSubnetGroupsResult;
+import com.amazonaws.services.dax.model.Endpoint;
+import com.amazonaws.services.dax.model.ParameterGroupStatus;
+import com.amazonaws.services.dax.model.SecurityGroupMembership;
+import com.amazonaws.services.dax.model.Subnet;
+import com.amazonaws.services.dax.model.SubnetGroup;
+import com.amazonaws.services.dax.model.UpdateClusterRequest;
+import com.amazonaws.services.identitymanagement.AmazonIdentityManagement;
+import com.amazonaws.services.identitymanagement.model.Role;
+import com.libertymutualgroup.herman.aws.ecs.EcsPushDefinition;
+import com.libertymutualgroup.herman.aws.ecs.broker.iam.IAMBroker;
+import com.libertymutualgroup.herman.aws.ecs.cluster.EcsClusterMetadata;
+import com.libertymutualgroup.herman.logging.SysoutLogger;
+import com.libertymutualgroup.herman.util.AdaptivePoller;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DaxBrokerTest {
+
+    private AmazonDax client = mock(AmazonDax.class);
+    private AmazonIdentityManagement iamClient = mock(AmazonIdentityManagement.class);
+    private IAMBroker iamBroker = mock(IAMBroker.class);
+    private EcsPushDefinition definition = new EcsPushDefinition();
+    private EcsClusterMetadata clusterMetadata = new EcsClusterMetadata();
+
+    @Before
+    public void setup() {
+        definition.setAppName("my-app");
+        definition.setDaxCluster(new DaxCluster());
+        clusterMetadata.setRdsSecurityGroup("sg-data");
+        clusterMetadata.setPrivateSubnets(Arrays.asList("subnet-a", "subnet-b"));
+
+        when(client.describeSubnetGroups(any(DescribeSubnetGroupsRequest.class))).thenReturn(new DescribeSubnetGroupsResult()
+            .withSubnetGroups(new SubnetGroup().withSubnets(new Subnet().withSubnetIdentifier("subnet-a"),
+                new Subnet().withSubnetIdentifier("subnet-b"))));
+        when(client.describeParameterGroups(any(DescribeParameterGroupsRequest.class)))
+            .thenReturn(new DescribeParameterGroupsResult());
+        when(iamBroker.brokerServiceRole(any(AmazonIdentityManagement.class), anyString(), anyString(), anyString()))
+            .thenReturn(new Role().withArn("arn:aws:iam::123:role/my-app-dax"));
+    }
+
+    @Test
+    public void shouldCreateClusterAndGrantTaskRoleAccess() {
+        when(client.describeClusters(any(DescribeClustersRequest.class)))
+            .thenThrow(new ClusterNotFoundException("not found"))
+            .thenReturn(clusters(cluster("available", 3)));
+
+        DaxCluster dax = broker().brokerCluster(definition, clusterMetadata, "my-app", "123", Regions.US_EAST_1,
+            new ArrayList<>());
+
+        verify(client).createCluster(any(CreateClusterRequest.class));
+        verify(iamBroker).putRolePolicy(eq(iamClient), eq("my-app"), eq("my-app-dax-policy"), anyString());
+        assertEquals("daxs://my-app.abc.dax-clusters.us-east-1.amazonaws.com:9111", dax.getEndpoint());
+    }
+
+    @Test
+    public void shouldOnlyChangeWhatDiffers() {
+        definition.getDaxCluster().setReplicationFactor(2);
+        when(client.describeClusters(any(DescribeClustersRequest.class))).thenReturn(clusters(cluster("available", 3)));
+
+        broker().brokerCluster(definition, clusterMetadata, null, "123", Regions.US_EAST_1, new ArrayList<>());
+
+        verify(client, never()).createCluster(any(CreateClusterRequest.class));
+        verify(client, never()).updateCluster(any(UpdateClusterRequest.class));
+        verify(client).decreaseReplicationFactor(any(DecreaseReplicationFactorRequest.class));
+        verify(iamBroker, never()).putRolePolicy(any(AmazonIdentityManagement.class), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    public void shouldShortenLongAppNames() {
+        assertEquals("some-service-nonprod", DaxBroker.defaultClusterName("some-service-nonprod-api"));
+        assertEquals("a-very-long-service", DaxBroker.defaultClusterName("a-very-long-service-name"));
+    }
+
+    private DaxBroker broker() {
+        return new DaxBroker(new SysoutLogger(), client, iamClient, iamBroker, 60000, () -> new AdaptivePoller(0, 0, 1));
+    }
+
+    private DescribeClustersResult clusters(Cluster cluster) {
+        return new DescribeClustersResult().withClusters(cluster);
+    }
+
+    private Cluster cluster(String status, int nodes) {
+        return new Cluster()
+            .withClusterName("my-app")
+            .withClusterArn("arn:aws:dax:us-east-1:123:cache/my-app")
+            .withStatus(status)
+            .withTotalNodes(nodes)
+            .withNodeType("dax.t3.small")
+            .withClusterEndpointEncryptionType("TLS")
+            .withSecurityGroups(new SecurityGroupMembership().withSecurityGroupIdentifier("sg-data"))
+            .withParameterGroup(new ParameterGroupStatus().withParameterGroupName("my-app-dax"))
+            .withClusterDiscoveryEndpoint(new Endpoint().withAddress("my-app.abc.dax-clusters.us-east-1.amazonaws.com")
+                .withPort(9111));
+    }
+}
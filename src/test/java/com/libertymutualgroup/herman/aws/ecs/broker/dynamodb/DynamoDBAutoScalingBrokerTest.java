@@ -0,0 +1,146 @@
+package com.libertymutualgroup.herman.aws.ecs.broker.dynamodb;
+
+import com.amazonaws.services.applicationautoscaling.AWSApplicationAutoScaling;
+import com.amazonaws.services.applicationautoscaling.model.DeregisterScalableTargetRequest;
+import com.amazonaws.services.applicationautoscaling.model.DescribeScalableTargetsRequest;
+import com.amazonaws.services.applicationautoscaling.model.DescribeScalableTargetsResult;
+import com.amazonaws.services.applicationautoscaling.model.DescribeScalingPoliciesRequest;
+import com.amazonaws.services.applicationautoscaling.model.DescribeScalingPoliciesResult;
+import com.amazonaws.services.applicationautoscaling.model.PredefinedMetricSpecification;
+import com.amazonaws.services.applicationautoscaling.model.PutScalingPolicyRequest;
+import com.amazonaws.services.applicationautoscaling.model.RegisterScalableTargetRequest;
+import com.amazonaws.services.applicationautoscaling.model.ScalableTarget;
+import com.amazonaws.services.applicationautoscaling.model.ScalingPolicy;
+import com.amazonaws.services.applicationautoscaling.model.TargetTrackingScalingPolicyConfiguration;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndex;
+import com.libertymutualgroup.herman.logging.SysoutLogger;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DynamoDBAutoScalingBrokerTest {
+
+    @Mock
+    AWSApplicationAutoScaling client;
+
+    DynamoDBAutoScalingBroker broker;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        broker = new DynamoDBAutoScalingBroker(new SysoutLogger(), client);
+        when(client.describeScalableTargets(any(DescribeScalableTargetsRequest.class)))
+            .thenReturn(new DescribeScalableTargetsResult());
+        when(client.describeScalingPolicies(any(DescribeScalingPoliciesRequest.class)))
+            .thenReturn(new DescribeScalingPoliciesResult());
+    }
+
+    @Test
+    public void shouldRegisterTargetsAndPoliciesForTableAndIndexes() {
+        DynamoDBTable table = table(autoScaling(5, 50, 70.0));
+        table.setGlobalSecondaryIndexes(Arrays.asList(new GlobalSecondaryIndex().withIndexName("by-owner")));
+
+        broker.brokerAutoScaling(table);
+
+        ArgumentCaptor<RegisterScalableTargetRequest> registered = ArgumentCaptor.forClass(RegisterScalableTargetRequest.class);
+        verify(client, times(2)).registerScalableTarget(registered.capture());
+        assertEquals("table/app-table", registered.getAllValues().get(0).getResourceId());
+        assertEquals("dynamodb:table:ReadCapacityUnits", registered.getAllValues().get(0).getScalableDimension());
+        assertEquals(Integer.valueOf(50), registered.getAllValues().get(0).getMaxCapacity());
+        assertEquals("table/app-table/index/by-owner", registered.getAllValues().get(1).getResourceId());
+        assertEquals("dynamodb:index:ReadCapacityUnits", registered.getAllValues().get(1).getScalableDimension());
+        verify(client, times(2)).putScalingPolicy(any(PutScalingPolicyRequest.class));
+        verify(client, never()).deregisterScalableTarget(any(DeregisterScalableTargetRequest.class));
+    }
+
+    @Test
+    public void shouldDeregisterTargetsThatAreNoLongerConfigured() {
+        when(client.describeScalableTargets(any(DescribeScalableTargetsRequest.class))).thenReturn(
+            new DescribeScalableTargetsResult().withScalableTargets(
+                target("dynamodb:table:ReadCapacityUnits", 5, 50),
+                target("dynamodb:table:WriteCapacityUnits", 5, 50)));
+        when(client.describeScalingPolicies(any(DescribeScalingPoliciesRequest.class)))
+            .thenReturn(new DescribeScalingPoliciesResult().withScalingPolicies(policy(70.0)));
+
+        broker.brokerAutoScaling(table(autoScaling(5, 50, 70.0)));
+
+        ArgumentCaptor<DeregisterScalableTargetRequest> deregistered = ArgumentCaptor.forClass(DeregisterScalableTargetRequest.class);
+        verify(client).deregisterScalableTarget(deregistered.capture());
+        assertEquals("dynamodb:table:WriteCapacityUnits", deregistered.getValue().getScalableDimension());
+        verify(client, never()).registerScalableTarget(any(RegisterScalableTargetRequest.class));
+        verify(client, never()).putScalingPolicy(any(PutScalingPolicyRequest.class));
+    }
+
+    @Test
+    public void shouldLeaveTargetsThatHermanDidNotCreate() {
+        when(client.describeScalableTargets(any(DescribeScalableTargetsRequest.class))).thenReturn(
+            new DescribeScalableTargetsResult().withScalableTargets(
+                target("dynamodb:table:ReadCapacityUnits", 5, 50),
+                target("dynamodb:table:WriteCapacityUnits", 5, 50)));
+        when(client.describeScalingPolicies(any(DescribeScalingPoliciesRequest.class)))
+            .thenReturn(new DescribeScalingPoliciesResult().withScalingPolicies(
+                policy(70.0).withPolicyName("console-write-scaling")));
+
+        broker.brokerAutoScaling(table(autoScaling(5, 50, 70.0)));
+
+        verify(client, never()).deregisterScalableTarget(any(DeregisterScalableTargetRequest.class));
+        verify(client, never()).registerScalableTarget(any(RegisterScalableTargetRequest.class));
+    }
+
+    @Test
+    public void shouldOnlyUpdateThePolicyWhenTheTargetUtilizationChanges() {
+        when(client.describeScalableTargets(any(DescribeScalableTargetsRequest.class))).thenReturn(
+            new DescribeScalableTargetsResult().withScalableTargets(target("dynamodb:table:ReadCapacityUnits", 5, 50)));
+        when(client.describeScalingPolicies(any(DescribeScalingPoliciesRequest.class)))
+            .thenReturn(new DescribeScalingPoliciesResult().withScalingPolicies(policy(70.0)));
+
+        broker.brokerAutoScaling(table(autoScaling(5, 50, 50.0)));
+
+        ArgumentCaptor<PutScalingPolicyRequest> policy = ArgumentCaptor.forClass(PutScalingPolicyRequest.class);
+        verify(client).putScalingPolicy(policy.capture());
+        assertEquals(Double.valueOf(50.0), policy.getValue().getTargetTrackingScalingPolicyConfiguration().getTargetValue());
+        verify(client, never()).registerScalableTarget(any(RegisterScalableTargetRequest.class));
+        verify(client, never()).deregisterScalableTarget(any(DeregisterScalableTargetRequest.class));
+    }
+
+    private DynamoDBTable table(DynamoDBAutoScaling autoScaling) {
+        DynamoDBTable table = new DynamoDBTable();
+        table.setTableName("app-table");
+        table.setAutoScaling(autoScaling);
+        return table;
+    }
+
+    private DynamoDBAutoScaling autoScaling(int minRead, int maxRead, double targetUtilization) {
+        DynamoDBAutoScaling autoScaling = new DynamoDBAutoScaling();
+        autoScaling.setMinReadCapacity(minRead);
+        autoScaling.setMaxReadCapacity(maxRead);
+        autoScaling.setTargetUtilization(targetUtilization);
+        return autoScaling;
+    }
+
+    private ScalableTarget target(String dimension, int min, int max) {
+        return new ScalableTarget().withResourceId("table/app-table").withScalableDimension(dimension)
+            .withMinCapacity(min).withMaxCapacity(max);
+    }
+
+    private ScalingPolicy policy(double targetUtilization) {
+        return new ScalingPolicy().withPolicyName("dynamodb-table-ReadCapacityUnits-herman-target-tracking")
+            .withTargetTrackingScalingPolicyConfiguration(new TargetTrackingScalingPolicyConfiguration()
+            .withPredefinedMetricSpecification(new PredefinedMetricSpecification()
+                .withPredefinedMetricType("DynamoDBReadCapacityUtilization"))
+            .withTargetValue(targetUtilization)
+            .withScaleInCooldown(60)
+            .withScaleOutCooldown(60));
+    }
+}
@@ -0,0 +1,254 @@
+package com.libertymutualgroup.herman.aws.ecs.broker.dynamodb;
+
+import com.amazonaws.services.applicationautoscaling.AWSApplicationAutoScaling;
+import com.amazonaws.services.applicationautoscaling.model.DeregisterScalableTargetRequest;
+import com.amazonaws.services.applicationautoscaling.model.DescribeScalableTargetsRequest;
+import com.amazonaws.services.applicationautoscaling.model.DescribeScalableTargetsResult;
+import com.amazonaws.services.applicationautoscaling.model.DescribeScalingPoliciesRequest;
+import com.amazonaws.services.applicationautoscaling.model.DescribeScalingPoliciesResult;
+import com.amazonaws.services.applicationautoscaling.model.ScalableTarget;
+import com.amazonaws.services.applicationautoscaling.model.ScalingPolicy;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeDefinition;
+import com.amazonaws.services.dynamodbv2.model.BillingModeSummary;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableResult;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndex;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.dynamodbv2.model.KeyType;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughput;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputDescription;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.amazonaws.services.dynamodbv2.model.UpdateTableRequest;
+import com.libertymutualgroup.herman.aws.ecs.EcsPushDefinition;
+import com.libertymutualgroup.herman.logging.SysoutLogger;
+import com.libertymutualgroup.herman.util.AdaptivePoller;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DynamoDBBrokerTest {
+
+    private AmazonDynamoDB client = mock(AmazonDynamoDB.class);
+
+    @Test
+    public void shouldGroupThroughputChangesAndSplitIndexCreatesAndDeletes() {
+        DynamoDBTable table = new DynamoDBTable();
+        table.setTableName("app-table");
+        table.setProvisionedThroughput(new ProvisionedThroughput(10L, 10L));
+        table.setGlobalSecondaryIndexes(Arrays.asList(
+            new GlobalSecondaryIndex().withIndexName("kept").withProvisionedThroughput(new ProvisionedThroughput(5L, 5L)),
+            new GlobalSecondaryIndex().withIndexName("new-1").withProvisionedThroughput(new ProvisionedThroughput(1L, 1L)),
+            new GlobalSecondaryIndex().withIndexName("new-2").withProvisionedThroughput(new ProvisionedThroughput(1L, 1L))));
+        TableDescription current = new TableDescription()
+            .withTableName("app-table")
+            .withProvisionedThroughput(throughput(1L, 1L))
+            .withGlobalSecondaryIndexes(
+                new GlobalSecondaryIndexDescription().withIndexName("kept").withProvisionedThroughput(throughput(1L, 1L)),
+                new GlobalSecondaryIndexDescription().withIndexName("removed").withProvisionedThroughput(throughput(1L, 1L)));
+
+        List<UpdateTableRequest> updates = broker().planUpdates(table, current);
+
+        assertEquals(4, updates.size());
+        assertEquals("removed", updates.get(0).getGlobalSecondaryIndexUpdates().get(0).getDelete().getIndexName());
+        assertEquals(Long.valueOf(10L), updates.get(1).getProvisionedThroughput().getReadCapacityUnits());
+        assertEquals("kept", updates.get(1).getGlobalSecondaryIndexUpdates().get(0).getUpdate().getIndexName());
+        assertEquals("new-1", updates.get(2).getGlobalSecondaryIndexUpdates().get(0).getCreate().getIndexName());
+        assertEquals("new-2", updates.get(3).getGlobalSecondaryIndexUpdates().get(0).getCreate().getIndexName());
+        for (UpdateTableRequest update : updates) {
+            assertEquals("app-table", update.getTableName());
+        }
+    }
+
+    @Test
+    public void shouldOnlySendKeyAttributesWhenCreatingAnIndex() {
+        DynamoDBTable table = new DynamoDBTable();
+        table.setTableName("app-table");
+        table.setProvisionedThroughput(new ProvisionedThroughput(1L, 1L));
+        table.setAttributes(Arrays.asList(new AttributeDefinition("id", "S"), new AttributeDefinition("owner", "S"),
+            new AttributeDefinition("created", "N"), new AttributeDefinition("status", "S")));
+        table.setGlobalSecondaryIndexes(Arrays.asList(new GlobalSecondaryIndex().withIndexName("by-owner")
+            .withKeySchema(new KeySchemaElement("owner", KeyType.HASH), new KeySchemaElement("created", KeyType.RANGE))
+            .withProvisionedThroughput(new ProvisionedThroughput(1L, 1L))));
+        TableDescription current = new TableDescription()
+            .withTableName("app-table")
+            .withProvisionedThroughput(throughput(1L, 1L))
+            .withKeySchema(new KeySchemaElement("id", KeyType.HASH))
+            .withAttributeDefinitions(new AttributeDefinition("id", "S"), new AttributeDefinition("status", "S"));
+
+        List<UpdateTableRequest> updates = broker().planUpdates(table, current);
+
+        assertEquals(1, updates.size());
+        assertEquals(Arrays.asList(new AttributeDefinition("id", "S"), new AttributeDefinition("owner", "S"),
+            new AttributeDefinition("created", "N")), updates.get(0).getAttributeDefinitions());
+    }
+
+    @Test
+    public void shouldPlanNothingForUnchangedTable() {
+        DynamoDBTable table = new DynamoDBTable();
+        table.setTableName("app-table");
+        table.setProvisionedThroughput(new ProvisionedThroughput(1L, 1L));
+        TableDescription current = new TableDescription().withTableName("app-table").withProvisionedThroughput(throughput(1L, 1L));
+
+        assertTrue(broker().planUpdates(table, current).isEmpty());
+    }
+
+    @Test
+    public void shouldLeaveAutoScaledCapacityAlone() {
+        DynamoDBAutoScaling autoScaling = new DynamoDBAutoScaling();
+        autoScaling.setMinReadCapacity(5);
+        autoScaling.setMaxReadCapacity(100);
+        DynamoDBTable table = new DynamoDBTable();
+        table.setTableName("app-table");
+        table.setProvisionedThroughput(new ProvisionedThroughput(5L, 2L));
+        table.setAutoScaling(autoScaling);
+        TableDescription current = new TableDescription().withTableName("app-table").withProvisionedThroughput(throughput(40L, 2L));
+
+        assertTrue(broker().planUpdates(table, current).isEmpty());
+
+        table.setProvisionedThroughput(new ProvisionedThroughput(5L, 4L));
+        List<UpdateTableRequest> updates = broker().planUpdates(table, current);
+
+        assertEquals(1, updates.size());
+        assertEquals(Long.valueOf(40L), updates.get(0).getProvisionedThroughput().getReadCapacityUnits());
+        assertEquals(Long.valueOf(4L), updates.get(0).getProvisionedThroughput().getWriteCapacityUnits());
+    }
+
+    @Test
+    public void shouldSwitchBillingModes() {
+        DynamoDBTable table = new DynamoDBTable();
+        table.setTableName("app-table");
+        table.setBillingMode("PAY_PER_REQUEST");
+        table.setGlobalSecondaryIndexes(Arrays.asList(new GlobalSecondaryIndex().withIndexName("kept")));
+        TableDescription provisioned = new TableDescription()
+            .withTableName("app-table")
+            .withProvisionedThroughput(throughput(1L, 1L))
+            .withGlobalSecondaryIndexes(
+                new GlobalSecondaryIndexDescription().withIndexName("kept").withProvisionedThroughput(throughput(1L, 1L)));
+
+        List<UpdateTableRequest> updates = broker().planUpdates(table, provisioned);
+
+        assertEquals(1, updates.size());
+        assertEquals("PAY_PER_REQUEST", updates.get(0).getBillingMode());
+        assertNull(updates.get(0).getProvisionedThroughput());
+
+        // DynamoDB only allows one switch to on-demand per day
+        provisioned.setBillingModeSummary(new BillingModeSummary().withBillingMode("PROVISIONED")
+            .withLastUpdateToPayPerRequestDateTime(new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2))));
+        assertTrue(broker().planUpdates(table, provisioned).isEmpty());
+
+        table.setBillingMode("PROVISIONED");
+        table.setProvisionedThroughput(new ProvisionedThroughput(3L, 3L));
+        table.setGlobalSecondaryIndexes(Arrays.asList(
+            new GlobalSecondaryIndex().withIndexName("kept").withProvisionedThroughput(new ProvisionedThroughput(2L, 2L))));
+        TableDescription onDemand = new TableDescription()
+            .withTableName("app-table")
+            .withBillingModeSummary(new BillingModeSummary().withBillingMode("PAY_PER_REQUEST"))
+            .withGlobalSecondaryIndexes(new GlobalSecondaryIndexDescription().withIndexName("kept"));
+
+        updates = broker().planUpdates(table, onDemand);
+
+        assertEquals(1, updates.size());
+        assertEquals("PROVISIONED", updates.get(0).getBillingMode());
+        assertEquals(Long.valueOf(3L), updates.get(0).getProvisionedThroughput().getReadCapacityUnits());
+        assertEquals(Long.valueOf(2L),
+            updates.get(0).getGlobalSecondaryIndexUpdates().get(0).getUpdate().getProvisionedThroughput().getReadCapacityUnits());
+    }
+
+    @Test
+    public void shouldOnlyRemoveAutoScalingWhenTheSwitchToOnDemandIsApplied() {
+        AWSApplicationAutoScaling autoScalingClient = mock(AWSApplicationAutoScaling.class);
+        when(autoScalingClient.describeScalableTargets(any(DescribeScalableTargetsRequest.class))).thenReturn(
+            new DescribeScalableTargetsResult().withScalableTargets(new ScalableTarget()
+                .withResourceId("table/app-table").withScalableDimension("dynamodb:table:ReadCapacityUnits")));
+        when(autoScalingClient.describeScalingPolicies(any(DescribeScalingPoliciesRequest.class))).thenReturn(
+            new DescribeScalingPoliciesResult().withScalingPolicies(new ScalingPolicy()
+                .withPolicyName("dynamodb-table-ReadCapacityUnits-herman-target-tracking")));
+        TableDescription switchedRecently = new TableDescription().withTableName("app-table").withTableStatus("ACTIVE")
+            .withBillingModeSummary(new BillingModeSummary().withBillingMode("PROVISIONED")
+                .withLastUpdateToPayPerRequestDateTime(new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2))));
+        when(client.describeTable("app-table")).thenReturn(new DescribeTableResult().withTable(switchedRecently));
+
+        onDemandBroker().createDynamoDBTables(client, autoScalingClient);
+
+        verify(client, never()).updateTable(any(UpdateTableRequest.class));
+        verify(autoScalingClient, never()).deregisterScalableTarget(any(DeregisterScalableTargetRequest.class));
+
+        switchedRecently.getBillingModeSummary().setLastUpdateToPayPerRequestDateTime(
+            new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(25)));
+
+        onDemandBroker().createDynamoDBTables(client, autoScalingClient);
+
+        verify(autoScalingClient).deregisterScalableTarget(any(DeregisterScalableTargetRequest.class));
+        verify(client).updateTable(any(UpdateTableRequest.class));
+    }
+
+    @Test
+    public void shouldWaitForBackfillOnlyOnLastUpdate() {
+        GlobalSecondaryIndexDescription backfilling = new GlobalSecondaryIndexDescription()
+            .withIndexName("new-1").withIndexStatus("CREATING").withBackfilling(true);
+        GlobalSecondaryIndexDescription active = new GlobalSecondaryIndexDescription()
+            .withIndexName("new-1").withIndexStatus("ACTIVE");
+        when(client.describeTable("app-table"))
+            .thenReturn(describe("UPDATING", backfilling))
+            .thenReturn(describe("ACTIVE", backfilling))
+            .thenReturn(describe("ACTIVE", backfilling))
+            .thenReturn(describe("ACTIVE", active));
+
+        assertTrue(broker().waitForTable(client, "app-table", false));
+        verify(client, times(2)).describeTable("app-table");
+
+        assertTrue(broker().waitForTable(client, "app-table", true));
+        verify(client, times(4)).describeTable("app-table");
+    }
+
+    @Test
+    public void shouldGiveUpWhenBudgetRunsOut() {
+        when(client.describeTable("app-table")).thenReturn(describe("UPDATING"));
+
+        DynamoDBBroker broker = new DynamoDBBroker(new SysoutLogger(), new EcsPushDefinition(), 1,
+            () -> new AdaptivePoller(5, 5, 1));
+
+        assertFalse(broker.waitForTable(client, "app-table", true));
+    }
+
+    private DynamoDBBroker broker() {
+        return new DynamoDBBroker(new SysoutLogger(), new EcsPushDefinition(), 60000, () -> new AdaptivePoller(0, 0, 1));
+    }
+
+    private DynamoDBBroker onDemandBroker() {
+        DynamoDBTable table = new DynamoDBTable();
+        table.setTableName("table");
+        table.setBillingMode("PAY_PER_REQUEST");
+        EcsPushDefinition definition = new EcsPushDefinition();
+        definition.setAppName("app");
+        definition.setDynamoDBTables(Arrays.asList(table));
+        return new DynamoDBBroker(new SysoutLogger(), definition, 60000, () -> new AdaptivePoller(0, 0, 1));
+    }
+
+    private DescribeTableResult describe(String status, GlobalSecondaryIndexDescription... indexes) {
+        TableDescription table = new TableDescription().withTableName("app-table").withTableStatus(status);
+        if (indexes.length > 0) {
+            table.setGlobalSecondaryIndexes(Arrays.asList(indexes));
+        }
+        return new DescribeTableResult().withTable(table);
+    }
+
+    private ProvisionedThroughputDescription throughput(long read, long write) {
+        return new ProvisionedThroughputDescription().withReadCapacityUnits(read).withWriteCapacityUnits(write);
+    }
+}
@@ -0,0 +1,125 @@
+package com.libertymutualgroup.herman.aws.ecs.broker.elasticache;
+
+import com.amazonaws.services.elasticache.AmazonElastiCache;
+import com.amazonaws.services.elasticache.model.CacheCluster;
+import com.amazonaws.services.elasticache.model.CacheSubnetGroup;
+import com.amazonaws.services.elasticache.model.CreateReplicationGroupRequest;
+import com.amazonaws.services.elasticache.model.DescribeCacheClustersRequest;
+import com.amazonaws.services.elasticache.model.DescribeCacheClustersResult;
+import com.amazonaws.services.elasticache.model.DescribeCacheSubnetGroupsRequest;
+import com.amazonaws.services.elasticache.model.DescribeCacheSubnetGroupsResult;
+import com.amazonaws.services.elasticache.model.DescribeReplicationGroupsRequest;
+import com.amazonaws.services.elasticache.model.DescribeReplicationGroupsResult;
+import com.amazonaws.services.elasticache.model.Endpoint;
+import com.amazonaws.services.elasticache.model.IncreaseReplicaCountRequest;
+import com.amazonaws.services.elasticache.model.ModifyReplicationGroupRequest;
+import com.amazonaws.services.elasticache.model.NodeGroup;
+import com.amazonaws.services.elasticache.model.NodeGroupMember;
+import com.amazonaws.services.elasticache.model.ReplicationGroup;
+import com.amazonaws.services.elasticache.model.ReplicationGroupNotFoundException;
+import com.amazonaws.services.elasticache.model.SecurityGroupMembership;
+import com.amazonaws.services.elasticache.model.Subnet;
+import com.libertymutualgroup.herman.aws.ecs.EcsPushDefinition;
+import com.libertymutualgroup.herman.aws.ecs.cluster.EcsClusterMetadata;
+import com.libertymutualgroup.herman.logging.SysoutLogger;
+import com.libertymutualgroup.herman.util.AdaptivePoller;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ElastiCacheBrokerTest {
+
+    private AmazonElastiCache client = mock(AmazonElastiCache.class);
+    private EcsPushDefinition definition = new EcsPushDefinition();
+    private EcsClusterMetadata clusterMetadata = new EcsClusterMetadata();
+
+    @Before
+    public void setup() {
+        definition.setAppName("my-app");
+        definition.setCache(new ElastiCacheCluster());
+        clusterMetadata.setRdsSecurityGroup("sg-data");
+        clusterMetadata.setPrivateSubnets(Arrays.asList("subnet-a"));
+
+        when(client.describeCacheSubnetGroups(any(DescribeCacheSubnetGroupsRequest.class)))
+            .thenReturn(new DescribeCacheSubnetGroupsResult().withCacheSubnetGroups(
+                new CacheSubnetGroup().withSubnets(new Subnet().withSubnetIdentifier("subnet-a"))));
+        when(client.describeCacheClusters(any(DescribeCacheClustersRequest.class)))
+            .thenReturn(new DescribeCacheClustersResult().withCacheClusters(new CacheCluster()
+                .withSecurityGroups(new SecurityGroupMembership().withSecurityGroupId("sg-data"))));
+    }
+
+    @Test
+    public void shouldCreateEncryptedGroupWithAppKey() {
+        when(client.describeReplicationGroups(any(DescribeReplicationGroupsRequest.class)))
+            .thenThrow(new ReplicationGroupNotFoundException("not found"))
+            .thenReturn(groups(group(1)));
+
+        ElastiCacheCluster cache = broker().brokerReplicationGroup(definition, clusterMetadata, "key-123",
+            new ArrayList<>()).join();
+
+        ArgumentCaptor<CreateReplicationGroupRequest> request = ArgumentCaptor.forClass(CreateReplicationGroupRequest.class);
+        verify(client).createReplicationGroup(request.capture());
+        assertEquals("key-123", request.getValue().getKmsKeyId());
+        assertEquals("my-app-cache", request.getValue().getCacheSubnetGroupName());
+        assertEquals("primary.cache.amazonaws.com", cache.getPrimaryEndpoint());
+        assertEquals("reader.cache.amazonaws.com", cache.getReaderEndpoint());
+        assertEquals(Integer.valueOf(6379), cache.getEndpointPort());
+    }
+
+    @Test
+    public void shouldOnlyChangeWhatDiffers() {
+        definition.getCache().setReplicasPerNodeGroup(2);
+        when(client.describeReplicationGroups(any(DescribeReplicationGroupsRequest.class))).thenReturn(groups(group(1)));
+
+        broker().broker(definition, clusterMetadata, "", new ArrayList<>());
+
+        verify(client, never()).createReplicationGroup(any(CreateReplicationGroupRequest.class));
+        verify(client, never()).modifyReplicationGroup(any(ModifyReplicationGroupRequest.class));
+        verify(client).increaseReplicaCount(any(IncreaseReplicaCountRequest.class));
+    }
+
+    @Test
+    public void shouldShortenLongAppNames() {
+        assertEquals("my-app", ElastiCacheBroker.defaultReplicationGroupId("my-app"));
+        assertEquals("a-service-with-a-very-long-name-for-prod",
+            ElastiCacheBroker.defaultReplicationGroupId("a-service-with-a-very-long-name-for-prod-east"));
+    }
+
+    private ElastiCacheBroker broker() {
+        return new ElastiCacheBroker(new SysoutLogger(), client, 60000, () -> new AdaptivePoller(0, 0, 1));
+    }
+
+    private DescribeReplicationGroupsResult groups(ReplicationGroup group) {
+        return new DescribeReplicationGroupsResult().withReplicationGroups(group);
+    }
+
+    private ReplicationGroup group(int replicas) {
+        NodeGroup nodeGroup = new NodeGroup()
+            .withNodeGroupId("0001")
+            .withPrimaryEndpoint(new Endpoint().withAddress("primary.cache.amazonaws.com").withPort(6379))
+            .withReaderEndpoint(new Endpoint().withAddress("reader.cache.amazonaws.com").withPort(6379));
+        for (int i = 0; i <= replicas; i++) {
+            nodeGroup.withNodeGroupMembers(new NodeGroupMember().withCacheClusterId("my-app-00" + i));
+        }
+        return new ReplicationGroup()
+            .withReplicationGroupId("my-app")
+            .withARN("arn:aws:elasticache:us-east-1:123:replicationgroup:my-app")
+            .withStatus("available")
+            .withCacheNodeType("cache.t3.small")
+            .withAtRestEncryptionEnabled(true)
+            .withTransitEncryptionEnabled(true)
+            .withClusterEnabled(false)
+            .withMemberClusters("my-app-001")
+            .withNodeGroups(nodeGroup);
+    }
+}
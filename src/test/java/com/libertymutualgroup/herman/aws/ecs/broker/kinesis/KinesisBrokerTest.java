@@ -0,0 +1,201 @@
+package com.libertymutualgroup.herman.aws.ecs.broker.kinesis;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.kinesis.AmazonKinesis;
+import com.amazonaws.services.kinesis.model.DeleteStreamRequest;
+import com.amazonaws.services.kinesis.model.DescribeStreamSummaryRequest;
+import com.amazonaws.services.kinesis.model.DescribeStreamSummaryResult;
+import com.amazonaws.services.kinesis.model.EncryptionType;
+import com.amazonaws.services.kinesis.model.IncreaseStreamRetentionPeriodRequest;
+import com.amazonaws.services.kinesis.model.LimitExceededException;
+import com.amazonaws.services.kinesis.model.ScalingType;
+import com.amazonaws.services.kinesis.model.StartStreamEncryptionRequest;
+import com.amazonaws.services.kinesis.model.StreamDescriptionSummary;
+import com.amazonaws.services.kinesis.model.StreamMode;
+import com.amazonaws.services.kinesis.model.StreamModeDetails;
+import com.amazonaws.services.kinesis.model.UpdateShardCountRequest;
+import com.amazonaws.services.kinesis.model.UpdateStreamModeRequest;
+import com.amazonaws.services.resourcegroupstaggingapi.AWSResourceGroupsTaggingAPI;
+import com.amazonaws.services.resourcegroupstaggingapi.model.GetResourcesRequest;
+import com.amazonaws.services.resourcegroupstaggingapi.model.GetResourcesResult;
+import com.amazonaws.services.resourcegroupstaggingapi.model.ResourceTagMapping;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.aws.ecs.EcsPushDefinition;
+import com.libertymutualgroup.herman.logging.SysoutLogger;
+import com.libertymutualgroup.herman.task.common.CommonTaskProperties;
+import com.libertymutualgroup.herman.util.AdaptivePoller;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class KinesisBrokerTest {
+
+    @Mock
+    AmazonKinesis kinesisClient;
+    @Mock
+    AWSResourceGroupsTaggingAPI taggingClient;
+
+    CommonTaskProperties taskProperties = new CommonTaskProperties().withCompany("lm");
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void shouldDeleteOwnedStreamsNoLongerDeclared() {
+        EcsPushDefinition definition = definition("stream-app", "kept-stream");
+        when(taggingClient.getResources(any(GetResourcesRequest.class))).thenReturn(new GetResourcesResult()
+            .withResourceTagMappingList(
+                new ResourceTagMapping().withResourceARN("arn:aws:kinesis:us-east-1:123:stream/kept-stream"),
+                new ResourceTagMapping().withResourceARN("arn:aws:kinesis:us-east-1:123:stream/old-stream")));
+
+        broker(definition).checkStreamsToBeDeleted();
+
+        verify(kinesisClient).deleteStream(new DeleteStreamRequest().withStreamName("old-stream"));
+        verify(kinesisClient, never()).deleteStream(new DeleteStreamRequest().withStreamName("kept-stream"));
+    }
+
+    @Test
+    public void shouldSkipDiscoveryWhenAppStillOwnsNoStreams() {
+        EcsPushDefinition definition = definition("streamless-app", null);
+        when(taggingClient.getResources(any(GetResourcesRequest.class))).thenReturn(new GetResourcesResult());
+
+        broker(definition).checkStreamsToBeDeleted();
+        broker(definition).checkStreamsToBeDeleted();
+
+        verify(taggingClient, times(1)).getResources(any(GetResourcesRequest.class));
+    }
+
+    @Test
+    public void shouldRediscoverOwnedStreamsOnceTheCheckExpires() {
+        EcsPushDefinition definition = definition("expiring-app", null);
+        when(taggingClient.getResources(any(GetResourcesRequest.class))).thenReturn(new GetResourcesResult());
+
+        expiringBroker(definition).checkStreamsToBeDeleted();
+        expiringBroker(definition).checkStreamsToBeDeleted();
+
+        verify(taggingClient, times(2)).getResources(any(GetResourcesRequest.class));
+    }
+
+    @Test
+    public void shouldStepShardCountWithinUpdateShardCountLimits() {
+        assertEquals(4, KinesisBroker.nextShardCount(2, 5));
+        assertEquals(5, KinesisBroker.nextShardCount(4, 5));
+        assertEquals(4, KinesisBroker.nextShardCount(8, 3));
+        assertEquals(2, KinesisBroker.nextShardCount(3, 1));
+    }
+
+    @Test
+    public void shouldOnlyReshardExistingStreamWithMatchingSettings() {
+        EcsPushDefinition definition = definition("reshard-app", "events");
+        definition.getStreams().get(0).setShardCount(5);
+        when(kinesisClient.describeStreamSummary(any(DescribeStreamSummaryRequest.class)))
+            .thenReturn(new DescribeStreamSummaryResult().withStreamDescriptionSummary(new StreamDescriptionSummary()
+                .withStreamName("events")
+                .withStreamStatus("ACTIVE")
+                .withStreamModeDetails(new StreamModeDetails().withStreamMode(StreamMode.PROVISIONED))
+                .withOpenShardCount(2)
+                .withRetentionPeriodHours(24)
+                .withEncryptionType(EncryptionType.KMS)
+                .withKeyId("alias/aws/kinesis")));
+
+        new KinesisBroker(new SysoutLogger(), kinesisClient, taggingClient, definition, taskProperties, "123",
+            Regions.US_EAST_1, () -> new AdaptivePoller(0, 0, 1)).brokerStream(definition.getStreams().get(0)).join();
+
+        verify(kinesisClient).updateShardCount(new UpdateShardCountRequest().withStreamName("events")
+            .withTargetShardCount(4).withScalingType(ScalingType.UNIFORM_SCALING));
+        verify(kinesisClient).updateShardCount(new UpdateShardCountRequest().withStreamName("events")
+            .withTargetShardCount(5).withScalingType(ScalingType.UNIFORM_SCALING));
+        verify(kinesisClient, never()).startStreamEncryption(any(StartStreamEncryptionRequest.class));
+        verify(kinesisClient, never()).updateStreamMode(any(UpdateStreamModeRequest.class));
+    }
+
+    @Test
+    public void shouldSurfaceReshardingFailuresWhenAwaited() {
+        EcsPushDefinition definition = definition("reshard-app", "events");
+        definition.getStreams().get(0).setShardCount(4);
+        when(kinesisClient.describeStreamSummary(any(DescribeStreamSummaryRequest.class)))
+            .thenReturn(new DescribeStreamSummaryResult().withStreamDescriptionSummary(new StreamDescriptionSummary()
+                .withStreamName("events")
+                .withStreamStatus("ACTIVE")
+                .withStreamModeDetails(new StreamModeDetails().withStreamMode(StreamMode.PROVISIONED))
+                .withOpenShardCount(2)
+                .withRetentionPeriodHours(24)
+                .withEncryptionType(EncryptionType.KMS)
+                .withKeyId("alias/aws/kinesis")));
+        when(kinesisClient.updateShardCount(any(UpdateShardCountRequest.class)))
+            .thenThrow(new LimitExceededException("Shard limit reached"));
+
+        CompletableFuture<Void> resharding = new KinesisBroker(new SysoutLogger(), kinesisClient, taggingClient,
+            definition, taskProperties, "123", Regions.US_EAST_1, () -> new AdaptivePoller(0, 0, 1))
+            .brokerStream(definition.getStreams().get(0));
+
+        try {
+            KinesisBroker.awaitResharding(Collections.singletonList(resharding), new SysoutLogger());
+        } catch (AwsExecException e) {
+            assertTrue(e.getMessage().contains("Stream events could not be resharded from 2 to 4 shards"));
+            return;
+        }
+        throw new AssertionError("Expected the resharding failure to be surfaced");
+    }
+
+    @Test
+    public void shouldFailWhenSettingsChangeIsDenied() {
+        EcsPushDefinition definition = definition("settings-app", "events");
+        definition.getStreams().get(0).setRetentionPeriodHours(48);
+        when(kinesisClient.describeStreamSummary(any(DescribeStreamSummaryRequest.class)))
+            .thenReturn(new DescribeStreamSummaryResult().withStreamDescriptionSummary(new StreamDescriptionSummary()
+                .withStreamName("events")
+                .withStreamStatus("ACTIVE")
+                .withStreamModeDetails(new StreamModeDetails().withStreamMode(StreamMode.PROVISIONED))
+                .withOpenShardCount(2)
+                .withRetentionPeriodHours(24)
+                .withEncryptionType(EncryptionType.KMS)
+                .withKeyId("alias/aws/kinesis")));
+        when(kinesisClient.increaseStreamRetentionPeriod(any(IncreaseStreamRetentionPeriodRequest.class)))
+            .thenThrow(new AmazonServiceException("Access denied"));
+
+        try {
+            broker(definition).brokerStream(definition.getStreams().get(0));
+        } catch (AwsExecException e) {
+            assertEquals("Failed to update settings of Stream events", e.getMessage());
+            return;
+        }
+        throw new AssertionError("Expected the settings failure to fail the push");
+    }
+
+    private KinesisBroker broker(EcsPushDefinition definition) {
+        return new KinesisBroker(new SysoutLogger(), kinesisClient, taggingClient, definition, taskProperties, "123",
+            Regions.US_EAST_1);
+    }
+
+    private KinesisBroker expiringBroker(EcsPushDefinition definition) {
+        return new KinesisBroker(new SysoutLogger(), kinesisClient, taggingClient, definition, taskProperties, "123",
+            Regions.US_EAST_1, () -> new AdaptivePoller(0, 0, 1), 0);
+    }
+
+    private EcsPushDefinition definition(String appName, String streamName) {
+        EcsPushDefinition definition = new EcsPushDefinition();
+        definition.setAppName(appName);
+        if (streamName != null) {
+            KinesisStream stream = new KinesisStream();
+            stream.setName(streamName);
+            definition.setStreams(Collections.singletonList(stream));
+        }
+        return definition;
+    }
+}
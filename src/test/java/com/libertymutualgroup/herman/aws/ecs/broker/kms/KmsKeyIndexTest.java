@@ -0,0 +1,78 @@
+package com.libertymutualgroup.herman.aws.ecs.broker.kms;
+
+import com.amazonaws.services.resourcegroupstaggingapi.AWSResourceGroupsTaggingAPI;
+import com.amazonaws.services.resourcegroupstaggingapi.model.GetResourcesRequest;
+import com.amazonaws.services.resourcegroupstaggingapi.model.GetResourcesResult;
+import com.amazonaws.services.resourcegroupstaggingapi.model.ResourceTagMapping;
+import com.amazonaws.services.resourcegroupstaggingapi.model.Tag;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class KmsKeyIndexTest {
+
+    @Mock
+    AWSResourceGroupsTaggingAPI taggingClient;
+
+    KmsKeyIndex index;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        index = new KmsKeyIndex(taggingClient, "App");
+    }
+
+    @Test
+    public void shouldIndexKeysByAppTagAcrossPages() {
+        when(taggingClient.getResources(any(GetResourcesRequest.class)))
+            .thenReturn(new GetResourcesResult()
+                .withResourceTagMappingList(mapping("arn:key/1", "my-app"), mapping("arn:key/2", "other-app"))
+                .withPaginationToken("next"))
+            .thenReturn(new GetResourcesResult()
+                .withResourceTagMappingList(mapping("arn:key/3", "my-app"))
+                .withPaginationToken(""));
+
+        assertEquals(Arrays.asList("arn:key/1", "arn:key/3"), index.findKeyArns("my-app"));
+        assertEquals(Arrays.asList("arn:key/2"), index.findKeyArns("other-app"));
+        assertTrue(index.findKeyArns("missing-app").isEmpty());
+        verify(taggingClient, times(2)).getResources(any(GetResourcesRequest.class));
+    }
+
+    @Test
+    public void shouldIncludeKeysRecordedDuringTheSession() {
+        when(taggingClient.getResources(any(GetResourcesRequest.class))).thenReturn(new GetResourcesResult());
+
+        index.record("my-app", "arn:key/new");
+
+        assertEquals(Arrays.asList("arn:key/new"), index.findKeyArns("my-app"));
+        verify(taggingClient, times(1)).getResources(any(GetResourcesRequest.class));
+    }
+
+    @Test
+    public void shouldReloadIndexOnceItExpires() {
+        KmsKeyIndex expiringIndex = new KmsKeyIndex(taggingClient, "App", -1);
+        when(taggingClient.getResources(any(GetResourcesRequest.class)))
+            .thenReturn(new GetResourcesResult().withResourceTagMappingList(mapping("arn:key/1", "my-app")))
+            .thenReturn(new GetResourcesResult().withResourceTagMappingList(mapping("arn:key/2", "my-app")));
+
+        assertEquals(Arrays.asList("arn:key/1"), expiringIndex.findKeyArns("my-app"));
+        assertEquals(Arrays.asList("arn:key/2"), expiringIndex.findKeyArns("my-app"));
+        verify(taggingClient, times(2)).getResources(any(GetResourcesRequest.class));
+    }
+
+    private ResourceTagMapping mapping(String arn, String app) {
+        return new ResourceTagMapping()
+            .withResourceARN(arn)
+            .withTags(new Tag().withKey("Name").withValue(arn), new Tag().withKey("App").withValue(app));
+    }
+}
@@ -0,0 +1,194 @@
+package com.libertymutualgroup.herman.aws.ecs.broker.s3;
+
+import com.amazonaws.services.kms.AWSKMS;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.BucketLifecycleConfiguration.Rule;
+import com.amazonaws.services.s3.model.BucketLifecycleConfiguration.Transition;
+import com.amazonaws.services.s3.model.BucketLifecycleConfiguration;
+import com.amazonaws.services.s3.model.BucketLoggingConfiguration;
+import com.amazonaws.services.s3.model.BucketPolicy;
+import com.amazonaws.services.s3.model.BucketTaggingConfiguration;
+import com.amazonaws.services.s3.model.BucketWebsiteConfiguration;
+import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.GetBucketEncryptionResult;
+import com.amazonaws.services.s3.model.HeadBucketRequest;
+import com.amazonaws.services.s3.model.HeadBucketResult;
+import com.amazonaws.services.s3.model.ListBucketIntelligentTieringConfigurationsRequest;
+import com.amazonaws.services.s3.model.ListBucketIntelligentTieringConfigurationsResult;
+import com.amazonaws.services.s3.model.SSEAlgorithm;
+import com.amazonaws.services.s3.model.ServerSideEncryptionByDefault;
+import com.amazonaws.services.s3.model.ServerSideEncryptionConfiguration;
+import com.amazonaws.services.s3.model.ServerSideEncryptionRule;
+import com.amazonaws.services.s3.model.SetBucketEncryptionRequest;
+import com.amazonaws.services.s3.model.SetBucketLoggingConfigurationRequest;
+import com.amazonaws.services.s3.model.SetBucketPolicyRequest;
+import com.amazonaws.services.s3.model.StorageClass;
+import com.amazonaws.services.s3.model.TagSet;
+import com.amazonaws.services.s3.model.intelligenttiering.IntelligentTieringConfiguration;
+import com.amazonaws.services.s3.model.lifecycle.LifecycleFilter;
+import com.amazonaws.services.s3.model.lifecycle.LifecyclePrefixPredicate;
+import com.libertymutualgroup.herman.aws.ecs.EcsPushDefinition;
+import com.libertymutualgroup.herman.aws.ecs.PropertyHandler;
+import com.libertymutualgroup.herman.aws.ecs.cluster.EcsClusterMetadata;
+import com.libertymutualgroup.herman.logging.SysoutLogger;
+import com.libertymutualgroup.herman.task.s3.S3CreateTaskProperties;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class S3BrokerTest {
+
+    private static final String BUCKET_NAME = "my-bucket-dev";
+    private static final String POLICY = "{\"Version\":\"2012-10-17\",\"Statement\":[]}";
+
+    private AmazonS3 s3Client;
+    private S3Broker broker;
+    private EcsClusterMetadata clusterMetadata;
+    private EcsPushDefinition definition;
+
+    @Before
+    public void setup() {
+        s3Client = mock(AmazonS3.class);
+        PropertyHandler handler = mock(PropertyHandler.class);
+        when(handler.mapInProperties(anyString())).thenReturn(POLICY);
+        broker = new S3Broker(new S3CreateContext()
+            .withLogger(new SysoutLogger())
+            .withPropertyHandler(handler)
+            .withTaskProperties(new S3CreateTaskProperties()
+                .withS3(new S3BrokerProperties().withDefaultEncryption(S3EncryptionOption.AES256))
+                .withCompany("lm")));
+
+        clusterMetadata = new EcsClusterMetadata();
+        clusterMetadata.setNewrelicSbuTag("sbu");
+        clusterMetadata.setNewrelicOrgTag("org");
+        clusterMetadata.setClusterId("cluster");
+        definition = new EcsPushDefinition();
+        definition.setAppName("my-app-dev");
+
+        when(s3Client.doesBucketExistV2(BUCKET_NAME)).thenReturn(true);
+        when(s3Client.headBucket(any(HeadBucketRequest.class))).thenReturn(new HeadBucketResult());
+        BucketPolicy policy = new BucketPolicy();
+        policy.setPolicyText("{ \"Version\" : \"2012-10-17\", \"Statement\" : [ ] }");
+        when(s3Client.getBucketPolicy(BUCKET_NAME)).thenReturn(policy);
+        when(s3Client.getBucketEncryption(BUCKET_NAME)).thenReturn(new GetBucketEncryptionResult()
+            .withServerSideEncryptionConfiguration(new ServerSideEncryptionConfiguration()
+                .withRules(new ServerSideEncryptionRule().withApplyServerSideEncryptionByDefault(
+                    new ServerSideEncryptionByDefault().withSSEAlgorithm(SSEAlgorithm.AES256)))));
+        Map<String, String> tags = new HashMap<>();
+        tags.put("lm_sbu", "sbu");
+        tags.put("lm_org", "org");
+        tags.put("lm_app", "my-app-dev");
+        tags.put("lm_cluster", "cluster");
+        when(s3Client.getBucketTaggingConfiguration(BUCKET_NAME))
+            .thenReturn(new BucketTaggingConfiguration().withTagSets(new TagSet(tags)));
+        when(s3Client.getBucketLoggingConfiguration(BUCKET_NAME)).thenReturn(new BucketLoggingConfiguration());
+        when(s3Client.getBucketLifecycleConfiguration(BUCKET_NAME)).thenReturn(new BucketLifecycleConfiguration(
+            Collections.singletonList(new Rule()
+                .withId("logs")
+                .withFilter(new LifecycleFilter(new LifecyclePrefixPredicate("logs/")))
+                .withStatus(BucketLifecycleConfiguration.ENABLED)
+                .withTransitions(Collections.singletonList(
+                    new Transition().withDays(30).withStorageClass(StorageClass.IntelligentTiering)))
+                .withExpirationInDays(365))));
+        when(s3Client.listBucketIntelligentTieringConfigurations(any(ListBucketIntelligentTieringConfigurationsRequest.class)))
+            .thenReturn(new ListBucketIntelligentTieringConfigurationsResult().withIntelligentTieringConfigurationList(
+                Collections.singletonList(S3Broker.toIntelligentTieringConfiguration(archiveTiering()))));
+    }
+
+    @Test
+    public void shouldNotRewriteUnchangedBucket() {
+        broker.brokerBucketFromEcsPush(s3Client, mock(AWSKMS.class), bucket(), POLICY, null, clusterMetadata,
+            definition);
+
+        verify(s3Client, never()).setBucketPolicy(any(SetBucketPolicyRequest.class));
+        verify(s3Client, never()).setBucketEncryption(any(SetBucketEncryptionRequest.class));
+        verify(s3Client, never()).setBucketTaggingConfiguration(anyString(), any(BucketTaggingConfiguration.class));
+        verify(s3Client, never()).setBucketLoggingConfiguration(any(SetBucketLoggingConfigurationRequest.class));
+        verify(s3Client, never()).setBucketLifecycleConfiguration(anyString(), any(BucketLifecycleConfiguration.class));
+        verify(s3Client, never())
+            .setBucketIntelligentTieringConfiguration(anyString(), any(IntelligentTieringConfiguration.class));
+        verify(s3Client, never()).deleteBucketIntelligentTieringConfiguration(anyString(), anyString());
+    }
+
+    @Test
+    public void shouldApplyOnlyChangedSettings() {
+        S3Bucket bucket = bucket();
+        bucket.getLifecycleRules().get(0).setExpirationDays(90);
+        bucket.setIntelligentTiering(Collections.emptyList());
+
+        broker.brokerBucketFromEcsPush(s3Client, mock(AWSKMS.class), bucket, POLICY, null, clusterMetadata,
+            definition);
+
+        verify(s3Client).setBucketLifecycleConfiguration(anyString(), any(BucketLifecycleConfiguration.class));
+        verify(s3Client).deleteBucketIntelligentTieringConfiguration(BUCKET_NAME, "archive");
+        verify(s3Client, never()).setBucketPolicy(any(SetBucketPolicyRequest.class));
+        verify(s3Client, never()).setBucketEncryption(any(SetBucketEncryptionRequest.class));
+    }
+
+    @Test
+    public void shouldMatchKmsKeyByIdOrArn() {
+        String keyArn = "arn:aws:kms:us-east-1:111111:key/1234-abcd";
+        ServerSideEncryptionByDefault byId = new ServerSideEncryptionByDefault()
+            .withSSEAlgorithm(SSEAlgorithm.KMS).withKMSMasterKeyID("1234-abcd");
+        ServerSideEncryptionByDefault otherKey = new ServerSideEncryptionByDefault()
+            .withSSEAlgorithm(SSEAlgorithm.KMS).withKMSMasterKeyID("9999-ffff");
+
+        assertTrue(S3Broker.isSameEncryption(S3EncryptionOption.KMS, keyArn, byId));
+        assertFalse(S3Broker.isSameEncryption(S3EncryptionOption.KMS, keyArn, otherKey));
+        assertFalse(S3Broker.isSameEncryption(S3EncryptionOption.NONE, null, otherKey));
+        assertTrue(S3Broker.isSameEncryption(S3EncryptionOption.NONE, null, null));
+    }
+
+    @Test
+    public void shouldSetWebsiteAclEvenWhenWebsiteIsUnchanged() {
+        when(s3Client.getBucketWebsiteConfiguration(BUCKET_NAME))
+            .thenReturn(new BucketWebsiteConfiguration("index.html", "error.html"));
+        S3InjectConfiguration configuration = new S3InjectConfiguration()
+            .withAppName(BUCKET_NAME)
+            .withWebsite(true)
+            .withIndexFile("index.html")
+            .withErrorFile("error.html")
+            .withEncryptionOption(S3EncryptionOption.AES256);
+
+        broker.brokerBucket(s3Client, configuration, null, POLICY);
+
+        verify(s3Client).setBucketAcl(BUCKET_NAME, CannedAccessControlList.PublicRead);
+        verify(s3Client, never()).setBucketWebsiteConfiguration(anyString(), any(BucketWebsiteConfiguration.class));
+    }
+
+    private S3Bucket bucket() {
+        S3LifecycleTransition transition = new S3LifecycleTransition();
+        transition.setDays(30);
+        transition.setStorageClass("INTELLIGENT_TIERING");
+        S3LifecycleRule rule = new S3LifecycleRule();
+        rule.setId("logs");
+        rule.setPrefix("logs/");
+        rule.setTransitions(Collections.singletonList(transition));
+        rule.setExpirationDays(365);
+
+        return new S3Bucket()
+            .withName(BUCKET_NAME)
+            .withPolicyName("bucket-policy.json")
+            .withLifecycleRules(Collections.singletonList(rule))
+            .withIntelligentTiering(Collections.singletonList(archiveTiering()));
+    }
+
+    private S3IntelligentTiering archiveTiering() {
+        S3IntelligentTiering tiering = new S3IntelligentTiering();
+        tiering.setId("archive");
+        tiering.setArchiveAccessDays(90);
+        return tiering;
+    }
+}
@@ -4,18 +4,30 @@ import com.amazonaws.services.sns.AmazonSNS;
 import com.amazonaws.services.sns.model.CreateTopicRequest;
 import com.amazonaws.services.sns.model.CreateTopicResult;
 import com.amazonaws.services.sns.model.GetTopicAttributesResult;
+import com.amazonaws.services.sns.model.ListSubscriptionsByTopicRequest;
+import com.amazonaws.services.sns.model.ListSubscriptionsByTopicResult;
 import com.amazonaws.services.sns.model.SetTopicAttributesRequest;
+import com.amazonaws.services.sns.model.SubscribeRequest;
+import com.amazonaws.services.sns.model.Subscription;
+import com.amazonaws.services.sns.model.UnsubscribeRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.libertymutualgroup.herman.aws.ecs.PropertyHandler;
 import com.libertymutualgroup.herman.logging.HermanLogger;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -57,7 +69,64 @@ public class SnsBrokerTest {
         result.setAttributes(attributesMap);
         when(client.getTopicAttributes(topicArn)).thenReturn(result);
         snsBroker.brokerTopic(client, snsTopic, null);
-        verify(client, times(12)).setTopicAttributes(any(SetTopicAttributesRequest.class));
+        // only the two feedback role ARNs differ from the defaults
+        verify(client, times(2)).setTopicAttributes(any(SetTopicAttributesRequest.class));
+    }
+
+    @Test
+    public void shouldReconcileSubscriptionsAcrossPages() {
+        CreateTopicResult createTopicResult = new CreateTopicResult();
+        createTopicResult.setTopicArn(topicArn);
+        when(client.createTopic((any(CreateTopicRequest.class)))).thenReturn(createTopicResult);
+        when(client.getTopicAttributes(topicArn))
+            .thenReturn(new GetTopicAttributesResult().withAttributes(new HashMap<>()));
+        when(client.listSubscriptionsByTopic(any(ListSubscriptionsByTopicRequest.class)))
+            .thenReturn(new ListSubscriptionsByTopicResult().withNextToken("page-2").withSubscriptions(
+                new Subscription().withProtocol("sqs").withEndpoint("arn:aws:sqs:us-east-1:111111:kept")
+                    .withSubscriptionArn(topicArn + ":1")))
+            .thenReturn(new ListSubscriptionsByTopicResult().withSubscriptions(
+                new Subscription().withProtocol("sqs").withEndpoint("arn:aws:sqs:us-east-1:111111:stale")
+                    .withSubscriptionArn(topicArn + ":2")));
+
+        SnsTopic snsTopic = new SnsTopic();
+        snsTopic.setAutoRemoveSubscriptions(true);
+        snsTopic.setSubscriptions(Arrays.asList(
+            subscription("arn:aws:sqs:us-east-1:111111:kept"),
+            subscription("arn:aws:sqs:us-east-1:111111:added")));
+        snsBroker.brokerTopic(client, snsTopic, null);
+
+        verify(client, times(2)).listSubscriptionsByTopic(any(ListSubscriptionsByTopicRequest.class));
+        ArgumentCaptor<SubscribeRequest> subscribe = ArgumentCaptor.forClass(SubscribeRequest.class);
+        verify(client, times(1)).subscribe(subscribe.capture());
+        assertEquals("arn:aws:sqs:us-east-1:111111:added", subscribe.getValue().getEndpoint());
+        verify(client, times(1)).unsubscribe(new UnsubscribeRequest(topicArn + ":2"));
+        verify(client, never()).getSubscriptionAttributes(anyString());
+    }
+
+    @Test
+    public void shouldOnlyUpdateChangedSubscriptionAttributes() {
+        SnsSubscription subscription = subscription("arn:aws:sqs:us-east-1:111111:queue");
+        subscription.setRawMessageDelivery(true);
+        subscription.setFilterPolicy(new ObjectMapper().createObjectNode()
+            .set("event", new ObjectMapper().createArrayNode().add("created")));
+
+        Map<String, String> current = new HashMap<>();
+        current.put(SnsBroker.RAW_MESSAGE_DELIVERY, "true");
+        current.put(SnsBroker.FILTER_POLICY, "{ \"event\" : [ \"created\" ] }");
+        assertTrue(SnsBroker.diffSubscriptionAttributes(subscription.toAttributes(), current).isEmpty());
+
+        current.put(SnsBroker.RAW_MESSAGE_DELIVERY, "false");
+        current.remove(SnsBroker.FILTER_POLICY);
+        Map<String, String> changes = SnsBroker.diffSubscriptionAttributes(subscription.toAttributes(), current);
+        assertEquals("true", changes.get(SnsBroker.RAW_MESSAGE_DELIVERY));
+        assertEquals("{\"event\":[\"created\"]}", changes.get(SnsBroker.FILTER_POLICY));
+    }
+
+    private SnsSubscription subscription(String endpoint) {
+        SnsSubscription subscription = new SnsSubscription();
+        subscription.setProtocol("sqs");
+        subscription.setEndpoint(endpoint);
+        return subscription;
     }
 
     private Map<String, String> getPossibleDeliveryAttributeNameValueMap() {
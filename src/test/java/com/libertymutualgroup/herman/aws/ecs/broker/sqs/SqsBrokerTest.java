@@ -0,0 +1,96 @@
+package com.libertymutualgroup.herman.aws.ecs.broker.sqs;
+
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.CreateQueueRequest;
+import com.amazonaws.services.sqs.model.CreateQueueResult;
+import com.amazonaws.services.sqs.model.GetQueueAttributesRequest;
+import com.amazonaws.services.sqs.model.GetQueueAttributesResult;
+import com.amazonaws.services.sqs.model.GetQueueUrlResult;
+import com.amazonaws.services.sqs.model.ListQueueTagsResult;
+import com.amazonaws.services.sqs.model.QueueDoesNotExistException;
+import com.libertymutualgroup.herman.aws.ecs.PropertyHandler;
+import com.libertymutualgroup.herman.aws.tags.HermanTag;
+import com.libertymutualgroup.herman.logging.SysoutLogger;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SqsBrokerTest {
+
+    private AmazonSQS client = mock(AmazonSQS.class);
+    private SqsBroker broker = new SqsBroker(new SysoutLogger(), mock(PropertyHandler.class));
+
+    @Test
+    public void shouldOnlyDiffChangedAttributes() {
+        Map<String, String> desired = new HashMap<>();
+        desired.put("VisibilityTimeout", "30");
+        desired.put("ReceiveMessageWaitTimeSeconds", "20");
+        desired.put("FifoQueue", "true");
+        desired.put("RedrivePolicy", "{\"maxReceiveCount\": 5, \"deadLetterTargetArn\": \"arn:dlq\"}");
+        Map<String, String> current = new HashMap<>();
+        current.put("VisibilityTimeout", "30");
+        current.put("ReceiveMessageWaitTimeSeconds", "0");
+        current.put("RedrivePolicy", "{\"deadLetterTargetArn\":\"arn:dlq\",\"maxReceiveCount\":5}");
+
+        Map<String, String> changes = SqsBroker.diffAttributes(desired, current);
+
+        assertEquals(Collections.singletonMap("ReceiveMessageWaitTimeSeconds", "20"), changes);
+    }
+
+    @Test
+    public void shouldLeaveUnchangedQueueAlone() {
+        SqsQueue queue = new SqsQueue();
+        queue.setName("my-queue");
+        when(client.getQueueUrl("my-queue")).thenReturn(new GetQueueUrlResult().withQueueUrl("https://sqs/my-queue"));
+        Map<String, String> current = new HashMap<>();
+        current.put("ReceiveMessageWaitTimeSeconds", "20");
+        current.put("KmsMasterKeyId", "alias/aws/sqs");
+        when(client.getQueueAttributes(any(GetQueueAttributesRequest.class)))
+            .thenReturn(new GetQueueAttributesResult().withAttributes(current));
+        when(client.listQueueTags(anyString()))
+            .thenReturn(new ListQueueTagsResult().withTags(Collections.singletonMap("team", "herman")));
+
+        broker.brokerQueues(client, Arrays.asList(queue), q -> null, Arrays.asList(new HermanTag("team", "herman")));
+
+        verify(client, never()).setQueueAttributes(anyString(), anyMapOf(String.class, String.class));
+        verify(client, never()).tagQueue(anyString(), anyMapOf(String.class, String.class));
+    }
+
+    @Test
+    public void shouldCreateDlqBeforeSourceQueue() {
+        SqsQueue queue = new SqsQueue();
+        queue.setName("my-queue.fifo");
+        queue.setFifoQueue("true");
+        queue.setHighThroughputFifo(true);
+        queue.setRedrivePolicy(new RedrivePolicy());
+        when(client.getQueueUrl(anyString())).thenThrow(new QueueDoesNotExistException("missing"));
+        when(client.createQueue(any(CreateQueueRequest.class))).thenReturn(new CreateQueueResult().withQueueUrl("https://sqs/q"));
+        when(client.getQueueAttributes(any(GetQueueAttributesRequest.class)))
+            .thenReturn(new GetQueueAttributesResult().withAttributes(Collections.singletonMap("QueueArn", "arn:dlq")));
+
+        broker.brokerQueue(client, queue, null, null);
+
+        ArgumentCaptor<CreateQueueRequest> requests = ArgumentCaptor.forClass(CreateQueueRequest.class);
+        verify(client, times(2)).createQueue(requests.capture());
+        assertEquals("my-queue-dlq.fifo", requests.getAllValues().get(0).getQueueName());
+        CreateQueueRequest source = requests.getAllValues().get(1);
+        assertEquals("my-queue.fifo", source.getQueueName());
+        assertEquals("perMessageGroupId", source.getAttributes().get("FifoThroughputLimit"));
+        assertTrue(source.getAttributes().get("RedrivePolicy").contains("arn:dlq"));
+    }
+}
@@ -0,0 +1,170 @@
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+import com.amazonaws.services.ecs.model.Attribute;
+import com.amazonaws.services.ecs.model.ContainerDefinition;
+import com.amazonaws.services.ecs.model.ContainerInstance;
+import com.amazonaws.services.ecs.model.DeploymentConfiguration;
+import com.amazonaws.services.ecs.model.PortMapping;
+import com.amazonaws.services.ecs.model.Resource;
+import com.amazonaws.services.ecs.model.TaskDefinition;
+import com.amazonaws.services.ecs.model.TaskDefinitionPlacementConstraint;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.aws.asg.AutoscalingGroupHandler;
+import com.libertymutualgroup.herman.aws.ecs.service.CapacityCheckMode;
+import com.libertymutualgroup.herman.logging.SysoutLogger;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ClusterCapacityPlannerTest {
+
+    private static final TaskDefinitionPlacementConstraint NOT_PRE_DRAIN = new TaskDefinitionPlacementConstraint()
+        .withType("memberOf")
+        .withExpression("attribute:state !exists or attribute:state != pre-drain");
+
+    @Mock
+    ContainerInstanceHandler containerInstanceHandler;
+    @Mock
+    AutoscalingGroupHandler asgHandler;
+
+    ClusterCapacityPlanner planner;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        planner = new ClusterCapacityPlanner(containerInstanceHandler, asgHandler, new SysoutLogger());
+    }
+
+    @Test
+    public void shouldRequireAddedTasksAndOneSlotWhenNoOldTaskCanStop() {
+        DeploymentConfiguration rolling = new DeploymentConfiguration().withMaximumPercent(200).withMinimumHealthyPercent(100);
+        assertEquals(1, ClusterCapacityPlanner.requiredTasks(4, 4, rolling));
+        assertEquals(2, ClusterCapacityPlanner.requiredTasks(6, 4, rolling));
+        assertEquals(4, ClusterCapacityPlanner.requiredTasks(4, 0, rolling));
+
+        DeploymentConfiguration halfDown = new DeploymentConfiguration().withMaximumPercent(100).withMinimumHealthyPercent(50);
+        assertEquals(0, ClusterCapacityPlanner.requiredTasks(4, 4, halfDown));
+
+        DeploymentConfiguration mixed = new DeploymentConfiguration().withMaximumPercent(150).withMinimumHealthyPercent(75);
+        assertEquals(0, ClusterCapacityPlanner.requiredTasks(4, 4, mixed));
+    }
+
+    @Test
+    public void shouldExcludePreDrainInstances() {
+        ContainerInstance active = instance("a", 1024, 2048);
+        ContainerInstance preDrain = instance("b", 1024, 2048).withAttributes(new Attribute().withName("state").withValue("pre-drain"));
+        List<TaskDefinitionPlacementConstraint> constraints = Collections.singletonList(NOT_PRE_DRAIN);
+
+        assertTrue(ClusterCapacityPlanner.satisfies(active, constraints));
+        assertFalse(ClusterCapacityPlanner.satisfies(preDrain, constraints));
+    }
+
+    @Test
+    public void shouldCountSlotsOnEligibleInstances() {
+        when(containerInstanceHandler.getContainerInstances("cluster")).thenReturn(Arrays.asList(
+            instance("a", 1024, 2048),
+            instance("b", 512, 4096),
+            instance("c", 4096, 8192).withAttributes(new Attribute().withName("state").withValue("pre-drain"))));
+
+        ClusterCapacityPlanner.CapacityPlan plan = planner.plan("cluster", taskDefinition(256, 512, null), 6);
+
+        assertEquals(4 + 2, plan.getAvailableSlots());
+        assertEquals(1, plan.getExcludedInstances());
+        assertTrue(plan.fits());
+    }
+
+    @Test
+    public void shouldPlaceStaticHostPortTasksOncePerInstance() {
+        ContainerInstance portInUse = instance("a", 4096, 8192);
+        portInUse.getRemainingResources().add(new Resource().withName("PORTS").withStringSetValue("22", "8080"));
+        when(containerInstanceHandler.getContainerInstances("cluster")).thenReturn(Arrays.asList(
+            instance("b", 4096, 8192), portInUse));
+
+        ClusterCapacityPlanner.CapacityPlan plan = planner.plan("cluster", taskDefinition(256, 512, 8080), 2);
+
+        assertEquals(1, plan.getAvailableSlots());
+        assertFalse(plan.fits());
+    }
+
+    @Test
+    public void shouldFailFastWhenRolloutDoesNotFit() {
+        when(containerInstanceHandler.getContainerInstances("cluster")).thenReturn(Arrays.asList(instance("a", 512, 1024)));
+
+        try {
+            planner.ensureCapacity("cluster", taskDefinition(256, 512, null), 4, 0, null, CapacityCheckMode.FAIL, 0);
+            fail("Expected the capacity check to fail");
+        } catch (AwsExecException e) {
+            assertTrue(e.getMessage().contains("4 tasks to place"));
+            assertTrue(e.getMessage().contains("2 slots free"));
+        }
+    }
+
+    @Test
+    public void shouldReadTaskSizesWithUnitsAndFallBackToContainersWhenUnreadable() {
+        when(containerInstanceHandler.getContainerInstances("cluster")).thenReturn(Arrays.asList(instance("a", 4096, 8192)));
+
+        TaskDefinition withUnits = taskDefinition(256, 512, null).withCpu("1 vCPU").withMemory("2 GB");
+        assertEquals(4, planner.plan("cluster", withUnits, 1).getAvailableSlots());
+
+        TaskDefinition unreadable = taskDefinition(256, 512, null).withCpu("lots").withMemory("512");
+        assertEquals(16, planner.plan("cluster", unreadable, 1).getAvailableSlots());
+    }
+
+    @Test
+    public void shouldNotScaleOutWhenInstancesSpanSeveralAutoscalingGroups() {
+        List<ContainerInstance> instances = Arrays.asList(instance("a", 256, 512).withEc2InstanceId("i-a"),
+            instance("b", 256, 512).withEc2InstanceId("i-b"));
+        when(containerInstanceHandler.getContainerInstances("cluster")).thenReturn(instances);
+        Map<String, String> asgNames = new HashMap<>();
+        asgNames.put("i-a", "cluster-instances-1-asg");
+        asgNames.put("i-b", "cluster-instances-2-asg");
+        when(containerInstanceHandler.getContainerInstanceTagValues(instances, "aws:autoscaling:groupName")).thenReturn(asgNames);
+
+        try {
+            planner.ensureCapacity("cluster", taskDefinition(256, 512, null), 4, 0, null, CapacityCheckMode.SCALE_OUT, 0);
+            fail("Expected the scale out to be refused");
+        } catch (AwsExecException e) {
+            assertTrue(e.getMessage().contains("cluster-instances-1-asg, cluster-instances-2-asg"));
+        }
+        verify(asgHandler, never()).setDesiredCapacity(anyString(), anyInt());
+    }
+
+    private ContainerInstance instance(String arn, int remainingCpu, int remainingMemory) {
+        return new ContainerInstance()
+            .withContainerInstanceArn(arn)
+            .withStatus("ACTIVE")
+            .withAgentConnected(true)
+            .withRegisteredResources(new Resource().withName("CPU").withIntegerValue(4096),
+                new Resource().withName("MEMORY").withIntegerValue(8192))
+            .withRemainingResources(new Resource().withName("CPU").withIntegerValue(remainingCpu),
+                new Resource().withName("MEMORY").withIntegerValue(remainingMemory));
+    }
+
+    private TaskDefinition taskDefinition(int cpu, int memory, Integer hostPort) {
+        ContainerDefinition container = new ContainerDefinition().withCpu(cpu).withMemoryReservation(memory);
+        if (hostPort != null) {
+            container.withPortMappings(new PortMapping().withContainerPort(8080).withHostPort(hostPort));
+        }
+        return new TaskDefinition()
+            .withNetworkMode("bridge")
+            .withContainerDefinitions(container)
+            .withPlacementConstraints(NOT_PRE_DRAIN);
+    }
+}
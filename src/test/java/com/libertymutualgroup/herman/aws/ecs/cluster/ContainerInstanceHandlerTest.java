@@ -0,0 +1,117 @@
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ecs.AmazonECS;
+import com.amazonaws.services.ecs.model.ContainerInstance;
+import com.amazonaws.services.ecs.model.DescribeContainerInstancesRequest;
+import com.amazonaws.services.ecs.model.DescribeContainerInstancesResult;
+import com.amazonaws.services.ecs.model.ListContainerInstancesRequest;
+import com.amazonaws.services.ecs.model.ListContainerInstancesResult;
+import com.amazonaws.services.ecs.model.PutAttributesRequest;
+import com.amazonaws.services.ecs.model.PutAttributesResult;
+import com.amazonaws.services.ecs.model.TargetNotFoundException;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.logging.SysoutLogger;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ContainerInstanceHandlerTest {
+
+    @Mock
+    AmazonECS ecsClient;
+    @Mock
+    AmazonEC2 ec2Client;
+
+    ContainerInstanceHandler handler;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        handler = new ContainerInstanceHandler(ecsClient, ec2Client, new SysoutLogger());
+
+        List<String> firstPage = arns(0, 100);
+        List<String> secondPage = arns(100, 125);
+        when(ecsClient.listContainerInstances(any(ListContainerInstancesRequest.class)))
+            .thenReturn(new ListContainerInstancesResult().withContainerInstanceArns(firstPage).withNextToken("next"))
+            .thenReturn(new ListContainerInstancesResult().withContainerInstanceArns(secondPage));
+        when(ecsClient.describeContainerInstances(any(DescribeContainerInstancesRequest.class)))
+            .thenAnswer(new Answer<DescribeContainerInstancesResult>() {
+                @Override
+                public DescribeContainerInstancesResult answer(InvocationOnMock invocation) {
+                    DescribeContainerInstancesRequest request = (DescribeContainerInstancesRequest) invocation.getArguments()[0];
+                    assertTrue(request.getContainerInstances().size() <= 100);
+                    return new DescribeContainerInstancesResult().withContainerInstances(request.getContainerInstances().stream()
+                        .map(arn -> new ContainerInstance().withContainerInstanceArn(arn))
+                        .collect(Collectors.toList()));
+                }
+            });
+    }
+
+    @Test
+    public void shouldListAllPages() {
+        assertEquals(125, handler.getContainerInstances("cluster").size());
+    }
+
+    @Test
+    public void shouldBatchAttributeUpdates() {
+        when(ecsClient.putAttributes(any(PutAttributesRequest.class))).thenReturn(new PutAttributesResult());
+
+        handler.setAttributeOnCluster("cluster", "state", "pre-drain");
+
+        verify(ecsClient, times(13)).putAttributes(any(PutAttributesRequest.class));
+    }
+
+    @Test
+    public void shouldRetryFailedBatchPerInstanceAndReportFailures() {
+        when(ecsClient.putAttributes(any(PutAttributesRequest.class))).thenAnswer(new Answer<PutAttributesResult>() {
+            @Override
+            public PutAttributesResult answer(InvocationOnMock invocation) {
+                PutAttributesRequest request = (PutAttributesRequest) invocation.getArguments()[0];
+                List<String> targets = request.getAttributes().stream()
+                    .map(attribute -> attribute.getTargetId())
+                    .collect(Collectors.toList());
+                if (targets.contains("arn-3") || targets.contains("arn-4")) {
+                    if (targets.size() > 1 || "arn-3".equals(targets.get(0))) {
+                        throw new TargetNotFoundException("gone");
+                    }
+                    throw new AmazonServiceException("denied");
+                }
+                return new PutAttributesResult();
+            }
+        });
+
+        try {
+            handler.setAttributeOnCluster("cluster", "state", "pre-drain");
+            fail("Expected failure for arn-4");
+        } catch (AwsExecException e) {
+            assertTrue(e.getMessage().contains("1 of 125"));
+        }
+        // the first batch is retried one instance at a time; the other 12 batches succeed on the first call
+        verify(ecsClient, times(13 + 10)).putAttributes(any(PutAttributesRequest.class));
+    }
+
+    private List<String> arns(int from, int to) {
+        List<String> arns = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            arns.add("arn-" + i);
+        }
+        return arns;
+    }
+}
@@ -0,0 +1,111 @@
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+import com.amazonaws.services.ecs.AmazonECS;
+import com.amazonaws.services.ecs.model.ContainerInstance;
+import com.amazonaws.services.ecs.model.DescribeContainerInstancesRequest;
+import com.amazonaws.services.ecs.model.DescribeContainerInstancesResult;
+import com.amazonaws.services.ecs.model.Resource;
+import com.libertymutualgroup.herman.logging.SysoutLogger;
+import com.libertymutualgroup.herman.util.AdaptivePoller;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.when;
+
+public class DrainSchedulerTest {
+
+    @Mock
+    AmazonECS ecsClient;
+
+    DrainScheduler scheduler;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        SysoutLogger logger = new SysoutLogger();
+        scheduler = new DrainScheduler(new ContainerInstanceHandler(ecsClient, null, logger), logger,
+            () -> new AdaptivePoller(0, 0, 1) {
+                @Override
+                protected void doSleep(long intervalMs) {
+                }
+            });
+        when(ecsClient.describeContainerInstances(any(DescribeContainerInstancesRequest.class)))
+            .thenReturn(new DescribeContainerInstancesResult().withContainerInstances(
+                instance("new-1", "ACTIVE", 0, 2048, 4096, 1024, 2048)));
+    }
+
+    @Test
+    public void shouldDrainInstancesWithFewestTasksFirstWithinCapacity() {
+        Map<String, ContainerInstance> old = new HashMap<>();
+        old.put("old-1", instance("old-1", "ACTIVE", 6, 2048, 4096, 0, 0));
+        old.put("old-2", instance("old-2", "ACTIVE", 2, 2048, 4096, 1536, 3072));
+        old.put("old-3", instance("old-3", "ACTIVE", 1, 2048, 4096, 1792, 3584));
+
+        List<String> selected = scheduler.selectInstancesToDrain("cluster", new LinkedHashSet<>(old.keySet()), old,
+            Arrays.asList("new-1"), 0, 3);
+
+        // old-1 needs 2048 CPU but only 256 is left once old-3 and old-2 are placed
+        assertEquals(Arrays.asList("old-3", "old-2"), selected);
+    }
+
+    @Test
+    public void shouldReserveCapacityForInstancesAlreadyDraining() {
+        Map<String, ContainerInstance> old = new HashMap<>();
+        old.put("old-1", instance("old-1", "DRAINING", 4, 2048, 4096, 1024, 2048));
+        old.put("old-2", instance("old-2", "ACTIVE", 1, 2048, 4096, 1792, 3584));
+
+        List<String> selected = scheduler.selectInstancesToDrain("cluster", new LinkedHashSet<>(Arrays.asList("old-2")), old,
+            Arrays.asList("new-1"), 1, 3);
+
+        assertEquals(0, selected.size());
+    }
+
+    @Test
+    public void shouldAlwaysKeepOneInstanceDraining() {
+        Map<String, ContainerInstance> old = new HashMap<>();
+        old.put("old-1", instance("old-1", "ACTIVE", 10, 4096, 8192, 0, 0));
+
+        List<String> selected = scheduler.selectInstancesToDrain("cluster", new LinkedHashSet<>(old.keySet()), old,
+            Arrays.asList("new-1"), 0, 3);
+
+        assertEquals(Arrays.asList("old-1"), selected);
+    }
+
+    @Test
+    public void shouldNotCountStoppedWarmPoolInstancesAsFreeCapacity() {
+        when(ecsClient.describeContainerInstances(any(DescribeContainerInstancesRequest.class)))
+            .thenReturn(new DescribeContainerInstancesResult().withContainerInstances(
+                instance("new-1", "ACTIVE", 0, 2048, 4096, 256, 512),
+                instance("new-2", "ACTIVE", 0, 2048, 4096, 2048, 4096).withAgentConnected(false)));
+        Map<String, ContainerInstance> old = new HashMap<>();
+        old.put("old-1", instance("old-1", "ACTIVE", 2, 2048, 4096, 1536, 3072));
+
+        List<String> selected = scheduler.selectInstancesToDrain("cluster", new LinkedHashSet<>(old.keySet()), old,
+            Arrays.asList("new-1", "new-2"), 1, 3);
+
+        assertEquals(0, selected.size());
+    }
+
+    private ContainerInstance instance(String arn, String status, int runningTasks, int cpu, int memory,
+        int remainingCpu, int remainingMemory) {
+        return new ContainerInstance()
+            .withContainerInstanceArn(arn)
+            .withStatus(status)
+            .withRunningTasksCount(runningTasks)
+            .withPendingTasksCount(0)
+            .withRegisteredResources(new Resource().withName("CPU").withIntegerValue(cpu),
+                new Resource().withName("MEMORY").withIntegerValue(memory))
+            .withRemainingResources(new Resource().withName("CPU").withIntegerValue(remainingCpu),
+                new Resource().withName("MEMORY").withIntegerValue(remainingMemory));
+    }
+}
@@ -0,0 +1,58 @@
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.logging.HermanLogger;
+import com.libertymutualgroup.herman.logging.SysoutLogger;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EcsClusterFleetPushTest {
+
+    EcsClusterFleetPush fleetPush = new EcsClusterFleetPush(new SysoutLogger());
+
+    @Test
+    public void shouldPushEveryCluster() {
+        List<String> pushed = new CopyOnWriteArrayList<>();
+        Map<String, Consumer<HermanLogger>> pushes = new LinkedHashMap<>();
+        for (String cluster : new String[] {"a", "b", "c", "d"}) {
+            pushes.put(cluster, logger -> {
+                logger.addLogEntry("pushing");
+                pushed.add(cluster);
+            });
+        }
+
+        Map<String, EcsClusterFleetPush.Status> statuses = fleetPush.push(pushes, 2);
+
+        assertEquals(4, pushed.size());
+        statuses.values().forEach(status -> assertEquals(EcsClusterFleetPush.Status.COMPLETE, status));
+    }
+
+    @Test
+    public void shouldStopStartingClustersAfterFirstFailure() {
+        List<String> pushed = new CopyOnWriteArrayList<>();
+        Map<String, Consumer<HermanLogger>> pushes = new LinkedHashMap<>();
+        pushes.put("a", logger -> pushed.add("a"));
+        pushes.put("b", logger -> {
+            throw new AwsExecException("Instance startup timed out");
+        });
+        pushes.put("c", logger -> pushed.add("c"));
+
+        try {
+            fleetPush.push(pushes, 1);
+            fail("Expected the fleet push to fail");
+        } catch (AwsExecException e) {
+            assertTrue(e.getMessage().contains("b"));
+        }
+        assertEquals(1, pushed.size());
+        assertEquals("a", pushed.get(0));
+    }
+}
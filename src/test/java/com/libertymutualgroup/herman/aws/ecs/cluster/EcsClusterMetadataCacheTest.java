@@ -0,0 +1,41 @@
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+import com.amazonaws.regions.Regions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class EcsClusterMetadataCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldLeaveSecretsOutOfEntriesPersistedToDisk() throws Exception {
+        File cacheDirectory = new File(folder.getRoot(), "cache");
+        EcsClusterMetadata metadata = new EcsClusterMetadata();
+        metadata.setClusterId("my-cluster");
+        metadata.setNewrelicLicenseKey("license-key");
+        metadata.setSplunkUrl("https://splunk/token");
+
+        new EcsClusterMetadataCache(cacheDirectory).put("my-cluster", Regions.US_EAST_1, "stack@1", metadata);
+
+        File file = new File(cacheDirectory, "cluster-metadata-my-cluster-us-east-1.json");
+        String persisted = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        assertFalse(persisted.contains("license-key"));
+        assertFalse(persisted.contains("splunk"));
+
+        EcsClusterMetadata reloaded = new EcsClusterMetadataCache(cacheDirectory).get("my-cluster", Regions.US_EAST_1, "stack@1");
+        assertEquals("my-cluster", reloaded.getClusterId());
+        assertNull(reloaded.getNewrelicLicenseKey());
+        assertNull(new EcsClusterMetadataCache(cacheDirectory).get("my-cluster", Regions.US_EAST_1, "stack@2"));
+    }
+}
@@ -0,0 +1,139 @@
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+import com.amazonaws.services.autoscaling.model.Instance;
+import com.amazonaws.services.autoscaling.model.InstanceRefresh;
+import com.amazonaws.services.autoscaling.model.InstanceRefreshStatus;
+import com.amazonaws.services.autoscaling.model.LifecycleState;
+import com.amazonaws.services.ecs.model.ContainerInstance;
+import com.amazonaws.services.ecs.model.ContainerInstanceStatus;
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import com.libertymutualgroup.herman.aws.asg.AutoscalingGroupHandler;
+import com.libertymutualgroup.herman.logging.SysoutLogger;
+import com.libertymutualgroup.herman.util.AdaptivePoller;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class InstanceRefreshRolloutTest {
+
+    private static final String CLUSTER = "cluster";
+    private static final String ASG = "cluster-asg";
+
+    @Mock
+    AutoscalingGroupHandler asgHandler;
+
+    @Mock
+    ContainerInstanceHandler containerInstanceHandler;
+
+    InstanceRefreshRollout rollout;
+    EcsClusterPushDefinition definition = new EcsClusterPushDefinition();
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        rollout = new InstanceRefreshRollout(asgHandler, containerInstanceHandler, new SysoutLogger(),
+            () -> new AdaptivePoller(0, 0, 1) {
+                @Override
+                protected void doSleep(long intervalMs) {
+                }
+            });
+        when(asgHandler.startInstanceRefresh(ASG, 90, 300)).thenReturn("refresh-1");
+        when(asgHandler.getAsgInstancesInState(ASG, LifecycleState.TerminatingWait))
+            .thenReturn(Collections.<Instance>emptyList());
+    }
+
+    @Test
+    public void shouldRemoveDrainHookAfterSuccessfulRefresh() {
+        when(asgHandler.getInstanceRefresh(ASG, "refresh-1")).thenReturn(refresh(InstanceRefreshStatus.Successful, 100));
+
+        rollout.rollout(CLUSTER, ASG, definition, 60000);
+
+        InOrder order = inOrder(asgHandler);
+        order.verify(asgHandler).putTerminationLifecycleHook(ASG, InstanceRefreshRollout.DRAIN_HOOK_NAME, 60);
+        order.verify(asgHandler).startInstanceRefresh(ASG, 90, 300);
+        order.verify(asgHandler).deleteLifecycleHook(ASG, InstanceRefreshRollout.DRAIN_HOOK_NAME);
+        verify(asgHandler, never()).cancelInstanceRefresh(anyString());
+    }
+
+    @Test
+    public void shouldDrainTerminatingInstancesBeforeReleasingThem() {
+        when(asgHandler.getAsgInstancesInState(ASG, LifecycleState.TerminatingWait))
+            .thenReturn(Collections.singletonList(new Instance().withInstanceId("i-1")));
+        when(containerInstanceHandler.getContainerInstancesByEc2InstanceId(CLUSTER))
+            .thenReturn(containerInstance("i-1", 2))
+            .thenReturn(containerInstance("i-1", 0));
+        when(asgHandler.getInstanceRefresh(ASG, "refresh-1"))
+            .thenReturn(refresh(InstanceRefreshStatus.InProgress, 0))
+            .thenReturn(refresh(InstanceRefreshStatus.Successful, 100));
+
+        rollout.rollout(CLUSTER, ASG, definition, 60000);
+
+        verify(containerInstanceHandler).setAttributeOnInstances(CLUSTER, Collections.singletonList("arn-i-1"),
+            "state", "pre-drain");
+        verify(containerInstanceHandler).setContainerInstanceStatus(CLUSTER, Collections.singletonList("arn-i-1"),
+            ContainerInstanceStatus.DRAINING);
+        verify(asgHandler).completeLifecycleAction(ASG, InstanceRefreshRollout.DRAIN_HOOK_NAME, "i-1");
+        verify(asgHandler).deleteLifecycleHook(ASG, InstanceRefreshRollout.DRAIN_HOOK_NAME);
+    }
+
+    @Test
+    public void shouldCancelFailedRefreshAndRemoveDrainHook() {
+        when(asgHandler.getInstanceRefresh(ASG, "refresh-1")).thenReturn(refresh(InstanceRefreshStatus.Failed, 40));
+
+        try {
+            rollout.rollout(CLUSTER, ASG, definition, 60000);
+            throw new AssertionError("Expected the failed refresh to fail the push");
+        } catch (AwsExecException expected) {
+            // expected
+        }
+
+        verify(asgHandler).cancelInstanceRefresh(ASG);
+        verify(asgHandler).deleteLifecycleHook(ASG, InstanceRefreshRollout.DRAIN_HOOK_NAME);
+    }
+
+    @Test(expected = AwsExecException.class)
+    public void shouldGiveUpOnStalledRefresh() {
+        when(asgHandler.getInstanceRefresh(ASG, "refresh-1")).thenReturn(refresh(InstanceRefreshStatus.InProgress, null));
+
+        try {
+            rollout.rollout(CLUSTER, ASG, definition, -1);
+        } finally {
+            verify(asgHandler).cancelInstanceRefresh(ASG);
+            verify(asgHandler).deleteLifecycleHook(ASG, InstanceRefreshRollout.DRAIN_HOOK_NAME);
+            verify(containerInstanceHandler, never()).setAttributeOnInstances(anyString(), anyListOf(String.class),
+                anyString(), anyString());
+            verify(asgHandler).putTerminationLifecycleHook(ASG, InstanceRefreshRollout.DRAIN_HOOK_NAME, 30);
+        }
+    }
+
+    private InstanceRefresh refresh(InstanceRefreshStatus status, Integer percentage) {
+        return new InstanceRefresh()
+            .withInstanceRefreshId("refresh-1")
+            .withStatus(status)
+            .withPercentageComplete(percentage)
+            .withInstancesToUpdate(1);
+    }
+
+    private Map<String, ContainerInstance> containerInstance(String instanceId, int runningTasks) {
+        Map<String, ContainerInstance> instances = new HashMap<>();
+        instances.put(instanceId, new ContainerInstance()
+            .withEc2InstanceId(instanceId)
+            .withContainerInstanceArn("arn-" + instanceId)
+            .withRunningTasksCount(runningTasks)
+            .withPendingTasksCount(0));
+        return instances;
+    }
+}
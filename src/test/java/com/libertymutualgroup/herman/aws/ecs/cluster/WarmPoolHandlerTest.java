@@ -0,0 +1,92 @@
+package com.libertymutualgroup.herman.aws.ecs.cluster;
+
+import com.amazonaws.services.autoscaling.model.DescribeWarmPoolResult;
+import com.amazonaws.services.autoscaling.model.InstanceReusePolicy;
+import com.amazonaws.services.autoscaling.model.WarmPoolConfiguration;
+import com.libertymutualgroup.herman.aws.asg.AutoscalingGroupHandler;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+public class WarmPoolHandlerTest {
+
+    private static final String ASG = "cluster-asg";
+
+    @Mock
+    AutoscalingGroupHandler asgHandler;
+
+    EcsClusterWarmPool warmPool = new EcsClusterWarmPool();
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        warmPool.setMinSize(2);
+        warmPool.setMaxGroupPreparedCapacity(6);
+        warmPool.setReuseOnScaleIn(true);
+    }
+
+    @Test
+    public void shouldAddMissingWarmPool() {
+        new WarmPoolHandler(asgHandler, warmPool).apply(ASG);
+
+        verify(asgHandler).putWarmPool(ASG, 2, 6, "Stopped", true);
+    }
+
+    @Test
+    public void shouldLeaveMatchingWarmPoolAlone() {
+        when(asgHandler.getWarmPool(ASG)).thenReturn(existing(2, 6, "Stopped", true));
+
+        new WarmPoolHandler(asgHandler, warmPool).apply(ASG);
+
+        verify(asgHandler, never()).putWarmPool(anyString(), anyInt(), anyInt(), anyString(), anyBoolean());
+    }
+
+    @Test
+    public void shouldUpdateWarmPoolWithDifferentSettings() {
+        when(asgHandler.getWarmPool(ASG)).thenReturn(existing(2, 6, "Stopped", false));
+
+        new WarmPoolHandler(asgHandler, warmPool).apply(ASG);
+
+        verify(asgHandler).putWarmPool(ASG, 2, 6, "Stopped", true);
+    }
+
+    @Test
+    public void shouldNotTouchGroupsWithoutConfiguredWarmPool() {
+        WarmPoolHandler handler = new WarmPoolHandler(asgHandler, null);
+
+        handler.apply(ASG);
+        handler.delete(ASG);
+
+        verifyZeroInteractions(asgHandler);
+    }
+
+    @Test
+    public void shouldOnlyDeleteExistingWarmPool() {
+        when(asgHandler.getWarmPool("old-asg")).thenReturn(existing(2, 6, "Stopped", true));
+        WarmPoolHandler handler = new WarmPoolHandler(asgHandler, warmPool);
+
+        handler.delete("old-asg");
+        handler.delete("other-asg");
+
+        verify(asgHandler).deleteWarmPool("old-asg");
+        verify(asgHandler, never()).deleteWarmPool("other-asg");
+    }
+
+    private DescribeWarmPoolResult existing(int minSize, int maxGroupPreparedCapacity, String poolState,
+        boolean reuseOnScaleIn) {
+        return new DescribeWarmPoolResult().withWarmPoolConfiguration(new WarmPoolConfiguration()
+            .withMinSize(minSize)
+            .withMaxGroupPreparedCapacity(maxGroupPreparedCapacity)
+            .withPoolState(poolState)
+            .withInstanceReusePolicy(new InstanceReusePolicy().withReuseOnScaleIn(reuseOnScaleIn)));
+    }
+}
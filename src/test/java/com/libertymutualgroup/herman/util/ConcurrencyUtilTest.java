@@ -0,0 +1,56 @@
+package com.libertymutualgroup.herman.util;
+
+import com.libertymutualgroup.herman.aws.AwsExecException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ConcurrencyUtilTest {
+
+    @Test
+    public void shouldRunEveryTask() {
+        AtomicInteger runs = new AtomicInteger();
+        List<Runnable> tasks = Arrays.asList(runs::incrementAndGet, runs::incrementAndGet, runs::incrementAndGet);
+
+        ConcurrencyUtil.runAll(tasks, 2);
+
+        assertEquals(3, runs.get());
+    }
+
+    @Test
+    public void shouldRethrowTheTaskFailureUnwrapped() {
+        IllegalStateException failure = new IllegalStateException("boom");
+        List<Runnable> tasks = Arrays.asList(() -> { }, () -> {
+            throw failure;
+        });
+
+        try {
+            ConcurrencyUtil.runAll(tasks, 2);
+            fail("Expected the task failure");
+        } catch (IllegalStateException e) {
+            assertSame(failure, e);
+        }
+    }
+
+    @Test
+    public void shouldWrapCheckedFailuresWhenJoining() {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        future.completeExceptionally(new IOException("io"));
+
+        try {
+            ConcurrencyUtil.join(future);
+            fail("Expected the future's failure");
+        } catch (AwsExecException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.libertymutualgroup.herman.util;
+
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.ecs.model.PortMapping;
+import com.amazonaws.services.rds.model.Parameter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.libertymutualgroup.herman.aws.ecs.EcsDefinitionMixIns;
+import com.libertymutualgroup.herman.aws.ecs.EcsPushDefinition;
+import com.libertymutualgroup.herman.aws.ecs.broker.dynamodb.DynamoDBMixIns;
+import com.libertymutualgroup.herman.aws.ecs.broker.rds.RdsBrokerMixIns;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+
+public class HermanJacksonTest {
+
+    private String template;
+
+    @Before
+    public void setup() throws IOException {
+        URL url = this.getClass().getResource("/sampleTemplates/template.yml");
+        template = FileUtils.readFileToString(new File(url.getFile()));
+    }
+
+    @Test
+    public void shouldReuseReadersPerTypeAndFormat() {
+        Assert.assertSame(HermanJackson.reader(EcsPushDefinition.class, TemplateFormat.YML),
+            HermanJackson.yamlReader(EcsPushDefinition.class));
+        Assert.assertNotSame(HermanJackson.reader(EcsPushDefinition.class, TemplateFormat.YML),
+            HermanJackson.reader(EcsPushDefinition.class, TemplateFormat.JSON));
+    }
+
+    @Test
+    public void shouldCompareJsonRegardlessOfFormatting() {
+        Assert.assertTrue(HermanJackson.isSameJson("{\"a\": 1, \"b\": [\"x\"]}", "{ \"b\" : [ \"x\" ], \"a\" : 1 }"));
+        Assert.assertFalse(HermanJackson.isSameJson("{\"a\": 1}", "{\"a\": 2}"));
+        Assert.assertTrue(HermanJackson.isSameJson(null, ""));
+        Assert.assertFalse(HermanJackson.isSameJson("{\"a\": 1}", null));
+        Assert.assertTrue(HermanJackson.isSameJson("not json", "not json"));
+    }
+
+    @Test
+    public void shouldParseDefinitionWithSharedReader() throws IOException {
+        EcsPushDefinition definition = HermanJackson.yamlReader(EcsPushDefinition.class).readValue(template);
+
+        Assert.assertEquals("my-app-dev", definition.getAppName());
+        Assert.assertEquals(Integer.valueOf(8984),
+            definition.getContainerDefinitions().get(0).getPortMappings().get(0).getContainerPort());
+    }
+
+    @Test
+    public void shouldParseYamlAndJsonTheSameWay() throws IOException {
+        String json = new ObjectMapper(new YAMLFactory()).readTree(template).toString();
+
+        EcsPushDefinition fromYaml = HermanJackson.yamlReader(EcsPushDefinition.class).readValue(template);
+        EcsPushDefinition fromJson = HermanJackson.jsonReader(EcsPushDefinition.class).readValue(json);
+
+        Assert.assertEquals(HermanJackson.jsonWriter().writeValueAsString(fromYaml),
+            HermanJackson.jsonWriter().writeValueAsString(fromJson));
+    }
+
+    @Test
+    public void shouldRegisterMixIns() {
+        ObjectMapper mapper = new ObjectMapper().registerModule(new HermanJacksonModule());
+
+        Assert.assertEquals(EcsDefinitionMixIns.IgnoreTransportSetValueObjMixIn.class,
+            mapper.findMixInClassFor(PortMapping.class));
+        Assert.assertEquals(DynamoDBMixIns.class, mapper.findMixInClassFor(KeySchemaElement.class));
+        Assert.assertEquals(RdsBrokerMixIns.ParameterMixIn.class, mapper.findMixInClassFor(Parameter.class));
+    }
+}